@@ -22,18 +22,32 @@
  */
 package com.bw.jgraph.graph;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Dynamic Enum to handle attribute of graph-elements.<br>
  * Attributes should be defined in a static ways with fixed ordinals.
  * If the ordinals are not fixed, {@link GraphSerializer} needs to be configured to write
- * the names instead of ordinals which will increase data size.
+ * the names instead of ordinals which will increase data size.<br>
+ * Attributes created via {@link #ofInt(String)}, {@link #ofDouble(String)} etc. are typed. Values of typed
+ * attributes are stored without boxing and can be accessed via the primitive getters and setters
+ * of {@link GraphElement}, e.g. {@link GraphElement#getInt(Attribute)}.<br>
+ * Lookups are lock-free, only creation of new attributes is synchronized.
  */
 public final class Attribute
 {
+	/**
+	 * Type of the attribute values.
+	 */
+	public enum Type
+	{
+		OBJECT, INT, LONG, FLOAT, DOUBLE, BOOLEAN
+	}
+
 	public final int ordinal;
 	public final String name;
+	public final Type type;
 
 	@Override
 	public int hashCode()
@@ -60,37 +74,154 @@ public final class Attribute
 		return new StringBuilder().append(name).append(" (").append(ordinal).append(')').toString();
 	}
 
-	private Attribute(String name, int ordinal)
+	private Attribute(String name, int ordinal, Type type)
 	{
 		this.name = name;
 		this.ordinal = ordinal;
+		this.type = type;
 	}
 
-	private static final HashMap<String, Attribute> attributes_ = new HashMap<>();
-	private static final HashMap<Integer, Attribute> attributeByOrdinal_ = new HashMap<>();
+	private static final ConcurrentHashMap<String, Attribute> attributes_ = new ConcurrentHashMap<>();
 
+	/**
+	 * Attributes by ordinal. Replaced (not modified) if a new attribute is created.
+	 */
+	private static volatile Attribute[] attributeByOrdinal_ = new Attribute[16];
 
 	public static Attribute getAttribute( int ordinal )
 	{
-		synchronized (attributes_)
+		final Attribute[] byOrdinal = attributeByOrdinal_;
+		return (ordinal >= 0 && ordinal < byOrdinal.length) ? byOrdinal[ordinal] : null;
+	}
+
+	/**
+	 * Gets or creates an attribute.<br>
+	 * New attributes are of type {@link Type#OBJECT}, existing attributes are returned with their type.
+	 */
+	public static Attribute getAttribute( String name )
+	{
+		Attribute a = attributes_.get(name);
+		return a == null ? create(name, Type.OBJECT) : a;
+	}
+
+	/**
+	 * Gets or creates an attribute with int values.
+	 * @throws IllegalArgumentException If the attribute exists with a different type.
+	 */
+	public static Attribute ofInt( String name )
+	{
+		return getAttribute(name, Type.INT);
+	}
+
+	/**
+	 * Gets or creates an attribute with long values.
+	 * @throws IllegalArgumentException If the attribute exists with a different type.
+	 */
+	public static Attribute ofLong( String name )
+	{
+		return getAttribute(name, Type.LONG);
+	}
+
+	/**
+	 * Gets or creates an attribute with float values.
+	 * @throws IllegalArgumentException If the attribute exists with a different type.
+	 */
+	public static Attribute ofFloat( String name )
+	{
+		return getAttribute(name, Type.FLOAT);
+	}
+
+	/**
+	 * Gets or creates an attribute with double values.
+	 * @throws IllegalArgumentException If the attribute exists with a different type.
+	 */
+	public static Attribute ofDouble( String name )
+	{
+		return getAttribute(name, Type.DOUBLE);
+	}
+
+	/**
+	 * Gets or creates an attribute with boolean values.
+	 * @throws IllegalArgumentException If the attribute exists with a different type.
+	 */
+	public static Attribute ofBoolean( String name )
+	{
+		return getAttribute(name, Type.BOOLEAN);
+	}
+
+	/**
+	 * Gets or creates an attribute of the specified type.
+	 * @throws IllegalArgumentException If the attribute exists with a different type.
+	 */
+	public static Attribute getAttribute( String name, Type type )
+	{
+		Attribute a = attributes_.get(name);
+		if ( a == null )
+			a = create(name, type);
+		if ( a.type != type )
+			throw new IllegalArgumentException("Attribute " + name + " has type " + a.type);
+		return a;
+	}
+
+	private static synchronized Attribute create( String name, Type type )
+	{
+		Attribute a = attributes_.get(name);
+		if ( a == null )
 		{
-			return attributeByOrdinal_.get(ordinal);
+			a = new Attribute(name, attributes_.size(), type);
+			Attribute[] byOrdinal = attributeByOrdinal_;
+			if ( a.ordinal >= byOrdinal.length )
+				byOrdinal = Arrays.copyOf(byOrdinal, byOrdinal.length * 2);
+			else
+				byOrdinal = byOrdinal.clone();
+			byOrdinal[a.ordinal] = a;
+			attributeByOrdinal_ = byOrdinal;
+			attributes_.put(name, a);
 		}
+		return a;
 	}
 
-	public static Attribute getAttribute( String name )
+	/**
+	 * Converts a value to the type of this attribute.
+	 * @throws IllegalArgumentException If the value can't be converted.
+	 */
+	Object convert( Object value )
 	{
-		synchronized (attributes_)
+		if ( value == null )
+			return null;
+		switch (type)
 		{
-			Attribute a = attributes_.get(name);
-			if ( a == null )
-			{
-				a = new Attribute(name, attributes_.size());
-				attributes_.put(name, a);
-				attributeByOrdinal_.put(Integer.valueOf(a.ordinal), a);
-			}
-			return a;
+			case INT:
+				if ( value instanceof Integer ) return value;
+				if ( value instanceof Number n ) return n.intValue();
+				break;
+			case LONG:
+				if ( value instanceof Long ) return value;
+				if ( value instanceof Number n ) return n.longValue();
+				break;
+			case FLOAT:
+				if ( value instanceof Float ) return value;
+				if ( value instanceof Number n ) return n.floatValue();
+				break;
+			case DOUBLE:
+				if ( value instanceof Double ) return value;
+				if ( value instanceof Number n ) return n.doubleValue();
+				break;
+			case BOOLEAN:
+				if ( value instanceof Boolean ) return value;
+				break;
+			default:
+				return value;
 		}
+		throw new IllegalArgumentException("Value " + value + " doesn't match attribute " + this + " of type " + type);
 	}
 
+	/**
+	 * Checks the type of the attribute for a typed access.
+	 */
+	void checkType( Type expected )
+	{
+		if ( type != expected )
+			throw new IllegalArgumentException("Attribute " + this + " has type " + type + ", not " + expected);
+	}
 }
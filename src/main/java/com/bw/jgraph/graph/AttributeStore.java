@@ -0,0 +1,914 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Columnar storage of attribute values.<br>
+ * Each attribute has its own column, addressed by the {@link Attribute#ordinal ordinal}.
+ * Inside a column the values are addressed by the row of the element.<br>
+ * Columns start sparse (a small int-keyed hash table), so attributes that are only set for some
+ * elements don't allocate space for all rows. If a column gets filled, it is converted to a dense column.
+ * Dense columns are chunked arrays: growing never copies values and a scan across a column is a
+ * plain array walk.<br>
+ * Columns of typed attributes (see {@link Attribute.Type}) are always dense and store the values in
+ * primitive arrays. The typed getters and setters, e.g. {@link #getInt(int, Attribute)}, access them
+ * without boxing.<br>
+ * Instances are not thread-safe, except stores in concurrent mode (used by {@link ConcurrentGraph}):
+ * these allow writes to different rows by several threads without locks. All columns are dense then,
+ * values and presence bits are updated atomically and chunk tables are replaced, never changed in place.
+ * Only the creation of a column or of a chunk (once per 1024 rows) takes a short lock.
+ */
+public final class AttributeStore
+{
+	private static final int CHUNK_BITS = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static final VarHandle SIZE;
+	private static final VarHandle OBJECTS = MethodHandles.arrayElementVarHandle(Object[].class);
+	private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	static
+	{
+		try
+		{
+			SIZE = MethodHandles.lookup().findVarHandle(Column.class, "size_", int.class);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final boolean concurrent_;
+
+	private volatile Column[] columns_ = new Column[8];
+
+	public AttributeStore()
+	{
+		this(false);
+	}
+
+	/**
+	 * @param concurrent If true, several threads can write without locks.
+	 */
+	AttributeStore(boolean concurrent)
+	{
+		concurrent_ = concurrent;
+	}
+
+	/**
+	 * Gets the value of an attribute.
+	 *
+	 * @return The value or null.
+	 */
+	public Object get(int row, Attribute a)
+	{
+		final Column c = getColumn(a);
+		return c == null ? null : c.get(row);
+	}
+
+	/**
+	 * Sets the value of an attribute. A null value removes the attribute.
+	 */
+	public void set(int row, Attribute a, Object value)
+	{
+		value = a.convert(value);
+		final Column c = value == null ? getColumn(a) : column(a);
+		if (c != null && c.set(row, value) && c instanceof SparseColumn sc && sc.shallBeDense())
+		{
+			columns_[a.ordinal] = sc.toDense();
+		}
+	}
+
+	/**
+	 * Checks if the row has a value for the attribute.
+	 */
+	public boolean has(int row, Attribute a)
+	{
+		final Column c = getColumn(a);
+		return c != null && c.has(row);
+	}
+
+	/**
+	 * Gets the value of an int attribute.
+	 *
+	 * @return The value or 0 if not set.
+	 * @throws IllegalArgumentException if the attribute is not of type {@link Attribute.Type#INT}.
+	 */
+	public int getInt(int row, Attribute a)
+	{
+		a.checkType(Attribute.Type.INT);
+		final Column c = getColumn(a);
+		return c == null ? 0 : ((IntColumn) c).getBits(row);
+	}
+
+	public void setInt(int row, Attribute a, int value)
+	{
+		a.checkType(Attribute.Type.INT);
+		((IntColumn) column(a)).setBits(row, value);
+	}
+
+	/**
+	 * Gets the value of a float attribute.
+	 *
+	 * @return The value or 0 if not set.
+	 * @throws IllegalArgumentException if the attribute is not of type {@link Attribute.Type#FLOAT}.
+	 */
+	public float getFloat(int row, Attribute a)
+	{
+		a.checkType(Attribute.Type.FLOAT);
+		final Column c = getColumn(a);
+		return c == null ? 0 : Float.intBitsToFloat(((IntColumn) c).getBits(row));
+	}
+
+	public void setFloat(int row, Attribute a, float value)
+	{
+		a.checkType(Attribute.Type.FLOAT);
+		((IntColumn) column(a)).setBits(row, Float.floatToRawIntBits(value));
+	}
+
+	/**
+	 * Gets the value of a boolean attribute.
+	 *
+	 * @return The value or false if not set.
+	 * @throws IllegalArgumentException if the attribute is not of type {@link Attribute.Type#BOOLEAN}.
+	 */
+	public boolean getBoolean(int row, Attribute a)
+	{
+		a.checkType(Attribute.Type.BOOLEAN);
+		final Column c = getColumn(a);
+		return c != null && ((IntColumn) c).getBits(row) != 0;
+	}
+
+	public void setBoolean(int row, Attribute a, boolean value)
+	{
+		a.checkType(Attribute.Type.BOOLEAN);
+		((IntColumn) column(a)).setBits(row, value ? 1 : 0);
+	}
+
+	/**
+	 * Gets the value of a long attribute.
+	 *
+	 * @return The value or 0 if not set.
+	 * @throws IllegalArgumentException if the attribute is not of type {@link Attribute.Type#LONG}.
+	 */
+	public long getLong(int row, Attribute a)
+	{
+		a.checkType(Attribute.Type.LONG);
+		final Column c = getColumn(a);
+		return c == null ? 0 : ((LongColumn) c).getBits(row);
+	}
+
+	public void setLong(int row, Attribute a, long value)
+	{
+		a.checkType(Attribute.Type.LONG);
+		((LongColumn) column(a)).setBits(row, value);
+	}
+
+	/**
+	 * Gets the value of a double attribute.
+	 *
+	 * @return The value or 0 if not set.
+	 * @throws IllegalArgumentException if the attribute is not of type {@link Attribute.Type#DOUBLE}.
+	 */
+	public double getDouble(int row, Attribute a)
+	{
+		a.checkType(Attribute.Type.DOUBLE);
+		final Column c = getColumn(a);
+		return c == null ? 0 : Double.longBitsToDouble(((LongColumn) c).getBits(row));
+	}
+
+	public void setDouble(int row, Attribute a, double value)
+	{
+		a.checkType(Attribute.Type.DOUBLE);
+		((LongColumn) column(a)).setBits(row, Double.doubleToRawLongBits(value));
+	}
+
+	private Column getColumn(Attribute a)
+	{
+		final Column[] columns = columns_;
+		return (a.ordinal < columns.length) ? columns[a.ordinal] : null;
+	}
+
+	/**
+	 * Gets the column of the attribute, creates it if needed.
+	 */
+	private Column column(Attribute a)
+	{
+		final Column c = getColumn(a);
+		return c != null ? c : createColumn(a);
+	}
+
+	/**
+	 * Creates a column. The column table is replaced, so readers without lock see either table completely.
+	 */
+	private synchronized Column createColumn(Attribute a)
+	{
+		Column c = getColumn(a);
+		if (c == null)
+		{
+			switch (a.type)
+			{
+				case INT:
+				case FLOAT:
+				case BOOLEAN:
+					c = new IntColumn(a.type, concurrent_);
+					break;
+				case LONG:
+				case DOUBLE:
+					c = new LongColumn(a.type, concurrent_);
+					break;
+				default:
+					c = concurrent_ ? new DenseColumn(true) : new SparseColumn();
+					break;
+			}
+			final Column[] columns = Arrays.copyOf(columns_, Math.max(a.ordinal + 1, columns_.length));
+			columns[a.ordinal] = c;
+			columns_ = columns;
+		}
+		return c;
+	}
+
+	/**
+	 * Removes all values of a row.
+	 */
+	public void clear(int row)
+	{
+		for (Column c : columns_)
+		{
+			if (c != null)
+			{
+				c.set(row, null);
+			}
+		}
+	}
+
+	/**
+	 * Iterates across all attributes that have a value in the row.
+	 */
+	public Iterator<Attribute> attributes(int row)
+	{
+		return new AttributeIterator(row);
+	}
+
+	/**
+	 * Gets the number of rows with a value for the attribute.
+	 */
+	public int size(Attribute a)
+	{
+		final Column c = getColumn(a);
+		return c == null ? 0 : (int) SIZE.getOpaque(c);
+	}
+
+	/**
+	 * Calls the consumer for all values of an attribute, together with the row.<br>
+	 * For dense columns the rows are visited in ascending order, otherwise the order is unspecified.
+	 * The store shall not be modified during the scan.
+	 */
+	public void forEach(Attribute a, ObjIntConsumer<Object> consumer)
+	{
+		final Column c = getColumn(a);
+		if (c != null)
+		{
+			c.forEach(consumer);
+		}
+	}
+
+	private abstract static class Column
+	{
+		/** Number of values. */
+		int size_;
+
+		/** If true, several threads may write. */
+		final boolean concurrent;
+
+		Column(boolean concurrent)
+		{
+			this.concurrent = concurrent;
+		}
+
+		final void addSize(int delta)
+		{
+			if (concurrent)
+			{
+				SIZE.getAndAdd(this, delta);
+			}
+			else
+			{
+				size_ += delta;
+			}
+		}
+
+		abstract Object get(int row);
+
+		boolean has(int row)
+		{
+			return get(row) != null;
+		}
+
+		/**
+		 * Sets or removes (value == null) a value.
+		 *
+		 * @return true if a new value was added.
+		 */
+		abstract boolean set(int row, Object value);
+
+		abstract void forEach(ObjIntConsumer<Object> consumer);
+	}
+
+	private static final class DenseColumn extends Column
+	{
+		private volatile Object[][] chunks_ = new Object[4][];
+
+		DenseColumn(boolean concurrent)
+		{
+			super(concurrent);
+		}
+
+		@Override
+		Object get(int row)
+		{
+			final int ci = row >>> CHUNK_BITS;
+			final Object[][] chunks = chunks_;
+			if (ci < chunks.length)
+			{
+				final Object[] chunk = chunks[ci];
+				if (chunk != null)
+				{
+					return chunk[row & CHUNK_MASK];
+				}
+			}
+			return null;
+		}
+
+		@Override
+		boolean set(int row, Object value)
+		{
+			final int ci = row >>> CHUNK_BITS;
+			final Object[][] chunks = chunks_;
+			Object[] chunk = ci < chunks.length ? chunks[ci] : null;
+			if (chunk == null)
+			{
+				if (value == null)
+				{
+					return false;
+				}
+				chunk = allocate(ci);
+			}
+			final Object old;
+			if (concurrent)
+			{
+				old = OBJECTS.getAndSet(chunk, row & CHUNK_MASK, value);
+			}
+			else
+			{
+				old = chunk[row & CHUNK_MASK];
+				chunk[row & CHUNK_MASK] = value;
+			}
+			if (old == null)
+			{
+				if (value != null)
+				{
+					addSize(1);
+					return true;
+				}
+			}
+			else if (value == null)
+			{
+				addSize(-1);
+			}
+			return false;
+		}
+
+		private synchronized Object[] allocate(int ci)
+		{
+			Object[][] chunks = chunks_;
+			if (ci < chunks.length && chunks[ci] != null)
+			{
+				return chunks[ci];
+			}
+			chunks = Arrays.copyOf(chunks, Math.max(ci + 1, chunks.length * (ci < chunks.length ? 1 : 2)));
+			final Object[] chunk = new Object[CHUNK_SIZE];
+			chunks[ci] = chunk;
+			chunks_ = chunks;
+			return chunk;
+		}
+
+		@Override
+		void forEach(ObjIntConsumer<Object> consumer)
+		{
+			final Object[][] chunks = chunks_;
+			for (int ci = 0; ci < chunks.length; ++ci)
+			{
+				final Object[] chunk = chunks[ci];
+				if (chunk != null)
+				{
+					final int base = ci << CHUNK_BITS;
+					for (int i = 0; i < CHUNK_SIZE; ++i)
+					{
+						if (chunk[i] != null)
+						{
+							consumer.accept(chunk[i], base + i);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Open-addressing hash table with linear probing, keyed by row.<br>
+	 * The slot is taken from the high bits of the Fibonacci hash, the low bits of the product only
+	 * depend on the low bits of the row and would put strided rows into few slots.
+	 */
+	private static final class SparseColumn extends Column
+	{
+		private static final int FREE = -1;
+
+		private int[] rows_ = newRows(16);
+		private Object[] values_ = new Object[16];
+		private int maxRow_ = 0;
+
+		/** 32 - log2 of the capacity. */
+		private int shift_ = 32 - 4;
+
+		SparseColumn()
+		{
+			super(false);
+		}
+
+		private static int[] newRows(int capacity)
+		{
+			int[] rows = new int[capacity];
+			Arrays.fill(rows, FREE);
+			return rows;
+		}
+
+		private int slot(int row)
+		{
+			final int mask = rows_.length - 1;
+			int i = (row * 0x9E3779B9) >>> shift_;
+			while (rows_[i] != FREE && rows_[i] != row)
+			{
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		@Override
+		Object get(int row)
+		{
+			final int i = slot(row);
+			return rows_[i] == row ? values_[i] : null;
+		}
+
+		@Override
+		boolean set(int row, Object value)
+		{
+			int i = slot(row);
+			if (rows_[i] == row)
+			{
+				if (value == null)
+				{
+					removeSlot(i);
+				}
+				else
+				{
+					values_[i] = value;
+				}
+				return false;
+			}
+			else if (value != null)
+			{
+				if ((size_ + 1) * 4 > rows_.length * 3)
+				{
+					rehash(rows_.length * 2);
+					i = slot(row);
+				}
+				rows_[i] = row;
+				values_[i] = value;
+				addSize(1);
+				if (row > maxRow_)
+				{
+					maxRow_ = row;
+				}
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Removes a slot and moves following entries of the probe sequence.
+		 */
+		private void removeSlot(int i)
+		{
+			final int mask = rows_.length - 1;
+			rows_[i] = FREE;
+			values_[i] = null;
+			addSize(-1);
+			int j = (i + 1) & mask;
+			while (rows_[j] != FREE)
+			{
+				final int row = rows_[j];
+				final Object value = values_[j];
+				rows_[j] = FREE;
+				values_[j] = null;
+				final int k = slot(row);
+				rows_[k] = row;
+				values_[k] = value;
+				j = (j + 1) & mask;
+			}
+		}
+
+		private void rehash(int capacity)
+		{
+			final int[] oldRows = rows_;
+			final Object[] oldValues = values_;
+			rows_ = newRows(capacity);
+			values_ = new Object[capacity];
+			shift_ = 32 - Integer.numberOfTrailingZeros(capacity);
+			for (int i = 0; i < oldRows.length; ++i)
+			{
+				if (oldRows[i] != FREE)
+				{
+					final int k = slot(oldRows[i]);
+					rows_[k] = oldRows[i];
+					values_[k] = oldValues[i];
+				}
+			}
+		}
+
+		/**
+		 * A dense column is smaller if more than about a quarter of the rows have a value.
+		 */
+		boolean shallBeDense()
+		{
+			return size_ >= 64 && size_ * 4 > maxRow_;
+		}
+
+		DenseColumn toDense()
+		{
+			DenseColumn d = new DenseColumn(false);
+			forEach((v, row) -> d.set(row, v));
+			return d;
+		}
+
+		@Override
+		void forEach(ObjIntConsumer<Object> consumer)
+		{
+			for (int i = 0; i < rows_.length; ++i)
+			{
+				if (rows_[i] != FREE)
+				{
+					consumer.accept(values_[i], rows_[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Base of columns with primitive values. Tracks which rows have a value.<br>
+	 * The value is written before the presence bit is set, so concurrent readers that see the bit also see the value.
+	 */
+	private abstract static class PrimitiveColumn extends Column
+	{
+		final Attribute.Type type;
+		private volatile long[][] present_ = new long[4][];
+
+		PrimitiveColumn(Attribute.Type type, boolean concurrent)
+		{
+			super(concurrent);
+			this.type = type;
+		}
+
+		@Override
+		final boolean has(int row)
+		{
+			final int ci = row >>> CHUNK_BITS;
+			final long[][] present = present_;
+			if (ci < present.length)
+			{
+				final long[] bits = present[ci];
+				if (bits != null)
+				{
+					final int wi = (row & CHUNK_MASK) >>> 6;
+					final long w = concurrent ? (long) LONGS.getAcquire(bits, wi) : bits[wi];
+					return (w & (1L << row)) != 0;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Makes sure the chunk of the row exists.
+		 */
+		final void ensureChunk(int row)
+		{
+			final int ci = row >>> CHUNK_BITS;
+			final long[][] present = present_;
+			if (ci >= present.length || present[ci] == null)
+			{
+				allocate(ci);
+			}
+		}
+
+		/**
+		 * Allocates the value chunk first, so readers that see the presence chunk also see the values.
+		 */
+		private synchronized void allocate(int ci)
+		{
+			long[][] present = present_;
+			if (ci < present.length && present[ci] != null)
+			{
+				return;
+			}
+			allocateChunk(ci);
+			present = Arrays.copyOf(present, Math.max(ci + 1, present.length * (ci < present.length ? 1 : 2)));
+			present[ci] = new long[CHUNK_SIZE >>> 6];
+			present_ = present;
+		}
+
+		/**
+		 * Marks the row as present, the chunk has to exist.
+		 *
+		 * @return true if the row had no value.
+		 */
+		final boolean mark(int row)
+		{
+			final long[] bits = present_[row >>> CHUNK_BITS];
+			final int wi = (row & CHUNK_MASK) >>> 6;
+			final long bit = 1L << row;
+			final long old;
+			if (concurrent)
+			{
+				old = (long) LONGS.getAndBitwiseOr(bits, wi, bit);
+			}
+			else
+			{
+				old = bits[wi];
+				bits[wi] = old | bit;
+			}
+			if ((old & bit) == 0)
+			{
+				addSize(1);
+				return true;
+			}
+			return false;
+		}
+
+		final void unmark(int row)
+		{
+			if (has(row))
+			{
+				final long[] bits = present_[row >>> CHUNK_BITS];
+				final int wi = (row & CHUNK_MASK) >>> 6;
+				final long bit = 1L << row;
+				final long old;
+				if (concurrent)
+				{
+					old = (long) LONGS.getAndBitwiseAnd(bits, wi, ~bit);
+				}
+				else
+				{
+					old = bits[wi];
+					bits[wi] = old & ~bit;
+				}
+				if ((old & bit) != 0)
+				{
+					addSize(-1);
+				}
+			}
+		}
+
+		abstract void allocateChunk(int ci);
+
+		abstract Object box(int row);
+
+		abstract void unbox(int row, Object value);
+
+		@Override
+		final Object get(int row)
+		{
+			return has(row) ? box(row) : null;
+		}
+
+		@Override
+		final boolean set(int row, Object value)
+		{
+			if (value == null)
+			{
+				unmark(row);
+				return false;
+			}
+			ensureChunk(row);
+			unbox(row, value);
+			return mark(row);
+		}
+
+		@Override
+		final void forEach(ObjIntConsumer<Object> consumer)
+		{
+			final long[][] present = present_;
+			for (int ci = 0; ci < present.length; ++ci)
+			{
+				final long[] bits = present[ci];
+				if (bits != null)
+				{
+					for (int wi = 0; wi < bits.length; ++wi)
+					{
+						long w = bits[wi];
+						while (w != 0)
+						{
+							final int row = (ci << CHUNK_BITS) + (wi << 6) + Long.numberOfTrailingZeros(w);
+							consumer.accept(box(row), row);
+							w &= w - 1;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Column for int, float and boolean values, stored as int bits.
+	 */
+	private static final class IntColumn extends PrimitiveColumn
+	{
+		private volatile int[][] chunks_ = new int[4][];
+
+		IntColumn(Attribute.Type type, boolean concurrent)
+		{
+			super(type, concurrent);
+		}
+
+		@Override
+		void allocateChunk(int ci)
+		{
+			final int[][] chunks = Arrays.copyOf(chunks_, Math.max(ci + 1, chunks_.length * (ci < chunks_.length ? 1 : 2)));
+			chunks[ci] = new int[CHUNK_SIZE];
+			chunks_ = chunks;
+		}
+
+		int getBits(int row)
+		{
+			return has(row) ? chunks_[row >>> CHUNK_BITS][row & CHUNK_MASK] : 0;
+		}
+
+		void setBits(int row, int bits)
+		{
+			ensureChunk(row);
+			chunks_[row >>> CHUNK_BITS][row & CHUNK_MASK] = bits;
+			mark(row);
+		}
+
+		@Override
+		Object box(int row)
+		{
+			final int bits = chunks_[row >>> CHUNK_BITS][row & CHUNK_MASK];
+			switch (type)
+			{
+				case FLOAT:
+					return Float.intBitsToFloat(bits);
+				case BOOLEAN:
+					return bits != 0;
+				default:
+					return bits;
+			}
+		}
+
+		@Override
+		void unbox(int row, Object value)
+		{
+			final int bits;
+			switch (type)
+			{
+				case FLOAT:
+					bits = Float.floatToRawIntBits((Float) value);
+					break;
+				case BOOLEAN:
+					bits = ((Boolean) value) ? 1 : 0;
+					break;
+				default:
+					bits = (Integer) value;
+					break;
+			}
+			chunks_[row >>> CHUNK_BITS][row & CHUNK_MASK] = bits;
+		}
+	}
+
+	/**
+	 * Column for long and double values, stored as long bits.
+	 */
+	private static final class LongColumn extends PrimitiveColumn
+	{
+		private volatile long[][] chunks_ = new long[4][];
+
+		LongColumn(Attribute.Type type, boolean concurrent)
+		{
+			super(type, concurrent);
+		}
+
+		@Override
+		void allocateChunk(int ci)
+		{
+			final long[][] chunks = Arrays.copyOf(chunks_, Math.max(ci + 1, chunks_.length * (ci < chunks_.length ? 1 : 2)));
+			chunks[ci] = new long[CHUNK_SIZE];
+			chunks_ = chunks;
+		}
+
+		long getBits(int row)
+		{
+			return has(row) ? chunks_[row >>> CHUNK_BITS][row & CHUNK_MASK] : 0;
+		}
+
+		void setBits(int row, long bits)
+		{
+			ensureChunk(row);
+			chunks_[row >>> CHUNK_BITS][row & CHUNK_MASK] = bits;
+			mark(row);
+		}
+
+		@Override
+		Object box(int row)
+		{
+			final long bits = chunks_[row >>> CHUNK_BITS][row & CHUNK_MASK];
+			return type == Attribute.Type.DOUBLE ? (Object) Double.longBitsToDouble(bits) : (Object) bits;
+		}
+
+		@Override
+		void unbox(int row, Object value)
+		{
+			chunks_[row >>> CHUNK_BITS][row & CHUNK_MASK] =
+					type == Attribute.Type.DOUBLE ? Double.doubleToRawLongBits((Double) value) : (Long) value;
+		}
+	}
+
+	private final class AttributeIterator implements Iterator<Attribute>
+	{
+		private final int row;
+		private int ordinal = -1;
+		private int next = -1;
+
+		AttributeIterator(int row)
+		{
+			this.row = row;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if (next < 0)
+			{
+				for (int o = ordinal + 1; o < columns_.length; ++o)
+				{
+					if (columns_[o] != null && columns_[o].has(row))
+					{
+						next = o;
+						break;
+					}
+				}
+			}
+			return next >= 0;
+		}
+
+		@Override
+		public Attribute next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			ordinal = next;
+			next = -1;
+			return Attribute.getAttribute(ordinal);
+		}
+	}
+}
@@ -0,0 +1,557 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import com.bw.jgraph.io.GraphReader;
+import com.bw.jgraph.io.GraphWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Serializer that writes and reads graphs in independent chunks, in parallel on a fork-join pool.<br>
+ * The nodes are ordered by a pre-order walk of the root's tree (see {@link TreeWalker}), followed by the
+ * nodes that are not in the tree. So subtrees are consecutive. The order is cut into chunks of a fixed number of nodes.
+ * A chunk contains its nodes and their outgoing edges, with ids local to the chunk.
+ * Edges to nodes of other chunks reference the chunk and the local id.<br>
+ * Container, written as one element:
+ * <ol>
+ * <li>Version, node count, edge count, global index of the root (-1 for none), chunk count.</li>
+ * <li>Index block: node count, edge count and size of each chunk.</li>
+ * <li>The chunks as byte arrays.</li>
+ * </ol>
+ * Chunk: for each node a node element (attributes), followed by an element for each outgoing edge
+ * (target, cyclic flag, attributes).<br>
+ * Writing encodes the chunks in parallel and keeps them in memory until the index block is written.
+ * Reading decodes each chunk as soon as it is read. At the end the graph is created with a {@link GraphBuilder}
+ * with the stored cyclic flags, so the same edges of each cycle are cyclic as in the written graph and the tree
+ * doesn't change. Version 1 didn't store the flags, they are computed by a search from the root then.<br>
+ * In contrast to {@link GraphSerializer} all member nodes of the graph are written, not only the connected ones.
+ * One instance can be used by several threads.
+ */
+public final class ChunkedGraphSerializer
+{
+	public static final int VERSION = 2;
+
+	public static final int DEFAULT_CHUNK_NODES = 1 << 14;
+
+	private static final int FIELD_VERSION = 1;
+	private static final int FIELD_NODES = 2;
+	private static final int FIELD_EDGES = 3;
+	private static final int FIELD_ROOT = 4;
+	private static final int FIELD_CHUNKS = 5;
+	private static final int FIELD_INDEX = 6;
+	private static final int FIELD_CHUNK = 7;
+
+	/** Element types and fields inside of chunks. */
+	private static final int FIELD_NODE = 1;
+	private static final int FIELD_EDGE = 2;
+	private static final int FIELD_LOCAL_TARGET = 1;
+	private static final int FIELD_TARGET_CHUNK = 2;
+	private static final int FIELD_TARGET_NODE = 3;
+	private static final int FIELD_CYCLIC = 4;
+	/** Version 1 had no cyclic flag, its attributes start at the field of the flag. */
+	private static final int FIELD_EDGE_ATTRIBUTES = 5;
+
+	private final ForkJoinPool pool_;
+	private final int chunkNodes_;
+	private boolean useAttributeOrdinals_ = true;
+
+	public ChunkedGraphSerializer()
+	{
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_NODES);
+	}
+
+	/**
+	 * @param chunkNodes The number of nodes per chunk.
+	 */
+	public ChunkedGraphSerializer(ForkJoinPool pool, int chunkNodes)
+	{
+		if (chunkNodes < 1)
+		{
+			throw new IllegalArgumentException("Chunk size " + chunkNodes);
+		}
+		pool_ = pool;
+		chunkNodes_ = chunkNodes;
+	}
+
+	/**
+	 * Controls if attributes are written by ordinals or by names.
+	 *
+	 * @see GraphSerializer#setUseAttributeOrdinals(boolean)
+	 */
+	public void setUseAttributeOrdinals(boolean useOrdinals)
+	{
+		useAttributeOrdinals_ = useOrdinals;
+	}
+
+	/**
+	 * Writes a graph with the specified fieldId. The graph shall not be modified meanwhile.
+	 */
+	public void write(GraphWriter o, Graph g, int fieldId) throws IOException
+	{
+		if (g == null)
+		{
+			o.writeNull(fieldId);
+			return;
+		}
+		final Node[] order = new Node[g.nodeCount()];
+		final int[] globalIndex = order(g, order);
+		final int chunks = (order.length + chunkNodes_ - 1) / chunkNodes_;
+		final byte[][] data = new byte[chunks][];
+		final int[] edges = new int[chunks];
+		invoke(chunks, c ->
+		{
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (GraphWriter w = new GraphWriter(bytes))
+			{
+				edges[c] = encode(w, order, c, globalIndex);
+			}
+			data[c] = bytes.toByteArray();
+		});
+
+		final Node root = g.getRoot();
+		o.startElement(fieldId);
+		o.writeInt(FIELD_VERSION, VERSION);
+		o.writeInt(FIELD_NODES, order.length);
+		o.writeInt(FIELD_EDGES, g.edgeCount());
+		o.writeInt(FIELD_ROOT, root == null ? -1 : globalIndex[root.getId()]);
+		o.writeInt(FIELD_CHUNKS, chunks);
+		o.startElement(FIELD_INDEX);
+		for (int c = 0; c < chunks; ++c)
+		{
+			o.startElement(c + 1);
+			o.writeInt(1, Math.min(chunkNodes_, order.length - c * chunkNodes_));
+			o.writeInt(2, edges[c]);
+			o.writeInt(3, data[c].length);
+			o.endElement();
+		}
+		o.endElement();
+		for (int c = 0; c < chunks; ++c)
+		{
+			o.writeBytes(FIELD_CHUNK, data[c]);
+			data[c] = null;
+		}
+		o.endElement();
+	}
+
+	/**
+	 * Reads a graph from the current input field.
+	 */
+	public Graph read(GraphReader i) throws IOException
+	{
+		if (i.isFieldNull())
+		{
+			i.skip();
+			return null;
+		}
+		i.startObject();
+		final int version = i.readInt();
+		if (version != VERSION && version != 1)
+		{
+			throw new IOException("Unsupported version " + version);
+		}
+		final int nodes = i.readInt();
+		final int edges = i.readInt();
+		final int root = i.readInt();
+		final int chunkCount = i.readInt();
+
+		final Chunk[] chunks = new Chunk[chunkCount];
+		final int[] nodeBase = new int[chunkCount];
+		i.startObject();
+		int nodeSum = 0;
+		int edgeSum = 0;
+		for (int c = 0; c < chunkCount; ++c)
+		{
+			i.startObject();
+			final Chunk chunk = new Chunk();
+			chunk.nodes_ = i.readInt();
+			chunk.edges_ = i.readInt();
+			i.skip();
+			while (i.hasNextField())
+			{
+				i.skip();
+			}
+			chunk.edgeBase_ = edgeSum;
+			nodeBase[c] = nodeSum;
+			nodeSum += chunk.nodes_;
+			edgeSum += chunk.edges_;
+			chunks[c] = chunk;
+		}
+		while (i.hasNextField())
+		{
+			i.skip();
+		}
+		if (nodeSum != nodes || edgeSum != edges)
+		{
+			throw new IOException("Index block doesn't match the counts");
+		}
+
+		final int[] sources = new int[edges];
+		final int[] targets = new int[edges];
+		final boolean[] cyclic = version >= 2 ? new boolean[edges] : null;
+		final List<ForkJoinTask<?>> tasks = new ArrayList<>(chunkCount);
+		for (int c = 0; c < chunkCount; ++c)
+		{
+			final Chunk chunk = chunks[c];
+			final int base = nodeBase[c];
+			final byte[] data = (byte[]) i.readObject();
+			tasks.add(pool_.submit(() ->
+			{
+				try
+				{
+					decode(chunk, data, base, nodeBase, sources, targets, cyclic);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}));
+		}
+		while (i.hasNextField())
+		{
+			i.skip();
+		}
+		try
+		{
+			for (ForkJoinTask<?> t : tasks)
+			{
+				t.join();
+			}
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+
+		final GraphBuilder builder = new GraphBuilder(0);
+		builder.addNodes(nodes);
+		builder.addEdges(sources, targets);
+		if (cyclic != null)
+		{
+			builder.setCyclicFlags(cyclic);
+		}
+		if (root >= 0)
+		{
+			builder.setRoot(root);
+		}
+		final Graph g;
+		try
+		{
+			g = builder.build();
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Invalid cyclic flags", e);
+		}
+		for (Chunk chunk : chunks)
+		{
+			chunk.apply(builder);
+		}
+		return g;
+	}
+
+	/**
+	 * Orders the member nodes: pre-order of the root's tree, then the other nodes in id order.
+	 *
+	 * @return The index in the order by node id.
+	 */
+	private static int[] order(Graph g, Node[] order)
+	{
+		final int[] globalIndex = new int[g.idLimit()];
+		Arrays.fill(globalIndex, -1);
+		final int[] count = new int[1];
+		if (g.getRoot() != null)
+		{
+			TreeWalker.current().walk(g.getRoot(), TraversalOrder.PRE_ORDER, null, n ->
+			{
+				globalIndex[n.getId()] = count[0];
+				order[count[0]++] = n;
+				return true;
+			});
+		}
+		g.nodeStream().forEachOrdered(n ->
+		{
+			if (globalIndex[n.getId()] < 0)
+			{
+				globalIndex[n.getId()] = count[0];
+				order[count[0]++] = n;
+			}
+		});
+		return globalIndex;
+	}
+
+	/**
+	 * Writes the nodes of a chunk and their outgoing edges.
+	 *
+	 * @return The number of edges.
+	 */
+	private int encode(GraphWriter w, Node[] order, int chunk, int[] globalIndex) throws IOException
+	{
+		final int first = chunk * chunkNodes_;
+		final int end = Math.min(order.length, first + chunkNodes_);
+		int edges = 0;
+		for (int k = first; k < end; ++k)
+		{
+			final Node n = order[k];
+			w.startElement(FIELD_NODE);
+			GraphSerializer.writeAttributes(w, n, 1, useAttributeOrdinals_);
+			w.endElement();
+			final int outgoing = n.getOutgoingCount(true);
+			for (int ei = 0; ei < outgoing; ++ei)
+			{
+				final Edge e = n.getOutgoing(ei);
+				final int target = globalIndex[e.getTarget().getId()];
+				w.startElement(FIELD_EDGE);
+				if (target >= first && target < end)
+				{
+					w.writeInt(FIELD_LOCAL_TARGET, target - first);
+				}
+				else
+				{
+					w.writeInt(FIELD_TARGET_CHUNK, target / chunkNodes_);
+					w.writeInt(FIELD_TARGET_NODE, target % chunkNodes_);
+				}
+				w.writeBoolean(FIELD_CYCLIC, e.isCyclic());
+				GraphSerializer.writeAttributes(w, e, FIELD_EDGE_ATTRIBUTES, useAttributeOrdinals_);
+				w.endElement();
+				++edges;
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Reads a chunk: the edges into the global edge arrays, the attributes into the chunk.
+	 *
+	 * @param cyclic Receives the cyclic flags, null for version 1.
+	 */
+	private static void decode(Chunk chunk, byte[] data, int base, int[] nodeBase, int[] sources, int[] targets,
+							   boolean[] cyclic) throws IOException
+	{
+		try (GraphReader r = new GraphReader(new ByteArrayInputStream(data)))
+		{
+			int node = base - 1;
+			int edge = chunk.edgeBase_;
+			final int nodeEnd = base + chunk.nodes_;
+			final int edgeEnd = chunk.edgeBase_ + chunk.edges_;
+			while (r.hasNextField())
+			{
+				if (r.getFieldId() == FIELD_NODE)
+				{
+					if (++node >= nodeEnd)
+					{
+						throw new IOException("Chunk contains too many nodes");
+					}
+					r.startObject();
+					chunk.readAttributes(r, node);
+				}
+				else
+				{
+					if (node < base || edge >= edgeEnd)
+					{
+						throw new IOException("Unexpected edge in chunk");
+					}
+					r.startObject();
+					int target;
+					if (r.getFieldId() == FIELD_LOCAL_TARGET)
+					{
+						target = base + r.readInt();
+					}
+					else
+					{
+						final int targetChunk = r.readInt();
+						if (targetChunk < 0 || targetChunk >= nodeBase.length)
+						{
+							throw new IOException("Invalid chunk reference " + targetChunk);
+						}
+						target = nodeBase[targetChunk] + r.readInt();
+					}
+					sources[edge] = node;
+					targets[edge] = target;
+					if (cyclic != null)
+					{
+						cyclic[edge] = r.readBoolean();
+					}
+					chunk.readAttributes(r, -1 - edge);
+					++edge;
+				}
+				// End of the element.
+				while (r.hasNextField())
+				{
+					r.skip();
+				}
+			}
+			if (node + 1 != nodeEnd || edge != edgeEnd)
+			{
+				throw new IOException("Chunk doesn't match the index block");
+			}
+		}
+	}
+
+	private interface ChunkBody
+	{
+		void run(int chunk) throws IOException;
+	}
+
+	/**
+	 * Runs the body for all chunks in the pool.
+	 */
+	private void invoke(int chunks, ChunkBody body) throws IOException
+	{
+		try
+		{
+			ParallelChunks.invoke(pool_, chunks, c ->
+			{
+				try
+				{
+					body.run(c);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * A chunk while reading. The attributes are collected until the graph is built.
+	 */
+	private static final class Chunk
+	{
+		int nodes_;
+		int edges_;
+		int edgeBase_;
+
+		int attributeCount_;
+		/** Global node index, or -1-edge index for edges. */
+		int[] elements_ = new int[16];
+		Attribute[] attributes_ = new Attribute[16];
+		long[] bits_ = new long[16];
+		Object[] values_;
+
+		/**
+		 * Reads the attributes of an element up to the null field.
+		 */
+		void readAttributes(GraphReader r, int element) throws IOException
+		{
+			while (r.hasNextField())
+			{
+				if (r.isFieldNull())
+				{
+					r.skip();
+					return;
+				}
+				final Attribute a = GraphSerializer.readAttribute(r);
+				final int k = attributeCount_++;
+				if (k == elements_.length)
+				{
+					elements_ = Arrays.copyOf(elements_, 2 * k);
+					attributes_ = Arrays.copyOf(attributes_, 2 * k);
+					bits_ = Arrays.copyOf(bits_, 2 * k);
+					if (values_ != null)
+					{
+						values_ = Arrays.copyOf(values_, 2 * k);
+					}
+				}
+				elements_[k] = element;
+				attributes_[k] = a;
+				switch (a.type)
+				{
+					case INT:
+						bits_[k] = r.readInt();
+						break;
+					case LONG:
+						bits_[k] = r.readLong();
+						break;
+					case FLOAT:
+						bits_[k] = Float.floatToRawIntBits(r.readFloat());
+						break;
+					case DOUBLE:
+						bits_[k] = Double.doubleToRawLongBits(r.readDouble());
+						break;
+					case BOOLEAN:
+						bits_[k] = r.readBoolean() ? 1 : 0;
+						break;
+					default:
+						if (values_ == null)
+						{
+							values_ = new Object[elements_.length];
+						}
+						values_[k] = r.readObject();
+						break;
+				}
+			}
+		}
+
+		/**
+		 * Sets the collected attributes to the built elements.
+		 */
+		void apply(GraphBuilder builder)
+		{
+			for (int k = 0; k < attributeCount_; ++k)
+			{
+				final int element = elements_[k];
+				final GraphElement e = element >= 0 ? builder.getNode(element) : builder.getEdge(-1 - element);
+				final Attribute a = attributes_[k];
+				switch (a.type)
+				{
+					case INT:
+						e.setInt(a, (int) bits_[k]);
+						break;
+					case LONG:
+						e.setLong(a, bits_[k]);
+						break;
+					case FLOAT:
+						e.setFloat(a, Float.intBitsToFloat((int) bits_[k]));
+						break;
+					case DOUBLE:
+						e.setDouble(a, Double.longBitsToDouble(bits_[k]));
+						break;
+					case BOOLEAN:
+						e.setBoolean(a, bits_[k] != 0);
+						break;
+					default:
+						e.setAttribute(a, values_[k]);
+						break;
+				}
+			}
+			elements_ = null;
+			attributes_ = null;
+			bits_ = null;
+			values_ = null;
+		}
+	}
+}
@@ -0,0 +1,655 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Read-mostly graph that stores its structure in compressed-sparse-row (CSR) arrays.<br>
+ * Nodes and edges are addressed by dense int indices. The adjacency is held in primitive
+ * offset/target arrays, {@link Node} and {@link Edge} objects are only created as views
+ * if someone asks for them (e.g. via {@link #getNodeAt(int)} or {@link #getRoot()}).
+ * Views are cached, so each index is always represented by the same object.<br>
+ * Node n has the id n and edge e has the id {@link #nodeCount()}+e, the ids are also the rows of the
+ * elements in the {@link AttributeStore} of the graph.<br>
+ * The structure is fixed after construction, {@link #addEdge(Node, Node)} and
+ * {@link #removeEdge(Edge)} are not supported. Neither are edges that link other nodes to the views,
+ * e.g. by {@link Edge#Edge(Node, Node)}.
+ */
+public class CompactGraph extends Graph
+{
+	private final int nodeCount_;
+	private final int edgeCount_;
+
+	/**
+	 * Outgoing edges of node n are the edge indices outOffsets_[n] ... outOffsets_[n+1]-1.<br>
+	 * Acyclic edges come first and end before acyclicEnd_[n].
+	 */
+	private final int[] outOffsets_;
+	private final int[] acyclicEnd_;
+	private final int[] sources_;
+	private final int[] targets_;
+
+	/**
+	 * Incoming edges of node n are inEdges_[inOffsets_[n]] ... inEdges_[inOffsets_[n+1]-1].<br>
+	 * Self-loops are not included, same as for {@link Node}.
+	 */
+	private final int[] inOffsets_;
+	private final int[] inEdges_;
+
+	/** Bit set of cyclic edges. */
+	private final long[] cyclic_;
+
+	private NodeView[] nodeViews_;
+	private EdgeView[] edgeViews_;
+
+	/**
+	 * Creates a graph from edge arrays.<br>
+	 * Edge i connects node sources[i] with node targets[i]. Cyclic edges are determined by a depth-first search
+	 * that starts at the root. The outgoing edges of a node are ordered like in the arrays, but acyclic edges
+	 * are placed before cyclic edges.
+	 *
+	 * @param nodeCount Number of nodes.
+	 * @param sources   Source node index of each edge.
+	 * @param targets   Target node index of each edge.
+	 * @param root      Index of the root node or -1.
+	 */
+	public CompactGraph(int nodeCount, int[] sources, int[] targets, int root)
+	{
+		if (sources.length != targets.length)
+		{
+			throw new IllegalArgumentException("Source and target arrays differ in size");
+		}
+		nodeCount_ = nodeCount;
+		edgeCount_ = sources.length;
+
+		// Counting sort of the edges by source, stable to keep the given order.
+		outOffsets_ = new int[nodeCount_ + 1];
+		for (int s : sources)
+		{
+			++outOffsets_[checkIndex(s) + 1];
+		}
+		for (int n = 0; n < nodeCount_; ++n)
+		{
+			outOffsets_[n + 1] += outOffsets_[n];
+		}
+		int[] sortedTargets = new int[edgeCount_];
+		int[] pos = Arrays.copyOf(outOffsets_, nodeCount_);
+		for (int i = 0; i < edgeCount_; ++i)
+		{
+			sortedTargets[pos[sources[i]]++] = checkIndex(targets[i]);
+		}
+
+		final long[] cyclic = Reachability.markCyclicEdges(nodeCount_, outOffsets_, sortedTargets, root, null);
+
+		// Stable partition of the outgoing edges of each node, acyclic edges first.
+		sources_ = new int[edgeCount_];
+		targets_ = new int[edgeCount_];
+		acyclicEnd_ = new int[nodeCount_];
+		cyclic_ = new long[cyclic.length];
+		for (int n = 0; n < nodeCount_; ++n)
+		{
+			int e = outOffsets_[n];
+			final int end = outOffsets_[n + 1];
+			for (int pass = 0; pass < 2; ++pass)
+			{
+				for (int i = outOffsets_[n]; i < end; ++i)
+				{
+					final boolean isCyclic = (cyclic[i >>> 6] & (1L << i)) != 0;
+					if (isCyclic == (pass == 1))
+					{
+						sources_[e] = n;
+						targets_[e] = sortedTargets[i];
+						if (isCyclic)
+						{
+							cyclic_[e >>> 6] |= 1L << e;
+						}
+						++e;
+					}
+				}
+				if (pass == 0)
+				{
+					acyclicEnd_[n] = e;
+				}
+			}
+		}
+
+		inOffsets_ = new int[nodeCount_ + 1];
+		inEdges_ = new int[edgeCount_];
+		buildIncoming();
+
+		if (root >= 0)
+		{
+			setRoot(getNodeAt(checkIndex(root)));
+		}
+	}
+
+	/**
+	 * Creates a compact copy of a graph.<br>
+	 * All nodes connected to the root (in any direction) are copied, together with their edges and attributes.
+	 * Cyclic flags are taken over from the source graph.
+	 */
+	public static CompactGraph copyOf(Graph g)
+	{
+		final Map<Node, Integer> nodeIndex = new IdentityHashMap<>();
+		final List<Node> nodes = new ArrayList<>();
+		final Node root = g.getRoot();
+		if (root != null)
+		{
+			ArrayDeque<Node> queue = new ArrayDeque<>();
+			nodeIndex.put(root, 0);
+			nodes.add(root);
+			queue.add(root);
+			while (!queue.isEmpty())
+			{
+				final Node n = queue.poll();
+				final int outgoing = n.getOutgoingCount(true);
+				for (int i = 0; i < outgoing; ++i)
+				{
+					addNode(nodeIndex, nodes, queue, n.getOutgoing(i).getTarget());
+				}
+				final int incoming = n.getIncomingCount();
+				for (int i = 0; i < incoming; ++i)
+				{
+					addNode(nodeIndex, nodes, queue, n.getIncoming(i).getSource());
+				}
+			}
+		}
+
+		// Outgoing edges are already ordered acyclic first.
+		final List<Edge> edges = new ArrayList<>();
+		for (Node n : nodes)
+		{
+			final int count = n.getOutgoingCount(true);
+			for (int i = 0; i < count; ++i)
+			{
+				edges.add(n.getOutgoing(i));
+			}
+		}
+
+		CompactGraph cg = new CompactGraph(nodes.size(), edges.size());
+		int ei = 0;
+		for (Edge e : edges)
+		{
+			final int source = nodeIndex.get(e.getSource());
+			cg.sources_[ei] = source;
+			cg.targets_[ei] = nodeIndex.get(e.getTarget());
+			++cg.outOffsets_[source + 1];
+			if (e.isCyclic())
+			{
+				cg.cyclic_[ei >>> 6] |= 1L << ei;
+			}
+			else
+			{
+				++cg.acyclicEnd_[source];
+			}
+			cg.copyAttributes(e, cg.nodeCount_ + ei);
+			++ei;
+		}
+		// Edges are already grouped by source, create the offsets.
+		for (int ni = 0; ni < cg.nodeCount_; ++ni)
+		{
+			cg.outOffsets_[ni + 1] += cg.outOffsets_[ni];
+			cg.acyclicEnd_[ni] += cg.outOffsets_[ni];
+			cg.copyAttributes(nodes.get(ni), ni);
+		}
+		cg.buildIncoming();
+		if (root != null)
+		{
+			cg.setRoot(cg.getNodeAt(0));
+		}
+		return cg;
+	}
+
+	private CompactGraph(int nodeCount, int edgeCount)
+	{
+		nodeCount_ = nodeCount;
+		edgeCount_ = edgeCount;
+		outOffsets_ = new int[nodeCount_ + 1];
+		acyclicEnd_ = new int[nodeCount_];
+		sources_ = new int[edgeCount_];
+		targets_ = new int[edgeCount_];
+		inOffsets_ = new int[nodeCount_ + 1];
+		inEdges_ = new int[edgeCount_];
+		cyclic_ = new long[(edgeCount_ + 63) >>> 6];
+	}
+
+	private static void addNode(Map<Node, Integer> nodeIndex, List<Node> nodes, ArrayDeque<Node> queue, Node n)
+	{
+		if (n != null && !nodeIndex.containsKey(n))
+		{
+			nodeIndex.put(n, nodes.size());
+			nodes.add(n);
+			queue.add(n);
+		}
+	}
+
+	private void copyAttributes(GraphElement e, int row)
+	{
+		final AttributeStore store = getAttributeStore();
+		for (Iterator<Attribute> it = e.attributes(); it.hasNext(); )
+		{
+			final Attribute a = it.next();
+			store.set(row, a, e.getAttribute(a));
+		}
+	}
+
+	private int checkIndex(int node)
+	{
+		if (node < 0 || node >= nodeCount_)
+		{
+			throw new IndexOutOfBoundsException("Node index " + node + " out of range");
+		}
+		return node;
+	}
+
+	/**
+	 * Fills the incoming arrays from sources_ and targets_.
+	 */
+	private void buildIncoming()
+	{
+		for (int e = 0; e < edgeCount_; ++e)
+		{
+			if (sources_[e] != targets_[e])
+			{
+				++inOffsets_[targets_[e] + 1];
+			}
+		}
+		for (int n = 0; n < nodeCount_; ++n)
+		{
+			inOffsets_[n + 1] += inOffsets_[n];
+		}
+		int[] pos = Arrays.copyOf(inOffsets_, nodeCount_);
+		for (int e = 0; e < edgeCount_; ++e)
+		{
+			if (sources_[e] != targets_[e])
+			{
+				inEdges_[pos[targets_[e]]++] = e;
+			}
+		}
+	}
+
+	@Override
+	public int nodeCount()
+	{
+		return nodeCount_;
+	}
+
+	@Override
+	public int edgeCount()
+	{
+		return edgeCount_;
+	}
+
+	@Override
+	public int idLimit()
+	{
+		return nodeCount_ + edgeCount_;
+	}
+
+	/**
+	 * Streams all nodes in index order.<br>
+	 * All node views are created up front, so parallel streams don't race on the view cache.
+	 */
+	@Override
+	public Stream<Node> nodeStream()
+	{
+		for (int i = 0; i < nodeCount_; ++i)
+		{
+			getNodeAt(i);
+		}
+		return Arrays.stream(nodeViews_, 0, nodeCount_).map(v -> (Node) v);
+	}
+
+	/**
+	 * Gets a node by id. Same as {@link #getNodeAt(int)}, as the node ids are the indices.
+	 */
+	@Override
+	public Node getNode(int id)
+	{
+		return (id >= 0 && id < nodeCount_) ? getNodeAt(id) : null;
+	}
+
+	/**
+	 * Gets an edge by id. Edge ids start after the node ids.
+	 */
+	@Override
+	public Edge getEdge(int id)
+	{
+		final int edge = id - nodeCount_;
+		return (edge >= 0 && edge < edgeCount_) ? getEdgeAt(edge) : null;
+	}
+
+	/**
+	 * Gets the view of a node.
+	 */
+	public Node getNodeAt(int node)
+	{
+		if (nodeViews_ == null)
+		{
+			nodeViews_ = new NodeView[nodeCount_];
+		}
+		NodeView v = nodeViews_[node];
+		if (v == null)
+		{
+			nodeViews_[node] = v = new NodeView(node);
+		}
+		return v;
+	}
+
+	/**
+	 * Gets the view of an edge.
+	 */
+	public Edge getEdgeAt(int edge)
+	{
+		if (edgeViews_ == null)
+		{
+			edgeViews_ = new EdgeView[edgeCount_];
+		}
+		EdgeView v = edgeViews_[edge];
+		if (v == null)
+		{
+			edgeViews_[edge] = v = new EdgeView(edge);
+		}
+		return v;
+	}
+
+	/**
+	 * Gets the index of a node of this graph.
+	 *
+	 * @return The index or -1 if the node is not a view of this graph.
+	 */
+	public int indexOf(Node node)
+	{
+		return (node instanceof NodeView nv && nv.graph() == this) ? nv.index : -1;
+	}
+
+	/**
+	 * Gets the index of an edge of this graph.
+	 *
+	 * @return The index or -1 if the edge is not a view of this graph.
+	 */
+	public int indexOf(Edge edge)
+	{
+		return (edge instanceof EdgeView ev && ev.graph() == this) ? ev.index : -1;
+	}
+
+	/**
+	 * Index of the first outgoing edge of a node.<br>
+	 * The outgoing edges of node n are the range [getOutgoingStart(n), getOutgoingEnd(n)).
+	 */
+	public int getOutgoingStart(int node)
+	{
+		return outOffsets_[node];
+	}
+
+	/**
+	 * Index after the last outgoing edge of a node.
+	 */
+	public int getOutgoingEnd(int node)
+	{
+		return outOffsets_[node + 1];
+	}
+
+	/**
+	 * Index after the last acyclic outgoing edge of a node.<br>
+	 * The acyclic edges are ordered before the cyclic edges.
+	 */
+	public int getAcyclicOutgoingEnd(int node)
+	{
+		return acyclicEnd_[node];
+	}
+
+	public int getIncomingCount(int node)
+	{
+		return inOffsets_[node + 1] - inOffsets_[node];
+	}
+
+	/**
+	 * Gets the i-th incoming edge of a node.
+	 */
+	public int getIncomingEdge(int node, int i)
+	{
+		return inEdges_[inOffsets_[node] + i];
+	}
+
+	public int getEdgeSource(int edge)
+	{
+		return sources_[edge];
+	}
+
+	public int getEdgeTarget(int edge)
+	{
+		return targets_[edge];
+	}
+
+	public boolean isEdgeCyclic(int edge)
+	{
+		return (cyclic_[edge >>> 6] & (1L << edge)) != 0;
+	}
+
+	/**
+	 * Checks if a node reaches another node via acyclic edges.<br>
+	 * Remind that a node is not an ancestor of itself.
+	 */
+	public boolean isAncestor(int ancestor, int node)
+	{
+		if (ancestor == node)
+		{
+			return false;
+		}
+		final BitSet visited = new BitSet(nodeCount_);
+		int[] stack = new int[16];
+		int sp = 0;
+		stack[sp++] = ancestor;
+		visited.set(ancestor);
+		while (sp > 0)
+		{
+			final int n = stack[--sp];
+			final int end = acyclicEnd_[n];
+			for (int e = outOffsets_[n]; e < end; ++e)
+			{
+				final int t = targets_[e];
+				if (t == node)
+				{
+					return true;
+				}
+				if (!visited.get(t))
+				{
+					visited.set(t);
+					if (sp == stack.length)
+					{
+						stack = Arrays.copyOf(stack, sp * 2);
+					}
+					stack[sp++] = t;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Edge addEdge(Node parent, Node child)
+	{
+		throw new UnsupportedOperationException("CompactGraph can't be modified");
+	}
+
+	@Override
+	public void removeEdge(Edge e)
+	{
+		throw new UnsupportedOperationException("CompactGraph can't be modified");
+	}
+
+	/**
+	 * Rejects all edges that would be linked to or unlinked from the views, so no element joins with an id
+	 * that collides with the rows of the compact storage.
+	 */
+	@Override
+	long lockEdge(Edge e, boolean link)
+	{
+		checkLinkable();
+		return super.lockEdge(e, link);
+	}
+
+	@Override
+	void checkLinkable()
+	{
+		throw new UnsupportedOperationException("CompactGraph can't be modified");
+	}
+
+	/**
+	 * Views never leave the graph.
+	 */
+	@Override
+	void releaseUnconnected(Node node)
+	{
+	}
+
+	@Override
+	public void setRoot(Node node)
+	{
+		if (node != null && indexOf(node) < 0)
+		{
+			throw new IllegalArgumentException("Root is not a node of this graph");
+		}
+		super.setRoot(node);
+	}
+
+	/**
+	 * Node view on the compact storage.
+	 */
+	private final class NodeView extends Node
+	{
+		final int index;
+
+		NodeView(int index)
+		{
+			super(index);
+			this.index = index;
+			join(CompactGraph.this, index);
+		}
+
+		CompactGraph graph()
+		{
+			return CompactGraph.this;
+		}
+
+		@Override
+		public boolean isAncestor(Node node)
+		{
+			final int other = indexOf(node);
+			return other >= 0 && CompactGraph.this.isAncestor(index, other);
+		}
+
+		@Override
+		public int getOutgoingCount(boolean cyclic)
+		{
+			return (cyclic ? outOffsets_[index + 1] : acyclicEnd_[index]) - outOffsets_[index];
+		}
+
+		@Override
+		public Edge getOutgoing(int i)
+		{
+			Objects.checkIndex(i, outOffsets_[index + 1] - outOffsets_[index]);
+			return getEdgeAt(outOffsets_[index] + i);
+		}
+
+		@Override
+		public int getIncomingCount()
+		{
+			return CompactGraph.this.getIncomingCount(index);
+		}
+
+		@Override
+		public Edge getIncoming(int i)
+		{
+			Objects.checkIndex(i, CompactGraph.this.getIncomingCount(index));
+			return getEdgeAt(inEdges_[inOffsets_[index] + i]);
+		}
+	}
+
+	/**
+	 * Edge view on the compact storage.
+	 */
+	private final class EdgeView extends Edge
+	{
+		final int index;
+
+		EdgeView(int index)
+		{
+			super(nodeCount_ + index);
+			this.index = index;
+			join(CompactGraph.this, nodeCount_ + index);
+		}
+
+		CompactGraph graph()
+		{
+			return CompactGraph.this;
+		}
+
+		@Override
+		public boolean isCyclic()
+		{
+			return isEdgeCyclic(index);
+		}
+
+		@Override
+		public Node getSource()
+		{
+			return getNodeAt(sources_[index]);
+		}
+
+		@Override
+		public Node getTarget()
+		{
+			return getNodeAt(targets_[index]);
+		}
+
+		@Override
+		public void setSource(Node node)
+		{
+			throw new UnsupportedOperationException("CompactGraph can't be modified");
+		}
+
+		@Override
+		public void setTarget(Node node)
+		{
+			throw new UnsupportedOperationException("CompactGraph can't be modified");
+		}
+
+		@Override
+		public void setSourceAndTarget(Node source, Node target)
+		{
+			throw new UnsupportedOperationException("CompactGraph can't be modified");
+		}
+	}
+}
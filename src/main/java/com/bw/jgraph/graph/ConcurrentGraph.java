@@ -0,0 +1,345 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Graph that can be modified by several threads in parallel.<br>
+ * Adding or removing an edge locks only the two end nodes. The nodes are mapped by id to a fixed set of locks
+ * (lock striping), so modifications of different parts of the graph don't wait for each other. Such modifications
+ * also hold the shared side of a read-write lock. Modifications that may affect more than the two end nodes
+ * hold the exclusive side instead:
+ * <ul>
+ * <li>Adding an edge that needs a search or re-ordering in the maintained topological order of the nodes.
+ * Edges to new leaves or from new nodes never need this.</li>
+ * <li>Adding an edge to a new node that has edges already, as the connected nodes join too.</li>
+ * <li>Removing an acyclic edge while the graph has cyclic edges, as these may become acyclic.</li>
+ * <li>All modifications while {@link #getSubtreeAggregates() subtree aggregates} are maintained.</li>
+ * <li>Setting the root, batches (from {@link #beginBatch()} to the last {@link #commitBatch()}), builds and
+ * {@link #snapshot() snapshots}.</li>
+ * </ul>
+ * Joining and leaving the graph (id space, registry) takes an additional short lock. Attributes are written
+ * without locks, the attribute store of the graph runs in concurrent mode (see {@link AttributeStore}).<br>
+ * Events are fired by the modifying thread while it holds the locks, so the events of each node are delivered
+ * in the order of its modifications. Listeners shall not modify the graph and shall not wait for other threads
+ * that access the graph. For this reason {@link GraphEventPublisher.Overflow#BLOCK} is rejected for
+ * concurrent graphs, use {@link GraphEventDispatcher} or a non-blocking overflow policy to hand events over.<br>
+ * Other threads shall read the structure via {@link #snapshot()}, the adjacency of nodes is only safe to read
+ * for the modifying thread.
+ */
+public class ConcurrentGraph extends Graph
+{
+	private static final int DEFAULT_STRIPES = 64;
+
+	/** Token of {@link #lockEdge(Edge, boolean)} for the exclusive lock. */
+	private static final long EXCLUSIVE = -1;
+
+	private final ReentrantReadWriteLock lock_ = new ReentrantReadWriteLock();
+	private final ReentrantLock[] stripes_;
+
+	/** Guards the id space and the registry. */
+	private final Object registry_ = new Object();
+
+	public ConcurrentGraph()
+	{
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param stripes Number of node locks, rounded up to a power of two.
+	 */
+	public ConcurrentGraph(int stripes)
+	{
+		super(new AttributeStore(true));
+		int n = 1;
+		while (n < stripes)
+		{
+			n <<= 1;
+		}
+		stripes_ = new ReentrantLock[n];
+		for (int i = 0; i < n; ++i)
+		{
+			stripes_[i] = new ReentrantLock();
+		}
+	}
+
+	@Override
+	public Edge addEdge(Node parent, Node child)
+	{
+		if ((parent.graph_ != null && parent.graph_ != this) || (child.graph_ != null && child.graph_ != this))
+		{
+			throw new IllegalArgumentException("Node is a member of another graph");
+		}
+		final Edge e = new Edge();
+		e.init(parent, child, false);
+		final long lock = lockEdge(e, true);
+		try
+		{
+			e.addToNodes(this);
+			final GraphEvent ev = new GraphEvent(GraphEvent.Type.EDGE_ADDED);
+			ev.edge = e;
+			fireEvent(ev);
+			return e;
+		}
+		finally
+		{
+			unlockEdge(lock);
+		}
+	}
+
+	/**
+	 * Removes a member edge. Edges that are no members (e.g. removed by an other thread) are ignored.
+	 */
+	@Override
+	public void removeEdge(Edge e)
+	{
+		if (e != null && e.graph_ == this)
+		{
+			final long lock = lockEdge(e, false);
+			try
+			{
+				if (e.graph_ == this)
+				{
+					e.removeFromNodes(this);
+					final GraphEvent ev = new GraphEvent(GraphEvent.Type.EDGE_REMOVED);
+					ev.edge = e;
+					fireEvent(ev);
+				}
+			}
+			finally
+			{
+				unlockEdge(lock);
+			}
+		}
+	}
+
+	@Override
+	public void setRoot(Node node)
+	{
+		lockGraph();
+		try
+		{
+			super.setRoot(node);
+		}
+		finally
+		{
+			unlockGraph();
+		}
+	}
+
+	/**
+	 * Starts a batch, the graph stays locked exclusively until the batch is committed.
+	 */
+	@Override
+	public void beginBatch()
+	{
+		lockGraph();
+		super.beginBatch();
+	}
+
+	@Override
+	public void commitBatch()
+	{
+		if (!isInBatch())
+		{
+			throw new IllegalStateException("No batch started");
+		}
+		try
+		{
+			super.commitBatch();
+		}
+		finally
+		{
+			unlockGraph();
+		}
+	}
+
+	@Override
+	public SubtreeAggregates getSubtreeAggregates()
+	{
+		lockGraph();
+		try
+		{
+			return super.getSubtreeAggregates();
+		}
+		finally
+		{
+			unlockGraph();
+		}
+	}
+
+	/**
+	 * Locks the stripes of source and target together with the shared lock if the modification is local to both,
+	 * otherwise the exclusive lock. The ids are checked again after locking, as they change if a node leaves
+	 * the graph.
+	 */
+	@Override
+	long lockEdge(Edge e, boolean link)
+	{
+		if (!lock_.isWriteLockedByCurrentThread())
+		{
+			final Node source = e.getSource();
+			final Node target = e.getTarget();
+			while (true)
+			{
+				lock_.readLock().lock();
+				final int a = stripe(source);
+				final int b = stripe(target);
+				lockStripes(a, b);
+				final boolean valid = a == stripe(source) && b == stripe(target);
+				if (valid && isLocal(e, link))
+				{
+					return ((long) a << 32) | b;
+				}
+				unlockStripes(a, b);
+				lock_.readLock().unlock();
+				if (valid)
+				{
+					break;
+				}
+			}
+		}
+		lockGraph();
+		return EXCLUSIVE;
+	}
+
+	@Override
+	void unlockEdge(long token)
+	{
+		if (token == EXCLUSIVE)
+		{
+			unlockGraph();
+		}
+		else
+		{
+			unlockStripes((int) (token >>> 32), (int) token);
+			lock_.readLock().unlock();
+		}
+	}
+
+	@Override
+	void lockGraph()
+	{
+		if (lock_.getReadHoldCount() > 0 && !lock_.isWriteLockedByCurrentThread())
+		{
+			throw new IllegalStateException("Graph can't be locked exclusively during a shared modification");
+		}
+		lock_.writeLock().lock();
+	}
+
+	@Override
+	void unlockGraph()
+	{
+		lock_.writeLock().unlock();
+	}
+
+	/**
+	 * Checks if the modification only affects the end nodes.<br>
+	 * A local link creates an acyclic edge or a self-loop and only adopts new nodes without edges, so the number
+	 * of cyclic edges changes only under the exclusive lock.
+	 */
+	private boolean isLocal(Edge e, boolean link)
+	{
+		if (hasSubtreeAggregates())
+		{
+			return false;
+		}
+		if (link)
+		{
+			return isBareOrMember(e.getSource()) && isBareOrMember(e.getTarget())
+					&& Reachability.isLocal(e.getSource(), e.getTarget());
+		}
+		return e.isCyclic() || !hasCyclicEdges();
+	}
+
+	private boolean isBareOrMember(Node n)
+	{
+		return n.graph_ == this || (n.getOutgoingCount(true) == 0 && n.getIncomingCount() == 0);
+	}
+
+	/**
+	 * Gets the stripe of a node. Nodes without graph share the id {@link GraphElement#NO_ID}, they are spread by
+	 * identity.
+	 */
+	private int stripe(Node n)
+	{
+		final int id = n.id_;
+		return (id == GraphElement.NO_ID ? System.identityHashCode(n) : id) & (stripes_.length - 1);
+	}
+
+	private void lockStripes(int a, int b)
+	{
+		stripes_[Math.min(a, b)].lock();
+		if (a != b)
+		{
+			stripes_[Math.max(a, b)].lock();
+		}
+	}
+
+	private void unlockStripes(int a, int b)
+	{
+		if (a != b)
+		{
+			stripes_[Math.max(a, b)].unlock();
+		}
+		stripes_[Math.min(a, b)].unlock();
+	}
+
+	@Override
+	void adopt(Node node)
+	{
+		synchronized (registry_)
+		{
+			super.adopt(node);
+		}
+	}
+
+	@Override
+	void adopt(Edge edge)
+	{
+		synchronized (registry_)
+		{
+			super.adopt(edge);
+		}
+	}
+
+	@Override
+	void unlinking(Edge e)
+	{
+		synchronized (registry_)
+		{
+			super.unlinking(e);
+		}
+	}
+
+	@Override
+	void unlinked(Edge e)
+	{
+		synchronized (registry_)
+		{
+			super.unlinked(e);
+		}
+	}
+}
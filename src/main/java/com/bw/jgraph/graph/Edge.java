@@ -38,7 +38,8 @@ public class Edge extends GraphElement
 	}
 
 	/**
-	 * An edge is cyclic if the target is identical to source or an ancestor of source.
+	 * An edge is cyclic if the target is identical to source or an ancestor of source.<br>
+	 * The flag is maintained while edges are added or removed.
 	 */
 	public boolean isCyclic()
 	{
@@ -52,8 +53,7 @@ public class Edge extends GraphElement
 
 	public void setSource(Node node)
 	{
-		source = node;
-		this.cyclic = isCyclic(source,target);
+		setSourceAndTarget(node, target);
 	}
 
 	public Node getTarget()
@@ -63,15 +63,45 @@ public class Edge extends GraphElement
 
 	public void setTarget(Node node)
 	{
-		target = node;
-		cyclic = isCyclic(source,target);
+		setSourceAndTarget(source, node);
 	}
 
+	/**
+	 * Sets source and target.<br>
+	 * If the edge is already linked to its nodes, it is moved to the new nodes. The graph fires
+	 * {@link GraphEvent.Type#EDGE_REMOVED} and, if the moved edge is member of a graph,
+	 * {@link GraphEvent.Type#EDGE_ADDED}. The new nodes are checked before the edge is unlinked,
+	 * so a rejected move keeps the edge as it is.
+	 *
+	 * @throws IllegalArgumentException If the edge is linked and source and target are members of different graphs.
+	 */
 	public void setSourceAndTarget(Node source, Node target)
 	{
+		if ( !isLinked() )
+		{
+			this.source = source;
+			this.target = target;
+			cyclic = isCyclic(source,target);
+			return;
+		}
+		final boolean relink = source != null && target != null;
+		if ( relink )
+			graphOf(source, target);
+		final Graph graph = graph_;
+		if ( graph != null )
+			graph.removeEdge(this);
+		else
+			unlink();
 		this.source = source;
 		this.target = target;
-		cyclic = isCyclic(source,target);
+		if ( relink )
+		{
+			link();
+			if ( graph_ != null )
+				graph_.edgeAdded(this);
+		}
+		else
+			cyclic = isCyclic(source,target);
 	}
 
 	public Edge()
@@ -79,14 +109,144 @@ public class Edge extends GraphElement
 		cyclic = false;
 	}
 
+	/**
+	 * Creates an unconnected edge with a reserved id.
+	 */
+	Edge(int id)
+	{
+		super(id);
+	}
+
 	public Edge(Node source, Node target)
 	{
 		this.source = source;
 		this.target = target;
-		cyclic = isCyclic(source,target);
-		source.edges.add(this);
-		target.edges.add(this);
+		link();
+	}
+
+	/**
+	 * Adds the edge to the adjacency of source and target and updates the cyclic flag.<br>
+	 * If source or target is member of a graph, the edge and everything it connects join that graph.
+	 */
+	void link()
+	{
+		final Graph graph = graphOf(source, target);
+		if ( graph == null )
+			addToNodes(null);
+		else
+		{
+			final long lock = graph.lockEdge(this, true);
+			try
+			{
+				addToNodes(graph);
+			}
+			finally
+			{
+				graph.unlockEdge(lock);
+			}
+		}
+	}
+
+	/**
+	 * Gets the graph an edge between the nodes joins, null if both are free.
+	 *
+	 * @throws IllegalArgumentException If source and target are members of different graphs.
+	 */
+	private static Graph graphOf(Node source, Node target)
+	{
+		final Graph graph = source.graph_ == null ? target.graph_ : source.graph_;
+		if ( target.graph_ != null && target.graph_ != graph )
+			throw new IllegalArgumentException("Source and target are members of different graphs");
+		if ( graph != null )
+			graph.checkLinkable();
+		return graph;
+	}
+
+	/**
+	 * Links the edge, the caller holds the lock of the graph.
+	 */
+	void addToNodes(Graph graph)
+	{
+		cyclic = Reachability.insert(source, target);
+		source.addOutgoing(this);
+		if ( target != source )
+			target.addIncoming(this);
+		if ( graph != null )
+			graph.adopt(this);
+	}
+
+	/**
+	 * Removes the edge from the adjacency of source and target.<br>
+	 * Cyclic edges that depend on this edge are updated and the edge leaves its graph.
+	 */
+	void unlink()
+	{
+		final Graph graph = graph_;
+		if ( graph == null )
+			removeFromNodes(null);
+		else
+		{
+			final long lock = graph.lockEdge(this, false);
+			try
+			{
+				removeFromNodes(graph);
+			}
+			finally
+			{
+				graph.unlockEdge(lock);
+			}
+		}
+	}
+
+	/**
+	 * Unlinks the edge, the caller holds the lock of the graph.
+	 */
+	void removeFromNodes(Graph graph)
+	{
+		if ( graph != null )
+			graph.unlinking(this);
+		if ( source != null )
+			source.removeOutgoing(this);
+		if ( target != null )
+			target.removeIncoming(this);
+		if ( source != null && !cyclic && (graph == null || graph.hasCyclicEdges()) )
+			Reachability.removed(source);
+		if ( graph != null )
+			graph.unlinked(this);
+	}
+
+	/**
+	 * Sets source, target and cyclic flag without linking, the caller maintains the adjacency.
+	 */
+	void init(Node source, Node target, boolean cyclic)
+	{
+		this.source = source;
+		this.target = target;
+		this.cyclic = cyclic;
+	}
 
+	boolean isLinked()
+	{
+		return source != null && source.outgoing_ != null && source.outgoing_.indexOf(this) >= 0;
+	}
+
+	/**
+	 * Changes the cyclic flag and keeps the partition of the outgoing edges of the source.
+	 */
+	void setCyclic(boolean cyclic)
+	{
+		if ( this.cyclic != cyclic )
+		{
+			if ( source != null && source.outgoing_ != null && source.outgoing_.remove(this) )
+			{
+				this.cyclic = cyclic;
+				source.outgoing_.add(this);
+			}
+			else
+				this.cyclic = cyclic;
+			if ( !cyclic && graph_ != null )
+				graph_.becameAcyclic(this);
+		}
 	}
 
 	@Override
@@ -94,9 +254,9 @@ public class Edge extends GraphElement
 	{
 		return
 		super.appendTo(new StringBuilder().append( "Edge " )).append('{')
-			 .append( source == null ? "null" : Integer.toString(source.id) )
+			 .append( getSource() == null ? "null" : Integer.toString(getSource().getId()) )
 			 .append("->")
-			 .append( target == null ? "null" : Integer.toString(target.id) )
+			 .append( getTarget() == null ? "null" : Integer.toString(getTarget().getId()) )
 			 .append('}')
 			 .toString();
 	}
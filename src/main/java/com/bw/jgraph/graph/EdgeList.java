@@ -0,0 +1,163 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.Arrays;
+
+/**
+ * Compact ordered list of edges, used for the adjacency of nodes.<br>
+ * The first two edges are stored inline, only larger lists need an additional array.
+ * As most nodes of a tree are leaves with a single incoming edge, this saves a lot
+ * of memory compared to a default sized ArrayList.<br>
+ * For outgoing edges the list is partitioned: acyclic edges first (in insertion order), followed by the cyclic edges.
+ */
+final class EdgeList
+{
+	private Edge e0_;
+	private Edge e1_;
+	private Edge[] more_;
+
+	/** Number of edges. */
+	int size_;
+
+	/** Number of acyclic edges at the start of the list, only maintained by {@link #add(Edge)}. */
+	int acyclic_;
+
+	Edge get(int index)
+	{
+		switch (index)
+		{
+			case 0:
+				return e0_;
+			case 1:
+				return e1_;
+			default:
+				return more_[index - 2];
+		}
+	}
+
+	private void set(int index, Edge e)
+	{
+		switch (index)
+		{
+			case 0:
+				e0_ = e;
+				break;
+			case 1:
+				e1_ = e;
+				break;
+			default:
+				more_[index - 2] = e;
+		}
+	}
+
+	/**
+	 * Ensures that the list can hold the number of edges without re-allocation.
+	 */
+	void ensureCapacity(int capacity)
+	{
+		final int needed = capacity - 2;
+		if (needed > 0 && (more_ == null || more_.length < needed))
+		{
+			more_ = (more_ == null) ? new Edge[needed] : Arrays.copyOf(more_, needed);
+		}
+	}
+
+	/**
+	 * Inserts an edge at the index, following edges are moved.
+	 */
+	void insert(int index, Edge e)
+	{
+		// Array slots needed after insertion
+		final int needed = size_ - 1;
+		if (needed > 0 && (more_ == null || more_.length < needed))
+		{
+			ensureCapacity(2 + Math.max(needed, more_ == null ? 0 : more_.length + (more_.length >> 1)));
+		}
+		for (int i = size_; i > index; --i)
+		{
+			set(i, get(i - 1));
+		}
+		set(index, e);
+		++size_;
+	}
+
+	/**
+	 * Adds an edge at the end of its partition (acyclic or cyclic).
+	 */
+	void add(Edge e)
+	{
+		if (e.isCyclic())
+		{
+			insert(size_, e);
+		}
+		else
+		{
+			insert(acyclic_++, e);
+		}
+	}
+
+	/**
+	 * Adds an edge at the end, ignoring the partition.
+	 */
+	void append(Edge e)
+	{
+		insert(size_, e);
+	}
+
+	int indexOf(Edge e)
+	{
+		for (int i = 0; i < size_; ++i)
+		{
+			if (get(i) == e)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes the edge, following edges are moved.
+	 *
+	 * @return true if the edge was in the list.
+	 */
+	boolean remove(Edge e)
+	{
+		final int index = indexOf(e);
+		if (index < 0)
+		{
+			return false;
+		}
+		for (int i = index + 1; i < size_; ++i)
+		{
+			set(i - 1, get(i));
+		}
+		set(--size_, null);
+		if (index < acyclic_)
+		{
+			--acyclic_;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Set of elements of one graph, stored as bitset over the element ids.<br>
+ * Elements that are not members of a graph have no dense ids, they are kept in an identity set.<br>
+ * Clearing only touches the range of words that was used, so a set can be re-used cheaply for
+ * small walks in large graphs.<br>
+ * Instances are not thread-safe.
+ */
+public final class ElementSet
+{
+	private Graph graph_;
+	private long[] words_ = new long[0];
+	private int minWord_ = Integer.MAX_VALUE;
+	private int maxWord_ = -1;
+	private Set<GraphElement> free_;
+
+	/**
+	 * Adds an element.
+	 *
+	 * @return true if the element was not in the set.
+	 * @throws IllegalArgumentException If the element is member of a different graph than the other elements.
+	 */
+	public boolean add(GraphElement e)
+	{
+		final Graph g = e.getGraph();
+		if (g == null)
+		{
+			if (free_ == null)
+			{
+				free_ = Collections.newSetFromMap(new IdentityHashMap<>());
+			}
+			return free_.add(e);
+		}
+		if (graph_ == null)
+		{
+			graph_ = g;
+		}
+		else if (graph_ != g)
+		{
+			throw new IllegalArgumentException("Element of a different graph");
+		}
+		final int id = e.getId();
+		final int w = id >>> 6;
+		if (w >= words_.length)
+		{
+			words_ = Arrays.copyOf(words_, Math.max(w + 1, Math.max(words_.length * 2, (g.idLimit() + 63) >>> 6)));
+		}
+		final long bit = 1L << id;
+		if ((words_[w] & bit) != 0)
+		{
+			return false;
+		}
+		words_[w] |= bit;
+		if (w < minWord_)
+		{
+			minWord_ = w;
+		}
+		if (w > maxWord_)
+		{
+			maxWord_ = w;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the element is in the set.
+	 */
+	public boolean contains(GraphElement e)
+	{
+		final Graph g = e.getGraph();
+		if (g == null)
+		{
+			return free_ != null && free_.contains(e);
+		}
+		if (g != graph_)
+		{
+			return false;
+		}
+		final int w = e.getId() >>> 6;
+		return w < words_.length && (words_[w] & (1L << e.getId())) != 0;
+	}
+
+	/**
+	 * Removes all elements. The storage is kept.
+	 */
+	public void clear()
+	{
+		if (maxWord_ >= 0)
+		{
+			Arrays.fill(words_, minWord_, maxWord_ + 1, 0L);
+			minWord_ = Integer.MAX_VALUE;
+			maxWord_ = -1;
+		}
+		if (free_ != null)
+		{
+			free_.clear();
+		}
+		graph_ = null;
+	}
+}
@@ -22,24 +22,124 @@
  */
 package com.bw.jgraph.graph;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class Graph
 {
 
     private Node root;
-    private List<GraphListener> listener = new ArrayList<>();
+    private final List<GraphListener> listener = new CopyOnWriteArrayList<>();
+
+    /**
+     * Nesting depth of batches and the collected changes of the current batch.
+     */
+    private int batchDepth_;
+    private List<Edge> batchAdded_;
+    private Set<Edge> batchAddedSet_;
+    private List<Edge> batchRemoved_;
+    private boolean batchRootChanged_;
+
+    /**
+     * Attributes of all member elements.
+     */
+    private final AttributeStore attributes_;
+
+    /**
+     * Id space of the graph. The ids are also the rows in the attribute store.
+     * Ids of elements that left the graph are reused.
+     */
+    private int idCount_;
+    private int[] freeIds_ = new int[16];
+    private int freeIdCount_;
+
+    /**
+     * Registry of all members, indexed by id.
+     */
+    private GraphElement[] elements_ = new GraphElement[64];
+    private int nodeCount_;
+    private int edgeCount_;
+
+    /**
+     * Number of member edges that are cyclic, without self-loops. Only these can become acyclic.
+     */
+    private volatile int cyclicEdgeCount_;
+
+    /**
+     * Maintained subtree aggregates, null until requested.
+     */
+    private SubtreeAggregates aggregates_;
+
+    /**
+     * Guards structural modifications against {@link #snapshot()}, so snapshots see complete operations only.
+     */
+    private final ReentrantLock mutex_ = new ReentrantLock();
+
+    /**
+     * Versioned copy of the structure, null until the first snapshot.
+     * New members are collected until their ids are final.
+     */
+    private SnapshotStore snapshots_;
+    private final List<GraphElement> pending_ = new ArrayList<>();
+
+    /**
+     * Side-tables with values of members, see {@link IdTable}. They are told if a member leaves the graph.
+     */
+    private final List<WeakReference<IdTable<?>>> idTables_ = new CopyOnWriteArrayList<>();
+
+    /**
+     * Reactive view of the events, null until requested.
+     */
+    private volatile GraphEventPublisher publisher_;
 
     public Graph()
     {
+        this(new AttributeStore());
+    }
+
+    Graph(AttributeStore attributes)
+    {
+        attributes_ = attributes;
     }
 
     public void setRoot(Node node)
     {
         if ( node != root )
         {
-            root = node;
+            lockGraph();
+            try
+            {
+                if ( node != null )
+                {
+                    adopt(node);
+                }
+                Node old = root;
+                root = node;
+                if ( snapshots_ != null )
+                {
+                    snapshots_.setRoot(node);
+                }
+                if ( old != null )
+                {
+                    releaseUnconnected(old);
+                }
+            }
+            finally
+            {
+                unlockGraph();
+            }
 
             GraphEvent ev = new GraphEvent(GraphEvent.Type.ROOT_CHANGED);
             fireEvent(ev);
@@ -53,27 +153,53 @@ public class Graph
 
     public Edge addEdge(Node parent, Node child)
     {
-        Edge e = new Edge(parent, child);
+        if ( (parent.graph_ != null && parent.graph_ != this) || (child.graph_ != null && child.graph_ != this) )
+        {
+            throw new IllegalArgumentException("Node is a member of another graph");
+        }
+        Edge e = new Edge();
+        e.init(parent, child, false);
+        final long lock = lockEdge(e, true);
+        try
+        {
+            e.addToNodes(this);
+        }
+        finally
+        {
+            unlockEdge(lock);
+        }
 
+        edgeAdded(e);
+        return e;
+    }
+
+    /**
+     * Fires the event of a linked member edge.
+     */
+    void edgeAdded(Edge e)
+    {
         GraphEvent ev = new GraphEvent(GraphEvent.Type.EDGE_ADDED);
         ev.edge = e;
         fireEvent(ev);
-        return e;
+    }
+
+    /**
+     * Checks if edges can be linked to members, called before an edge joins the graph.
+     */
+    void checkLinkable()
+    {
     }
 
 
+    /**
+     * Removes a member edge. Edges that are no members of this graph are ignored.
+     */
     public void removeEdge(Edge e)
     {
-        if ( e != null )
+        if ( e != null && e.graph_ == this )
         {
-            Node parent = e.getSource();
-            Node child = e.getTarget();
-            
-            if ( parent != null )
-                parent.edges.remove(e);
-            if ( child != null )
-                child.edges.remove(e);
-            
+            e.unlink();
+
             GraphEvent ev = new GraphEvent(GraphEvent.Type.EDGE_REMOVED);
             ev.edge = e;
             fireEvent(ev);
@@ -81,23 +207,672 @@ public class Graph
     }
     
     
+    /**
+     * Gets a member node by id.
+     *
+     * @return The node or null if no node of this graph has the id.
+     */
+    public Node getNode(int id)
+    {
+        return (id >= 0 && id < elements_.length && elements_[id] instanceof Node n) ? n : null;
+    }
+
+    /**
+     * Gets a member edge by id.
+     *
+     * @return The edge or null if no edge of this graph has the id.
+     */
+    public Edge getEdge(int id)
+    {
+        return (id >= 0 && id < elements_.length && elements_[id] instanceof Edge e) ? e : null;
+    }
+
+    /**
+     * Streams all member nodes in id order, also nodes that are not connected to the root.<br>
+     * The stream is backed by the registry, so it is sized and splits evenly for parallel processing.
+     * The graph shall not be modified while the stream is consumed.
+     * @see Node#subtreeStream(TraversalOrder)
+     */
+    public Stream<Node> nodeStream()
+    {
+        return Arrays.stream(elements_, 0, idCount_)
+                     .filter(e -> e instanceof Node)
+                     .map(e -> (Node) e);
+    }
+
+    /**
+     * Gets an immutable view of the current structure, see {@link GraphSnapshot}.<br>
+     * Needs constant time. The first call copies the structure, afterwards the graph maintains the versioned copy
+     * with each change. Can be called by any thread, also while an other thread modifies the graph: a snapshot
+     * contains each modification (e.g. {@link #addEdge(Node, Node)}) completely or not at all.
+     */
+    public GraphSnapshot snapshot()
+    {
+        lockGraph();
+        try
+        {
+            if ( snapshots_ == null )
+            {
+                snapshots_ = new SnapshotStore(this);
+            }
+            return snapshots_.snapshot();
+        }
+        finally
+        {
+            unlockGraph();
+        }
+    }
+
+    /**
+     * Locks the graph before an edge is linked (link true) or unlinked.<br>
+     * The graph uses one lock for all structural modifications, {@link ConcurrentGraph} locks the end nodes.
+     *
+     * @return The token to pass to {@link #unlockEdge(long)}.
+     */
+    long lockEdge(Edge e, boolean link)
+    {
+        mutex_.lock();
+        return 0;
+    }
+
+    void unlockEdge(long token)
+    {
+        mutex_.unlock();
+    }
+
+    /**
+     * Locks the graph for a modification that may affect any element.
+     */
+    void lockGraph()
+    {
+        mutex_.lock();
+    }
+
+    void unlockGraph()
+    {
+        mutex_.unlock();
+    }
+
+    /**
+     * Checks if the graph has cyclic edges (self-loops aside) that may become acyclic if an acyclic edge is removed.
+     */
+    boolean hasCyclicEdges()
+    {
+        return cyclicEdgeCount_ != 0;
+    }
+
+    /**
+     * Gets the aggregates of the subtrees (descendant count, height, depth...).<br>
+     * Created on the first call, afterwards maintained with each change of the graph.
+     */
+    public SubtreeAggregates getSubtreeAggregates()
+    {
+        if ( aggregates_ == null )
+        {
+            aggregates_ = new SubtreeAggregates(this);
+        }
+        return aggregates_;
+    }
+
+    /**
+     * Checks if the subtree aggregates are maintained.
+     * @see #getSubtreeAggregates()
+     */
+    public boolean hasSubtreeAggregates()
+    {
+        return aggregates_ != null;
+    }
+
+    /**
+     * Called if a cyclic member edge became acyclic.
+     */
+    void becameAcyclic(Edge e)
+    {
+        if ( aggregates_ != null )
+        {
+            aggregates_.attach(e);
+        }
+        if ( snapshots_ != null )
+        {
+            snapshots_.setAcyclic(e);
+        }
+        if ( e.getSource() != e.getTarget() )
+        {
+            --cyclicEdgeCount_;
+        }
+    }
+
+    /**
+     * Gets the upper bound (exclusive) of the ids currently used by members.<br>
+     * Arrays indexed by element id can use this as size.
+     */
+    public int idLimit()
+    {
+        return idCount_;
+    }
+
+    /**
+     * Gets the number of member nodes.
+     */
+    public int nodeCount()
+    {
+        return nodeCount_;
+    }
+
+    /**
+     * Gets the number of member edges.
+     */
+    public int edgeCount()
+    {
+        return edgeCount_;
+    }
+
+    /**
+     * Gets the storage of the attributes of all elements of this graph.<br>
+     * Can be used to scan all values of an attribute, e.g. all texts, without touching the elements.
+     * The rows are the {@link GraphElement#getId() ids} of the elements.
+     */
+    public AttributeStore getAttributeStore()
+    {
+        return attributes_;
+    }
+
+    /**
+     * Makes the node and all free elements connected to it members of this graph.<br>
+     * Elements stay members as long as they are connected to some edge (or are the root),
+     * so all elements connected to a member are members too.
+     *
+     * @throws IllegalArgumentException if the node is a member of some other graph.
+     */
+    void adopt(Node node)
+    {
+        if ( node.graph_ == this )
+        {
+            return;
+        }
+        if ( node.graph_ != null )
+        {
+            throw new IllegalArgumentException("Node is a member of another graph");
+        }
+        register(node);
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        adoptConnected(stack);
+        flushPending();
+    }
+
+    /**
+     * Makes the edge and all free elements connected to it members of this graph.
+     */
+    void adopt(Edge edge)
+    {
+        if ( edge.graph_ == this )
+        {
+            return;
+        }
+        final boolean sourceMember = edge.getSource().graph_ == this;
+        final boolean targetMember = edge.getTarget().graph_ == this;
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        adoptEdge(edge, stack);
+        adoptConnected(stack);
+        flushPending();
+        // New members got their adjacency from the lists, nodes that were members already get the edge.
+        if ( snapshots_ != null )
+        {
+            if ( sourceMember )
+            {
+                snapshots_.addOutgoing(edge);
+            }
+            if ( targetMember && edge.getTarget() != edge.getSource() )
+            {
+                snapshots_.addIncoming(edge);
+            }
+        }
+    }
+
+    /**
+     * Adds the records of the new members to the snapshot store, their ids and adjacency are final now.
+     */
+    private void flushPending()
+    {
+        if ( snapshots_ != null && !pending_.isEmpty() )
+        {
+            for (GraphElement e : pending_)
+            {
+                if ( e.graph_ == this )
+                {
+                    if ( e instanceof Node n )
+                    {
+                        snapshots_.putNode(n);
+                    }
+                    else
+                    {
+                        snapshots_.putEdge((Edge) e);
+                    }
+                }
+            }
+            pending_.clear();
+        }
+    }
+
+    private void adoptConnected(ArrayDeque<Node> stack)
+    {
+        while (!stack.isEmpty())
+        {
+            Node n = stack.pop();
+            for (int i = n.getOutgoingCount(true) - 1; i >= 0; --i)
+            {
+                adoptEdge(n.getOutgoing(i), stack);
+            }
+            for (int i = n.getIncomingCount() - 1; i >= 0; --i)
+            {
+                adoptEdge(n.getIncoming(i), stack);
+            }
+        }
+    }
+
+    private void adoptEdge(Edge e, ArrayDeque<Node> stack)
+    {
+        if ( e.graph_ == null )
+        {
+            register(e);
+            for (Node n : new Node[] { e.getSource(), e.getTarget() })
+            {
+                if ( n != null && n.graph_ == null )
+                {
+                    register(n);
+                    stack.push(n);
+                }
+            }
+            if ( aggregates_ != null && !e.isCyclic() )
+            {
+                aggregates_.attach(e);
+            }
+        }
+    }
+
+    /**
+     * Called before an edge is unlinked, while the adjacency and the cyclic flags are unchanged.
+     */
+    void unlinking(Edge e)
+    {
+        if ( aggregates_ != null && !e.isCyclic() )
+        {
+            aggregates_.detach(e);
+        }
+        if ( snapshots_ != null )
+        {
+            snapshots_.removeAdjacency(e);
+        }
+    }
+
+    /**
+     * Called after an edge was unlinked. The edge leaves the graph, same as source
+     * and target if they are no longer connected to anything.
+     */
+    void unlinked(Edge e)
+    {
+        release(e);
+        releaseIfIsolated(e.getSource());
+        releaseIfIsolated(e.getTarget());
+    }
+
+    private void releaseIfIsolated(Node n)
+    {
+        if ( n != null && n.graph_ == this && n != root && n.getOutgoingCount(true) == 0 && n.getIncomingCount() == 0 )
+        {
+            release(n);
+        }
+    }
+
+    /**
+     * Releases all elements connected to the node, unless the root is connected.
+     */
+    void releaseUnconnected(Node node)
+    {
+        if ( node.graph_ != this )
+        {
+            return;
+        }
+        List<GraphElement> component = new ArrayList<>();
+        Set<GraphElement> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        visited.add(node);
+        stack.push(node);
+        while (!stack.isEmpty())
+        {
+            Node n = stack.pop();
+            if ( n == root )
+            {
+                return;
+            }
+            component.add(n);
+            final int oc = n.getOutgoingCount(true);
+            final int ic = n.getIncomingCount();
+            for (int i = 0; i < oc + ic; ++i)
+            {
+                Edge e = i < oc ? n.getOutgoing(i) : n.getIncoming(i - oc);
+                if ( visited.add(e) )
+                {
+                    component.add(e);
+                    Node other = e.getSource() == n ? e.getTarget() : e.getSource();
+                    if ( other != null && visited.add(other) )
+                    {
+                        stack.push(other);
+                    }
+                }
+            }
+        }
+        for (GraphElement e : component)
+        {
+            release(e);
+        }
+    }
+
+    private void register(GraphElement e)
+    {
+        final int id = allocateId();
+        if ( id >= elements_.length )
+        {
+            elements_ = Arrays.copyOf(elements_, elements_.length * 2);
+        }
+        elements_[id] = e;
+        if ( e instanceof Node )
+        {
+            ++nodeCount_;
+            if ( aggregates_ != null )
+            {
+                aggregates_.reset(id);
+            }
+        }
+        else
+        {
+            ++edgeCount_;
+            if ( isCountedCyclic((Edge) e) )
+            {
+                ++cyclicEdgeCount_;
+            }
+        }
+        e.join(this, id);
+        if ( snapshots_ != null )
+        {
+            pending_.add(e);
+        }
+    }
+
+    private void release(GraphElement e)
+    {
+        if ( e.graph_ == this )
+        {
+            final int id = e.id_;
+            elements_[id] = null;
+            if ( e instanceof Node )
+            {
+                --nodeCount_;
+            }
+            else
+            {
+                --edgeCount_;
+                if ( isCountedCyclic((Edge) e) )
+                {
+                    --cyclicEdgeCount_;
+                }
+            }
+            for (WeakReference<IdTable<?>> ref : idTables_)
+            {
+                final IdTable<?> table = ref.get();
+                if ( table == null )
+                {
+                    idTables_.remove(ref);
+                }
+                else
+                {
+                    table.leaving(e);
+                }
+            }
+            e.leave();
+            if ( snapshots_ != null )
+            {
+                snapshots_.remove(id);
+            }
+            if ( freeIdCount_ == freeIds_.length )
+            {
+                freeIds_ = Arrays.copyOf(freeIds_, freeIdCount_ * 2);
+            }
+            freeIds_[freeIdCount_++] = id;
+        }
+    }
+
+    /**
+     * Registers a side-table that holds values of members. The table is only weakly referenced.
+     */
+    void addIdTable(IdTable<?> table)
+    {
+        for (WeakReference<IdTable<?>> ref : idTables_)
+        {
+            if ( ref.get() == table )
+            {
+                return;
+            }
+        }
+        idTables_.add(new WeakReference<>(table));
+    }
+
+    private static boolean isCountedCyclic(Edge e)
+    {
+        return e.isCyclic() && e.getSource() != e.getTarget();
+    }
+
+    private int allocateId()
+    {
+        return freeIdCount_ > 0 ? freeIds_[--freeIdCount_] : idCount_++;
+    }
+
     public void addGraphListener(GraphListener l)
     {
-        synchronized (listener)
+        listener.add(l);
+    }
+
+    public void removeGraphListener(GraphListener l)
+    {
+        listener.remove(l);
+    }
+
+    /**
+     * Gets the events as reactive publisher, see {@link GraphEventPublisher}.<br>
+     * Created on the first call. The events are delivered by the common fork-join pool, full buffers are
+     * conflated. Use {@link GraphEventPublisher#subscribe(Flow.Subscriber, GraphEventPublisher.Overflow, int)}
+     * for other policies or an own publisher for an other executor.
+     */
+    public GraphEventPublisher getEventPublisher()
+    {
+        GraphEventPublisher p = publisher_;
+        if ( p == null )
+        {
+            synchronized (listener)
+            {
+                p = publisher_;
+                if ( p == null )
+                {
+                    p = new GraphEventPublisher(this, ForkJoinPool.commonPool(),
+                            GraphEventPublisher.Overflow.CONFLATE, Flow.defaultBufferSize());
+                    publisher_ = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Starts a batch.<br>
+     * Until the matching {@link #commitBatch()} no events are fired, the changes are collected and
+     * delivered as one {@link GraphEvent.Type#BATCH} event. Batches can be nested, the event is fired
+     * by the outermost commit.
+     */
+    public void beginBatch()
+    {
+        if ( batchDepth_++ == 0 )
+        {
+            batchAdded_ = new ArrayList<>();
+            batchAddedSet_ = null;
+            batchRemoved_ = new ArrayList<>();
+            batchRootChanged_ = false;
+        }
+    }
+
+    /**
+     * Ends a batch.
+     * @see #beginBatch()
+     */
+    public void commitBatch()
+    {
+        if ( batchDepth_ == 0 )
         {
-            listener.add(l);
+            throw new IllegalStateException("No batch started");
         }
+        if ( --batchDepth_ == 0 )
+        {
+            List<Edge> added = batchAdded_;
+            if ( batchAddedSet_ != null && added.size() != batchAddedSet_.size() )
+            {
+                added.removeIf(e -> !batchAddedSet_.contains(e));
+            }
+            GraphEvent ev = new GraphEvent(GraphEvent.Type.BATCH);
+            ev.edgesAdded = added;
+            ev.edgesRemoved = batchRemoved_;
+            ev.rootChanged = batchRootChanged_;
+            batchAdded_ = null;
+            batchAddedSet_ = null;
+            batchRemoved_ = null;
+            if ( ev.rootChanged || !ev.edgesAdded.isEmpty() || !ev.edgesRemoved.isEmpty() )
+            {
+                fireEvent(ev);
+            }
+        }
+    }
+
+    /**
+     * Executes the modifications inside a batch.
+     * @see #beginBatch()
+     */
+    public void batch(Consumer<Graph> modifications)
+    {
+        beginBatch();
+        try
+        {
+            modifications.accept(this);
+        }
+        finally
+        {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Gets the set of edges added in the current batch. Created on the first removal, so
+     * batches that only add edges don't need it.
+     */
+    private Set<Edge> addedInBatch()
+    {
+        if ( batchAddedSet_ == null )
+        {
+            batchAddedSet_ = Collections.newSetFromMap(new IdentityHashMap<>());
+            batchAddedSet_.addAll(batchAdded_);
+        }
+        return batchAddedSet_;
+    }
+
+    /**
+     * Adds the elements created by a {@link GraphBuilder}.<br>
+     * The elements are linked already and not connected to any other element. They get consecutive ids
+     * in the given order if the graph has no recycled ids. One {@link GraphEvent.Type#BATCH} event is fired,
+     * or the changes are added to the running batch.
+     */
+    void addBuilt(Node[] nodes, Edge[] edges, Node root)
+    {
+        beginBatch();
+        try
+        {
+            lockGraph();
+            try
+            {
+                final int needed = idCount_ + nodes.length + edges.length;
+                if ( needed > elements_.length )
+                {
+                    elements_ = Arrays.copyOf(elements_, Math.max(needed, elements_.length * 2));
+                }
+                for (Node n : nodes)
+                {
+                    register(n);
+                }
+                for (Edge e : edges)
+                {
+                    register(e);
+                }
+                flushPending();
+                if ( root != null )
+                {
+                    setRoot(root);
+                }
+                if ( aggregates_ != null )
+                {
+                    aggregates_.rebuild();
+                }
+            }
+            finally
+            {
+                unlockGraph();
+            }
+            final List<Edge> added = Arrays.asList(edges);
+            batchAdded_.addAll(added);
+            if ( batchAddedSet_ != null )
+            {
+                batchAddedSet_.addAll(added);
+            }
+        }
+        finally
+        {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Checks if a batch is running.
+     */
+    public boolean isInBatch()
+    {
+        return batchDepth_ > 0;
     }
 
     protected void fireEvent(GraphEvent ev)
     {
-        ev.source = this;
-        GraphListener[] la;
-        synchronized (listener)
+        if ( batchDepth_ > 0 )
         {
-            la = listener.toArray(new GraphListener[listener.size()]);
+            switch (ev.type)
+            {
+                case EDGE_ADDED:
+                    batchAdded_.add(ev.edge);
+                    if ( batchAddedSet_ != null )
+                    {
+                        batchAddedSet_.add(ev.edge);
+                    }
+                    return;
+                case EDGE_REMOVED:
+                    // An edge that was added in this batch is simply forgotten.
+                    if ( !addedInBatch().remove(ev.edge) )
+                    {
+                        batchRemoved_.add(ev.edge);
+                    }
+                    return;
+                case ROOT_CHANGED:
+                    batchRootChanged_ = true;
+                    return;
+                default:
+                    break;
+            }
         }
-        for (GraphListener l : la)
+        ev.source = this;
+        for (GraphListener l : listener)
         {
             l.graphChanged(ev);
         }
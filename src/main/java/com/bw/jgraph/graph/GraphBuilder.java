@@ -0,0 +1,388 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.Arrays;
+
+/**
+ * Builds graphs from edge arrays in one pass.<br>
+ * Nodes are addressed by index. Edges are collected in primitive arrays (via {@link #addEdges(int[], int[])}
+ * or streamed via {@link #addEdge(int, int)}). {@link #build()} creates all nodes and edges with adjacency
+ * lists of the final size, computes all cyclic flags with one depth-first search (starting at the root)
+ * and adds everything to the graph with one {@link GraphEvent.Type#BATCH} event.<br>
+ * Decoders of stored graphs can pass the stored flags via {@link #setCyclicFlags(boolean[])} instead, so the
+ * same edges are cyclic as in the original graph, which a new search doesn't guarantee.<br>
+ * Compared to adding the edges one by one, no per-edge cycle check, list growth or event is needed.<br>
+ * For a graph created by {@link #build()}, node i has id i and edge e has id nodeCount+e, so
+ * {@link Graph#getNode(int)} can be used with the builder indices.<br>
+ * A builder can only build one graph.
+ */
+public final class GraphBuilder
+{
+	private int nodeCount_;
+	private int edgeCount_;
+	private int[] sources_;
+	private int[] targets_;
+	private int root_ = -1;
+	private boolean[] cyclicFlags_;
+
+	private Node[] nodes_;
+	private Edge[] edges_;
+
+	public GraphBuilder()
+	{
+		this(16);
+	}
+
+	/**
+	 * @param expectedEdges Initial capacity of the edge arrays.
+	 */
+	public GraphBuilder(int expectedEdges)
+	{
+		sources_ = new int[Math.max(1, expectedEdges)];
+		targets_ = new int[sources_.length];
+	}
+
+	/**
+	 * Adds a node.
+	 *
+	 * @return The index of the node.
+	 */
+	public int addNode()
+	{
+		checkNotBuilt();
+		return nodeCount_++;
+	}
+
+	/**
+	 * Adds nodes.
+	 *
+	 * @return The index of the first new node.
+	 */
+	public int addNodes(int count)
+	{
+		checkNotBuilt();
+		if (count < 0)
+		{
+			throw new IllegalArgumentException("Negative node count");
+		}
+		final int first = nodeCount_;
+		nodeCount_ += count;
+		return first;
+	}
+
+	/**
+	 * Adds an edge. Nodes that are not added yet are added implicitly.
+	 *
+	 * @return The index of the edge.
+	 */
+	public int addEdge(int source, int target)
+	{
+		checkNotBuilt();
+		if (edgeCount_ == sources_.length)
+		{
+			ensureEdgeCapacity(edgeCount_ + 1);
+		}
+		sources_[edgeCount_] = checkNode(source);
+		targets_[edgeCount_] = checkNode(target);
+		return edgeCount_++;
+	}
+
+	/**
+	 * Adds edges from source[i] to target[i]. Nodes that are not added yet are added implicitly.
+	 */
+	public GraphBuilder addEdges(int[] sources, int[] targets)
+	{
+		checkNotBuilt();
+		if (sources.length != targets.length)
+		{
+			throw new IllegalArgumentException("Source and target arrays differ in size");
+		}
+		ensureEdgeCapacity(edgeCount_ + sources.length);
+		for (int i = 0; i < sources.length; ++i)
+		{
+			sources_[edgeCount_] = checkNode(sources[i]);
+			targets_[edgeCount_++] = checkNode(targets[i]);
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the root. The root is also used as first start node of the search for cyclic edges.
+	 */
+	public GraphBuilder setRoot(int node)
+	{
+		checkNotBuilt();
+		root_ = checkNode(node);
+		return this;
+	}
+
+	/**
+	 * Uses the cyclic flag of each edge (by edge index) instead of searching for cyclic edges.<br>
+	 * The flags have to be the ones of a graph, e.g. written by a serializer: the acyclic edges shall not
+	 * form a cycle and each cyclic edge shall close a cycle of acyclic edges. Self-loops are always cyclic.
+	 * {@link #build()} checks the first condition only.
+	 *
+	 * @param cyclic Flags by edge index, the size shall be the edge count when the graph is built.
+	 */
+	public GraphBuilder setCyclicFlags(boolean[] cyclic)
+	{
+		checkNotBuilt();
+		cyclicFlags_ = cyclic;
+		return this;
+	}
+
+	public int nodeCount()
+	{
+		return nodeCount_;
+	}
+
+	public int edgeCount()
+	{
+		return edgeCount_;
+	}
+
+	/**
+	 * Builds a new graph.
+	 */
+	public Graph build()
+	{
+		Graph g = new Graph();
+		build(g);
+		return g;
+	}
+
+	/**
+	 * Adds the nodes and edges to an existing graph.<br>
+	 * If a root was set, it replaces the root of the graph.
+	 *
+	 * @throws IllegalArgumentException If the cyclic flags don't match the edges or the acyclic edges form a cycle.
+	 */
+	public void build(Graph graph)
+	{
+		checkNotBuilt();
+		final int n = nodeCount_;
+		final int m = edgeCount_;
+
+		// Edge indices grouped by source, in insertion order.
+		final int[] offsets = new int[n + 1];
+		final int[] inDegree = new int[n];
+		for (int e = 0; e < m; ++e)
+		{
+			++offsets[sources_[e] + 1];
+			if (sources_[e] != targets_[e])
+			{
+				++inDegree[targets_[e]];
+			}
+		}
+		for (int i = 0; i < n; ++i)
+		{
+			offsets[i + 1] += offsets[i];
+		}
+		final int[] sorted = new int[m];
+		final int[] sortedTargets = new int[m];
+		final int[] pos = Arrays.copyOf(offsets, n);
+		for (int e = 0; e < m; ++e)
+		{
+			final int p = pos[sources_[e]]++;
+			sorted[p] = e;
+			sortedTargets[p] = targets_[e];
+		}
+
+		final int[] finishOrder = new int[n];
+		final long[] cyclic = cyclicFlags_ == null
+				? Reachability.markCyclicEdges(n, offsets, sortedTargets, root_, finishOrder)
+				: useCyclicFlags(n, offsets, sorted, sortedTargets, finishOrder);
+
+		// Reverse finish order is a topological order of the acyclic edges.
+		final long firstOrder = Reachability.reserveOrders(n);
+		final Node[] nodes = new Node[n];
+		for (int i = 0; i < n; ++i)
+		{
+			nodes[i] = new Node();
+		}
+		for (int k = 0; k < n; ++k)
+		{
+			nodes[finishOrder[k]].order_ = firstOrder + (n - 1 - k);
+		}
+
+		final Edge[] edges = new Edge[m];
+		for (int i = 0; i < n; ++i)
+		{
+			final int outDegree = offsets[i + 1] - offsets[i];
+			if (outDegree > 0)
+			{
+				nodes[i].outgoing_ = new EdgeList();
+				nodes[i].outgoing_.ensureCapacity(outDegree);
+			}
+			if (inDegree[i] > 0)
+			{
+				nodes[i].incoming_ = new EdgeList();
+				nodes[i].incoming_.ensureCapacity(inDegree[i]);
+			}
+		}
+		// Two passes per source: acyclic edges first, so adding never moves edges.
+		for (int pass = 0; pass < 2; ++pass)
+		{
+			for (int p = 0; p < m; ++p)
+			{
+				final boolean isCyclic = (cyclic[p >>> 6] & (1L << p)) != 0;
+				if (isCyclic == (pass == 1))
+				{
+					final int e = sorted[p];
+					final Node source = nodes[sources_[e]];
+					final Node target = nodes[targets_[e]];
+					final Edge edge = new Edge();
+					edge.init(source, target, isCyclic);
+					source.outgoing_.add(edge);
+					if (source != target)
+					{
+						target.incoming_.append(edge);
+					}
+					edges[e] = edge;
+				}
+			}
+		}
+
+		nodes_ = nodes;
+		edges_ = edges;
+		sources_ = null;
+		targets_ = null;
+		cyclicFlags_ = null;
+		graph.addBuilt(nodes, edges, root_ >= 0 ? nodes[root_] : null);
+	}
+
+	/**
+	 * Converts the given flags to the bit set in source order and sorts the nodes along the acyclic edges
+	 * (Kahn's algorithm).
+	 *
+	 * @param finishOrder Receives the reverse topological order, like a depth-first search would finish.
+	 */
+	private long[] useCyclicFlags(int n, int[] offsets, int[] sorted, int[] sortedTargets, int[] finishOrder)
+	{
+		final int m = sorted.length;
+		if (cyclicFlags_.length != m)
+		{
+			throw new IllegalArgumentException(cyclicFlags_.length + " cyclic flags for " + m + " edges");
+		}
+		final long[] cyclic = new long[(m + 63) >>> 6];
+		final int[] inDegree = new int[n];
+		for (int p = 0; p < m; ++p)
+		{
+			if (cyclicFlags_[sorted[p]])
+			{
+				cyclic[p >>> 6] |= 1L << p;
+			}
+			else
+			{
+				++inDegree[sortedTargets[p]];
+			}
+		}
+		final int[] queue = new int[n];
+		int tail = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			if (inDegree[i] == 0)
+			{
+				queue[tail++] = i;
+			}
+		}
+		for (int head = 0; head < tail; ++head)
+		{
+			final int v = queue[head];
+			for (int p = offsets[v]; p < offsets[v + 1]; ++p)
+			{
+				if ((cyclic[p >>> 6] & (1L << p)) == 0 && --inDegree[sortedTargets[p]] == 0)
+				{
+					queue[tail++] = sortedTargets[p];
+				}
+			}
+		}
+		if (tail != n)
+		{
+			throw new IllegalArgumentException("Acyclic edges form a cycle");
+		}
+		for (int k = 0; k < n; ++k)
+		{
+			finishOrder[k] = queue[n - 1 - k];
+		}
+		return cyclic;
+	}
+
+	/**
+	 * Gets a built node.
+	 */
+	public Node getNode(int index)
+	{
+		checkBuilt();
+		return nodes_[index];
+	}
+
+	/**
+	 * Gets a built edge.
+	 */
+	public Edge getEdge(int index)
+	{
+		checkBuilt();
+		return edges_[index];
+	}
+
+	private int checkNode(int node)
+	{
+		if (node < 0)
+		{
+			throw new IndexOutOfBoundsException("Node index " + node + " out of range");
+		}
+		if (node >= nodeCount_)
+		{
+			nodeCount_ = node + 1;
+		}
+		return node;
+	}
+
+	private void ensureEdgeCapacity(int capacity)
+	{
+		if (capacity > sources_.length)
+		{
+			final int size = Math.max(capacity, sources_.length + (sources_.length >> 1));
+			sources_ = Arrays.copyOf(sources_, size);
+			targets_ = Arrays.copyOf(targets_, size);
+		}
+	}
+
+	private void checkNotBuilt()
+	{
+		if (nodes_ != null)
+		{
+			throw new IllegalStateException("Graph already built");
+		}
+	}
+
+	private void checkBuilt()
+	{
+		if (nodes_ == null)
+		{
+			throw new IllegalStateException("Graph not built yet");
+		}
+	}
+}
@@ -23,30 +23,302 @@
 package com.bw.jgraph.graph;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 public abstract class GraphElement
 {
-	public final Integer id = idGenerator.incrementAndGet();
+	/**
+	 * Id of the element.<br>
+	 * Members of a graph have dense ids from the id space of the graph, the id is also the row of the element
+	 * in the attribute store. Ids of elements that left a graph are reused.<br>
+	 * Elements without graph have the id {@link #NO_ID}. They are not addressed by id, sets and tables keep them
+	 * by identity (see {@link ElementSet} and {@link IdTable}), so creating free elements needs no shared counter.
+	 */
+	int id_;
+
+	/**
+	 * Id of elements that are not member of a graph.
+	 */
+	public static final int NO_ID = -1;
+
+	/**
+	 * The graph this element is member of, or null.<br>
+	 * Attributes of members are stored in the {@link AttributeStore} of the graph.
+	 */
+	Graph graph_;
+
+	/**
+	 * Attributes of elements without graph, as attribute/value pairs. Created on first use.
+	 */
+	private Object[] detached_;
+
+	protected GraphElement()
+	{
+		id_ = NO_ID;
+	}
 
-	private static final AtomicInteger idGenerator = new AtomicInteger(0);
+	/**
+	 * Creates an element with an id that is assigned by the graph.
+	 */
+	GraphElement(int id)
+	{
+		this.id_ = id;
+	}
 
-	private final HashMap<Attribute, Object> attributes_ = new HashMap<>();
+	/**
+	 * Gets the id of this element.<br>
+	 * The id changes if the element joins or leaves a graph, elements without graph have the id {@link #NO_ID}.
+	 * Inside one graph the ids are dense, so they can be used as index into arrays, see {@link IdTable}.
+	 */
+	public int getId()
+	{
+		return id_;
+	}
 
 	public Iterator<Attribute> attributes()
 	{
-		return attributes_.keySet().iterator();
+		if ( graph_ != null )
+			return graph_.getAttributeStore().attributes(id_);
+		if ( detached_ == null )
+			return Collections.emptyIterator();
+		List<Attribute> l = new ArrayList<>(detached_.length / 2);
+		for (int i = 0; i < detached_.length && detached_[i] != null; i += 2)
+			l.add((Attribute) detached_[i]);
+		return l.iterator();
 	}
 
 	public Object getAttribute(Attribute a)
 	{
-		return attributes_.get(a);
+		if ( graph_ != null )
+			return graph_.getAttributeStore().get(id_, a);
+		if ( detached_ != null )
+		{
+			for (int i = 0; i < detached_.length && detached_[i] != null; i += 2)
+				if ( detached_[i] == a )
+					return detached_[i + 1];
+		}
+		return null;
 	}
 
 	public void setAttribute(Attribute a, Object value)
 	{
-		attributes_.put(a, value);
+		if ( graph_ != null )
+		{
+			graph_.getAttributeStore().set(id_, a, value);
+			return;
+		}
+		value = a.convert(value);
+		int i = 0;
+		if ( detached_ != null )
+		{
+			while (i < detached_.length && detached_[i] != null && detached_[i] != a)
+				i += 2;
+			if ( i < detached_.length && detached_[i] == a )
+			{
+				if ( value == null )
+				{
+					// Move the last pair into the gap.
+					int last = i;
+					while (last + 2 < detached_.length && detached_[last + 2] != null)
+						last += 2;
+					detached_[i] = detached_[last];
+					detached_[i + 1] = detached_[last + 1];
+					detached_[last] = null;
+					detached_[last + 1] = null;
+				}
+				else
+					detached_[i + 1] = value;
+				return;
+			}
+		}
+		if ( value == null )
+			return;
+		if ( detached_ == null )
+			detached_ = new Object[4];
+		else if ( i >= detached_.length )
+			detached_ = Arrays.copyOf(detached_, detached_.length * 2);
+		detached_[i] = a;
+		detached_[i + 1] = value;
+	}
+
+	/**
+	 * Checks if the attribute is set.
+	 */
+	public boolean hasAttribute(Attribute a)
+	{
+		if ( graph_ != null )
+			return graph_.getAttributeStore().has(id_, a);
+		return getAttribute(a) != null;
+	}
+
+	/**
+	 * Gets the value of a int attribute without boxing.
+	 * @return The value or 0 if not set.
+	 * @throws IllegalArgumentException If the attribute is not of type int.
+	 */
+	public int getInt(Attribute a)
+	{
+		if ( graph_ != null )
+			return graph_.getAttributeStore().getInt(id_, a);
+		a.checkType(Attribute.Type.INT);
+		final Object v = getAttribute(a);
+		return v == null ? 0 : (Integer) v;
+	}
+
+	public void setInt(Attribute a, int value)
+	{
+		if ( graph_ != null )
+			graph_.getAttributeStore().setInt(id_, a, value);
+		else
+		{
+			a.checkType(Attribute.Type.INT);
+			setAttribute(a, value);
+		}
+	}
+
+	/**
+	 * Gets the value of a long attribute without boxing.
+	 * @return The value or 0 if not set.
+	 * @throws IllegalArgumentException If the attribute is not of type long.
+	 */
+	public long getLong(Attribute a)
+	{
+		if ( graph_ != null )
+			return graph_.getAttributeStore().getLong(id_, a);
+		a.checkType(Attribute.Type.LONG);
+		final Object v = getAttribute(a);
+		return v == null ? 0 : (Long) v;
+	}
+
+	public void setLong(Attribute a, long value)
+	{
+		if ( graph_ != null )
+			graph_.getAttributeStore().setLong(id_, a, value);
+		else
+		{
+			a.checkType(Attribute.Type.LONG);
+			setAttribute(a, value);
+		}
+	}
+
+	/**
+	 * Gets the value of a float attribute without boxing.
+	 * @return The value or 0 if not set.
+	 * @throws IllegalArgumentException If the attribute is not of type float.
+	 */
+	public float getFloat(Attribute a)
+	{
+		if ( graph_ != null )
+			return graph_.getAttributeStore().getFloat(id_, a);
+		a.checkType(Attribute.Type.FLOAT);
+		final Object v = getAttribute(a);
+		return v == null ? 0 : (Float) v;
+	}
+
+	public void setFloat(Attribute a, float value)
+	{
+		if ( graph_ != null )
+			graph_.getAttributeStore().setFloat(id_, a, value);
+		else
+		{
+			a.checkType(Attribute.Type.FLOAT);
+			setAttribute(a, value);
+		}
+	}
+
+	/**
+	 * Gets the value of a double attribute without boxing.
+	 * @return The value or 0 if not set.
+	 * @throws IllegalArgumentException If the attribute is not of type double.
+	 */
+	public double getDouble(Attribute a)
+	{
+		if ( graph_ != null )
+			return graph_.getAttributeStore().getDouble(id_, a);
+		a.checkType(Attribute.Type.DOUBLE);
+		final Object v = getAttribute(a);
+		return v == null ? 0 : (Double) v;
+	}
+
+	public void setDouble(Attribute a, double value)
+	{
+		if ( graph_ != null )
+			graph_.getAttributeStore().setDouble(id_, a, value);
+		else
+		{
+			a.checkType(Attribute.Type.DOUBLE);
+			setAttribute(a, value);
+		}
+	}
+
+	/**
+	 * Gets the value of a boolean attribute without boxing.
+	 * @return The value or false if not set.
+	 * @throws IllegalArgumentException If the attribute is not of type boolean.
+	 */
+	public boolean getBoolean(Attribute a)
+	{
+		if ( graph_ != null )
+			return graph_.getAttributeStore().getBoolean(id_, a);
+		a.checkType(Attribute.Type.BOOLEAN);
+		final Object v = getAttribute(a);
+		return v != null && (Boolean) v;
+	}
+
+	public void setBoolean(Attribute a, boolean value)
+	{
+		if ( graph_ != null )
+			graph_.getAttributeStore().setBoolean(id_, a, value);
+		else
+		{
+			a.checkType(Attribute.Type.BOOLEAN);
+			setAttribute(a, value);
+		}
+	}
+
+	/**
+	 * Gets the graph this element is member of.
+	 * @return The graph or null.
+	 */
+	public Graph getGraph()
+	{
+		return graph_;
+	}
+
+	/**
+	 * Makes this element a member of the graph and moves the attributes into the store of the graph.
+	 */
+	void join(Graph graph, int id)
+	{
+		graph_ = graph;
+		id_ = id;
+		if ( detached_ != null )
+		{
+			final AttributeStore store = graph.getAttributeStore();
+			for (int i = 0; i < detached_.length && detached_[i] != null; i += 2)
+				store.set(id, (Attribute) detached_[i], detached_[i + 1]);
+			detached_ = null;
+		}
+	}
+
+	/**
+	 * Removes this element from its graph. The attributes are moved out of the store of the graph
+	 * and the element gets the id {@link #NO_ID}.
+	 */
+	void leave()
+	{
+		final AttributeStore store = graph_.getAttributeStore();
+		final int row = id_;
+		final List<Attribute> attributes = new ArrayList<>();
+		for (Iterator<Attribute> it = store.attributes(row); it.hasNext(); )
+			attributes.add(it.next());
+		graph_ = null;
+		id_ = NO_ID;
+		for (Attribute a : attributes)
+		{
+			setAttribute(a, store.get(row, a));
+		}
+		store.clear(row);
 	}
 
 	@Override
@@ -62,22 +334,26 @@ public abstract class GraphElement
 	 */
 	public StringBuilder appendTo(StringBuilder sb)
 	{
-		sb.append(id).append(":[");
+		sb.append(id_).append(":[");
 		boolean first = true;
-		for ( Map.Entry<Attribute,Object> e : attributes_.entrySet() )
+		for (Iterator<Attribute> it = attributes(); it.hasNext(); )
 		{
+			final Attribute a = it.next();
 			if ( first) first = false;
 			else sb.append(',');
-			sb.append( e.getKey().name ).append(':').append(e.getValue());
+			sb.append( a.name ).append(':').append(getAttribute(a));
 		}
 		sb.append(']');
 		return sb;
 	}
 
+	/**
+	 * Based on identity, as the id changes if the element joins a graph.
+	 */
 	@Override
 	public int hashCode()
 	{
-		return id;
+		return System.identityHashCode(this);
 	}
 
 	@Override
@@ -87,15 +363,16 @@ public abstract class GraphElement
 			return true;
 		else if ( obj instanceof GraphElement ge)
 		{
-			if ( ge.attributes_.size() == attributes_.size() )
+			int count = 0;
+			for (Iterator<Attribute> it = attributes(); it.hasNext(); ++count)
 			{
-				for (Map.Entry<Attribute, Object> i : attributes_.entrySet() )
-				{
-					if ( !Objects.equals( ge.getAttribute(i.getKey()), i.getValue() ))
-						return false;
-				}
-				return true;
+				final Attribute a = it.next();
+				if ( !Objects.equals( ge.getAttribute(a), getAttribute(a) ))
+					return false;
 			}
+			for (Iterator<Attribute> it = ge.attributes(); it.hasNext(); it.next())
+				--count;
+			return count == 0;
 		}
 		return false;
 	}
@@ -22,13 +22,23 @@
  */
 package com.bw.jgraph.graph;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class GraphEvent
 {
     public static enum Type
     {
         ROOT_CHANGED,
         EDGE_REMOVED,
-        EDGE_ADDED;        
+        EDGE_ADDED,
+        /**
+         * Compound event of a batch, see {@link Graph#beginBatch()}.
+         * {@link #edgesAdded}, {@link #edgesRemoved} and {@link #rootChanged} describe the changes.
+         */
+        BATCH;
     }
     
     public final Type type;
@@ -40,4 +50,69 @@ public class GraphEvent
     
     public Graph source;   
     public Edge edge;   
+
+    /** Edges added by a batch. Edges that were added and removed in the same batch are not listed. */
+    public List<Edge> edgesAdded;
+    /** Edges removed by a batch. */
+    public List<Edge> edgesRemoved;
+    /** True if the root was changed by a batch. */
+    public boolean rootChanged;
+
+    /**
+     * Merges events of one graph into one {@link Type#BATCH} event.<br>
+     * As in a batch, edges that were added and removed again are not listed.
+     */
+    static GraphEvent merge(List<GraphEvent> events)
+    {
+        List<Edge> added = new ArrayList<>();
+        Map<Edge, Integer> addedIndex = new IdentityHashMap<>();
+        List<Edge> removed = new ArrayList<>();
+        GraphEvent batch = new GraphEvent(Type.BATCH);
+        for (GraphEvent ev : events)
+        {
+            batch.source = ev.source;
+            switch (ev.type)
+            {
+                case ROOT_CHANGED:
+                    batch.rootChanged = true;
+                    break;
+                case EDGE_ADDED:
+                    addedIndex.put(ev.edge, added.size());
+                    added.add(ev.edge);
+                    break;
+                case EDGE_REMOVED:
+                    removeMerged(ev.edge, added, addedIndex, removed);
+                    break;
+                case BATCH:
+                    batch.rootChanged |= ev.rootChanged;
+                    for (Edge e : ev.edgesRemoved)
+                    {
+                        removeMerged(e, added, addedIndex, removed);
+                    }
+                    for (Edge e : ev.edgesAdded)
+                    {
+                        addedIndex.put(e, added.size());
+                        added.add(e);
+                    }
+                    break;
+            }
+        }
+        added.removeIf(e -> e == null);
+        batch.edgesAdded = added;
+        batch.edgesRemoved = removed;
+        return batch;
+    }
+
+    private static void removeMerged(Edge e, List<Edge> added, Map<Edge, Integer> addedIndex, List<Edge> removed)
+    {
+        Integer i = addedIndex.remove(e);
+        if (i != null)
+        {
+            added.set(i, null);
+        }
+        else
+        {
+            removed.add(e);
+        }
+    }
 }
@@ -0,0 +1,352 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Delivers the events of a graph asynchronously to a listener.<br>
+ * The dispatcher is registered at the graph and queues the events on a bounded queue. The mutating thread
+ * only pays for the queueing, the listener is called by the executor, e.g. a dedicated thread or
+ * <code>SwingUtilities::invokeLater</code> for the event dispatch thread. The events are delivered in order,
+ * one at a time.<br>
+ * While events wait in the queue, redundant events are coalesced:
+ * <ul>
+ * <li>A {@link GraphEvent.Type#ROOT_CHANGED} replaces a queued one.</li>
+ * <li>The {@link GraphEvent.Type#EDGE_REMOVED} of an edge with a queued {@link GraphEvent.Type#EDGE_ADDED}
+ * cancels both.</li>
+ * <li>If the queue is full, coalesced entries are removed first. If it is still full, all queued events are
+ * merged into one {@link GraphEvent.Type#BATCH} event.</li>
+ * </ul>
+ * The capacity bounds the queue including coalesced entries that were not removed yet.
+ * So the queue never blocks the producer and no change is lost, but a listener has to handle batches.<br>
+ * As the graph may have changed again until an event is delivered, listeners should read the current state of
+ * the graph and not expect the state at the time of the event.
+ */
+public final class GraphEventDispatcher implements GraphListener, AutoCloseable
+{
+	/** Queued event. The event is set to null if the entry was coalesced. */
+	private static final class Entry
+	{
+		GraphEvent event_;
+
+		Entry(GraphEvent event)
+		{
+			event_ = event;
+		}
+	}
+
+	private final Graph graph_;
+	private final GraphListener target_;
+	private final Executor executor_;
+	private final int capacity_;
+
+	private final ArrayDeque<Entry> queue_ = new ArrayDeque<>();
+	/** Queued EDGE_ADDED entries by edge. */
+	private final Map<Edge, Entry> added_ = new IdentityHashMap<>();
+	/** The queued ROOT_CHANGED entry or null. */
+	private Entry root_;
+	/** Number of queued entries that are not coalesced. */
+	private int depth_;
+	/** True if a delivery task is scheduled or running. */
+	private boolean scheduled_;
+	private boolean closed_;
+
+	private long delivered_;
+	private long merged_;
+	private long dropped_;
+
+	private final Runnable drain_ = this::drain;
+
+	/**
+	 * Creates a dispatcher and registers it at the graph.
+	 *
+	 * @param graph    The graph to listen to.
+	 * @param target   The listener that gets the events.
+	 * @param executor Executes the deliveries.
+	 * @param capacity The maximal number of queued events, at least 1.
+	 */
+	public GraphEventDispatcher(Graph graph, GraphListener target, Executor executor, int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity " + capacity);
+		}
+		graph_ = graph;
+		target_ = target;
+		executor_ = executor;
+		capacity_ = capacity;
+		graph_.addGraphListener(this);
+	}
+
+	@Override
+	public void graphChanged(GraphEvent ev)
+	{
+		boolean schedule;
+		synchronized (this)
+		{
+			if (closed_)
+			{
+				++dropped_;
+				return;
+			}
+			switch (ev.type)
+			{
+				case ROOT_CHANGED:
+					if (root_ != null)
+					{
+						cancel(root_);
+						++merged_;
+					}
+					root_ = enqueue(ev);
+					break;
+				case EDGE_ADDED:
+					added_.put(ev.edge, enqueue(ev));
+					break;
+				case EDGE_REMOVED:
+					Entry e = added_.remove(ev.edge);
+					if (e != null)
+					{
+						cancel(e);
+						merged_ += 2;
+					}
+					else
+					{
+						enqueue(ev);
+					}
+					break;
+				default:
+					enqueue(ev);
+					break;
+			}
+			schedule = !scheduled_ && depth_ > 0;
+			scheduled_ |= schedule;
+		}
+		if (schedule)
+		{
+			schedule();
+		}
+	}
+
+	/**
+	 * Stops the delivery and removes the dispatcher from the graph. Queued events are dropped.
+	 */
+	@Override
+	public void close()
+	{
+		graph_.removeGraphListener(this);
+		synchronized (this)
+		{
+			closed_ = true;
+			dropped_ += depth_;
+			clear();
+		}
+	}
+
+	/**
+	 * Gets the number of queued events.
+	 */
+	public synchronized int getQueueDepth()
+	{
+		return depth_;
+	}
+
+	/**
+	 * Gets the number of queued entries, including coalesced entries that were not removed yet.
+	 */
+	synchronized int getQueueSize()
+	{
+		return queue_.size();
+	}
+
+	/**
+	 * Gets the number of events delivered to the listener.
+	 */
+	public synchronized long getDeliveredCount()
+	{
+		return delivered_;
+	}
+
+	/**
+	 * Gets the number of events that were coalesced with other events. Events that cancelled each other are included.
+	 */
+	public synchronized long getMergedCount()
+	{
+		return merged_;
+	}
+
+	/**
+	 * Gets the number of events that were not delivered because the dispatcher was closed or
+	 * the executor rejected the delivery.
+	 */
+	public synchronized long getDroppedCount()
+	{
+		return dropped_;
+	}
+
+	private Entry enqueue(GraphEvent ev)
+	{
+		if (queue_.size() >= capacity_)
+		{
+			if (depth_ < queue_.size())
+			{
+				queue_.removeIf(e -> e.event_ == null);
+			}
+			if (queue_.size() >= capacity_)
+			{
+				collapse();
+			}
+		}
+		Entry e = new Entry(ev);
+		queue_.addLast(e);
+		++depth_;
+		return e;
+	}
+
+	/**
+	 * Marks an entry as coalesced. The last entry is removed at once, other entries are removed
+	 * if the queue gets full or when they are polled.
+	 */
+	private void cancel(Entry e)
+	{
+		e.event_ = null;
+		--depth_;
+		if (queue_.peekLast() == e)
+		{
+			queue_.pollLast();
+		}
+	}
+
+	/**
+	 * Merges all queued events into one batch event.
+	 */
+	private void collapse()
+	{
+		List<GraphEvent> events = new ArrayList<>(depth_);
+		for (Entry e : queue_)
+		{
+			if (e.event_ != null)
+			{
+				events.add(e.event_);
+			}
+		}
+		clear();
+		queue_.addLast(new Entry(GraphEvent.merge(events)));
+		depth_ = 1;
+		// The batch replaces the merged events.
+		merged_ += events.size() - 1;
+	}
+
+	private void clear()
+	{
+		queue_.clear();
+		added_.clear();
+		root_ = null;
+		depth_ = 0;
+	}
+
+	private void schedule()
+	{
+		try
+		{
+			executor_.execute(drain_);
+		}
+		catch (RejectedExecutionException e)
+		{
+			synchronized (this)
+			{
+				scheduled_ = false;
+				dropped_ += depth_;
+				clear();
+			}
+		}
+	}
+
+	/**
+	 * Delivers queued events until the queue is empty.
+	 * If the listener fails, the delivery of the remaining events is scheduled again.
+	 */
+	private void drain()
+	{
+		boolean done = false;
+		try
+		{
+			GraphEvent ev;
+			while ((ev = poll()) != null)
+			{
+				target_.graphChanged(ev);
+			}
+			done = true;
+		}
+		finally
+		{
+			if (!done)
+			{
+				boolean schedule;
+				synchronized (this)
+				{
+					schedule = depth_ > 0;
+					scheduled_ = schedule;
+				}
+				if (schedule)
+				{
+					schedule();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes the next event from the queue. If the queue is empty the task ends.
+	 */
+	private synchronized GraphEvent poll()
+	{
+		Entry e;
+		while ((e = queue_.pollFirst()) != null)
+		{
+			GraphEvent ev = e.event_;
+			if (ev != null)
+			{
+				--depth_;
+				if (e == root_)
+				{
+					root_ = null;
+				}
+				else if (ev.type == GraphEvent.Type.EDGE_ADDED)
+				{
+					added_.remove(ev.edge);
+				}
+				++delivered_;
+				return ev;
+			}
+		}
+		scheduled_ = false;
+		return null;
+	}
+}
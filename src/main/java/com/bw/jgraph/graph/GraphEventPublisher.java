@@ -0,0 +1,485 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Publishes the events of a graph to reactive subscribers, see {@link Graph#getEventPublisher()}.<br>
+ * Each subscriber has an own bounded buffer and gets events only on demand, delivered by the executor of the
+ * publisher. What happens if the buffer of a subscriber is full is defined by its {@link Overflow} policy.
+ * So a slow subscriber doesn't stall the modifications of the graph, unless it asks for it with
+ * {@link Overflow#BLOCK}.<br>
+ * The publisher listens to the graph only while it has subscribers.
+ * {@link #close()} completes all subscriptions after their buffered events.
+ */
+public final class GraphEventPublisher implements Flow.Publisher<GraphEvent>, AutoCloseable
+{
+	/**
+	 * What to do with a new event if the buffer of a subscriber is full.
+	 */
+	public static enum Overflow
+	{
+		/**
+		 * The modifying thread waits until the subscriber has taken an event.<br>
+		 * The subscriber has to request events from another thread than the modifying one
+		 * and must not modify the graph, otherwise both wait forever.<br>
+		 * Not supported for a {@link ConcurrentGraph}: it fires events while it holds its locks, so a subscriber
+		 * that reads a {@link Graph#snapshot() snapshot} would wait for the blocked modifying thread.
+		 */
+		BLOCK,
+		/** The oldest buffered event is dropped. */
+		DROP_OLDEST,
+		/**
+		 * All buffered events are merged into one {@link GraphEvent.Type#BATCH} event. Nothing is lost, but
+		 * the subscriber has to handle batches.
+		 */
+		CONFLATE;
+	}
+
+	/**
+	 * Subscription of one subscriber. Gives access to the counters of the buffer.
+	 */
+	public final class EventSubscription implements Flow.Subscription
+	{
+		private final Flow.Subscriber<? super GraphEvent> subscriber_;
+		private final Overflow overflow_;
+		private final int capacity_;
+		private final ArrayDeque<GraphEvent> buffer_ = new ArrayDeque<>();
+		private long demand_;
+		/** True if a delivery task is scheduled or running. */
+		private boolean scheduled_;
+		private boolean cancelled_;
+		private boolean completed_;
+		private Throwable error_;
+
+		private long delivered_;
+		private long merged_;
+		private long dropped_;
+
+		private final Runnable drain_ = this::drain;
+
+		EventSubscription(Flow.Subscriber<? super GraphEvent> subscriber, Overflow overflow, int capacity)
+		{
+			subscriber_ = subscriber;
+			overflow_ = overflow;
+			capacity_ = capacity;
+		}
+
+		@Override
+		public void request(long n)
+		{
+			synchronized (this)
+			{
+				if (cancelled_)
+				{
+					return;
+				}
+				if (n <= 0)
+				{
+					error_ = new IllegalArgumentException("Request of " + n + " events");
+				}
+				else
+				{
+					demand_ = demand_ + n < 0 ? Long.MAX_VALUE : demand_ + n;
+				}
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel()
+		{
+			synchronized (this)
+			{
+				if (cancelled_)
+				{
+					return;
+				}
+				cancelled_ = true;
+				buffer_.clear();
+				notifyAll();
+			}
+			removeSubscription(this);
+		}
+
+		/**
+		 * Gets the overflow policy.
+		 */
+		public Overflow getOverflow()
+		{
+			return overflow_;
+		}
+
+		/**
+		 * Gets the number of buffered events.
+		 */
+		public synchronized int getBufferedCount()
+		{
+			return buffer_.size();
+		}
+
+		/**
+		 * Gets the requested number of events that are not yet delivered.
+		 */
+		public synchronized long getDemand()
+		{
+			return demand_;
+		}
+
+		/**
+		 * Gets the number of events delivered to the subscriber.
+		 */
+		public synchronized long getDeliveredCount()
+		{
+			return delivered_;
+		}
+
+		/**
+		 * Gets the number of events merged by {@link Overflow#CONFLATE}.
+		 */
+		public synchronized long getMergedCount()
+		{
+			return merged_;
+		}
+
+		/**
+		 * Gets the number of events dropped by {@link Overflow#DROP_OLDEST}.
+		 */
+		public synchronized long getDroppedCount()
+		{
+			return dropped_;
+		}
+
+		private void offer(GraphEvent ev)
+		{
+			synchronized (this)
+			{
+				if (buffer_.size() >= capacity_)
+				{
+					switch (overflow_)
+					{
+						case BLOCK:
+							if (!awaitSpace())
+							{
+								return;
+							}
+							break;
+						case DROP_OLDEST:
+							buffer_.pollFirst();
+							++dropped_;
+							break;
+						case CONFLATE:
+							List<GraphEvent> events = new ArrayList<>(buffer_);
+							buffer_.clear();
+							buffer_.addLast(GraphEvent.merge(events));
+							merged_ += events.size() - 1;
+							break;
+					}
+				}
+				if (cancelled_)
+				{
+					return;
+				}
+				buffer_.addLast(ev);
+				if (demand_ == 0)
+				{
+					return;
+				}
+			}
+			schedule();
+		}
+
+		/**
+		 * Waits until the buffer has space. If interrupted, the event is added anyway and the interrupt is kept.
+		 *
+		 * @return false if the subscription was cancelled.
+		 */
+		private boolean awaitSpace()
+		{
+			while (buffer_.size() >= capacity_ && !cancelled_)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			return !cancelled_;
+		}
+
+		private void complete()
+		{
+			synchronized (this)
+			{
+				completed_ = true;
+			}
+			schedule();
+		}
+
+		private void schedule()
+		{
+			synchronized (this)
+			{
+				if (scheduled_ || cancelled_)
+				{
+					return;
+				}
+				scheduled_ = true;
+			}
+			try
+			{
+				executor_.execute(drain_);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// Stays scheduled, so nothing else is delivered.
+				synchronized (this)
+				{
+					cancelled_ = true;
+					buffer_.clear();
+					notifyAll();
+				}
+				removeSubscription(this);
+				subscriber_.onError(e);
+			}
+		}
+
+		/**
+		 * Delivers buffered events as long as there is demand, then a pending error or the completion.<br>
+		 * Only one task runs at a time, so all signals are serialized.
+		 */
+		private void drain()
+		{
+			for (;;)
+			{
+				GraphEvent ev = null;
+				Throwable error = null;
+				synchronized (this)
+				{
+					if (cancelled_)
+					{
+						scheduled_ = false;
+						return;
+					}
+					if (error_ == null && demand_ > 0)
+					{
+						ev = buffer_.pollFirst();
+					}
+					if (ev != null)
+					{
+						if (demand_ != Long.MAX_VALUE)
+						{
+							--demand_;
+						}
+						++delivered_;
+						notifyAll();
+					}
+					else if (error_ != null || (completed_ && buffer_.isEmpty()))
+					{
+						error = error_;
+						cancelled_ = true;
+						buffer_.clear();
+						notifyAll();
+					}
+					else
+					{
+						scheduled_ = false;
+						return;
+					}
+				}
+				if (ev == null)
+				{
+					removeSubscription(this);
+					if (error != null)
+					{
+						subscriber_.onError(error);
+					}
+					else
+					{
+						subscriber_.onComplete();
+					}
+					return;
+				}
+				try
+				{
+					subscriber_.onNext(ev);
+				}
+				catch (Throwable t)
+				{
+					cancel();
+					subscriber_.onError(t);
+					return;
+				}
+			}
+		}
+
+		private synchronized boolean isCancelled()
+		{
+			return cancelled_;
+		}
+	}
+
+	private final Graph graph_;
+	private final Executor executor_;
+	private final Overflow overflow_;
+	private final int capacity_;
+	private final List<EventSubscription> subscriptions_ = new CopyOnWriteArrayList<>();
+	private final GraphListener listener_ = this::publish;
+	private boolean closed_;
+
+	/**
+	 * Creates a publisher for a graph.
+	 *
+	 * @param executor Executes the deliveries to the subscribers.
+	 * @param overflow The overflow policy for {@link #subscribe(Flow.Subscriber)}.
+	 * @param capacity The buffer size for {@link #subscribe(Flow.Subscriber)}, at least 1.
+	 * @throws IllegalArgumentException If the capacity is invalid or {@link Overflow#BLOCK} is used with
+	 *                                  a {@link ConcurrentGraph}.
+	 */
+	public GraphEventPublisher(Graph graph, Executor executor, Overflow overflow, int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity " + capacity);
+		}
+		checkOverflow(graph, overflow);
+		graph_ = graph;
+		executor_ = Objects.requireNonNull(executor);
+		overflow_ = Objects.requireNonNull(overflow);
+		capacity_ = capacity;
+	}
+
+	/**
+	 * Subscribes with the default overflow policy and buffer size of the publisher.
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super GraphEvent> subscriber)
+	{
+		subscribe(subscriber, overflow_, capacity_);
+	}
+
+	/**
+	 * Subscribes with an own overflow policy and buffer size.<br>
+	 * Only events fired after the call of {@link Flow.Subscriber#onSubscribe(Flow.Subscription)} are delivered.
+	 *
+	 * @return The subscription.
+	 * @throws IllegalArgumentException If the capacity is invalid or {@link Overflow#BLOCK} is used with
+	 *                                  a {@link ConcurrentGraph}.
+	 */
+	public EventSubscription subscribe(Flow.Subscriber<? super GraphEvent> subscriber, Overflow overflow, int capacity)
+	{
+		Objects.requireNonNull(subscriber);
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity " + capacity);
+		}
+		checkOverflow(graph_, overflow);
+		EventSubscription s = new EventSubscription(subscriber, Objects.requireNonNull(overflow), capacity);
+		subscriber.onSubscribe(s);
+		synchronized (this)
+		{
+			if (closed_)
+			{
+				s.complete();
+				return s;
+			}
+			if (!s.isCancelled())
+			{
+				if (subscriptions_.isEmpty())
+				{
+					graph_.addGraphListener(listener_);
+				}
+				subscriptions_.add(s);
+			}
+		}
+		return s;
+	}
+
+	private static void checkOverflow(Graph graph, Overflow overflow)
+	{
+		if (overflow == Overflow.BLOCK && graph instanceof ConcurrentGraph)
+		{
+			throw new IllegalArgumentException("Overflow BLOCK is not supported for a concurrent graph");
+		}
+	}
+
+	/**
+	 * Gets the number of current subscribers.
+	 */
+	public int getSubscriberCount()
+	{
+		return subscriptions_.size();
+	}
+
+	/**
+	 * Stops listening to the graph. The subscribers get their buffered events (if they request them), then
+	 * the completion.
+	 */
+	@Override
+	public void close()
+	{
+		List<EventSubscription> subscriptions;
+		synchronized (this)
+		{
+			if (closed_)
+			{
+				return;
+			}
+			closed_ = true;
+			graph_.removeGraphListener(listener_);
+			subscriptions = new ArrayList<>(subscriptions_);
+		}
+		for (EventSubscription s : subscriptions)
+		{
+			s.complete();
+		}
+	}
+
+	private void publish(GraphEvent ev)
+	{
+		for (EventSubscription s : subscriptions_)
+		{
+			s.offer(ev);
+		}
+	}
+
+	private synchronized void removeSubscription(EventSubscription s)
+	{
+		if (subscriptions_.remove(s) && subscriptions_.isEmpty() && !closed_)
+		{
+			graph_.removeGraphListener(listener_);
+		}
+	}
+}
@@ -30,6 +30,15 @@ import java.util.*;
 
 /**
  * DataI/O serializer for Graphs.<br>
+ * Elements are written nested, starting at the root: a node contains its edges, an edge its nodes.
+ * Elements that were written before are only referenced by id. Writing and reading use an explicit
+ * work-list instead of recursion, so the depth of a graph is only limited by the memory.<br>
+ * Memory: the work-list holds the open elements, i.e. the current path, so it grows with the depth of the
+ * written nesting and not only with the frontier of a breadth-first walk. This is given by the nested format,
+ * each open element has to be closed after its nested elements. A breadth-first format would not need less
+ * in total: the written ids (bit set) and the read elements by id are needed for the references anyway and
+ * grow with the number of elements. For a flat format that can be written and read in parallel see
+ * {@link ChunkedGraphSerializer}.<br>
  * One instance is not thread-safe. A Serializer can be re-used, but not be used in parallel for
  * different graphs.
  */
@@ -42,13 +51,29 @@ public class GraphSerializer
 	 */
 	public void reset()
 	{
-		elementsWritten_.clear();
-		elementsRead_.clear();
+		if ( writtenMaxWord_ >= 0 )
+		{
+			Arrays.fill(written_, 0, writtenMaxWord_ + 1, 0L);
+			writtenMaxWord_ = -1;
+		}
+		if ( readDirectMax_ >= 0 )
+		{
+			Arrays.fill(readDirect_, 0, readDirectMax_ + 1, null);
+			readDirectMax_ = -1;
+		}
+		if ( readHashCount_ > 0 )
+		{
+			Arrays.fill(readHashValues_, null);
+			readHashCount_ = 0;
+		}
+		readCount_ = 0;
+		clearStack();
 	}
 
 	/**
 	 * Controls if attributes are written by ordinals or by names.<br>
 	 * Ordinals can be used if the ordinals are fixed and not dynamic assigned.<br>
+	 * Names are written together with the {@link Attribute.Type type}, so typed attributes can be created on reading.<br>
 	 * Default is usage of ordinals.
 	 * @see Attribute
 	 */
@@ -67,58 +92,36 @@ public class GraphSerializer
 	 */
 	public void writeEdge(GraphWriter o, Edge e, int fieldId ) throws IOException
 	{
-		if ( e == null )
-		{
-			o.writeNull(fieldId);
-		}
-		else
-		{
-			writeElement( o, e,  fieldId++);
-			if ( e != null )
-			{
-				writeNode(o, e.getSource(), fieldId++);
-				writeNode(o, e.getTarget(), fieldId++);
-				o.endElement();
-			}
-		}
+		encode(o, e, fieldId);
 	}
 
 	/**
 	 * Writes node data with the specified fieldId.<br>
 	 * Can be used directly if caller implements some other storage format, but normally this method would be called
 	 * internally from {@link #write(GraphWriter, Graph, int)}.<br>
-	 * Connected nodes are written recursively. If one node was written already by this instance it
+	 * Connected nodes are written nested into their edges. If one node was written already by this instance it
 	 * will be referenced via the id. So also cyclic graphs can be written.
 	 * @param n The node to write. Can be null.
 	 */
 	public void writeNode( GraphWriter o, Node n, int fieldId ) throws IOException
 	{
-		if ( n == null )
-		{
-			o.writeNull(fieldId);
-		}
-		else
-		{
-			writeElement( o, n,  fieldId++);
-			for (Edge e : n.edges)
-				writeEdge(o, e, fieldId++);
-			o.endElement();
-		}
+		encode(o, n, fieldId);
 	}
 
 	/**
 	 * Writes a graph with the specified fieldId.<br>
+	 * The graph is written as its root node, so a graph without root is read as null.
 	 */
 	public void write(GraphWriter o, Graph g, int fieldId ) throws IOException
 	{
 		reset();
-		if ( o == null )
+		if ( g == null )
 		{
 			o.writeNull(fieldId);
 		}
 		else
 		{
-			writeNode( o, g.getRoot(), 1 );
+			writeNode( o, g.getRoot(), fieldId );
 		}
 	}
 
@@ -129,54 +132,227 @@ public class GraphSerializer
 	 */
 	public Edge readEdge( GraphReader i ) throws IOException
 	{
-		if ( i.isFieldNull() )
+		return (Edge) decode(i, false);
+	}
+
+	/**
+	 * Reads a node.<br>
+	 * Can be used directly if called implements some other storage format, but normally this method would be called
+	 * internally from {@link #read(GraphReader)}.<br>
+	 */
+	public Node readNode(GraphReader i ) throws IOException
+	{
+		return (Node) decode(i, true);
+	}
+
+	/**
+	 * Writes an element and all connected elements.<br>
+	 * Elements are nested: a node contains its outgoing and incoming edges, an edge its source and target node.
+	 * Instead of recursion a work-list of open elements is used, so deep graphs don't overflow the call stack.
+	 * The work-list holds the path to the current element and needs three array entries per element.
+	 */
+	private void encode( GraphWriter o, GraphElement start, int fieldId ) throws IOException
+	{
+		if ( start == null )
 		{
-			i.skip();
-			return null;
+			o.writeNull(fieldId);
+			return;
 		}
-		else if ( i.isFieldNumeric())
+		if ( !writeElement( o, start, fieldId ) )
 		{
-			return (Edge)elementsRead_.get(i.readNumber().intValue());
+			return;
 		}
-		else
+		clearStack();
+		int sp = push(start, fieldId + 1);
+		while ( sp >= 0 )
 		{
-			Edge e = new Edge();
-			readElement(i, e);
-			Node source = readNode(i);
-			Node target = readNode(i);
-			e.setSourceAndTarget( source, target );
-			return e;
+			final GraphElement e = stackElement_[sp];
+			final int index = stackIndex_[sp]++;
+			final int field = stackField_[sp]++;
+			GraphElement next;
+			if ( e instanceof Node )
+			{
+				// Outgoing edges (cyclic included), then incoming edges.
+				final Node n = (Node) e;
+				final int outgoing = n.getOutgoingCount(true);
+				if ( index < outgoing )
+					next = n.getOutgoing(index);
+				else if ( index - outgoing < n.getIncomingCount() )
+					next = n.getIncoming(index - outgoing);
+				else
+				{
+					o.endElement();
+					sp = pop();
+					continue;
+				}
+			}
+			else
+			{
+				// Source, then target.
+				final Edge edge = (Edge) e;
+				if ( index == 0 )
+					next = edge.getSource();
+				else if ( index == 1 )
+					next = edge.getTarget();
+				else
+				{
+					o.endElement();
+					sp = pop();
+					continue;
+				}
+				if ( next == null )
+				{
+					o.writeNull(field);
+					continue;
+				}
+			}
+			if ( writeElement( o, next, field ) )
+			{
+				sp = push(next, field + 1);
+			}
 		}
 	}
 
 	/**
-	 * Reads a node.<br>
-	 * Can be used directly if called implements some other storage format, but normally this method would be called
-	 * internally from {@link #read(GraphReader)}.<br>
+	 * Reads an element and all nested elements, see {@link #encode(GraphWriter, GraphElement, int)}.
+	 *
+	 * @param node True if the current field is a node, false for an edge.
 	 */
-	public Node readNode(GraphReader i ) throws IOException
+	private GraphElement decode( GraphReader i, boolean node ) throws IOException
 	{
 		if ( i.isFieldNull() )
 		{
 			i.skip();
+			return null;
 		}
-		else
+		if ( i.isFieldNumeric() )
 		{
-			if (i.isFieldNumeric())
+			return getRead(i.readNumber().intValue());
+		}
+		if ( !i.isFieldObject() )
+		{
+			i.skip();
+			return null;
+		}
+		final GraphElement start = node ? new Node() : new Edge();
+		readElement(i, start);
+		clearStack();
+		int sp = push(start, 0);
+		while ( sp >= 0 )
+		{
+			final GraphElement e = stackElement_[sp];
+			if ( e instanceof Node )
 			{
-				return (Node) elementsRead_.get(i.readNumber()
-												 .intValue());
+				if ( !i.hasNextField() )
+				{
+					sp = pop();
+				}
+				else if ( i.isFieldObject() )
+				{
+					final Edge edge = new Edge();
+					readElement(i, edge);
+					sp = push(edge, 0);
+				}
+				else
+				{
+					// References to edges are linked already or will be linked by their own element.
+					i.skip();
+				}
 			}
-			else if (i.isFieldObject())
+			else if ( stackIndex_[sp] < 2 )
 			{
-				Node node = new Node();
-				readElement(i, node);
+				if ( i.isFieldObject() )
+				{
+					final Node n = new Node();
+					readElement(i, n);
+					setEdgeNode(sp, n);
+					sp = push(n, 0);
+				}
+				else if ( i.isFieldNumeric() )
+				{
+					setEdgeNode(sp, (Node) getRead(i.readNumber().intValue()));
+				}
+				else
+				{
+					i.skip();
+					setEdgeNode(sp, null);
+				}
+			}
+			else
+			{
+				// Consume the end of the edge element.
 				while (i.hasNextField())
-					node.edges.add(readEdge(i));
-				return node;
+					i.skip();
+				sp = pop();
 			}
 		}
-		return null;
+		return start;
+	}
+
+	/**
+	 * Stores the next node of the edge at the stack position. The edge is linked as soon as both nodes are known,
+	 * before nested elements of the target are read. So edges are linked in the written order
+	 * and the same edges of cycles become cyclic as in the written graph, as far as it was built in this order.
+	 */
+	private void setEdgeNode( int sp, Node n )
+	{
+		if ( stackIndex_[sp]++ == 0 )
+		{
+			stackSource_[sp] = n;
+		}
+		else
+		{
+			final Edge edge = (Edge) stackElement_[sp];
+			final Node source = stackSource_[sp];
+			stackSource_[sp] = null;
+			edge.setSourceAndTarget( source, n );
+			if ( source != null && n != null )
+				edge.link();
+		}
+	}
+
+	/**
+	 * Pushes an element to the work-list.
+	 * @return The new top index.
+	 */
+	private int push( GraphElement e, int field )
+	{
+		final int sp = ++stackTop_;
+		if ( sp == stackElement_.length )
+		{
+			final int size = 2 * sp;
+			stackElement_ = Arrays.copyOf(stackElement_, size);
+			stackField_ = Arrays.copyOf(stackField_, size);
+			stackIndex_ = Arrays.copyOf(stackIndex_, size);
+			stackSource_ = Arrays.copyOf(stackSource_, size);
+		}
+		stackElement_[sp] = e;
+		stackField_[sp] = field;
+		stackIndex_[sp] = 0;
+		return sp;
+	}
+
+	/**
+	 * Empties the work-list, e.g. after a failed call.
+	 */
+	private void clearStack()
+	{
+		if ( stackTop_ >= 0 )
+		{
+			Arrays.fill(stackElement_, 0, stackTop_ + 1, null);
+			Arrays.fill(stackSource_, 0, stackTop_ + 1, null);
+			stackTop_ = -1;
+		}
+	}
+
+	/**
+	 * Removes the top element from the work-list.
+	 * @return The new top index.
+	 */
+	private int pop()
+	{
+		stackElement_[stackTop_] = null;
+		return --stackTop_;
 	}
 
 
@@ -209,34 +385,64 @@ public class GraphSerializer
 			o.writeNull(fieldId);
 			return false;
 		}
-		else if (elementsWritten_.contains(e.id))
+		else if ( !markWritten(e.getId()) )
 		{
-			o.writeInt( fieldId, e.id );
+			o.writeInt( fieldId, e.getId() );
 			return false;
 		}
 		else
 		{
-			elementsWritten_.add(Integer.valueOf(e.id));
 
 			o.startElement( fieldId );
-			int oId = 1;
-			o.writeInt( oId++, e.id );
-			for (Iterator<Attribute> it = e.attributes(); it.hasNext(); )
+			o.writeInt( 1, e.getId() );
+			writeAttributes( o, e, 2, useAttributeOrdinals );
+			return true;
+		}
+	}
+
+	/**
+	 * Writes the attributes of an element, followed by a null field.
+	 *
+	 * @param oId The field id of the first attribute.
+	 * @return The next free field id.
+	 */
+	static int writeAttributes( GraphWriter o, GraphElement e, int oId, boolean useAttributeOrdinals ) throws IOException
+	{
+		for (Iterator<Attribute> it = e.attributes(); it.hasNext(); )
+		{
+			final Attribute a = it.next();
+			if ( useAttributeOrdinals )
+				o.writeInt( oId++, a.ordinal );
+			else
 			{
-				final Attribute a = it.next();
-				Object val = e.getAttribute(a);
-				if ( val != null )
-				{
-					if ( useAttributeOrdinals )
-						o.writeInt( oId++, a.ordinal );
-					else
-						o.writeString( oId++, a.name );
-					o.writeObject( oId++, val, false );
-				}
+				o.writeString( oId++, a.name );
+				o.writeInt( oId++, a.type.ordinal() );
+			}
+			// Typed values are written with their fixed encoding, the type is known on reading.
+			switch ( a.type )
+			{
+				case INT:
+					o.writeInt( oId++, e.getInt(a) );
+					break;
+				case LONG:
+					o.writeLong( oId++, e.getLong(a) );
+					break;
+				case FLOAT:
+					o.writeFloat( oId++, e.getFloat(a) );
+					break;
+				case DOUBLE:
+					o.writeDouble( oId++, e.getDouble(a) );
+					break;
+				case BOOLEAN:
+					o.writeBoolean( oId++, e.getBoolean(a) );
+					break;
+				default:
+					o.writeObject( oId++, e.getAttribute(a), false );
+					break;
 			}
-			o.writeNull( oId++ );
-			return true;
 		}
+		o.writeNull( oId++ );
+		return oId;
 	}
 
 	/**
@@ -247,7 +453,7 @@ public class GraphSerializer
 		Attribute a;
 		i.startObject();
 		int id = i.readNumber().intValue();
-		elementsRead_.put(Integer.valueOf(id), e);
+		putRead(id, e);
 
 		while ( i.hasNextField() )
 		{
@@ -256,26 +462,189 @@ public class GraphSerializer
 				i.skip();
 				break;
 			}
-			if ( i.isFieldNumeric() )
+			a = readAttribute(i);
+			switch ( a.type )
 			{
-				a = Attribute.getAttribute( i.readNumber().intValue() );
+				case INT:
+					e.setInt( a, i.readInt() );
+					break;
+				case LONG:
+					e.setLong( a, i.readLong() );
+					break;
+				case FLOAT:
+					e.setFloat( a, i.readFloat() );
+					break;
+				case DOUBLE:
+					e.setDouble( a, i.readDouble() );
+					break;
+				case BOOLEAN:
+					e.setBoolean( a, i.readBoolean() );
+					break;
+				default:
+					e.setAttribute( a, i.readObject());
+					break;
 			}
-			else
+		}
+	}
+
+	/**
+	 * Reads the attribute of a value, written as ordinal or as name and type.
+	 */
+	static Attribute readAttribute( GraphReader i ) throws IOException
+	{
+		if ( i.isFieldNumeric() )
+		{
+			return Attribute.getAttribute( i.readNumber().intValue() );
+		}
+		else
+		{
+			final String name = i.readString();
+			return Attribute.getAttribute( name, Attribute.Type.values()[i.readNumber().intValue()] );
+		}
+	}
+
+	/**
+	 * Marks the id of a written element.
+	 *
+	 * @return true if the id was not marked before.
+	 */
+	private boolean markWritten( int id )
+	{
+		final int w = id >>> 6;
+		if ( w >= written_.length )
+		{
+			written_ = Arrays.copyOf(written_, Math.max(w + 1, written_.length * 2));
+		}
+		final long bit = 1L << id;
+		if ( (written_[w] & bit) != 0 )
+		{
+			return false;
+		}
+		written_[w] |= bit;
+		if ( w > writtenMaxWord_ )
+		{
+			writtenMaxWord_ = w;
+		}
+		return true;
+	}
+
+	/**
+	 * Remembers a read element for later references.<br>
+	 * Ids of the writer are normally dense and are used as index. Ids far above the number of read elements
+	 * go to an open-addressing table, so a sparse or corrupt id doesn't blow up the array.
+	 */
+	private void putRead( int id, GraphElement e )
+	{
+		++readCount_;
+		if ( id >= 0 && id < readDirect_.length )
+		{
+			readDirect_[id] = e;
+		}
+		else if ( id >= 0 && id < Math.max(READ_DIRECT_MIN, readCount_ * 4) )
+		{
+			readDirect_ = Arrays.copyOf(readDirect_, Math.max(id + 1, readDirect_.length * 2));
+			readDirect_[id] = e;
+		}
+		else
+		{
+			if ( (readHashCount_ + 1) * 2 > readHashKeys_.length )
+			{
+				rehashRead(Math.max(16, readHashKeys_.length * 2));
+			}
+			final int mask = readHashKeys_.length - 1;
+			int slot = mix(id) & mask;
+			while ( readHashValues_[slot] != null && readHashKeys_[slot] != id )
+			{
+				slot = (slot + 1) & mask;
+			}
+			if ( readHashValues_[slot] == null )
+			{
+				++readHashCount_;
+			}
+			readHashKeys_[slot] = id;
+			readHashValues_[slot] = e;
+			return;
+		}
+		if ( id > readDirectMax_ )
+		{
+			readDirectMax_ = id;
+		}
+	}
+
+	/**
+	 * Gets a read element by the id of the writer.
+	 *
+	 * @return The element or null if the id is unknown.
+	 */
+	private GraphElement getRead( int id )
+	{
+		if ( id >= 0 && id < readDirect_.length && readDirect_[id] != null )
+		{
+			return readDirect_[id];
+		}
+		if ( readHashCount_ > 0 )
+		{
+			final int mask = readHashKeys_.length - 1;
+			int slot = mix(id) & mask;
+			while ( readHashValues_[slot] != null )
+			{
+				if ( readHashKeys_[slot] == id )
+				{
+					return readHashValues_[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+		return null;
+	}
+
+	private void rehashRead( int capacity )
+	{
+		final int[] keys = readHashKeys_;
+		final GraphElement[] values = readHashValues_;
+		readHashKeys_ = new int[capacity];
+		readHashValues_ = new GraphElement[capacity];
+		final int mask = capacity - 1;
+		for (int i = 0; i < keys.length; ++i)
+		{
+			if ( values[i] != null )
 			{
-				a = Attribute.getAttribute( i.readString());
+				int slot = mix(keys[i]) & mask;
+				while ( readHashValues_[slot] != null )
+				{
+					slot = (slot + 1) & mask;
+				}
+				readHashKeys_[slot] = keys[i];
+				readHashValues_[slot] = values[i];
 			}
-			e.setAttribute( a, i.readObject());
 		}
 	}
 
-	/** Remember ids of written elements. */
-	private Set<Integer> elementsWritten_ = new HashSet();
+	private static int mix( int id )
+	{
+		final int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/** Lower bound for the index range of {@link #readDirect_}. */
+	private static final int READ_DIRECT_MIN = 1 << 16;
+
+	/** Ids of written elements as bitset. Written elements are members of a graph, so the ids are dense. */
+	private long[] written_ = new long[16];
+	private int writtenMaxWord_ = -1;
 
 	/**
 	 * Remembers read elements for later references.<br>
 	 * Key is the read id, the element id is different - assigned as normal from id-generator.
+	 * Dense ids are stored by index, others in an open-addressing table with linear probing.
+	 * @see #putRead(int, GraphElement)
 	 */
-	private Map<Integer,GraphElement> elementsRead_ = new HashMap<>();
+	private GraphElement[] readDirect_ = new GraphElement[16];
+	private int readDirectMax_ = -1;
+	private int[] readHashKeys_ = new int[0];
+	private GraphElement[] readHashValues_ = new GraphElement[0];
+	private int readHashCount_ = 0;
+	private int readCount_ = 0;
 
 	/**
 	 * Controls usage of attributes.
@@ -283,4 +652,15 @@ public class GraphSerializer
 	 */
 	private boolean useAttributeOrdinals = true;
 
+	/**
+	 * Work-list of open elements for writing and reading.<br>
+	 * Field: next field id to write. Index: next edge of a node, next node of an edge.
+	 * Source: the source of an edge while its target is read.
+	 */
+	private GraphElement[] stackElement_ = new GraphElement[64];
+	private int[] stackField_ = new int[64];
+	private int[] stackIndex_ = new int[64];
+	private Node[] stackSource_ = new Node[64];
+	private int stackTop_ = -1;
+
 }
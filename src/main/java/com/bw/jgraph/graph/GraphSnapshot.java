@@ -0,0 +1,198 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import com.bw.jgraph.graph.SnapshotStore.EdgeRecord;
+import com.bw.jgraph.graph.SnapshotStore.NodeRecord;
+import com.bw.jgraph.graph.SnapshotStore.Page;
+
+/**
+ * Immutable view of the structure of a graph at one point in time.<br>
+ * Created by {@link Graph#snapshot()} in constant time. The snapshot shares all unchanged parts with the graph,
+ * the graph copies nodes when it changes them afterwards. So any number of threads can traverse a consistent
+ * version without locks while the graph is modified.<br>
+ * All accessors work on the ids of this version, the order of the adjacency is the same as in the graph
+ * (acyclic outgoing edges first). The elements returned by {@link #getNode(int)} and {@link #getEdge(int)}
+ * are the live objects: their attributes are the current values and their adjacency shall not be used by readers.
+ */
+public final class GraphSnapshot
+{
+	private final Page root_;
+	private final int shift_;
+	private final long version_;
+	private final int rootId_;
+	private final int nodeCount_;
+	private final int edgeCount_;
+	private final int idLimit_;
+
+	GraphSnapshot(Page root, int shift, long version, int rootId, int nodeCount, int edgeCount, int idLimit)
+	{
+		root_ = root;
+		shift_ = shift;
+		version_ = version;
+		rootId_ = rootId;
+		nodeCount_ = nodeCount;
+		edgeCount_ = edgeCount;
+		idLimit_ = idLimit;
+	}
+
+	/**
+	 * Gets the version. Later snapshots of the same graph have higher versions.
+	 */
+	public long getVersion()
+	{
+		return version_;
+	}
+
+	/**
+	 * Gets the id of the root, -1 if the graph had no root.
+	 */
+	public int getRootId()
+	{
+		return rootId_;
+	}
+
+	public Node getRoot()
+	{
+		return getNode(rootId_);
+	}
+
+	/**
+	 * Gets the upper bound (exclusive) of the ids of this version.
+	 * @see Graph#idLimit()
+	 */
+	public int idLimit()
+	{
+		return idLimit_;
+	}
+
+	public int nodeCount()
+	{
+		return nodeCount_;
+	}
+
+	public int edgeCount()
+	{
+		return edgeCount_;
+	}
+
+	/**
+	 * Gets the node that had the id in this version.
+	 *
+	 * @return The node or null if no node had the id.
+	 */
+	public Node getNode(int id)
+	{
+		return SnapshotStore.get(root_, shift_, id) instanceof NodeRecord r ? r.node : null;
+	}
+
+	/**
+	 * Gets the edge that had the id in this version.
+	 *
+	 * @return The edge or null if no edge had the id.
+	 */
+	public Edge getEdge(int id)
+	{
+		return SnapshotStore.get(root_, shift_, id) instanceof EdgeRecord r ? r.edge : null;
+	}
+
+	/**
+	 * Gets the number of outgoing edges of a node.
+	 * @see Node#getOutgoingCount(boolean)
+	 */
+	public int getOutgoingCount(int node, boolean cyclic)
+	{
+		final NodeRecord r = node(node);
+		return cyclic ? r.outSize : r.acyclic;
+	}
+
+	/**
+	 * Gets the id of an outgoing edge by index.
+	 */
+	public int getOutgoing(int node, int index)
+	{
+		final NodeRecord r = node(node);
+		if (index < 0 || index >= r.outSize)
+		{
+			throw new IndexOutOfBoundsException(index);
+		}
+		return r.out[index];
+	}
+
+	public int getIncomingCount(int node)
+	{
+		return node(node).inSize;
+	}
+
+	/**
+	 * Gets the id of an incoming edge by index.
+	 */
+	public int getIncoming(int node, int index)
+	{
+		final NodeRecord r = node(node);
+		if (index < 0 || index >= r.inSize)
+		{
+			throw new IndexOutOfBoundsException(index);
+		}
+		return r.in[index];
+	}
+
+	/**
+	 * Gets the id of the source of an edge.
+	 */
+	public int getSource(int edge)
+	{
+		return edge(edge).source;
+	}
+
+	/**
+	 * Gets the id of the target of an edge.
+	 */
+	public int getTarget(int edge)
+	{
+		return edge(edge).target;
+	}
+
+	public boolean isCyclic(int edge)
+	{
+		return edge(edge).cyclic;
+	}
+
+	private NodeRecord node(int id)
+	{
+		if (SnapshotStore.get(root_, shift_, id) instanceof NodeRecord r)
+		{
+			return r;
+		}
+		throw new IllegalArgumentException("No node with id " + id);
+	}
+
+	private EdgeRecord edge(int id)
+	{
+		if (SnapshotStore.get(root_, shift_, id) instanceof EdgeRecord r)
+		{
+			return r;
+		}
+		throw new IllegalArgumentException("No edge with id " + id);
+	}
+}
@@ -0,0 +1,433 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import com.bw.jgraph.io.GraphReader;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads data written by {@link GraphSerializer} as stream of tokens, without creating the graph.<br>
+ * The pull API is {@link #next()}, the push API {@link #parse(Handler)}. Elements are nested as written:
+ * a node contains its edges, an edge its source and target node. Elements that were written before are
+ * reported as references by their written id.<br>
+ * {@link #skipElement()} skips the rest of an element with all nested elements, without decoding
+ * attributes or creating objects. As the serializer nests all elements that are first reached through
+ * an element, skipping the root of a tree skips the tree.<br>
+ * The reader remembers nothing about read elements, only one bit per open element. So scans need constant
+ * memory for graphs of limited depth.
+ * Instances are not thread-safe.
+ */
+public final class GraphStreamReader
+{
+	public static enum Token
+	{
+		/** Start of a node element. Its attributes and edges follow. */
+		START_NODE,
+		/** End of a node element. */
+		END_NODE,
+		/** Start of an edge element. Its attributes, source and target follow. */
+		START_EDGE,
+		/** End of an edge element. */
+		END_EDGE,
+		/** Reference to a node read before. */
+		NODE_REFERENCE,
+		/** Reference to an edge read before. */
+		EDGE_REFERENCE,
+		/** An attribute of the current element. */
+		ATTRIBUTE,
+		/** End of the data. */
+		END;
+	}
+
+	/**
+	 * Handler for {@link #parse(Handler)}. The methods of the start tokens can skip the element.
+	 */
+	public static interface Handler
+	{
+		/**
+		 * @return false to skip the node with all nested elements.
+		 */
+		default boolean startNode(GraphStreamReader r)
+		{
+			return true;
+		}
+
+		default void endNode(GraphStreamReader r)
+		{
+		}
+
+		/**
+		 * @return false to skip the edge with all nested elements.
+		 */
+		default boolean startEdge(GraphStreamReader r)
+		{
+			return true;
+		}
+
+		default void endEdge(GraphStreamReader r)
+		{
+		}
+
+		default void nodeReference(GraphStreamReader r)
+		{
+		}
+
+		default void edgeReference(GraphStreamReader r)
+		{
+		}
+
+		default void attribute(GraphStreamReader r)
+		{
+		}
+	}
+
+	private final GraphReader in_;
+	private final boolean rootIsNode_;
+
+	private Token token_;
+	private boolean started_;
+	/** Number of open elements. */
+	private int depth_;
+	/** True while the attributes of the innermost element are read. */
+	private boolean inAttributes_;
+	/** Bit per open edge element: the source was read. */
+	private long[] sourceRead_ = new long[1];
+
+	private int id_;
+	private boolean target_;
+	private Attribute attribute_;
+	private long bits_;
+	private Object value_;
+
+	/**
+	 * Creates a reader for a node, as written by {@link GraphSerializer#write(com.bw.jgraph.io.GraphWriter, Graph, int)}
+	 * or {@link GraphSerializer#writeNode(com.bw.jgraph.io.GraphWriter, Node, int)}.
+	 */
+	public GraphStreamReader(GraphReader in)
+	{
+		this(in, true);
+	}
+
+	/**
+	 * Creates a reader for a node or an edge, as written by
+	 * {@link GraphSerializer#writeEdge(com.bw.jgraph.io.GraphWriter, Edge, int)}.
+	 */
+	public GraphStreamReader(GraphReader in, boolean node)
+	{
+		in_ = in;
+		rootIsNode_ = node;
+	}
+
+	/**
+	 * Reads the next token.
+	 */
+	public Token next() throws IOException
+	{
+		if (token_ == Token.END)
+		{
+			return token_;
+		}
+		if (!started_)
+		{
+			started_ = true;
+			return token_ = child(rootIsNode_);
+		}
+		if (depth_ == 0)
+		{
+			return token_ = Token.END;
+		}
+		if (inAttributes_)
+		{
+			if (in_.hasNextField())
+			{
+				if (!in_.isFieldNull())
+				{
+					readAttribute();
+					return token_ = Token.ATTRIBUTE;
+				}
+				in_.skip();
+				inAttributes_ = false;
+			}
+			else
+			{
+				// Element without attribute terminator.
+				return token_ = end();
+			}
+		}
+		while (in_.hasNextField())
+		{
+			final boolean node = !isNode(depth_ - 1);
+			if (!in_.isFieldNull())
+			{
+				return token_ = child(node);
+			}
+			// Edge without source or target.
+			in_.skip();
+			if (node)
+			{
+				sourceRead(true);
+			}
+		}
+		return token_ = end();
+	}
+
+	/**
+	 * Gets the current token.
+	 */
+	public Token getToken()
+	{
+		return token_;
+	}
+
+	/**
+	 * Skips the rest of the current element, with all nested elements.
+	 * Called after a start token, the whole element is skipped. No end token is reported for the element.
+	 */
+	public void skipElement() throws IOException
+	{
+		if (depth_ == 0)
+		{
+			return;
+		}
+		while (in_.hasNextField())
+		{
+			in_.skip();
+		}
+		--depth_;
+		inAttributes_ = false;
+	}
+
+	/**
+	 * Gets the number of open elements. For start tokens the element is included.
+	 */
+	public int getDepth()
+	{
+		return depth_;
+	}
+
+	/**
+	 * Gets the written id of the element for start and reference tokens.
+	 */
+	public int getId()
+	{
+		return id_;
+	}
+
+	/**
+	 * Checks if a node (start or reference) is the target of its edge. False for the source and the top node.
+	 */
+	public boolean isTarget()
+	{
+		return target_;
+	}
+
+	/**
+	 * Gets the attribute of an {@link Token#ATTRIBUTE} token.
+	 */
+	public Attribute getAttribute()
+	{
+		return attribute_;
+	}
+
+	/**
+	 * Gets the value of the attribute, values of typed attributes are boxed.
+	 */
+	public Object getValue()
+	{
+		switch (attribute_.type)
+		{
+			case INT:
+				return getInt();
+			case LONG:
+				return getLong();
+			case FLOAT:
+				return getFloat();
+			case DOUBLE:
+				return getDouble();
+			case BOOLEAN:
+				return getBoolean();
+			default:
+				return value_;
+		}
+	}
+
+	public int getInt()
+	{
+		return (int) bits_;
+	}
+
+	public long getLong()
+	{
+		return bits_;
+	}
+
+	public float getFloat()
+	{
+		return Float.intBitsToFloat((int) bits_);
+	}
+
+	public double getDouble()
+	{
+		return Double.longBitsToDouble(bits_);
+	}
+
+	public boolean getBoolean()
+	{
+		return bits_ != 0;
+	}
+
+	/**
+	 * Reads all tokens and calls the handler.
+	 */
+	public void parse(Handler handler) throws IOException
+	{
+		for (;;)
+		{
+			switch (next())
+			{
+				case START_NODE:
+					if (!handler.startNode(this))
+					{
+						skipElement();
+					}
+					break;
+				case END_NODE:
+					handler.endNode(this);
+					break;
+				case START_EDGE:
+					if (!handler.startEdge(this))
+					{
+						skipElement();
+					}
+					break;
+				case END_EDGE:
+					handler.endEdge(this);
+					break;
+				case NODE_REFERENCE:
+					handler.nodeReference(this);
+					break;
+				case EDGE_REFERENCE:
+					handler.edgeReference(this);
+					break;
+				case ATTRIBUTE:
+					handler.attribute(this);
+					break;
+				case END:
+					return;
+			}
+		}
+	}
+
+	/**
+	 * Reads a child field: an element, a reference or null.
+	 */
+	private Token child(boolean node) throws IOException
+	{
+		target_ = node && depth_ > 0 && sourceRead(true);
+		if (in_.isFieldObject())
+		{
+			in_.startObject();
+			id_ = in_.readInt();
+			++depth_;
+			inAttributes_ = true;
+			sourceRead(false);
+			return node ? Token.START_NODE : Token.START_EDGE;
+		}
+		if (in_.isFieldNumeric())
+		{
+			id_ = in_.readInt();
+			return node ? Token.NODE_REFERENCE : Token.EDGE_REFERENCE;
+		}
+		// Null on top.
+		in_.skip();
+		return Token.END;
+	}
+
+	private Token end()
+	{
+		return isNode(--depth_) ? Token.END_NODE : Token.END_EDGE;
+	}
+
+	/**
+	 * Checks if the element at a depth (0 for the top) is a node. Nodes and edges alternate.
+	 */
+	private boolean isNode(int depth)
+	{
+		return rootIsNode_ == ((depth & 1) == 0);
+	}
+
+	/**
+	 * Sets the bit of the innermost element.
+	 *
+	 * @return The previous value.
+	 */
+	private boolean sourceRead(boolean value)
+	{
+		final int d = depth_ - 1;
+		final int word = d >>> 6;
+		if (word >= sourceRead_.length)
+		{
+			sourceRead_ = Arrays.copyOf(sourceRead_, 2 * word);
+		}
+		final long mask = 1L << d;
+		final boolean old = (sourceRead_[word] & mask) != 0;
+		if (value)
+		{
+			sourceRead_[word] |= mask;
+		}
+		else
+		{
+			sourceRead_[word] &= ~mask;
+		}
+		return old;
+	}
+
+	private void readAttribute() throws IOException
+	{
+		attribute_ = GraphSerializer.readAttribute(in_);
+		value_ = null;
+		switch (attribute_.type)
+		{
+			case INT:
+				bits_ = in_.readInt();
+				break;
+			case LONG:
+				bits_ = in_.readLong();
+				break;
+			case FLOAT:
+				bits_ = Float.floatToRawIntBits(in_.readFloat());
+				break;
+			case DOUBLE:
+				bits_ = Double.doubleToRawLongBits(in_.readDouble());
+				break;
+			case BOOLEAN:
+				bits_ = in_.readBoolean() ? 1 : 0;
+				break;
+			default:
+				value_ = in_.readObject();
+				break;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Side-table that maps graph elements to values, indexed by the {@link GraphElement#getId() id}.<br>
+ * For members of a graph the lookup is an array load. The element is stored together with the value,
+ * so a value is never returned for some other element that got the id later.
+ * Values of elements without graph are kept in a small map. If a member leaves its graph, the graph moves the
+ * value into the map, and the value is moved back into the arrays if the element joins a graph again.
+ * So values survive if e.g. a subtree is removed and attached again. Values of elements that are dropped
+ * for good should be removed.<br>
+ * Instances are not thread-safe. If members leave a graph in parallel (see {@link ConcurrentGraph}),
+ * the access has to be synchronized by the caller.
+ *
+ * @param <T> The value type.
+ */
+public final class IdTable<T>
+{
+	private GraphElement[] keys_ = new GraphElement[64];
+	private Object[] values_ = new Object[64];
+	private Map<GraphElement, T> free_;
+
+	/** The graph this table was registered at last. */
+	private Graph graph_;
+
+	/**
+	 * Gets the value of an element.
+	 *
+	 * @return The value or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(GraphElement e)
+	{
+		if (e.graph_ != null)
+		{
+			final int id = e.id_;
+			if (id < keys_.length && keys_[id] == e)
+			{
+				return (T) values_[id];
+			}
+			if (free_ != null && !free_.isEmpty())
+			{
+				// Element joined a graph after the value was set.
+				final T value = free_.remove(e);
+				if (value != null)
+				{
+					put(e, value);
+				}
+				return value;
+			}
+			return null;
+		}
+		return free_ == null ? null : free_.get(e);
+	}
+
+	/**
+	 * Sets the value of an element.
+	 *
+	 * @return The previous value or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public T put(GraphElement e, T value)
+	{
+		if (e.graph_ != null)
+		{
+			final int id = e.id_;
+			if (id >= keys_.length)
+			{
+				final int size = Math.max(id + 1, keys_.length * 2);
+				keys_ = Arrays.copyOf(keys_, size);
+				values_ = Arrays.copyOf(values_, size);
+			}
+			T old = keys_[id] == e ? (T) values_[id] : null;
+			if (old == null && free_ != null && !free_.isEmpty())
+			{
+				old = free_.remove(e);
+			}
+			keys_[id] = e;
+			values_[id] = value;
+			if (e.graph_ != graph_)
+			{
+				graph_ = e.graph_;
+				graph_.addIdTable(this);
+			}
+			return old;
+		}
+		if (free_ == null)
+		{
+			free_ = new IdentityHashMap<>();
+		}
+		return free_.put(e, value);
+	}
+
+	/**
+	 * Called by the graph before a member leaves. Moves the value into the map of elements without graph.
+	 */
+	@SuppressWarnings("unchecked")
+	void leaving(GraphElement e)
+	{
+		final int id = e.id_;
+		if (id < keys_.length && keys_[id] == e)
+		{
+			final T value = (T) values_[id];
+			keys_[id] = null;
+			values_[id] = null;
+			if (value != null)
+			{
+				if (free_ == null)
+				{
+					free_ = new IdentityHashMap<>();
+				}
+				free_.put(e, value);
+			}
+		}
+	}
+
+	/**
+	 * Gets the value of an element, creates it if missing.
+	 */
+	public T computeIfAbsent(GraphElement e, Function<GraphElement, T> creator)
+	{
+		T value = get(e);
+		if (value == null)
+		{
+			value = creator.apply(e);
+			put(e, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Removes the value of an element.
+	 *
+	 * @return The removed value or null.
+	 */
+	public T remove(GraphElement e)
+	{
+		final T old = get(e);
+		if (old != null)
+		{
+			if (e.graph_ != null)
+			{
+				keys_[e.id_] = null;
+				values_[e.id_] = null;
+			}
+			else
+			{
+				free_.remove(e);
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Checks if the table contains a value for the element.
+	 */
+	public boolean containsKey(GraphElement e)
+	{
+		return get(e) != null;
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void clear()
+	{
+		Arrays.fill(keys_, null);
+		Arrays.fill(values_, null);
+		free_ = null;
+	}
+}
@@ -26,7 +26,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A node of the graph.<br>
@@ -35,7 +38,34 @@ import java.util.function.Predicate;
 public class Node extends GraphElement
 {
 
-    List<Edge> edges = new ArrayList<>();
+    /**
+     * Outgoing edges, acyclic edges first. Self-loops are stored here only.<br>
+     * Null as long as the node has no outgoing edges.
+     */
+    EdgeList outgoing_;
+
+    /**
+     * Incoming edges. Null as long as the node has no incoming edges.
+     */
+    EdgeList incoming_;
+
+    /**
+     * Label in the topological order of the acyclic edges.
+     * @see Reachability
+     */
+    long order_ = Reachability.nextOrder();
+
+    public Node()
+    {
+    }
+
+    /**
+     * Creates a node with a reserved id.
+     */
+    Node(int id)
+    {
+        super(id);
+    }
 
     /**
      * Iterate across all linked parent (via incoming edges).
@@ -58,8 +88,7 @@ public class Node extends GraphElement
      */
     public Iterator<Edge> incoming()
     {
-        return new FilteredIterator<Edge>(edges.iterator(),
-                (Predicate<Edge>) edge -> edge.getSource() != Node.this);
+        return new EdgeIterator(this, true, getIncomingCount());
     }
 
     /**
@@ -69,29 +98,115 @@ public class Node extends GraphElement
      */
     public Iterator<Edge> outgoing(boolean cyclic)
     {
-        return new FilteredIterator<Edge>(edges.iterator(),
-                (Predicate<Edge>) edge -> edge.getTarget() != Node.this && (cyclic || !edge.isCyclic()));
+        return new EdgeIterator(this, false, getOutgoingCount(cyclic));
+    }
+
+    /**
+     * Gets the number of outgoing edges.<br>
+     * Acyclic edges are always ordered before cyclic edges, so with "cyclic" false the
+     * acyclic edges are the indices 0 ... count-1 of {@link #getOutgoing(int)}.<br>
+     * Unlike {@link #outgoing(boolean)}, self-loops are counted (as cyclic edges).
+     *
+     * @param cyclic if true cyclic edged are also considered.
+     */
+    public int getOutgoingCount(boolean cyclic)
+    {
+        return outgoing_ == null ? 0 : (cyclic ? outgoing_.size_ : outgoing_.acyclic_);
+    }
+
+    /**
+     * Gets an outgoing edge by index.
+     * @see #getOutgoingCount(boolean)
+     */
+    public Edge getOutgoing(int index)
+    {
+        if ( outgoing_ == null || index < 0 || index >= outgoing_.size_ )
+            throw new IndexOutOfBoundsException(index);
+        return outgoing_.get(index);
+    }
+
+    /**
+     * Gets the number of incoming edges.
+     */
+    public int getIncomingCount()
+    {
+        return incoming_ == null ? 0 : incoming_.size_;
+    }
+
+    /**
+     * Gets an incoming edge by index.
+     * @see #getIncomingCount()
+     */
+    public Edge getIncoming(int index)
+    {
+        if ( incoming_ == null || index < 0 || index >= incoming_.size_ )
+            throw new IndexOutOfBoundsException(index);
+        return incoming_.get(index);
+    }
+
+    void addOutgoing(Edge e)
+    {
+        if ( outgoing_ == null )
+            outgoing_ = new EdgeList();
+        outgoing_.add(e);
+    }
+
+    void addIncoming(Edge e)
+    {
+        if ( incoming_ == null )
+            incoming_ = new EdgeList();
+        incoming_.append(e);
+    }
+
+    void removeOutgoing(Edge e)
+    {
+        if ( outgoing_ != null )
+            outgoing_.remove(e);
+    }
+
+    void removeIncoming(Edge e)
+    {
+        if ( incoming_ != null )
+            incoming_.remove(e);
     }
 
     /**
      * Checks if this node is an ancestor of the other node.<br>
-     * Remind that a node is not an ancestor of itself.
+     * Remind that a node is not an ancestor of itself.<br>
+     * Uses the maintained topological order, so the search is limited to nodes between both nodes.
      */
     public boolean isAncestor(Node node)
     {
-        if (this == node)
-        {
-            return false;
-        }
-        for (Iterator<Node> it = children(); it.hasNext();)
-        {
-            Node c = it.next();
-            if (node == c || c.isAncestor(node))
-            {
-                return true;
-            }
-        }
-        return false;
+        return Reachability.isAncestor(this, node);
+    }
+
+    /**
+     * Streams this node and all its descendants (along the acyclic edges) in pre-order.
+     * @see #subtreeStream(TraversalOrder)
+     */
+    public Stream<Node> subtreeStream()
+    {
+        return subtreeStream(TraversalOrder.PRE_ORDER);
+    }
+
+    /**
+     * Streams this node and all its descendants (along the acyclic edges).<br>
+     * The encounter order is the requested pre- or post-order, so sequential streams and
+     * ordered operations like {@link Stream#forEachOrdered} see the nodes in this order.
+     * Parallel streams split the work at subtree boundaries. Unordered operations
+     * ({@link Stream#forEach}) on parallel streams process the nodes in no specific order,
+     * but each subtree part is processed in traversal order by one thread.<br>
+     * Nodes reachable via several paths are streamed once, at the position of the first path
+     * in pre-order (see {@link TreeWalker}). This also holds for the encounter order of parallel streams.
+     * The graph shall not be modified while the stream is consumed.
+     * @throws IllegalArgumentException for {@link TraversalOrder#LEVEL_ORDER}, which can't be split by subtrees.
+     */
+    public Stream<Node> subtreeStream(TraversalOrder order)
+    {
+        if ( order == TraversalOrder.LEVEL_ORDER )
+            throw new IllegalArgumentException("Level order is not supported by streams");
+        final long estimate = graph_ == null ? Long.MAX_VALUE : graph_.nodeCount();
+        return StreamSupport.stream(new SubtreeSpliterator(this, order, estimate), false);
     }
 
     public List<Node> getTreeNodes()
@@ -103,8 +218,7 @@ public class Node extends GraphElement
 
     public void getTreeNodes(Collection<Node> tree)
     {
-        tree.add(this);
-        getTreeDescendantNodes(tree);
+        TreeWalker.current().walk(this, TraversalOrder.PRE_ORDER, null, tree::add);
     }
 
     public List<Node> getTreeDescendantNodes()
@@ -116,29 +230,23 @@ public class Node extends GraphElement
 
     public void getTreeDescendantNodes(Collection<Node> tree)
     {
-        for (Iterator<Node> it = children(); it.hasNext();)
+        TreeWalker.current().walk(this, TraversalOrder.PRE_ORDER, null, n ->
         {
-            Node n = it.next();
-            if (n != null)
-            {
-                n.getTreeNodes(tree);
-            }
-        }
+            if (n != this)
+                tree.add(n);
+            return true;
+        });
     }
-    
+
+    /**
+     * Walks this node and its descendants in pre-order. Each node is visited once.
+     * @param pre Called for each node, returns false to stop the walk.
+     * @return false if the walk was stopped.
+     * @see TreeWalker
+     */
     public boolean walkTreeNodes(Predicate<Node> pre)
     {
-        if ( pre.test(this) )
-        {
-            for (Iterator<Node> it = children(); it.hasNext();)
-            {
-                Node n = it.next();
-                if (n != null && !n.walkTreeNodes(pre) )
-                    return false;
-            }
-            return true;
-        }
-        return false;
+        return TreeWalker.current().walk(this, TraversalOrder.PRE_ORDER, null, pre);
     }
 
     /**
@@ -164,4 +272,46 @@ public class Node extends GraphElement
     {
         return super.appendTo(new StringBuilder().append("Node ")).toString();
     }
+
+    /**
+     * Iterates over the adjacency of a node via the index accessors.<br>
+     * Self-loops are skipped.
+     */
+    private static final class EdgeIterator implements Iterator<Edge>
+    {
+        private final Node node;
+        private final boolean incoming;
+        private final int end;
+        private int pos;
+        private Edge next;
+
+        EdgeIterator(Node node, boolean incoming, int end)
+        {
+            this.node = node;
+            this.incoming = incoming;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (next == null && pos < end)
+            {
+                Edge e = incoming ? node.getIncoming(pos++) : node.getOutgoing(pos++);
+                if (e.getTarget() != e.getSource())
+                    next = e;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Edge next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Edge e = next;
+            next = null;
+            return e;
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the chunks of a parallel loop in a fork-join pool.<br>
+ * The chunk range is split recursively in halves, so idle workers steal large parts of the remaining work.
+ * Exceptions of the body are thrown by {@link #invoke(ForkJoinPool, int, IntConsumer)}.
+ */
+public final class ParallelChunks
+{
+	private ParallelChunks()
+	{
+	}
+
+	/**
+	 * Calls the body for each chunk in [0,chunks) and waits until all are done.
+	 */
+	public static void invoke(ForkJoinPool pool, int chunks, IntConsumer body)
+	{
+		if (chunks > 0)
+		{
+			pool.invoke(new ChunkTask(body, 0, chunks));
+		}
+	}
+
+	/**
+	 * Gets the start of a chunk if [0,n) is split into equal chunks. The end is the start of the next chunk.
+	 */
+	public static int start(int n, int chunks, int chunk)
+	{
+		return (int) ((long) n * chunk / chunks);
+	}
+
+	private static final class ChunkTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final IntConsumer body_;
+		private final int first_;
+		private final int end_;
+
+		ChunkTask(IntConsumer body, int first, int end)
+		{
+			body_ = body;
+			first_ = first;
+			end_ = end;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (end_ - first_ == 1)
+			{
+				body_.accept(first_);
+			}
+			else
+			{
+				final int mid = (first_ + end_) >>> 1;
+				invokeAll(new ChunkTask(body_, first_, mid), new ChunkTask(body_, mid, end_));
+			}
+		}
+	}
+}
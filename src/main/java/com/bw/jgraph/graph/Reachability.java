@@ -0,0 +1,414 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains a topological order of all nodes along the acyclic edges
+ * (dynamic topological sort after Pearce and Kelly).<br>
+ * Each node owns an order label. For each acyclic edge the label of the source is lower than the
+ * label of the target. This answers most ancestor and cycle queries without any search:
+ * <ul>
+ * <li>A node with a higher (or equal) label can't be an ancestor.</li>
+ * <li>A new edge from a lower to a higher label can't close a cycle.</li>
+ * </ul>
+ * Otherwise the search is limited to the nodes between both labels, and only these nodes are re-ordered.
+ * All searches use explicit stacks, so deep graphs don't overflow the call stack. The visited nodes and
+ * the stack of ancestor queries are kept per thread and re-used, so queries don't allocate.<br>
+ * Connected nodes are always members of the same graph (or all free), so one {@link ElementSet} can track
+ * the visited nodes of a search.
+ */
+final class Reachability
+{
+	private static final AtomicLong orderGenerator = new AtomicLong(0);
+
+	/** Source for labels before all other labels. */
+	private static final AtomicLong lowOrderGenerator = new AtomicLong(0);
+
+	private static final Comparator<Node> BY_ORDER = Comparator.comparingLong(n -> n.order_);
+
+	/** Scratch space of the searches of one thread. */
+	private static final class Scratch
+	{
+		final ElementSet visited_ = new ElementSet();
+		Node[] stack_ = new Node[64];
+	}
+
+	private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+	private Reachability()
+	{
+	}
+
+	/**
+	 * Gets a new label. New nodes are placed at the end of the order, so the common case
+	 * of adding an edge from an existing node to a new node needs no re-ordering.
+	 */
+	static long nextOrder()
+	{
+		return orderGenerator.incrementAndGet();
+	}
+
+	/**
+	 * Reserves a consecutive range of labels at the end of the order.
+	 *
+	 * @return The first label of the range.
+	 */
+	static long reserveOrders(int count)
+	{
+		return orderGenerator.getAndAdd(count) + 1;
+	}
+
+	/**
+	 * Gets the back-edges of a depth-first search as bit set of cyclic edges.<br>
+	 * The search starts at the root, remaining nodes are used as start in index order.
+	 * Uses an explicit stack, so deep graphs don't overflow the call stack.<br>
+	 * The edges are given in compressed-sparse-row form: the outgoing edges of node n are
+	 * offsets[n] ... offsets[n+1]-1.
+	 *
+	 * @param finishOrder If not null, receives the nodes in the order the search finished them.
+	 *                    The reverse is a topological order along the acyclic edges.
+	 */
+	static long[] markCyclicEdges(int nodeCount, int[] offsets, int[] targets, int root, int[] finishOrder)
+	{
+		final long[] cyclic = new long[(offsets[nodeCount] + 63) >>> 6];
+		// 0: unvisited, 1: on stack, 2: finished
+		final byte[] state = new byte[nodeCount];
+		final int[] stackNode = new int[nodeCount];
+		final int[] stackEdge = new int[nodeCount];
+		int finished = 0;
+		for (int start = -1; start < nodeCount; ++start)
+		{
+			int n = (start < 0) ? root : start;
+			if (n < 0 || state[n] != 0)
+			{
+				continue;
+			}
+			int sp = 0;
+			stackNode[0] = n;
+			stackEdge[0] = offsets[n];
+			state[n] = 1;
+			while (sp >= 0)
+			{
+				n = stackNode[sp];
+				final int e = stackEdge[sp];
+				if (e < offsets[n + 1])
+				{
+					stackEdge[sp] = e + 1;
+					final int t = targets[e];
+					if (state[t] == 1)
+					{
+						cyclic[e >>> 6] |= 1L << e;
+					}
+					else if (state[t] == 0)
+					{
+						state[t] = 1;
+						++sp;
+						stackNode[sp] = t;
+						stackEdge[sp] = offsets[t];
+					}
+				}
+				else
+				{
+					state[n] = 2;
+					if (finishOrder != null)
+					{
+						finishOrder[finished] = n;
+					}
+					++finished;
+					--sp;
+				}
+			}
+		}
+		return cyclic;
+	}
+
+	/**
+	 * Checks if "ancestor" reaches "node" via acyclic edges.
+	 */
+	static boolean isAncestor(Node ancestor, Node node)
+	{
+		if (ancestor == node || node == null || ancestor.order_ >= node.order_)
+		{
+			return false;
+		}
+		final long ub = node.order_;
+		final Scratch s = scratch.get();
+		final ElementSet visited = s.visited_;
+		Node[] stack = s.stack_;
+		int sp = 0;
+		int maxSp = 1;
+		stack[sp++] = ancestor;
+		try
+		{
+			while (sp > 0)
+			{
+				final Node n = stack[--sp];
+				final int count = n.getOutgoingCount(false);
+				for (int i = 0; i < count; ++i)
+				{
+					final Node c = n.getOutgoing(i).getTarget();
+					if (c == node)
+					{
+						return true;
+					}
+					if (c.order_ < ub && visited.add(c))
+					{
+						if (sp == stack.length)
+						{
+							s.stack_ = stack = Arrays.copyOf(stack, sp * 2);
+						}
+						stack[sp++] = c;
+						if (sp > maxSp)
+						{
+							maxSp = sp;
+						}
+					}
+				}
+			}
+			return false;
+		}
+		finally
+		{
+			visited.clear();
+			// Don't keep the nodes reachable.
+			Arrays.fill(stack, 0, maxSp, null);
+		}
+	}
+
+	/**
+	 * Checks if an edge from source to target would be cyclic and updates the order if not.<br>
+	 * Has to be called before the edge is added to the adjacency of the nodes.
+	 *
+	 * @return true if the edge is cyclic.
+	 */
+	static boolean insert(Node source, Node target)
+	{
+		if (source == target)
+		{
+			return true;
+		}
+		if (source.order_ < target.order_)
+		{
+			return false;
+		}
+		// Common cases when graphs are build bottom-up: one end has no acyclic edges on the other side,
+		// so it can't be part of a cycle and can simply be moved to the end (or start) of the order.
+		if (target.getOutgoingCount(false) == 0)
+		{
+			target.order_ = nextOrder();
+			return false;
+		}
+		if (!hasAcyclicIncoming(source))
+		{
+			source.order_ = lowOrderGenerator.decrementAndGet();
+			return false;
+		}
+		// Nodes reachable from target that needs to be moved behind source.
+		final List<Node> forward = collectForward(target, source);
+		if (forward == null)
+		{
+			return true;
+		}
+		// Nodes that reach source and needs to be moved before target.
+		final List<Node> backward = collectBackward(source, target.order_);
+		reorder(backward, forward);
+		return false;
+	}
+
+	/**
+	 * Checks if {@link #insert(Node, Node)} decides by source and target alone, without a search or re-ordering
+	 * of other nodes. These cases only read and change the labels and adjacency of the two nodes.
+	 */
+	static boolean isLocal(Node source, Node target)
+	{
+		return source == target || source.order_ < target.order_
+				|| target.getOutgoingCount(false) == 0 || !hasAcyclicIncoming(source);
+	}
+
+	/**
+	 * Re-evaluates cyclic edges after an acyclic edge was removed.<br>
+	 * A cyclic edge u-&gt;v can only become acyclic if the removed edge was part of the path from v to u,
+	 * so v is an ancestor of (or identical to) the source of the removed edge. Only the cyclic incoming edges
+	 * of these nodes are checked.
+	 */
+	static void removed(Node source)
+	{
+		final ElementSet visited = scratch.get().visited_;
+		final ArrayDeque<Node> stack = new ArrayDeque<>();
+		final List<Edge> candidates = new ArrayList<>();
+		try
+		{
+			visited.add(source);
+			stack.push(source);
+			while (!stack.isEmpty())
+			{
+				final Node n = stack.pop();
+				final int count = n.getIncomingCount();
+				for (int i = 0; i < count; ++i)
+				{
+					final Edge e = n.getIncoming(i);
+					if (e.isCyclic())
+					{
+						candidates.add(e);
+					}
+					else if (visited.add(e.getSource()))
+					{
+						stack.push(e.getSource());
+					}
+				}
+			}
+		}
+		finally
+		{
+			visited.clear();
+		}
+		for (Edge e : candidates)
+		{
+			if (!insert(e.getSource(), e.getTarget()))
+			{
+				e.setCyclic(false);
+			}
+		}
+	}
+
+	private static boolean hasAcyclicIncoming(Node n)
+	{
+		final int count = n.getIncomingCount();
+		for (int i = 0; i < count; ++i)
+		{
+			if (!n.getIncoming(i).isCyclic())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Node> collectForward(Node start, Node source)
+	{
+		final long ub = source.order_;
+		final ElementSet visited = scratch.get().visited_;
+		final ArrayDeque<Node> stack = new ArrayDeque<>();
+		final List<Node> result = new ArrayList<>();
+		try
+		{
+			visited.add(start);
+			stack.push(start);
+			while (!stack.isEmpty())
+			{
+				final Node n = stack.pop();
+				result.add(n);
+				final int count = n.getOutgoingCount(false);
+				for (int i = 0; i < count; ++i)
+				{
+					final Node c = n.getOutgoing(i).getTarget();
+					if (c == source)
+					{
+						return null;
+					}
+					if (c.order_ < ub && visited.add(c))
+					{
+						stack.push(c);
+					}
+				}
+			}
+			return result;
+		}
+		finally
+		{
+			visited.clear();
+		}
+	}
+
+	private static List<Node> collectBackward(Node start, long lb)
+	{
+		final ElementSet visited = scratch.get().visited_;
+		final ArrayDeque<Node> stack = new ArrayDeque<>();
+		final List<Node> result = new ArrayList<>();
+		try
+		{
+			visited.add(start);
+			stack.push(start);
+			while (!stack.isEmpty())
+			{
+				final Node n = stack.pop();
+				result.add(n);
+				final int count = n.getIncomingCount();
+				for (int i = 0; i < count; ++i)
+				{
+					final Edge e = n.getIncoming(i);
+					if (!e.isCyclic())
+					{
+						final Node p = e.getSource();
+						if (p.order_ > lb && visited.add(p))
+						{
+							stack.push(p);
+						}
+					}
+				}
+			}
+			return result;
+		}
+		finally
+		{
+			visited.clear();
+		}
+	}
+
+	/**
+	 * Re-uses the labels of both sets: the backward nodes get the lower labels, the forward nodes the higher ones.
+	 * The relative order inside each set is kept.
+	 */
+	private static void reorder(List<Node> backward, List<Node> forward)
+	{
+		backward.sort(BY_ORDER);
+		forward.sort(BY_ORDER);
+		final long[] labels = new long[backward.size() + forward.size()];
+		int i = 0;
+		for (Node n : backward)
+		{
+			labels[i++] = n.order_;
+		}
+		for (Node n : forward)
+		{
+			labels[i++] = n.order_;
+		}
+		Arrays.sort(labels);
+		i = 0;
+		for (Node n : backward)
+		{
+			n.order_ = labels[i++];
+		}
+		for (Node n : forward)
+		{
+			n.order_ = labels[i++];
+		}
+	}
+}
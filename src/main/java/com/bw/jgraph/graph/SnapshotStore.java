@@ -0,0 +1,349 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.Arrays;
+
+/**
+ * Versioned copy of the structure of a graph, the storage behind {@link GraphSnapshot}.<br>
+ * The records of all members are kept in a persistent trie, indexed by id with 32 slots per page.
+ * Pages and node records carry the version that created them. Pages and records of the current version are
+ * changed in place, older ones are shared with snapshots and copied on the first change (path copying).
+ * So a snapshot only keeps the current trie root and starts a new version, and the memory that old versions
+ * hold is proportional to the changes since.<br>
+ * The graph calls the update methods after its own structure is changed, all ids are final at this point.
+ * Access is guarded by the graph.
+ */
+final class SnapshotStore
+{
+	static final int BITS = 5;
+	static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * Page of the trie. Inner pages hold pages, leaf pages hold records.
+	 */
+	static final class Page
+	{
+		final long version;
+		final Object[] slots;
+
+		Page(long version, Object[] slots)
+		{
+			this.version = version;
+			this.slots = slots;
+		}
+	}
+
+	/**
+	 * Adjacency of a node as ids, same order and partition as the lists of the node.
+	 */
+	static final class NodeRecord
+	{
+		final long version;
+		final Node node;
+		int[] out;
+		int outSize;
+		int acyclic;
+		int[] in;
+		int inSize;
+
+		NodeRecord(long version, Node node, int[] out, int outSize, int acyclic, int[] in, int inSize)
+		{
+			this.version = version;
+			this.node = node;
+			this.out = out;
+			this.outSize = outSize;
+			this.acyclic = acyclic;
+			this.in = in;
+			this.inSize = inSize;
+		}
+	}
+
+	/**
+	 * Ids of source and target and cyclic flag of an edge. Never changed, a change creates a new record.
+	 */
+	static final class EdgeRecord
+	{
+		final Edge edge;
+		final int source;
+		final int target;
+		final boolean cyclic;
+
+		EdgeRecord(Edge edge, int source, int target, boolean cyclic)
+		{
+			this.edge = edge;
+			this.source = source;
+			this.target = target;
+			this.cyclic = cyclic;
+		}
+	}
+
+	private static final int[] EMPTY = new int[0];
+
+	private final Graph graph_;
+	private long version_;
+	private Page root_ = new Page(0, new Object[1 << BITS]);
+	/** Shift of the index bits of the root page, 0 if the root is a leaf. */
+	private int shift_;
+	private int rootId_ = -1;
+
+	/**
+	 * Creates the store with a copy of the current structure of the graph.
+	 */
+	SnapshotStore(Graph graph)
+	{
+		graph_ = graph;
+		final int limit = graph.idLimit();
+		for (int id = 0; id < limit; ++id)
+		{
+			final Node n = graph.getNode(id);
+			if (n != null)
+			{
+				putNode(n);
+			}
+			else
+			{
+				final Edge e = graph.getEdge(id);
+				if (e != null)
+				{
+					putEdge(e);
+				}
+			}
+		}
+		final Node root = graph.getRoot();
+		rootId_ = root == null ? -1 : root.getId();
+	}
+
+	/**
+	 * Creates a snapshot of the current version and starts a new version.
+	 */
+	GraphSnapshot snapshot()
+	{
+		final GraphSnapshot s = new GraphSnapshot(root_, shift_, version_, rootId_,
+				graph_.nodeCount(), graph_.edgeCount(), graph_.idLimit());
+		++version_;
+		return s;
+	}
+
+	/**
+	 * Gets the record of an id in the trie of some version.
+	 *
+	 * @return The record or null.
+	 */
+	static Object get(Page root, int shift, int id)
+	{
+		if (id < 0 || (shift + BITS < 31 && (id >>> (shift + BITS)) != 0))
+		{
+			return null;
+		}
+		Page p = root;
+		for (int s = shift; s > 0; s -= BITS)
+		{
+			p = (Page) p.slots[(id >>> s) & MASK];
+			if (p == null)
+			{
+				return null;
+			}
+		}
+		return p.slots[id & MASK];
+	}
+
+	void setRoot(Node root)
+	{
+		rootId_ = root == null ? -1 : root.getId();
+	}
+
+	/**
+	 * Sets the record of a member node, built from its adjacency lists.
+	 */
+	void putNode(Node n)
+	{
+		final int outSize = n.getOutgoingCount(true);
+		final int[] out = outSize == 0 ? EMPTY : new int[outSize];
+		for (int i = 0; i < outSize; ++i)
+		{
+			out[i] = n.getOutgoing(i).getId();
+		}
+		final int inSize = n.getIncomingCount();
+		final int[] in = inSize == 0 ? EMPTY : new int[inSize];
+		for (int i = 0; i < inSize; ++i)
+		{
+			in[i] = n.getIncoming(i).getId();
+		}
+		set(n.getId(), new NodeRecord(version_, n, out, outSize, n.getOutgoingCount(false), in, inSize));
+	}
+
+	/**
+	 * Sets the record of a member edge.
+	 */
+	void putEdge(Edge e)
+	{
+		set(e.getId(), new EdgeRecord(e, e.getSource().getId(), e.getTarget().getId(), e.isCyclic()));
+	}
+
+	/**
+	 * Clears the record of an element that leaves the graph.
+	 */
+	void remove(int id)
+	{
+		if (get(root_, shift_, id) != null)
+		{
+			set(id, null);
+		}
+	}
+
+	/**
+	 * Adds an edge at the end of its partition of the outgoing edges of the source.
+	 */
+	void addOutgoing(Edge e)
+	{
+		final NodeRecord r = writableNode(e.getSource().getId());
+		final int index = e.isCyclic() ? r.outSize : r.acyclic++;
+		r.out = insert(r.out, r.outSize++, index, e.getId());
+	}
+
+	/**
+	 * Adds an edge at the end of the incoming edges of the target.
+	 */
+	void addIncoming(Edge e)
+	{
+		final NodeRecord r = writableNode(e.getTarget().getId());
+		r.in = insert(r.in, r.inSize, r.inSize, e.getId());
+		++r.inSize;
+	}
+
+	/**
+	 * Removes an edge from the adjacency of source and target.
+	 */
+	void removeAdjacency(Edge e)
+	{
+		final int id = e.getId();
+		final NodeRecord s = writableNode(e.getSource().getId());
+		final int index = indexOf(s.out, s.outSize, id);
+		if (index >= 0)
+		{
+			delete(s.out, s.outSize--, index);
+			if (index < s.acyclic)
+			{
+				--s.acyclic;
+			}
+		}
+		if (e.getTarget() != e.getSource())
+		{
+			final NodeRecord t = writableNode(e.getTarget().getId());
+			final int i = indexOf(t.in, t.inSize, id);
+			if (i >= 0)
+			{
+				delete(t.in, t.inSize--, i);
+			}
+		}
+	}
+
+	/**
+	 * Moves an edge that became acyclic to the end of the acyclic partition of the source.
+	 */
+	void setAcyclic(Edge e)
+	{
+		final int id = e.getId();
+		final NodeRecord s = writableNode(e.getSource().getId());
+		final int index = indexOf(s.out, s.outSize, id);
+		if (index >= s.acyclic)
+		{
+			delete(s.out, s.outSize, index);
+			s.out = insert(s.out, s.outSize - 1, s.acyclic++, id);
+		}
+		putEdge(e);
+	}
+
+	private NodeRecord writableNode(int id)
+	{
+		final NodeRecord r = (NodeRecord) get(root_, shift_, id);
+		if (r.version == version_)
+		{
+			return r;
+		}
+		final NodeRecord copy = new NodeRecord(version_, r.node,
+				r.outSize == 0 ? EMPTY : Arrays.copyOf(r.out, r.outSize), r.outSize, r.acyclic,
+				r.inSize == 0 ? EMPTY : Arrays.copyOf(r.in, r.inSize), r.inSize);
+		set(id, copy);
+		return copy;
+	}
+
+	/**
+	 * Sets a slot, copies the pages on the path that belong to older versions.
+	 */
+	private void set(int id, Object record)
+	{
+		while (shift_ + BITS < 31 && (id >>> (shift_ + BITS)) != 0)
+		{
+			final Object[] slots = new Object[1 << BITS];
+			slots[0] = root_;
+			root_ = new Page(version_, slots);
+			shift_ += BITS;
+		}
+		root_ = writable(root_);
+		Page p = root_;
+		for (int s = shift_; s > 0; s -= BITS)
+		{
+			final int slot = (id >>> s) & MASK;
+			Page child = (Page) p.slots[slot];
+			child = child == null ? new Page(version_, new Object[1 << BITS]) : writable(child);
+			p.slots[slot] = child;
+			p = child;
+		}
+		p.slots[id & MASK] = record;
+	}
+
+	private Page writable(Page p)
+	{
+		return p.version == version_ ? p : new Page(version_, p.slots.clone());
+	}
+
+	private static int[] insert(int[] a, int size, int index, int value)
+	{
+		if (size == a.length)
+		{
+			a = Arrays.copyOf(a, Math.max(4, size * 2));
+		}
+		System.arraycopy(a, index, a, index + 1, size - index);
+		a[index] = value;
+		return a;
+	}
+
+	private static void delete(int[] a, int size, int index)
+	{
+		System.arraycopy(a, index + 1, a, index, size - index - 1);
+	}
+
+	private static int indexOf(int[] a, int size, int value)
+	{
+		for (int i = 0; i < size; ++i)
+		{
+			if (a[i] == value)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
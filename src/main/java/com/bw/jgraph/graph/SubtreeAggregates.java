@@ -0,0 +1,416 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.Arrays;
+
+/**
+ * Maintained aggregates of the subtrees of all member nodes: descendant count, height, depth and
+ * visible descendant count.<br>
+ * The aggregates are kept up to date with each structural change, so reading them needs constant time.
+ * Adding or removing a leaf updates the chain of ancestors.<br>
+ * Depths are the exception: they are cached and resolved lazily along the owner chain. Attaching or detaching
+ * a subtree (not a leaf) only invalidates the cached depths, so building a tree bottom-up stays linear. The
+ * first depth queries after such a change walk up to the next valid cache entry, reading the depths of all
+ * nodes costs linear time again.<br>
+ * The subtrees follow the acyclic edges. A node with several parents (DAG) is counted once, in the subtree
+ * of its owner: one parent that keeps the node until the owning edge is removed. Then an other acyclic
+ * parent takes over. This owner may differ from the first parent in pre-order that
+ * {@link TreeWalker} uses.<br>
+ * The depth is counted from the top of the tree that contains the node, for nodes below the root this
+ * is the depth from the root.<br>
+ * Visibility is a flag per node (all nodes are initially visible), e.g. set by the geometry of a view.<br>
+ * Created by {@link Graph#getSubtreeAggregates()}, not thread-safe.
+ */
+public final class SubtreeAggregates
+{
+	private final Graph graph_;
+	/** Id of the owning edge by node id, -1 if the node has no parent. */
+	private int[] owner_ = new int[0];
+	private int[] parent_ = new int[0];
+	private int[] descendants_ = new int[0];
+	private int[] visibleDescendants_ = new int[0];
+	private int[] height_ = new int[0];
+	/** Cached depth, valid if the stamp of the node equals {@link #stamp_}. */
+	private int[] depth_ = new int[0];
+	private int[] depthStamp_ = new int[0];
+	/** Current stamp of valid depths, incremented if a subtree moves. 0 marks an invalid depth. */
+	private int stamp_ = 1;
+	private long[] hidden_ = new long[0];
+	/** Work stack for depth resolution. */
+	private int[] stack_ = new int[16];
+
+	SubtreeAggregates(Graph graph)
+	{
+		graph_ = graph;
+		rebuild();
+	}
+
+	/**
+	 * Gets the number of nodes in the subtree, without the node itself.
+	 */
+	public int getDescendantCount(Node n)
+	{
+		return descendants_[checkId(n)];
+	}
+
+	/**
+	 * Gets the number of visible nodes in the subtree, without the node itself.
+	 */
+	public int getVisibleDescendantCount(Node n)
+	{
+		return visibleDescendants_[checkId(n)];
+	}
+
+	/**
+	 * Gets the number of edges of the longest path from the node down to a leaf, 0 for leaves.
+	 */
+	public int getHeight(Node n)
+	{
+		return height_[checkId(n)];
+	}
+
+	/**
+	 * Gets the number of edges from the top of the tree down to the node.<br>
+	 * Needs constant time, unless a subtree was attached or detached since the last query, see above.
+	 */
+	public int getDepth(Node n)
+	{
+		final int id = checkId(n);
+		return depthStamp_[id] == stamp_ ? depth_[id] : resolveDepth(id);
+	}
+
+	/**
+	 * Gets the parent that owns the node.
+	 *
+	 * @return The parent or null for the top of a tree.
+	 */
+	public Node getOwner(Node n)
+	{
+		final int p = parent_[checkId(n)];
+		return p < 0 ? null : graph_.getNode(p);
+	}
+
+	public boolean isVisible(Node n)
+	{
+		return !isHidden(checkId(n));
+	}
+
+	/**
+	 * Sets the visibility of a node and updates the visible descendant counts of the ancestors.
+	 */
+	public void setVisible(Node n, boolean visible)
+	{
+		final int id = checkId(n);
+		if (isHidden(id) == visible)
+		{
+			if (visible)
+			{
+				hidden_[id >>> 6] &= ~(1L << id);
+			}
+			else
+			{
+				hidden_[id >>> 6] |= 1L << id;
+			}
+			final int delta = visible ? 1 : -1;
+			for (int p = parent_[id]; p >= 0; p = parent_[p])
+			{
+				visibleDescendants_[p] += delta;
+			}
+		}
+	}
+
+	private int checkId(Node n)
+	{
+		if (n.getGraph() != graph_)
+		{
+			throw new IllegalArgumentException("Node is not a member of the graph");
+		}
+		return n.getId();
+	}
+
+	private boolean isHidden(int id)
+	{
+		return (hidden_[id >>> 6] & (1L << id)) != 0;
+	}
+
+	/**
+	 * Resets the entry of a new member node.
+	 */
+	void reset(int id)
+	{
+		ensure(id);
+		owner_[id] = -1;
+		parent_[id] = -1;
+		descendants_[id] = 0;
+		visibleDescendants_[id] = 0;
+		height_[id] = 0;
+		depth_[id] = 0;
+		depthStamp_[id] = stamp_;
+		hidden_[id >>> 6] &= ~(1L << id);
+	}
+
+	/**
+	 * Called for a new acyclic member edge (or an edge that became acyclic).
+	 * The target gets the source as owner if it has none.
+	 */
+	void attach(Edge e)
+	{
+		final int s = e.getSource().getId();
+		final int t = e.getTarget().getId();
+		if (s == t || owner_[t] >= 0)
+		{
+			return;
+		}
+		owner_[t] = e.getId();
+		parent_[t] = s;
+		final int count = descendants_[t] + 1;
+		final int visible = visibleDescendants_[t] + (isHidden(t) ? 0 : 1);
+		for (int p = s; p >= 0; p = parent_[p])
+		{
+			descendants_[p] += count;
+			visibleDescendants_[p] += visible;
+		}
+		int h = height_[t] + 1;
+		for (int p = s; p >= 0 && height_[p] < h; p = parent_[p], ++h)
+		{
+			height_[p] = h;
+		}
+		if (descendants_[t] == 0 && depthStamp_[s] == stamp_)
+		{
+			depth_[t] = depth_[s] + 1;
+			depthStamp_[t] = stamp_;
+		}
+		else if (descendants_[t] == 0)
+		{
+			depthStamp_[t] = 0;
+		}
+		else
+		{
+			invalidateDepths();
+		}
+	}
+
+	/**
+	 * Called before an acyclic edge leaves the graph. If the edge owns its target, the subtree of the target
+	 * is detached and an other acyclic parent takes over.
+	 */
+	void detach(Edge e)
+	{
+		final int t = e.getTarget().getId();
+		if (owner_[t] != e.getId())
+		{
+			return;
+		}
+		final int s = parent_[t];
+		owner_[t] = -1;
+		parent_[t] = -1;
+		final int count = descendants_[t] + 1;
+		final int visible = visibleDescendants_[t] + (isHidden(t) ? 0 : 1);
+		for (int p = s; p >= 0; p = parent_[p])
+		{
+			descendants_[p] -= count;
+			visibleDescendants_[p] -= visible;
+		}
+		for (int p = s; p >= 0; p = parent_[p])
+		{
+			final int h = calculateHeight(p);
+			if (h == height_[p])
+			{
+				break;
+			}
+			height_[p] = h;
+		}
+		if (descendants_[t] == 0)
+		{
+			depth_[t] = 0;
+			depthStamp_[t] = stamp_;
+		}
+		else
+		{
+			invalidateDepths();
+		}
+		final Node target = e.getTarget();
+		for (int i = 0; i < target.getIncomingCount(); ++i)
+		{
+			final Edge other = target.getIncoming(i);
+			if (other != e && !other.isCyclic() && other.graph_ == graph_)
+			{
+				attach(other);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Calculates all aggregates from scratch, in linear time.
+	 */
+	void rebuild()
+	{
+		final int limit = graph_.idLimit();
+		ensure(limit - 1);
+		// The visibility flags are kept.
+		Arrays.fill(owner_, -1);
+		Arrays.fill(parent_, -1);
+		Arrays.fill(descendants_, 0);
+		Arrays.fill(visibleDescendants_, 0);
+		Arrays.fill(height_, 0);
+		Arrays.fill(depth_, 0);
+		invalidateDepths();
+		Arrays.fill(depthStamp_, stamp_);
+		// Owner: the first acyclic incoming edge.
+		for (int id = 0; id < limit; ++id)
+		{
+			final Node n = graph_.getNode(id);
+			if (n != null)
+			{
+				for (int i = 0; i < n.getIncomingCount(); ++i)
+				{
+					final Edge e = n.getIncoming(i);
+					if (!e.isCyclic() && e.graph_ == graph_)
+					{
+						owner_[id] = e.getId();
+						parent_[id] = e.getSource().getId();
+						break;
+					}
+				}
+			}
+		}
+		// Pre-order of all trees, then aggregate bottom-up in reverse order.
+		final int[] order = new int[graph_.nodeCount()];
+		int count = 0;
+		for (int id = 0; id < limit; ++id)
+		{
+			if (parent_[id] < 0 && graph_.getNode(id) != null)
+			{
+				final int start = count;
+				order[count++] = id;
+				for (int i = start; i < count; ++i)
+				{
+					final Node n = graph_.getNode(order[i]);
+					final int end = n.getOutgoingCount(false);
+					for (int k = 0; k < end; ++k)
+					{
+						final Edge e = n.getOutgoing(k);
+						final int t = e.getTarget().getId();
+						if (owner_[t] == e.getId())
+						{
+							depth_[t] = depth_[order[i]] + 1;
+							order[count++] = t;
+						}
+					}
+				}
+			}
+		}
+		for (int i = count - 1; i >= 0; --i)
+		{
+			final int id = order[i];
+			final int p = parent_[id];
+			if (p >= 0)
+			{
+				descendants_[p] += descendants_[id] + 1;
+				visibleDescendants_[p] += visibleDescendants_[id] + (isHidden(id) ? 0 : 1);
+				if (height_[p] <= height_[id])
+				{
+					height_[p] = height_[id] + 1;
+				}
+			}
+		}
+	}
+
+	private int calculateHeight(int id)
+	{
+		final Node n = graph_.getNode(id);
+		int h = 0;
+		final int end = n.getOutgoingCount(false);
+		for (int i = 0; i < end; ++i)
+		{
+			final Edge e = n.getOutgoing(i);
+			if (e.graph_ != graph_)
+			{
+				continue;
+			}
+			final int t = e.getTarget().getId();
+			if (owner_[t] == e.getId() && height_[t] >= h)
+			{
+				h = height_[t] + 1;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Marks all cached depths as invalid.
+	 */
+	private void invalidateDepths()
+	{
+		if (++stamp_ == 0)
+		{
+			Arrays.fill(depthStamp_, 0);
+			stamp_ = 1;
+		}
+	}
+
+	/**
+	 * Resolves the depth of a node along the owner chain, up to the top or the next valid depth.
+	 * The depths of all nodes on the way are cached.
+	 */
+	private int resolveDepth(int id)
+	{
+		int sp = 0;
+		int p = id;
+		while (p >= 0 && depthStamp_[p] != stamp_)
+		{
+			if (sp == stack_.length)
+			{
+				stack_ = Arrays.copyOf(stack_, sp * 2);
+			}
+			stack_[sp++] = p;
+			p = parent_[p];
+		}
+		int depth = p < 0 ? -1 : depth_[p];
+		while (sp > 0)
+		{
+			final int n = stack_[--sp];
+			depth_[n] = ++depth;
+			depthStamp_[n] = stamp_;
+		}
+		return depth;
+	}
+
+	private void ensure(int id)
+	{
+		if (id >= owner_.length)
+		{
+			final int size = Math.max(id + 1, Math.max(64, owner_.length * 2));
+			owner_ = Arrays.copyOf(owner_, size);
+			parent_ = Arrays.copyOf(parent_, size);
+			descendants_ = Arrays.copyOf(descendants_, size);
+			visibleDescendants_ = Arrays.copyOf(visibleDescendants_, size);
+			height_ = Arrays.copyOf(height_, size);
+			depth_ = Arrays.copyOf(depth_, size);
+			depthStamp_ = Arrays.copyOf(depthStamp_, size);
+			hidden_ = Arrays.copyOf(hidden_, (size + 63) >>> 6);
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the nodes of a subtree (along the acyclic outgoing edges).<br>
+ * Works with an explicit stack. Each stack entry is either a complete subtree that is not expanded yet, or
+ * a single node that is only emitted. Each entry covers a contiguous part of the encounter order, so a split
+ * hands over the top entries as prefix. If only one subtree is left, it is expanded first. So work is always
+ * divided at subtree boundaries.<br>
+ * The sizes of the subtrees are not known, a split hands over half of the entries and half of the estimate.
+ * For very skewed trees the parts differ in size.<br>
+ * Shared nodes are streamed once: a subtree entry is only expanded if its node can be claimed in the
+ * claim set that is shared by all parts. Sequentially this is the first path in pre-order.
+ * To keep this order in parallel, entries of nodes with several incoming edges are only expanded after a split
+ * if they were reached by the owning edge of this rule (see {@link TreeWalker#collectTree}). The owning edges
+ * are collected when the first such entry is expanded, so streams of trees never collect them.
+ */
+final class SubtreeSpliterator implements Spliterator<Node>
+{
+	private final TraversalOrder order_;
+	private final Claims claims_;
+	private Node[] nodes_;
+	/** The edge that reached the node of the entry, null for the start node. */
+	private Edge[] via_;
+	/** True if the entry is a single node, false for a complete subtree. */
+	private boolean[] single_;
+	private int size_;
+	private long estimate_;
+
+	SubtreeSpliterator(Node root, TraversalOrder order, long estimate)
+	{
+		this(order, new Claims(root), 16, estimate);
+		push(root, null, false);
+	}
+
+	private SubtreeSpliterator(TraversalOrder order, Claims claims, int capacity, long estimate)
+	{
+		order_ = order;
+		claims_ = claims;
+		nodes_ = new Node[capacity];
+		via_ = new Edge[capacity];
+		single_ = new boolean[capacity];
+		estimate_ = estimate;
+	}
+
+	private void push(Node n, Edge via, boolean single)
+	{
+		if (size_ == nodes_.length)
+		{
+			nodes_ = Arrays.copyOf(nodes_, size_ * 2);
+			via_ = Arrays.copyOf(via_, size_ * 2);
+			single_ = Arrays.copyOf(single_, size_ * 2);
+		}
+		nodes_[size_] = n;
+		via_[size_] = via;
+		single_[size_++] = single;
+	}
+
+	/**
+	 * Replaces the subtree entry on top of the stack by the node itself and the subtrees of the children.
+	 * If the node was already claimed by an other path or, after a split, was reached by an other edge than
+	 * its owning edge, the entry is only removed.
+	 */
+	private void expandTop()
+	{
+		final Node n = nodes_[--size_];
+		final Edge via = via_[size_];
+		nodes_[size_] = null;
+		via_[size_] = null;
+		if (via != null && n.getIncomingCount() > 1 && claims_.split_ && !claims_.owned().contains(via))
+		{
+			return;
+		}
+		if (!claims_.claim(n))
+		{
+			return;
+		}
+		if (order_ == TraversalOrder.POST_ORDER)
+		{
+			push(n, null, true);
+		}
+		for (int i = n.getOutgoingCount(false) - 1; i >= 0; --i)
+		{
+			final Edge e = n.getOutgoing(i);
+			final Node t = e.getTarget();
+			if (t != n)
+			{
+				push(t, e, false);
+			}
+		}
+		if (order_ == TraversalOrder.PRE_ORDER)
+		{
+			push(n, null, true);
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Node> action)
+	{
+		while (size_ > 0)
+		{
+			if (single_[size_ - 1])
+			{
+				final Node n = nodes_[--size_];
+				nodes_[size_] = null;
+				action.accept(n);
+				return true;
+			}
+			expandTop();
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Node> action)
+	{
+		while (tryAdvance(action))
+		{
+		}
+	}
+
+	@Override
+	public Spliterator<Node> trySplit()
+	{
+		claims_.split_ = true;
+		if (size_ == 1 && !single_[0])
+		{
+			expandTop();
+		}
+		if (size_ < 2)
+		{
+			return null;
+		}
+		// The top entries come first in encounter order.
+		final int count = size_ / 2;
+		final SubtreeSpliterator prefix = new SubtreeSpliterator(order_, claims_, Math.max(16, count * 2), estimate_ >>> 1);
+		System.arraycopy(nodes_, size_ - count, prefix.nodes_, 0, count);
+		System.arraycopy(via_, size_ - count, prefix.via_, 0, count);
+		System.arraycopy(single_, size_ - count, prefix.single_, 0, count);
+		prefix.size_ = count;
+		Arrays.fill(nodes_, size_ - count, size_, null);
+		Arrays.fill(via_, size_ - count, size_, null);
+		size_ -= count;
+		estimate_ -= prefix.estimate_;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize()
+	{
+		return estimate_;
+	}
+
+	@Override
+	public int characteristics()
+	{
+		return ORDERED | NONNULL;
+	}
+
+	/**
+	 * Claimed nodes as bitset over the ids, shared by all parts of a stream.
+	 */
+	private static final class Claims
+	{
+		private final Node root_;
+		private final AtomicLongArray words_;
+		/** Set on the first split. Before, all entries are expanded sequentially in pre-order. */
+		private volatile boolean split_;
+		/** The owning edges, collected if needed after the first split. */
+		private volatile ElementSet owned_;
+		/** For nodes without graph or with ids added after the stream was created. */
+		private final Set<Node> others_ = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+		Claims(Node root)
+		{
+			final Graph graph = root.getGraph();
+			root_ = root;
+			words_ = new AtomicLongArray(graph == null ? 0 : (graph.idLimit() + 63) >>> 6);
+		}
+
+		ElementSet owned()
+		{
+			ElementSet owned = owned_;
+			if (owned == null)
+			{
+				synchronized (this)
+				{
+					owned = owned_;
+					if (owned == null)
+					{
+						owned = new ElementSet();
+						TreeWalker.current().collectTree(root_, null, owned);
+						owned_ = owned;
+					}
+				}
+			}
+			return owned;
+		}
+
+		/**
+		 * @return true if the node was not claimed before.
+		 */
+		boolean claim(Node n)
+		{
+			final int id = n.getId();
+			final int w = id >>> 6;
+			if (n.getGraph() == null || w >= words_.length())
+			{
+				return others_.add(n);
+			}
+			final long bit = 1L << id;
+			long old;
+			do
+			{
+				old = words_.get(w);
+				if ((old & bit) != 0)
+				{
+					return false;
+				}
+			} while (!words_.compareAndSet(w, old, old | bit));
+			return true;
+		}
+	}
+}
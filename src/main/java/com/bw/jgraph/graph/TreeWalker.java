@@ -0,0 +1,264 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Reusable traversal engine for trees along the acyclic edges.<br>
+ * The walks use explicit arrays as stack or queue. The arrays are kept between walks, so a walk doesn't
+ * allocate anything per visited node. A walk can be started from inside a visitor, the nested walk uses
+ * the part of the arrays above the running walk.<br>
+ * Callbacks:
+ * <ul>
+ * <li>The edge filter prunes the walk: the subtree behind an edge is only entered if the filter accepts
+ * the edge (e.g. only expanded connectors). Null accepts all edges.</li>
+ * <li>Visitors return false to stop the whole walk.</li>
+ * </ul>
+ * Self-loops are never followed.<br>
+ * Each node is visited once per walk, also if it is reachable via several paths (e.g. in a DAG with shared
+ * subtrees). The rule for shared nodes: the first parent in pre-order owns the node, the walk enters the
+ * node only via the edge from this parent. Later edges to the node are still visited by
+ * {@link #walkEdges(Node, boolean, Predicate, Predicate)}, but not followed.
+ * The visited nodes are tracked in an {@link ElementSet} per nesting level that is re-used between walks.<br>
+ * Instances are not thread-safe.
+ */
+public final class TreeWalker
+{
+	private Node[] nodes_ = new Node[32];
+	/** Index of the next outgoing edge of the node on the same position of the stack. */
+	private int[] next_ = new int[32];
+	private int size_;
+	private ElementSet[] visited_ = new ElementSet[2];
+	private int nesting_;
+
+	private static final ThreadLocal<TreeWalker> perThread = ThreadLocal.withInitial(TreeWalker::new);
+
+	/**
+	 * Gets the walker of the current thread, so walks of the tree methods of {@link Node} re-use the
+	 * arrays and visited sets. Walks on the walker nest, so visitors can call these methods again.
+	 */
+	static TreeWalker current()
+	{
+		return perThread.get();
+	}
+
+	/**
+	 * Walks the tree of the root.
+	 *
+	 * @param root    The start node.
+	 * @param order   The order in which the visitor is called.
+	 * @param filter  Filter for the edges to follow, can be null.
+	 * @param visitor Called for each node, returns false to stop.
+	 * @return false if the visitor stopped the walk.
+	 */
+	public boolean walk(Node root, TraversalOrder order, Predicate<Edge> filter, Predicate<Node> visitor)
+	{
+		switch (order)
+		{
+			case POST_ORDER:
+				return depthFirst(root, false, filter, null, visitor);
+			case LEVEL_ORDER:
+				return levelOrder(root, filter, visitor);
+			default:
+				return depthFirst(root, false, filter, visitor, null);
+		}
+	}
+
+	/**
+	 * Walks across the outgoing edges of the tree in pre-order.<br>
+	 * For each node the visitor is called for all outgoing edges accepted by the filter, in the order of the
+	 * edges. The subtree behind an acyclic edge is walked before the next edge of the node is visited.
+	 *
+	 * @param cyclic  If true, cyclic edges are also visited (but not followed).
+	 * @param filter  Filter for the edges to visit and follow, can be null.
+	 * @param visitor Called for each edge, returns false to stop.
+	 * @return false if the visitor stopped the walk.
+	 */
+	public boolean walkEdges(Node root, boolean cyclic, Predicate<Edge> filter, Predicate<Edge> visitor)
+	{
+		return depthFirst(root, cyclic, filter, null, null, visitor);
+	}
+
+	/**
+	 * Collects the tree of the root with the rule for shared nodes: adds all visited nodes and
+	 * the edges that own a node (the edges the walk follows).
+	 *
+	 * @param filter Filter for the edges to follow, can be null.
+	 * @param tree   Receives the nodes and owning edges.
+	 */
+	public void collectTree(Node root, Predicate<Edge> filter, ElementSet tree)
+	{
+		depthFirst(root, false, filter, null, null, null, tree);
+	}
+
+	private boolean depthFirst(Node root, boolean cyclic, Predicate<Edge> filter, Predicate<Node> pre, Predicate<Node> post)
+	{
+		return depthFirst(root, cyclic, filter, pre, post, null, null);
+	}
+
+	private boolean depthFirst(Node root, boolean cyclic, Predicate<Edge> filter,
+							   Predicate<Node> pre, Predicate<Node> post, Predicate<Edge> edgeVisitor)
+	{
+		return depthFirst(root, cyclic, filter, pre, post, edgeVisitor, null);
+	}
+
+	private boolean depthFirst(Node root, boolean cyclic, Predicate<Edge> filter,
+							   Predicate<Node> pre, Predicate<Node> post, Predicate<Edge> edgeVisitor, ElementSet tree)
+	{
+		final int base = size_;
+		final ElementSet visited = tree == null ? enter() : tree;
+		try
+		{
+			visited.add(root);
+			if (pre != null && !pre.test(root))
+			{
+				return false;
+			}
+			push(root);
+			while (size_ > base)
+			{
+				final int top = size_ - 1;
+				final Node n = nodes_[top];
+				final int i = next_[top];
+				if (i < n.getOutgoingCount(cyclic))
+				{
+					next_[top] = i + 1;
+					final Edge e = n.getOutgoing(i);
+					final Node t = e.getTarget();
+					if (t == n || (filter != null && !filter.test(e)))
+					{
+						continue;
+					}
+					if (edgeVisitor != null && !edgeVisitor.test(e))
+					{
+						return false;
+					}
+					if (!e.isCyclic() && visited.add(t))
+					{
+						if (tree != null)
+						{
+							tree.add(e);
+						}
+						if (pre != null && !pre.test(t))
+						{
+							return false;
+						}
+						push(t);
+					}
+				}
+				else
+				{
+					nodes_[--size_] = null;
+					if (post != null && !post.test(n))
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		finally
+		{
+			Arrays.fill(nodes_, base, size_, null);
+			size_ = base;
+			if (tree == null)
+			{
+				leave();
+			}
+		}
+	}
+
+	/**
+	 * Breadth-first walk. Uses the stack array as queue, starting above the running walks.
+	 */
+	private boolean levelOrder(Node root, Predicate<Edge> filter, Predicate<Node> visitor)
+	{
+		final int base = size_;
+		final ElementSet visited = enter();
+		try
+		{
+			visited.add(root);
+			push(root);
+			for (int head = base; head < size_; ++head)
+			{
+				final Node n = nodes_[head];
+				if (!visitor.test(n))
+				{
+					return false;
+				}
+				final int end = n.getOutgoingCount(false);
+				for (int i = 0; i < end; ++i)
+				{
+					final Edge e = n.getOutgoing(i);
+					if (e.getTarget() != n && (filter == null || filter.test(e)) && visited.add(e.getTarget()))
+					{
+						push(e.getTarget());
+					}
+				}
+			}
+			return true;
+		}
+		finally
+		{
+			Arrays.fill(nodes_, base, size_, null);
+			size_ = base;
+			leave();
+		}
+	}
+
+	/**
+	 * Gets the cleared visited set for a new (possibly nested) walk.
+	 */
+	private ElementSet enter()
+	{
+		if (nesting_ == visited_.length)
+		{
+			visited_ = Arrays.copyOf(visited_, nesting_ * 2);
+		}
+		ElementSet s = visited_[nesting_];
+		if (s == null)
+		{
+			visited_[nesting_] = s = new ElementSet();
+		}
+		++nesting_;
+		return s;
+	}
+
+	private void leave()
+	{
+		visited_[--nesting_].clear();
+	}
+
+	private void push(Node n)
+	{
+		if (size_ == nodes_.length)
+		{
+			nodes_ = Arrays.copyOf(nodes_, size_ * 2);
+			next_ = Arrays.copyOf(next_, size_ * 2);
+		}
+		nodes_[size_] = n;
+		next_[size_++] = 0;
+	}
+}
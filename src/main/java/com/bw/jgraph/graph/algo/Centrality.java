@@ -0,0 +1,393 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Attribute;
+import com.bw.jgraph.graph.AttributeStore;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.ParallelChunks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Centrality metrics of all nodes, calculated in parallel on a fork-join pool.<br>
+ * All edges are used as directed edges, including cyclic edges. The results are arrays indexed by node id
+ * (values of ids that are no nodes are 0). Use {@link #write(Graph, double[], Attribute)} to store them in
+ * a primitive attribute column, e.g. to read them cheaply while painting.<br>
+ * The graph shall not be modified during the calculation.
+ */
+public final class Centrality
+{
+	/** Number of chunks per worker thread, balances the load of uneven chunks. */
+	private static final int CHUNKS_PER_THREAD = 8;
+
+	private Centrality()
+	{
+	}
+
+	/**
+	 * Degree centrality: the number of incoming and outgoing edges, divided by (node count - 1).
+	 */
+	public static double[] degree(Graph g)
+	{
+		return degree(g, ForkJoinPool.commonPool());
+	}
+
+	public static double[] degree(Graph g, ForkJoinPool pool)
+	{
+		final Csr csr = new Csr(g);
+		final double[] result = new double[csr.nodeCount];
+		final double scale = csr.nodeCount > 1 ? 1.0 / (csr.nodeCount - 1) : 1.0;
+		forChunks(pool, csr.nodeCount, (from, to) ->
+		{
+			for (int n = from; n < to; ++n)
+			{
+				result[n] = scale * (csr.outOffsets[n + 1] - csr.outOffsets[n] + csr.inOffsets[n + 1] - csr.inOffsets[n]);
+			}
+		});
+		return csr.byId(result);
+	}
+
+	/**
+	 * PageRank with damping 0.85, iterated until the sum of all changes is below 1e-9 (at most 100 iterations).
+	 */
+	public static double[] pageRank(Graph g)
+	{
+		return pageRank(g, 0.85, 1e-9, 100, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * PageRank. The ranks of nodes without outgoing edges are distributed to all nodes. The ranks sum up to 1.
+	 *
+	 * @param damping       Probability to follow an edge.
+	 * @param tolerance     The iteration stops if the sum of all rank changes is below.
+	 * @param maxIterations Maximal number of iterations.
+	 */
+	public static double[] pageRank(Graph g, double damping, double tolerance, int maxIterations, ForkJoinPool pool)
+	{
+		final Csr csr = new Csr(g);
+		final int n = csr.nodeCount;
+		if (n == 0)
+		{
+			return new double[csr.idLimit];
+		}
+		double[] rank = new double[n];
+		double[] next = new double[n];
+		// Rank divided by the out-degree, 0 for nodes without outgoing edges.
+		final double[] share = new double[n];
+		Arrays.fill(rank, 1.0 / n);
+		final int chunks = chunkCount(pool, n);
+		final double[] partial = new double[chunks];
+		for (int iteration = 0; iteration < maxIterations; ++iteration)
+		{
+			final double[] r = rank;
+			forChunks(pool, n, chunks, (c, from, to) ->
+			{
+				double dangling = 0;
+				for (int v = from; v < to; ++v)
+				{
+					final int out = csr.outOffsets[v + 1] - csr.outOffsets[v];
+					if (out == 0)
+					{
+						dangling += r[v];
+						share[v] = 0;
+					}
+					else
+					{
+						share[v] = r[v] / out;
+					}
+				}
+				partial[c] = dangling;
+			});
+			final double base = (1 - damping) / n + damping * sum(partial) / n;
+			final double[] nx = next;
+			forChunks(pool, n, chunks, (c, from, to) ->
+			{
+				double delta = 0;
+				for (int v = from; v < to; ++v)
+				{
+					double s = 0;
+					for (int e = csr.inOffsets[v]; e < csr.inOffsets[v + 1]; ++e)
+					{
+						s += share[csr.inSources[e]];
+					}
+					nx[v] = base + damping * s;
+					delta += Math.abs(nx[v] - r[v]);
+				}
+				partial[c] = delta;
+			});
+			next = rank;
+			rank = nx;
+			if (sum(partial) < tolerance)
+			{
+				break;
+			}
+		}
+		return csr.byId(rank);
+	}
+
+	/**
+	 * Exact betweenness centrality (Brandes).<br>
+	 * Needs a breadth-first search from each node, so the costs are nodes*edges. For large graphs use
+	 * {@link #betweenness(Graph, int, long, ForkJoinPool)} with a sample of sources.
+	 */
+	public static double[] betweenness(Graph g)
+	{
+		return betweenness(g, Integer.MAX_VALUE, 0, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Betweenness centrality (Brandes) of directed, unweighted shortest paths.<br>
+	 * For each node the number of shortest paths between other nodes that pass it, each path weighted
+	 * by 1/(number of shortest paths between its ends).
+	 * With less samples than nodes, the paths from randomly selected sources are counted and the result is
+	 * extrapolated (multiplied by nodes/samples).<br>
+	 * Each running chunk uses working arrays of the size of the graph.
+	 *
+	 * @param samples Number of sources, all nodes are used if not less than the node count.
+	 * @param seed    Seed to select the sources.
+	 */
+	public static double[] betweenness(Graph g, int samples, long seed, ForkJoinPool pool)
+	{
+		final Csr csr = new Csr(g);
+		final int n = csr.nodeCount;
+		final int[] sources;
+		if (samples >= n)
+		{
+			sources = new int[n];
+			for (int i = 0; i < n; ++i)
+			{
+				sources[i] = i;
+			}
+		}
+		else
+		{
+			// Partial Fisher-Yates shuffle.
+			final int[] all = new int[n];
+			for (int i = 0; i < n; ++i)
+			{
+				all[i] = i;
+			}
+			final Random random = new Random(seed);
+			for (int i = 0; i < samples; ++i)
+			{
+				final int j = i + random.nextInt(n - i);
+				final int t = all[i];
+				all[i] = all[j];
+				all[j] = t;
+			}
+			sources = Arrays.copyOf(all, samples);
+		}
+		// Free workspaces. A chunk takes one and gives it back, so there are not more workspaces than
+		// chunks running at the same time.
+		final ConcurrentLinkedQueue<BrandesWorkspace> spaces = new ConcurrentLinkedQueue<>();
+		forChunks(pool, sources.length, (from, to) ->
+		{
+			BrandesWorkspace w = spaces.poll();
+			if (w == null)
+			{
+				w = new BrandesWorkspace(n);
+			}
+			for (int i = from; i < to; ++i)
+			{
+				w.accumulate(csr, sources[i]);
+			}
+			spaces.add(w);
+		});
+		final double[] result = new double[n];
+		for (BrandesWorkspace w : spaces)
+		{
+			for (int v = 0; v < n; ++v)
+			{
+				result[v] += w.centrality[v];
+			}
+		}
+		if (sources.length < n && sources.length > 0)
+		{
+			final double scale = n / (double) sources.length;
+			for (int v = 0; v < n; ++v)
+			{
+				result[v] *= scale;
+			}
+		}
+		return csr.byId(result);
+	}
+
+	/**
+	 * Writes values by id to a double or float attribute of all nodes.
+	 *
+	 * @throws IllegalArgumentException if the attribute is not of type double or float.
+	 */
+	public static void write(Graph g, double[] values, Attribute a)
+	{
+		final AttributeStore store = g.getAttributeStore();
+		final boolean isFloat = a.type == Attribute.Type.FLOAT;
+		if (!isFloat && a.type != Attribute.Type.DOUBLE)
+		{
+			throw new IllegalArgumentException("Attribute " + a.name + " is not of type double or float");
+		}
+		final int limit = Math.min(values.length, g.idLimit());
+		for (int id = 0; id < limit; ++id)
+		{
+			if (g.getNode(id) != null)
+			{
+				if (isFloat)
+				{
+					store.setFloat(id, a, (float) values[id]);
+				}
+				else
+				{
+					store.setDouble(id, a, values[id]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Working arrays of one thread for Brandes' algorithm.
+	 */
+	private static final class BrandesWorkspace
+	{
+		final double[] centrality;
+		final int[] distance;
+		final double[] sigma;
+		final double[] delta;
+		final int[] queue;
+
+		BrandesWorkspace(int n)
+		{
+			centrality = new double[n];
+			distance = new int[n];
+			sigma = new double[n];
+			delta = new double[n];
+			queue = new int[n];
+			Arrays.fill(distance, -1);
+		}
+
+		/**
+		 * Adds the dependencies of the source to the centrality.
+		 */
+		void accumulate(Csr csr, int s)
+		{
+			int tail = 0;
+			queue[tail++] = s;
+			distance[s] = 0;
+			sigma[s] = 1;
+			for (int head = 0; head < tail; ++head)
+			{
+				final int v = queue[head];
+				final int dv = distance[v] + 1;
+				for (int e = csr.outOffsets[v]; e < csr.outOffsets[v + 1]; ++e)
+				{
+					final int w = csr.outTargets[e];
+					if (distance[w] < 0)
+					{
+						distance[w] = dv;
+						queue[tail++] = w;
+					}
+					if (distance[w] == dv)
+					{
+						sigma[w] += sigma[v];
+					}
+				}
+			}
+			// Nodes in order of decreasing distance. The successors on shortest paths are found via the
+			// outgoing edges, so no predecessor lists are needed.
+			for (int i = tail - 1; i >= 0; --i)
+			{
+				final int v = queue[i];
+				final int dv = distance[v] + 1;
+				double d = 0;
+				for (int e = csr.outOffsets[v]; e < csr.outOffsets[v + 1]; ++e)
+				{
+					final int w = csr.outTargets[e];
+					if (distance[w] == dv)
+					{
+						d += (1 + delta[w]) / sigma[w];
+					}
+				}
+				delta[v] = sigma[v] * d;
+				if (v != s)
+				{
+					centrality[v] += delta[v];
+				}
+			}
+			// Reset only the reached nodes.
+			for (int i = 0; i < tail; ++i)
+			{
+				final int v = queue[i];
+				distance[v] = -1;
+				sigma[v] = 0;
+				delta[v] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Body of a chunk of a range.
+	 */
+	private interface ChunkBody
+	{
+		void run(int chunk, int from, int to);
+	}
+
+	private interface RangeBody
+	{
+		void run(int from, int to);
+	}
+
+	private static int chunkCount(ForkJoinPool pool, int n)
+	{
+		return Math.max(1, Math.min(n, pool.getParallelism() * CHUNKS_PER_THREAD));
+	}
+
+	private static void forChunks(ForkJoinPool pool, int n, RangeBody body)
+	{
+		forChunks(pool, n, chunkCount(pool, n), (c, from, to) -> body.run(from, to));
+	}
+
+	/**
+	 * Splits [0,n) in chunks and runs the body for each chunk in the pool.
+	 */
+	private static void forChunks(ForkJoinPool pool, int n, int chunks, ChunkBody body)
+	{
+		if (n > 0)
+		{
+			ParallelChunks.invoke(pool, chunks, c -> body.run(c, ParallelChunks.start(n, chunks, c),
+					ParallelChunks.start(n, chunks, c + 1)));
+		}
+	}
+
+	private static double sum(double[] values)
+	{
+		double s = 0;
+		for (double v : values)
+		{
+			s += v;
+		}
+		return s;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of the adjacency of all nodes in compressed-sparse-row form, with dense node indices.<br>
+ * Used by the parallel algorithms: the arrays can be read by many threads and the hot loops don't need
+ * to touch the node objects. The outgoing edges of node index n are outTargets[outOffsets[n] ... outOffsets[n+1]-1],
+ * the incoming edges are built from the outgoing edges (so self-loops are also incoming edges).
+ */
+final class Csr
+{
+	final int nodeCount;
+	final int idLimit;
+	/** Id of the node by index. */
+	final int[] ids;
+	/** Index of the node by id, -1 for ids that are no node. */
+	final int[] index;
+	final int[] outOffsets;
+	final int[] outTargets;
+	final int[] inOffsets;
+	final int[] inSources;
+
+	Csr(Graph g)
+	{
+		idLimit = g.idLimit();
+		index = new int[idLimit];
+		Arrays.fill(index, -1);
+		int count = 0;
+		for (int id = 0; id < idLimit; ++id)
+		{
+			if (g.getNode(id) != null)
+			{
+				index[id] = count++;
+			}
+		}
+		nodeCount = count;
+		ids = new int[count];
+		outOffsets = new int[count + 1];
+		for (int id = 0; id < idLimit; ++id)
+		{
+			final int n = index[id];
+			if (n >= 0)
+			{
+				ids[n] = id;
+				outOffsets[n + 1] = outOffsets[n] + g.getNode(id).getOutgoingCount(true);
+			}
+		}
+		outTargets = new int[outOffsets[count]];
+		inOffsets = new int[count + 1];
+		for (int n = 0; n < count; ++n)
+		{
+			final Node node = g.getNode(ids[n]);
+			int e = outOffsets[n];
+			final int end = outOffsets[n + 1];
+			for (int i = 0; e < end; ++i, ++e)
+			{
+				final int t = index[node.getOutgoing(i).getTarget().getId()];
+				outTargets[e] = t;
+				++inOffsets[t + 1];
+			}
+		}
+		for (int n = 0; n < count; ++n)
+		{
+			inOffsets[n + 1] += inOffsets[n];
+		}
+		inSources = new int[outTargets.length];
+		final int[] pos = Arrays.copyOf(inOffsets, count);
+		for (int n = 0; n < count; ++n)
+		{
+			for (int e = outOffsets[n]; e < outOffsets[n + 1]; ++e)
+			{
+				inSources[pos[outTargets[e]]++] = n;
+			}
+		}
+	}
+
+	/**
+	 * Copies values by node index to an array by id.
+	 */
+	double[] byId(double[] values)
+	{
+		final double[] result = new double[idLimit];
+		for (int n = 0; n < nodeCount; ++n)
+		{
+			result[ids[n]] = values[n];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+import com.bw.jgraph.graph.TraversalOrder;
+
+import java.util.Arrays;
+
+/**
+ * Breadth-first and depth-first search along all outgoing edges, including cyclic edges.<br>
+ * Works on the node ids of the graph with primitive arrays as queue, stacks and visited set.
+ * Results are node ids, use {@link Graph#getNode(int)} to get the nodes.
+ * Unlike {@link com.bw.jgraph.graph.TreeWalker} the searches don't stop at cyclic edges, each reachable
+ * node is visited once.
+ */
+public final class GraphSearch
+{
+	private GraphSearch()
+	{
+	}
+
+	/**
+	 * Gets the ids of all nodes reachable from the start node.
+	 *
+	 * @param order Pre- or post-order of a depth-first search, or level order of a breadth-first search.
+	 * @return The node ids in visiting order.
+	 * @throws IllegalArgumentException If the start node is not member of a graph.
+	 */
+	public static int[] search(Node start, TraversalOrder order)
+	{
+		if (order == TraversalOrder.LEVEL_ORDER)
+		{
+			return breadthFirst(start);
+		}
+		final Graph g = graphOf(start);
+		final long[] visited = new long[(g.idLimit() + 63) >>> 6];
+		final int nodeCount = g.nodeCount();
+		final int[] result = new int[nodeCount];
+		final int[] stackNode = new int[nodeCount];
+		final int[] stackEdge = new int[nodeCount];
+		final boolean pre = order == TraversalOrder.PRE_ORDER;
+		int count = 0;
+		int sp = 0;
+		stackNode[0] = start.getId();
+		mark(visited, start.getId());
+		if (pre)
+		{
+			result[count++] = start.getId();
+		}
+		while (sp >= 0)
+		{
+			final Node n = g.getNode(stackNode[sp]);
+			final int e = stackEdge[sp];
+			if (e < n.getOutgoingCount(true))
+			{
+				stackEdge[sp] = e + 1;
+				final int t = n.getOutgoing(e).getTarget().getId();
+				if (mark(visited, t))
+				{
+					if (pre)
+					{
+						result[count++] = t;
+					}
+					++sp;
+					stackNode[sp] = t;
+					stackEdge[sp] = 0;
+				}
+			}
+			else
+			{
+				if (!pre)
+				{
+					result[count++] = stackNode[sp];
+				}
+				--sp;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Gets the ids of all nodes reachable from the start node in breadth-first order.
+	 *
+	 * @throws IllegalArgumentException If the start node is not member of a graph.
+	 */
+	public static int[] breadthFirst(Node start)
+	{
+		final Graph g = graphOf(start);
+		final long[] visited = new long[(g.idLimit() + 63) >>> 6];
+		final int[] queue = new int[g.nodeCount()];
+		int tail = 0;
+		queue[tail++] = start.getId();
+		mark(visited, start.getId());
+		for (int head = 0; head < tail; ++head)
+		{
+			final Node n = g.getNode(queue[head]);
+			final int count = n.getOutgoingCount(true);
+			for (int i = 0; i < count; ++i)
+			{
+				final int t = n.getOutgoing(i).getTarget().getId();
+				if (mark(visited, t))
+				{
+					queue[tail++] = t;
+				}
+			}
+		}
+		return Arrays.copyOf(queue, tail);
+	}
+
+	/**
+	 * Gets the number of edges on the shortest path from the start node to each node.
+	 *
+	 * @return Array indexed by id, -1 for unreachable nodes and ids of edges.
+	 * @throws IllegalArgumentException If the start node is not member of a graph.
+	 */
+	public static int[] hopDistances(Node start)
+	{
+		final Graph g = graphOf(start);
+		final int[] distance = new int[g.idLimit()];
+		Arrays.fill(distance, -1);
+		final int[] queue = new int[g.nodeCount()];
+		int tail = 0;
+		queue[tail++] = start.getId();
+		distance[start.getId()] = 0;
+		for (int head = 0; head < tail; ++head)
+		{
+			final int id = queue[head];
+			final Node n = g.getNode(id);
+			final int count = n.getOutgoingCount(true);
+			for (int i = 0; i < count; ++i)
+			{
+				final int t = n.getOutgoing(i).getTarget().getId();
+				if (distance[t] < 0)
+				{
+					distance[t] = distance[id] + 1;
+					queue[tail++] = t;
+				}
+			}
+		}
+		return distance;
+	}
+
+	static Graph graphOf(Node n)
+	{
+		final Graph g = n.getGraph();
+		if (g == null)
+		{
+			throw new IllegalArgumentException("Node is not member of a graph");
+		}
+		return g;
+	}
+
+	/**
+	 * Sets the bit of the id.
+	 *
+	 * @return true if the bit was not set before.
+	 */
+	static boolean mark(long[] bits, int id)
+	{
+		final long bit = 1L << id;
+		if ((bits[id >>> 6] & bit) != 0)
+		{
+			return false;
+		}
+		bits[id >>> 6] |= bit;
+		return true;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph.algo;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of element ids with double keys. Supports decrease-key via a position table indexed by id.
+ */
+final class IdHeap
+{
+	private final double[] keys_;
+	/** Position of the id in the heap array, -1 if not contained. */
+	private final int[] pos_;
+	private int[] heap_;
+	private int size_;
+
+	IdHeap(int idLimit)
+	{
+		keys_ = new double[idLimit];
+		pos_ = new int[idLimit];
+		Arrays.fill(pos_, -1);
+		heap_ = new int[16];
+	}
+
+	boolean isEmpty()
+	{
+		return size_ == 0;
+	}
+
+	/**
+	 * Inserts the id or decreases its key. Higher keys of contained ids are ignored.
+	 */
+	void offer(int id, double key)
+	{
+		int p = pos_[id];
+		if (p < 0)
+		{
+			if (size_ == heap_.length)
+			{
+				heap_ = Arrays.copyOf(heap_, size_ * 2);
+			}
+			p = size_++;
+		}
+		else if (key >= keys_[id])
+		{
+			return;
+		}
+		keys_[id] = key;
+		siftUp(id, p);
+	}
+
+	/**
+	 * Removes the id with the lowest key.
+	 */
+	int poll()
+	{
+		final int id = heap_[0];
+		pos_[id] = -1;
+		final int last = heap_[--size_];
+		if (size_ > 0)
+		{
+			siftDown(last, 0);
+		}
+		return id;
+	}
+
+	private void siftUp(int id, int p)
+	{
+		final double key = keys_[id];
+		while (p > 0)
+		{
+			final int parent = (p - 1) >>> 1;
+			final int pid = heap_[parent];
+			if (keys_[pid] <= key)
+			{
+				break;
+			}
+			heap_[p] = pid;
+			pos_[pid] = p;
+			p = parent;
+		}
+		heap_[p] = id;
+		pos_[id] = p;
+	}
+
+	private void siftDown(int id, int p)
+	{
+		final double key = keys_[id];
+		final int half = size_ >>> 1;
+		while (p < half)
+		{
+			int c = 2 * p + 1;
+			if (c + 1 < size_ && keys_[heap_[c + 1]] < keys_[heap_[c]])
+			{
+				++c;
+			}
+			final int cid = heap_[c];
+			if (key <= keys_[cid])
+			{
+				break;
+			}
+			heap_[p] = cid;
+			pos_[cid] = p;
+			p = c;
+		}
+		heap_[p] = id;
+		pos_[id] = p;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Attribute;
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Shortest paths from one source along all outgoing edges (Dijkstra, A*).<br>
+ * The edge weights are read from an optional attribute. Typed numeric attributes are read without boxing.
+ * Edges without value and searches without attribute use weight 1. Negative weights are not supported.<br>
+ * Distances and predecessors are stored in arrays indexed by id.
+ */
+public final class ShortestPaths
+{
+	private final Graph graph_;
+	private final double[] distance_;
+	/** Id of the last edge on the shortest path, -1 for the source and unreached nodes. */
+	private final int[] previous_;
+
+	private ShortestPaths(Graph g)
+	{
+		graph_ = g;
+		distance_ = new double[g.idLimit()];
+		previous_ = new int[g.idLimit()];
+		Arrays.fill(distance_, Double.POSITIVE_INFINITY);
+		Arrays.fill(previous_, -1);
+	}
+
+	/**
+	 * Calculates the shortest paths to all reachable nodes.
+	 *
+	 * @param weight The attribute with the edge weights, null for weight 1.
+	 * @throws IllegalArgumentException If the source is not member of a graph or an edge has a negative weight.
+	 */
+	public static ShortestPaths dijkstra(Node source, Attribute weight)
+	{
+		return search(source, null, weight, null);
+	}
+
+	/**
+	 * Calculates the shortest path to the target. The search stops if the target is reached.
+	 * The heuristic guides the search: it estimates the remaining distance of a node to the target.
+	 * It has to be consistent (never more than the weight of an edge plus the estimate of its target and 0
+	 * for the target), otherwise the result may not be the shortest path.
+	 * The distances of nodes not on the path may be higher than the shortest distance.
+	 *
+	 * @param weight    The attribute with the edge weights, null for weight 1.
+	 * @param heuristic The estimate, null for none (same as Dijkstra with early exit).
+	 * @throws IllegalArgumentException If the source is not member of a graph or an edge has a negative weight.
+	 */
+	public static ShortestPaths aStar(Node source, Node target, Attribute weight, ToDoubleFunction<Node> heuristic)
+	{
+		return search(source, target, weight, heuristic);
+	}
+
+	private static ShortestPaths search(Node source, Node target, Attribute weight, ToDoubleFunction<Node> heuristic)
+	{
+		final Graph g = GraphSearch.graphOf(source);
+		final ShortestPaths result = new ShortestPaths(g);
+		final double[] distance = result.distance_;
+		final long[] settled = new long[(distance.length + 63) >>> 6];
+		final IdHeap queue = new IdHeap(distance.length);
+		distance[source.getId()] = 0;
+		queue.offer(source.getId(), 0);
+		while (!queue.isEmpty())
+		{
+			final int id = queue.poll();
+			GraphSearch.mark(settled, id);
+			final Node n = g.getNode(id);
+			if (n == target)
+			{
+				break;
+			}
+			final double d = distance[id];
+			final int count = n.getOutgoingCount(true);
+			for (int i = 0; i < count; ++i)
+			{
+				final Edge e = n.getOutgoing(i);
+				final Node t = e.getTarget();
+				final int tid = t.getId();
+				if ((settled[tid >>> 6] & (1L << tid)) != 0)
+				{
+					continue;
+				}
+				final double w = weightOf(e, weight);
+				if (w < 0)
+				{
+					throw new IllegalArgumentException("Negative weight on edge " + e);
+				}
+				final double nd = d + w;
+				if (nd < distance[tid])
+				{
+					distance[tid] = nd;
+					result.previous_[tid] = e.getId();
+					queue.offer(tid, heuristic == null ? nd : nd + heuristic.applyAsDouble(t));
+				}
+			}
+		}
+		return result;
+	}
+
+	static double weightOf(Edge e, Attribute a)
+	{
+		if (a == null)
+		{
+			return 1;
+		}
+		final double w;
+		switch (a.type)
+		{
+			case DOUBLE:
+				w = e.getDouble(a);
+				break;
+			case FLOAT:
+				w = e.getFloat(a);
+				break;
+			case INT:
+				w = e.getInt(a);
+				break;
+			case LONG:
+				w = e.getLong(a);
+				break;
+			default:
+				final Object v = e.getAttribute(a);
+				return v instanceof Number ? ((Number) v).doubleValue() : 1;
+		}
+		// Typed attributes read 0 if not set.
+		return (w == 0 && !e.hasAttribute(a)) ? 1 : w;
+	}
+
+	/**
+	 * Gets the distance of the node with the id.
+	 *
+	 * @return The distance or {@link Double#POSITIVE_INFINITY} if not reached.
+	 */
+	public double getDistance(int id)
+	{
+		return distance_[id];
+	}
+
+	public double getDistance(Node n)
+	{
+		return distance_[n.getId()];
+	}
+
+	/**
+	 * Gets the id of the last edge on the path to the node with the id.
+	 *
+	 * @return The edge id or -1 for the source and unreached nodes.
+	 */
+	public int getPreviousEdge(int id)
+	{
+		return previous_[id];
+	}
+
+	/**
+	 * Gets the ids of the nodes on the path from the source to the target.
+	 *
+	 * @return The ids or an empty array if the target was not reached.
+	 */
+	public int[] getPathIds(Node target)
+	{
+		final int tid = target.getId();
+		if (distance_[tid] == Double.POSITIVE_INFINITY)
+		{
+			return new int[0];
+		}
+		int length = 1;
+		for (int e = previous_[tid]; e >= 0; e = previous_[graph_.getEdge(e).getSource().getId()])
+		{
+			++length;
+		}
+		final int[] path = new int[length];
+		int id = tid;
+		for (int i = length - 1; i >= 0; --i)
+		{
+			path[i] = id;
+			if (i > 0)
+			{
+				id = graph_.getEdge(previous_[id]).getSource().getId();
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * Gets the edges of the path from the source to the target.
+	 *
+	 * @return The edges or an empty list if the target was not reached or is the source.
+	 */
+	public List<Edge> getPath(Node target)
+	{
+		final List<Edge> path = new ArrayList<>();
+		for (int e = previous_[target.getId()]; e >= 0; )
+		{
+			final Edge edge = graph_.getEdge(e);
+			path.add(edge);
+			e = previous_[edge.getSource().getId()];
+		}
+		Collections.reverse(path);
+		return path;
+	}
+}
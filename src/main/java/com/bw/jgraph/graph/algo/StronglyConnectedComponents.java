@@ -0,0 +1,165 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a graph along all edges (Tarjan).<br>
+ * Uses explicit stacks, so deep graphs don't overflow the call stack.
+ * The components are numbered in reverse topological order: edges between components go from
+ * a higher to a lower component number.
+ */
+public final class StronglyConnectedComponents
+{
+	private final int[] component_;
+	private final int count_;
+
+	private StronglyConnectedComponents(int[] component, int count)
+	{
+		component_ = component;
+		count_ = count;
+	}
+
+	/**
+	 * Calculates the components of all nodes of the graph.
+	 */
+	public static StronglyConnectedComponents of(Graph g)
+	{
+		final int limit = g.idLimit();
+		final int nodeCount = g.nodeCount();
+		final int[] index = new int[limit];
+		final int[] low = new int[limit];
+		final int[] component = new int[limit];
+		Arrays.fill(index, -1);
+		Arrays.fill(component, -1);
+		// Nodes of unfinished components, in visiting order.
+		final int[] members = new int[nodeCount];
+		// The search path: node and index of the next edge.
+		final int[] pathNode = new int[nodeCount];
+		final int[] pathEdge = new int[nodeCount];
+		int memberCount = 0;
+		int nextIndex = 0;
+		int count = 0;
+		for (int root = 0; root < limit; ++root)
+		{
+			if (index[root] >= 0 || g.getNode(root) == null)
+			{
+				continue;
+			}
+			int sp = 0;
+			pathNode[0] = root;
+			pathEdge[0] = 0;
+			index[root] = low[root] = nextIndex++;
+			members[memberCount++] = root;
+			while (sp >= 0)
+			{
+				final int v = pathNode[sp];
+				final Node n = g.getNode(v);
+				final int e = pathEdge[sp];
+				if (e < n.getOutgoingCount(true))
+				{
+					pathEdge[sp] = e + 1;
+					final int w = n.getOutgoing(e).getTarget().getId();
+					if (index[w] < 0)
+					{
+						index[w] = low[w] = nextIndex++;
+						members[memberCount++] = w;
+						++sp;
+						pathNode[sp] = w;
+						pathEdge[sp] = 0;
+					}
+					else if (component[w] < 0 && index[w] < low[v])
+					{
+						// w is still on the member stack.
+						low[v] = index[w];
+					}
+				}
+				else
+				{
+					if (low[v] == index[v])
+					{
+						int w;
+						do
+						{
+							w = members[--memberCount];
+							component[w] = count;
+						} while (w != v);
+						++count;
+					}
+					if (--sp >= 0)
+					{
+						final int u = pathNode[sp];
+						if (low[v] < low[u])
+						{
+							low[u] = low[v];
+						}
+					}
+				}
+			}
+		}
+		return new StronglyConnectedComponents(component, count);
+	}
+
+	/**
+	 * Gets the number of components.
+	 */
+	public int count()
+	{
+		return count_;
+	}
+
+	/**
+	 * Gets the component number of the node with the id.
+	 *
+	 * @return The number or -1 if the id is not a node of the graph.
+	 */
+	public int getComponent(int id)
+	{
+		return (id >= 0 && id < component_.length) ? component_[id] : -1;
+	}
+
+	public int getComponent(Node n)
+	{
+		return getComponent(n.getId());
+	}
+
+	/**
+	 * Gets the sizes of all components, indexed by component number.
+	 */
+	public int[] getComponentSizes()
+	{
+		final int[] sizes = new int[count_];
+		for (int c : component_)
+		{
+			if (c >= 0)
+			{
+				++sizes[c];
+			}
+		}
+		return sizes;
+	}
+}
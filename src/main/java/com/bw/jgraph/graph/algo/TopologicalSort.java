@@ -0,0 +1,100 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+
+import java.util.Arrays;
+
+/**
+ * Topological order of all nodes of a graph (Kahn's algorithm).<br>
+ * Nodes without order constraints are ordered by id, so the result is deterministic.
+ */
+public final class TopologicalSort
+{
+	private TopologicalSort()
+	{
+	}
+
+	/**
+	 * Sorts the nodes along all edges.
+	 *
+	 * @return The node ids in topological order or null if the graph has cycles (also self-loops).
+	 */
+	public static int[] sort(Graph g)
+	{
+		return sort(g, true);
+	}
+
+	/**
+	 * Sorts the nodes along the acyclic edges. As the cyclic edges break all cycles, this never fails.
+	 *
+	 * @return The node ids in topological order.
+	 */
+	public static int[] sortAcyclic(Graph g)
+	{
+		return sort(g, false);
+	}
+
+	private static int[] sort(Graph g, boolean cyclic)
+	{
+		final int limit = g.idLimit();
+		final int[] inDegree = new int[limit];
+		final int[] queue = new int[g.nodeCount()];
+		for (int id = 0; id < limit; ++id)
+		{
+			final Node n = g.getNode(id);
+			if (n != null)
+			{
+				final int count = n.getOutgoingCount(cyclic);
+				for (int i = 0; i < count; ++i)
+				{
+					++inDegree[n.getOutgoing(i).getTarget().getId()];
+				}
+			}
+		}
+		int tail = 0;
+		for (int id = 0; id < limit; ++id)
+		{
+			if (inDegree[id] == 0 && g.getNode(id) != null)
+			{
+				queue[tail++] = id;
+			}
+		}
+		for (int head = 0; head < tail; ++head)
+		{
+			final Node n = g.getNode(queue[head]);
+			final int count = n.getOutgoingCount(cyclic);
+			for (int i = 0; i < count; ++i)
+			{
+				final int t = n.getOutgoing(i).getTarget().getId();
+				if (--inDegree[t] == 0)
+				{
+					queue[tail++] = t;
+				}
+			}
+		}
+		return tail == queue.length ? queue : (cyclic ? null : Arrays.copyOf(queue, tail));
+	}
+}
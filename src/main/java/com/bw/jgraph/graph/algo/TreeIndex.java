@@ -0,0 +1,285 @@
+/*
+ *  (c) copyright 2022 Bernd Wengenroth
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ * 
+ */
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.GraphEvent;
+import com.bw.jgraph.graph.GraphListener;
+import com.bw.jgraph.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index for queries on the tree of the graph's root: lowest common ancestor, depth, ancestor test and paths.<br>
+ * The tree follows the rule of {@link com.bw.jgraph.graph.TreeWalker}: acyclic edges, a node with several
+ * parents belongs to the first parent in pre-order. Nodes not reachable from the root are not in the tree.<br>
+ * Built in linear time plus a sparse table for range minimum queries over the pre-order (n log n ints).
+ * Then LCA, depth and ancestor queries need constant time, paths the time of their length.<br>
+ * The index listens to the graph. Structural changes invalidate it and the next query rebuilds it.
+ * Added edges that can't change the tree (cyclic edges, edges from nodes outside the tree) are ignored.
+ * Call {@link #close()} to stop listening.<br>
+ * Instances are not thread-safe.
+ */
+public final class TreeIndex implements GraphListener, AutoCloseable
+{
+	private final Graph graph_;
+	private boolean valid_;
+
+	private int[] depth_;
+	/** Id of the parent by id, -1 for the root and nodes not in the tree. */
+	private int[] parent_;
+	/** Pre-order number by id, -1 for nodes not in the tree. */
+	private int[] preOrder_;
+	/** Number of nodes in the subtree by id. */
+	private int[] size_;
+	/** sparse_[k][i]: id of the node with minimal depth in the pre-order range i ... i+2^k-1. */
+	private int[][] sparse_;
+
+	public TreeIndex(Graph graph)
+	{
+		graph_ = graph;
+		graph_.addGraphListener(this);
+	}
+
+	@Override
+	public void close()
+	{
+		graph_.removeGraphListener(this);
+		valid_ = false;
+	}
+
+	@Override
+	public void graphChanged(GraphEvent ev)
+	{
+		if (valid_ && ev.type == GraphEvent.Type.EDGE_ADDED && !affectsTree(ev.edge))
+		{
+			return;
+		}
+		if (valid_ && ev.type == GraphEvent.Type.BATCH && !ev.rootChanged && ev.edgesRemoved.isEmpty())
+		{
+			boolean affected = false;
+			for (Edge e : ev.edgesAdded)
+			{
+				affected |= affectsTree(e);
+			}
+			if (!affected)
+			{
+				return;
+			}
+		}
+		valid_ = false;
+	}
+
+	/**
+	 * Checks if an added edge can change the tree. Adding an edge never changes the cyclic flags of other edges.
+	 */
+	private boolean affectsTree(Edge e)
+	{
+		return !e.isCyclic() && contains(e.getSource());
+	}
+
+	/**
+	 * Checks if the node is in the tree.
+	 */
+	public boolean contains(Node n)
+	{
+		validate();
+		final int id = n.getId();
+		return n.getGraph() == graph_ && id < preOrder_.length && preOrder_[id] >= 0;
+	}
+
+	/**
+	 * Gets the number of edges from the root to the node.
+	 *
+	 * @return The depth or -1 if the node is not in the tree.
+	 */
+	public int getDepth(Node n)
+	{
+		return contains(n) ? depth_[n.getId()] : -1;
+	}
+
+	/**
+	 * Gets the parent in the tree.
+	 *
+	 * @return The parent or null for the root and nodes not in the tree.
+	 */
+	public Node getParent(Node n)
+	{
+		return contains(n) && parent_[n.getId()] >= 0 ? graph_.getNode(parent_[n.getId()]) : null;
+	}
+
+	/**
+	 * Checks if "ancestor" is a proper ancestor of "node" in the tree.
+	 */
+	public boolean isAncestor(Node ancestor, Node node)
+	{
+		if (ancestor == node || !contains(ancestor) || !contains(node))
+		{
+			return false;
+		}
+		final int a = ancestor.getId();
+		final int p = preOrder_[node.getId()];
+		return preOrder_[a] < p && p < preOrder_[a] + size_[a];
+	}
+
+	/**
+	 * Gets the lowest common ancestor of both nodes. A node is its own ancestor here.
+	 *
+	 * @return The ancestor or null if a node is not in the tree.
+	 */
+	public Node getLowestCommonAncestor(Node a, Node b)
+	{
+		if (!contains(a) || !contains(b))
+		{
+			return null;
+		}
+		return graph_.getNode(lca(a.getId(), b.getId()));
+	}
+
+	/**
+	 * Gets the nodes on the tree path between both nodes: from a up to the common ancestor and down to b.
+	 *
+	 * @return The nodes, including both ends, or an empty list if a node is not in the tree.
+	 */
+	public List<Node> getPath(Node a, Node b)
+	{
+		if (!contains(a) || !contains(b))
+		{
+			return Collections.emptyList();
+		}
+		final int l = lca(a.getId(), b.getId());
+		final List<Node> path = new ArrayList<>(depth_[a.getId()] + depth_[b.getId()] - 2 * depth_[l] + 1);
+		for (int id = a.getId(); id != l; id = parent_[id])
+		{
+			path.add(graph_.getNode(id));
+		}
+		final int up = path.size();
+		for (int id = b.getId(); id != l; id = parent_[id])
+		{
+			path.add(graph_.getNode(id));
+		}
+		path.add(graph_.getNode(l));
+		Collections.reverse(path.subList(up, path.size()));
+		return path;
+	}
+
+	private int lca(int a, int b)
+	{
+		if (a == b)
+		{
+			return a;
+		}
+		int from = preOrder_[a];
+		int to = preOrder_[b];
+		if (from > to)
+		{
+			final int t = from;
+			from = to;
+			to = t;
+		}
+		// The node with minimal depth in (from, to] is a child of the LCA on the path to the later node.
+		++from;
+		final int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+		final int m1 = sparse_[k][from];
+		final int m2 = sparse_[k][to - (1 << k) + 1];
+		return parent_[depth_[m1] <= depth_[m2] ? m1 : m2];
+	}
+
+	private void validate()
+	{
+		if (!valid_)
+		{
+			build();
+			valid_ = true;
+		}
+	}
+
+	private void build()
+	{
+		final int limit = graph_.idLimit();
+		depth_ = new int[limit];
+		parent_ = new int[limit];
+		preOrder_ = new int[limit];
+		size_ = new int[limit];
+		Arrays.fill(parent_, -1);
+		Arrays.fill(preOrder_, -1);
+		final int[] order = new int[graph_.nodeCount()];
+		int count = 0;
+		final Node root = graph_.getRoot();
+		if (root != null)
+		{
+			final int[] stackNode = new int[order.length];
+			final int[] stackEdge = new int[order.length];
+			int sp = 0;
+			stackNode[0] = root.getId();
+			preOrder_[root.getId()] = count;
+			order[count++] = root.getId();
+			while (sp >= 0)
+			{
+				final int id = stackNode[sp];
+				final Node n = graph_.getNode(id);
+				final int e = stackEdge[sp];
+				if (e < n.getOutgoingCount(false))
+				{
+					stackEdge[sp] = e + 1;
+					final int t = n.getOutgoing(e).getTarget().getId();
+					if (preOrder_[t] < 0)
+					{
+						preOrder_[t] = count;
+						order[count++] = t;
+						parent_[t] = id;
+						depth_[t] = depth_[id] + 1;
+						++sp;
+						stackNode[sp] = t;
+						stackEdge[sp] = 0;
+					}
+				}
+				else
+				{
+					size_[id] = count - preOrder_[id];
+					--sp;
+				}
+			}
+		}
+		final int levels = count > 1 ? 32 - Integer.numberOfLeadingZeros(count - 1) : 1;
+		sparse_ = new int[levels][];
+		sparse_[0] = Arrays.copyOf(order, count);
+		for (int k = 1; k < levels; ++k)
+		{
+			final int[] prev = sparse_[k - 1];
+			final int half = 1 << (k - 1);
+			final int[] level = new int[count - (1 << k) + 1];
+			for (int i = 0; i < level.length; ++i)
+			{
+				final int m1 = prev[i];
+				final int m2 = prev[i + half];
+				level[i] = depth_[m1] <= depth_[m2] ? m1 : m2;
+			}
+			sparse_[k] = level;
+		}
+	}
+}
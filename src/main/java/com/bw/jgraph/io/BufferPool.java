@@ -0,0 +1,49 @@
+package com.bw.jgraph.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct buffers for {@link GraphWriter} and {@link GraphReader}.<br>
+ * Direct buffers are expensive to allocate and are released late by the garbage collector,
+ * so they are re-used. The pool keeps a limited number of buffers, surplus buffers are left to the collector.
+ */
+final class BufferPool {
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int MAX_POOLED = 16;
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private BufferPool() {
+    }
+
+    /**
+     * Gets a cleared little-endian buffer of {@link #BUFFER_SIZE} bytes.
+     */
+    static ByteBuffer acquire() {
+        ByteBuffer b = pool.poll();
+        if (b == null) {
+            b = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        } else {
+            pooled.decrementAndGet();
+            b.clear();
+        }
+        return b;
+    }
+
+    /**
+     * Returns a buffer. The buffer must not be used afterwards.
+     */
+    static void release(ByteBuffer b) {
+        if (pooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(b);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
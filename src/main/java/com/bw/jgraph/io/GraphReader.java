@@ -1,38 +1,443 @@
 package com.bw.jgraph.io;
 
-public class GraphReader {
-    
-    public boolean isFieldNull() {
-        return true;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.bw.jgraph.io.GraphWriter.*;
+
+/**
+ * Reads the fields written by {@link GraphWriter}.<br>
+ * The reader is positioned at a current field. The "is..." methods check the type of the current field,
+ * the "read..." methods read the value and move to the next field. Numeric fields can be read by each numeric
+ * method, the value is converted.<br>
+ * The data is read from the channel in large blocks into a pooled direct buffer.<br>
+ * The input is not trusted: fields with java serialized objects are rejected unless a filter is set
+ * (see {@link #setSerializedFilter(ObjectInputFilter)}), and the lengths of strings and byte arrays are
+ * limited (see {@link #setMaxLength(int)}).
+ * Instances are not thread-safe.
+ */
+public class GraphReader implements Closeable {
+
+    /** Tag at the end of the input. */
+    private static final int EOF = -2;
+    /** Tag if the header of the current field is not read yet. */
+    private static final int NONE = -1;
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private boolean eof;
+
+    private byte[] scratch = new byte[64];
+
+    /** Default of {@link #setMaxLength(int)}. */
+    public static final int DEFAULT_MAX_LENGTH = 64 << 20;
+
+    private int maxLength = DEFAULT_MAX_LENGTH;
+    private ObjectInputFilter serializedFilter;
+
+    private int tag = NONE;
+    private int fieldId;
+
+    public GraphReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = BufferPool.acquire();
+        buffer.flip();
+    }
+
+    public GraphReader(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    /**
+     * Accepts fields with java serialized objects in {@link #readObject()}, deserialized with the filter.<br>
+     * Without filter (the default) such fields can only be skipped. The filter decides which classes,
+     * array sizes and graph depths are accepted, e.g. created by {@link ObjectInputFilter.Config#createFilter(String)}.
+     *
+     * @param filter The filter or null to reject serialized objects.
+     */
+    public void setSerializedFilter(ObjectInputFilter filter) {
+        serializedFilter = filter;
+    }
+
+    /**
+     * Sets the maximal length of strings, byte arrays and serialized objects. Longer fields fail to read,
+     * so a corrupt length can't allocate arbitrary memory. Skipping is not limited.
+     */
+    public void setMaxLength(int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Negative length");
+        }
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Gets the id of the current field.
+     */
+    public int getFieldId() throws IOException {
+        peek();
+        return fieldId;
+    }
+
+    public boolean isFieldNull() throws IOException {
+        return peek() == NULL;
+    }
+
+    public boolean isFieldNumeric() throws IOException {
+        final int t = peek();
+        return t == INT || t == LONG || t == FLOAT || t == DOUBLE;
+    }
+
+    public boolean isFieldObject() throws IOException {
+        return peek() == START;
+    }
+
+    /**
+     * Checks if the current element has more fields.
+     * At the end of the element (or the input) false is returned and the end is consumed.
+     */
+    public boolean hasNextField() throws IOException {
+        final int t = peek();
+        if (t == END) {
+            tag = NONE;
+            return false;
+        }
+        return t != EOF;
+    }
+
+    /**
+     * Enters the element of the current field. The next field is the first field of the element.
+     */
+    public void startObject() throws IOException {
+        expect(START);
+        tag = NONE;
+    }
+
+    /**
+     * Skips the current field. Elements are skipped with all their fields, nested elements included.
+     */
+    public void skip() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case START:
+                    ++depth;
+                    break;
+                case END:
+                    --depth;
+                    break;
+                case INT:
+                case LONG:
+                    varint();
+                    break;
+                case FLOAT:
+                    skipBytes(4);
+                    break;
+                case DOUBLE:
+                    skipBytes(8);
+                    break;
+                case STRING:
+                case BYTES:
+                case SERIALIZED:
+                    skipBytes(length());
+                    break;
+                case EOF:
+                    throw new EOFException();
+                default:
+                    break;
+            }
+            tag = NONE;
+        } while (depth > 0);
+    }
+
+    /**
+     * Reads a numeric field as {@link Integer}, {@link Long}, {@link Float} or {@link Double}.
+     */
+    public Number readNumber() throws IOException {
+        switch (peek()) {
+            case INT:
+                return readInt();
+            case LONG:
+                return readLong();
+            case FLOAT:
+                return readFloat();
+            case DOUBLE:
+                return readDouble();
+            default:
+                throw typeError("numeric");
+        }
+    }
+
+    public int readInt() throws IOException {
+        final int t = peek();
+        if (t == INT) {
+            tag = NONE;
+            final int v = (int) varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+        return (int) readLongValue(t);
+    }
+
+    public long readLong() throws IOException {
+        return readLongValue(peek());
+    }
+
+    public float readFloat() throws IOException {
+        final int t = peek();
+        if (t == FLOAT) {
+            tag = NONE;
+            ensure(4);
+            return buffer.getFloat();
+        }
+        return (float) readDoubleValue(t);
+    }
+
+    public double readDouble() throws IOException {
+        return readDoubleValue(peek());
+    }
+
+    public boolean readBoolean() throws IOException {
+        final int t = peek();
+        if (t != TRUE && t != FALSE) {
+            throw typeError("boolean");
+        }
+        tag = NONE;
+        return t == TRUE;
+    }
+
+    /**
+     * Reads a string field. A null field gives null.
+     */
+    public String readString() throws IOException {
+        if (peek() == NULL) {
+            tag = NONE;
+            return null;
+        }
+        expect(STRING);
+        tag = NONE;
+        final int length = checkLength(length());
+        if (length <= buffer.capacity()) {
+            // Copied into a re-used array, direct buffers have no accessible array.
+            ensure(length);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, 2 * scratch.length)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return new String(readBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a field written by {@link GraphWriter#writeObject(int, Object, boolean)} or any other value field.
+     */
+    public Object readObject() throws IOException {
+        switch (peek()) {
+            case NULL:
+                tag = NONE;
+                return null;
+            case INT:
+                return readInt();
+            case LONG:
+                return readLong();
+            case FLOAT:
+                return readFloat();
+            case DOUBLE:
+                return readDouble();
+            case FALSE:
+            case TRUE:
+                return readBoolean();
+            case STRING:
+                return readString();
+            case BYTES:
+                tag = NONE;
+                return readBytes(length());
+            case SERIALIZED:
+                if (serializedFilter == null) {
+                    throw new IOException("Field " + fieldId + " is a serialized object, these are not accepted");
+                }
+                tag = NONE;
+                try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(readBytes(length())))) {
+                    is.setObjectInputFilter(serializedFilter);
+                    return is.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            default:
+                throw typeError("value");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            BufferPool.release(buffer);
+            buffer = null;
+            channel.close();
+        }
+    }
+
+    private long readLongValue(int t) throws IOException {
+        switch (t) {
+            case INT:
+                return readInt();
+            case LONG:
+                tag = NONE;
+                final long v = varint();
+                return (v >>> 1) ^ -(v & 1);
+            case FLOAT:
+            case DOUBLE:
+                return (long) readDoubleValue(t);
+            default:
+                throw typeError("numeric");
+        }
+    }
+
+    private double readDoubleValue(int t) throws IOException {
+        switch (t) {
+            case DOUBLE:
+                tag = NONE;
+                ensure(8);
+                return buffer.getDouble();
+            case FLOAT:
+                return readFloat();
+            case INT:
+            case LONG:
+                return readLongValue(t);
+            default:
+                throw typeError("numeric");
+        }
+    }
+
+    /**
+     * Reads the header of the current field if not done yet.
+     *
+     * @return The tag of the current field.
+     */
+    private int peek() throws IOException {
+        if (tag == NONE) {
+            if (!buffer.hasRemaining() && !fill()) {
+                tag = EOF;
+                fieldId = 0;
+            } else {
+                final long h = varint();
+                tag = (int) (h & ((1 << TAG_BITS) - 1));
+                fieldId = (int) (h >>> TAG_BITS);
+            }
+        }
+        return tag;
+    }
+
+    private void expect(int t) throws IOException {
+        if (peek() != t) {
+            throw typeError(t == START ? "element" : "string");
+        }
     }
 
-    public void skip() {
+    private IOException typeError(String expected) {
+        return new IOException("Field " + fieldId + " with tag " + tag + " is not a " + expected);
     }
 
-    public boolean isFieldNumeric() {
-        return false;
+    private int length() throws IOException {
+        final long length = varint();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length " + length);
+        }
+        return (int) length;
     }
 
-    public Number readNumber() {
-        return 0;
+    private long varint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                ensure(1);
+            }
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
     }
 
-    public boolean isFieldObject() {
-        return false;
+    private int checkLength(int length) throws IOException {
+        if (length > maxLength) {
+            throw new IOException("Field " + fieldId + " with length " + length + " exceeds the limit of " + maxLength);
+        }
+        return length;
     }
 
-    public boolean hasNextField() {
-        return false;
+    /**
+     * Reads bytes. The array grows with the data that arrives, so a truncated input doesn't allocate the full length.
+     */
+    private byte[] readBytes(int length) throws IOException {
+        checkLength(length);
+        byte[] bytes = new byte[Math.min(length, buffer.capacity())];
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) {
+                ensure(1);
+            }
+            if (offset == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+            }
+            final int n = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, n);
+            offset += n;
+        }
+        return bytes;
     }
 
-    public void startObject() {
+    private void skipBytes(int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                ensure(1);
+            }
+            final int n = Math.min(buffer.remaining(), length);
+            buffer.position(buffer.position() + n);
+            length -= n;
+        }
     }
 
-    public String readString() {
-        return "";
+    /**
+     * Makes sure that the buffer contains the number of bytes.
+     */
+    private void ensure(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (!fill()) {
+                throw new EOFException();
+            }
+        }
     }
 
-    public Object readObject() {
-        return null;
+    /**
+     * Reads more data into the buffer.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        buffer.compact();
+        try {
+            if (channel.read(buffer) < 0) {
+                eof = true;
+                return false;
+            }
+            return true;
+        } finally {
+            buffer.flip();
+        }
     }
 }
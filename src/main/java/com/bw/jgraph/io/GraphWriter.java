@@ -1,23 +1,241 @@
 package com.bw.jgraph.io;
 
-public class GraphWriter {
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 
-    public void writeNull(int fieldId) {
+/**
+ * Binary writer for fields, used by {@link com.bw.jgraph.graph.GraphSerializer}.<br>
+ * Each field starts with a header, the varint of <code>(fieldId &lt;&lt; 4) | tag</code>. The tag defines the encoding
+ * of the value that follows:
+ * <table>
+ * <caption>Tags</caption>
+ * <tr><td>{@link #NULL}, {@link #FALSE}, {@link #TRUE}</td><td>No value.</td></tr>
+ * <tr><td>{@link #INT}, {@link #LONG}</td><td>Zigzag varint, so small negative values are short as well.</td></tr>
+ * <tr><td>{@link #FLOAT}, {@link #DOUBLE}</td><td>4 or 8 bytes little-endian IEEE 754.</td></tr>
+ * <tr><td>{@link #STRING}, {@link #BYTES}, {@link #SERIALIZED}</td><td>Varint length, then the bytes
+ * (UTF-8 for strings, java serialization for serialized objects).</td></tr>
+ * <tr><td>{@link #START}</td><td>Starts an element, the fields of the element follow until {@link #END}.</td></tr>
+ * </table>
+ * Varints use 7 bits per byte, lowest bits first. The high bit marks that more bytes follow.<br>
+ * The data is collected in a pooled direct buffer and written to the channel in large blocks.
+ * Instances are not thread-safe.
+ */
+public class GraphWriter implements Closeable, Flushable {
+
+    public static final int NULL = 0;
+    public static final int INT = 1;
+    public static final int LONG = 2;
+    public static final int FLOAT = 3;
+    public static final int DOUBLE = 4;
+    public static final int FALSE = 5;
+    public static final int TRUE = 6;
+    public static final int STRING = 7;
+    public static final int BYTES = 8;
+    public static final int SERIALIZED = 9;
+    public static final int START = 10;
+    public static final int END = 11;
+
+    static final int TAG_BITS = 4;
+
+    /** Maximal size of a header or number. */
+    private static final int MAX_VARINT = 10;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer;
+
+    public GraphWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = BufferPool.acquire();
+    }
+
+    public GraphWriter(OutputStream out) {
+        this(Channels.newChannel(out));
+    }
+
+    public void writeNull(int fieldId) throws IOException {
+        ensure(MAX_VARINT);
+        header(fieldId, NULL);
+    }
+
+    /**
+     * Starts an element. The following fields belong to the element until {@link #endElement()}.
+     */
+    public void startElement(int fieldId) throws IOException {
+        ensure(MAX_VARINT);
+        header(fieldId, START);
+    }
+
+    public void endElement() throws IOException {
+        ensure(1);
+        buffer.put((byte) END);
+    }
+
+    public void writeInt(int fieldId, int value) throws IOException {
+        ensure(2 * MAX_VARINT);
+        header(fieldId, INT);
+        varint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    public void writeLong(int fieldId, long value) throws IOException {
+        ensure(2 * MAX_VARINT);
+        header(fieldId, LONG);
+        varint((value << 1) ^ (value >> 63));
+    }
+
+    public void writeFloat(int fieldId, float value) throws IOException {
+        ensure(MAX_VARINT + 4);
+        header(fieldId, FLOAT);
+        buffer.putFloat(value);
+    }
+
+    public void writeDouble(int fieldId, double value) throws IOException {
+        ensure(MAX_VARINT + 8);
+        header(fieldId, DOUBLE);
+        buffer.putDouble(value);
+    }
+
+    public void writeBoolean(int fieldId, boolean value) throws IOException {
+        ensure(MAX_VARINT);
+        header(fieldId, value ? TRUE : FALSE);
+    }
+
+    public void writeString(int fieldId, String value) throws IOException {
+        if (value == null) {
+            writeNull(fieldId);
+            return;
+        }
+        final int length = value.length();
+        if (length <= BufferPool.BUFFER_SIZE - 2 * MAX_VARINT && isAscii(value)) {
+            // Common case, no need to encode into an intermediate array.
+            ensure(2 * MAX_VARINT + length);
+            header(fieldId, STRING);
+            varint(length);
+            for (int i = 0; i < length; ++i) {
+                buffer.put((byte) value.charAt(i));
+            }
+        } else {
+            writeBytes(fieldId, STRING, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public void writeBytes(int fieldId, byte[] value) throws IOException {
+        if (value == null) {
+            writeNull(fieldId);
+        } else {
+            writeBytes(fieldId, BYTES, value);
+        }
+    }
+
+    /**
+     * Writes a value of unknown type.<br>
+     * Null, boxed primitives (except char, byte and short), strings and byte arrays are written with their tag and
+     * can be read back by {@link GraphReader#readObject()}. Other values are written with java serialization if
+     * "serialize" is true and the value is serializable, otherwise as string.
+     */
+    public void writeObject(int fieldId, Object value, boolean serialize) throws IOException {
+        if (value == null) {
+            writeNull(fieldId);
+        } else if (value instanceof Integer) {
+            writeInt(fieldId, (Integer) value);
+        } else if (value instanceof String) {
+            writeString(fieldId, (String) value);
+        } else if (value instanceof Long) {
+            writeLong(fieldId, (Long) value);
+        } else if (value instanceof Double) {
+            writeDouble(fieldId, (Double) value);
+        } else if (value instanceof Float) {
+            writeFloat(fieldId, (Float) value);
+        } else if (value instanceof Boolean) {
+            writeBoolean(fieldId, (Boolean) value);
+        } else if (value instanceof byte[]) {
+            writeBytes(fieldId, BYTES, (byte[]) value);
+        } else if (serialize && value instanceof Serializable) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream os = new ObjectOutputStream(bytes)) {
+                os.writeObject(value);
+            }
+            writeBytes(fieldId, SERIALIZED, bytes.toByteArray());
+        } else {
+            writeString(fieldId, value.toString());
+        }
+    }
+
+    /**
+     * Writes the buffered data to the channel.
+     */
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
     }
 
-    public void startElement(int fieldId) {
+    /**
+     * Flushes and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            try {
+                flush();
+            } finally {
+                BufferPool.release(buffer);
+                buffer = null;
+                channel.close();
+            }
+        }
     }
 
-    public void endElement() {
+    private void writeBytes(int fieldId, int tag, byte[] value) throws IOException {
+        ensure(2 * MAX_VARINT);
+        header(fieldId, tag);
+        varint(value.length);
+        int offset = 0;
+        while (offset < value.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            final int n = Math.min(buffer.remaining(), value.length - offset);
+            buffer.put(value, offset, n);
+            offset += n;
+        }
     }
 
-    public void writeInt(int fieldId, Integer id) {
+    private static boolean isAscii(String value) {
+        for (int i = value.length() - 1; i >= 0; --i) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public void writeString(int i, String name) {
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
     }
 
-    public void writeObject(int i, Object val, boolean b) {
+    private void header(int fieldId, int tag) {
+        varint(((fieldId & 0xFFFFFFFFL) << TAG_BITS) | tag);
+    }
 
+    private void varint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
     }
 }
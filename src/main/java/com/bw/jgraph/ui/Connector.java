@@ -23,16 +23,24 @@
 package com.bw.jgraph.ui;
 
 import com.bw.jgraph.graph.GraphElement;
+import com.bw.jgraph.graph.Node;
 
+/**
+ * Connector of a node to one of its children.<br>
+ * Held by reference, ids of nodes are re-used after they leave a graph.
+ */
 public class Connector extends GraphElement
 {
-	public Connector(int parentId)
+	public Connector(Node parent)
 	{
-		this.parentId = parentId;
+		this.parent = parent;
 	}
 
 
-	public int parentId;
+	/**
+	 * The node that shows the connector.
+	 */
+	public Node parent;
 	public float xOffset;
 	public float yOffset;
 	public boolean expanded = false;
@@ -1,5 +1,8 @@
 package com.bw.jgraph.ui;
 
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.SubtreeAggregates;
+
 import javax.swing.*;
 import java.awt.event.HierarchyEvent;
 
@@ -22,7 +25,7 @@ public class FpsStatus extends JLabel {
             if (graphPanel.paintCount_ > 0)
             {
                 long delta = newMillis - millis;
-                setText( String.format("%.1f fps", 1000d * (graphPanel.paintCount_ / ((double)delta)) ));
+                setText( String.format("%.1f fps", 1000d * (graphPanel.paintCount_ / ((double)delta)) ) + treeStatus());
             } else
             {
                 setText("...");
@@ -44,4 +47,19 @@ public class FpsStatus extends JLabel {
         });
     }
 
+    /**
+     * Gets the node counts of the root's tree. Read from the maintained aggregates, so it's cheap for each update.
+     * The aggregates are created with the first status.
+     */
+    private String treeStatus() {
+        Graph g = graphPanel.getGraph();
+        if (g.getRoot() == null)
+            return "";
+        SubtreeAggregates a = graphPanel.getSubtreeAggregates();
+        return String.format(", %d nodes, %d visible, height %d",
+                a.getDescendantCount(g.getRoot()) + 1,
+                a.getVisibleDescendantCount(g.getRoot()) + (a.isVisible(g.getRoot()) ? 1 : 0),
+                a.getHeight(g.getRoot()));
+    }
+
 }
@@ -55,7 +55,7 @@ public class GraphMouseHandler extends MouseAdapter
 		elementDragged = null;
 		if (nodeDragged != null)
 		{
-			System.out.println("Click on node " + nodeDragged.id + " " + org.x + "," + org.y);
+			System.out.println("Click on node " + nodeDragged.getId() + " " + org.x + "," + org.y);
 
 			NodeVisual nv = gpanel.getNodeVisual();
 
@@ -132,7 +132,7 @@ public class GraphMouseHandler extends MouseAdapter
 		if (node != null)
 		{
 
-			System.out.println("Click @ Node " + node.id);
+			System.out.println("Click @ Node " + node.getId());
 
 			Point2D.Float p = gpanel.getNodeLocation(node);
 			if (p != null)
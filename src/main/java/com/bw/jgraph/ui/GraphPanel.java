@@ -5,7 +5,12 @@ import com.bw.jgraph.graph.Edge;
 import com.bw.jgraph.graph.Graph;
 import com.bw.jgraph.graph.GraphElement;
 import com.bw.jgraph.graph.GraphEvent;
+import com.bw.jgraph.graph.GraphEventDispatcher;
+import com.bw.jgraph.graph.GraphListener;
 import com.bw.jgraph.graph.Node;
+import com.bw.jgraph.graph.SubtreeAggregates;
+import com.bw.jgraph.graph.TraversalOrder;
+import com.bw.jgraph.graph.TreeWalker;
 import com.bw.jgraph.ui.impl.NodeLabelVisual;
 import com.bw.jgraph.ui.impl.TreeLayout;
 import com.bw.jgraph.ui.impl.TreeRectangleGeometry;
@@ -22,7 +27,6 @@ import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.util.Iterator;
 
 /**
  * Panel to show a graph.
@@ -34,9 +38,12 @@ public class GraphPanel extends JPanel
     private Geometry geo_;
     private NodeVisual nodeVisual_;
     private EdgeVisual edgeVisual_;
+    private final TreeWalker walker_ = new TreeWalker();
     private boolean dragging_ = false;
     private Point2D.Float graphOrigin_ = new Point2D.Float(0, 0);
     private final GraphMouseHandler mouseHandler_;
+    private final GraphListener graphListener_ = this::graphChanged;
+    private GraphEventDispatcher dispatcher_;
     private final GeometryListener sizeListener_ = (geo, e) -> SwingUtilities.invokeLater(() -> updateSize());
 
     /**
@@ -52,10 +59,7 @@ public class GraphPanel extends JPanel
         addMouseMotionListener(mouseHandler_);
         addMouseWheelListener(mouseHandler_);
 
-        graph_.addGraphListener((ev) ->
-        {
-            graphChanged(ev);
-        });
+        graph_.addGraphListener(graphListener_);
     }
 
     private void graphChanged(GraphEvent ev)
@@ -70,6 +74,14 @@ public class GraphPanel extends JPanel
                 geo_.clear();
                 doLayoutGraph();
                 break;
+            case BATCH:
+                // One layout for all changes of the batch.
+                if (ev.rootChanged)
+                {
+                    geo_.clear();
+                }
+                doLayoutGraph();
+                break;
         }
     }
 
@@ -229,29 +241,24 @@ public class GraphPanel extends JPanel
 
     protected void updateGeometry(Graphics2D g, Node root)
     {
-        nodeVisual_.updateGeometry(g, root);
-        for (Iterator<Node> it = root.children(); it.hasNext(); )
+        walker_.walk(root, TraversalOrder.PRE_ORDER, null, n ->
         {
-            Node c = it.next();
-            updateGeometry(g, c);
-        }
+            nodeVisual_.updateGeometry(g, n);
+            return true;
+        });
     }
 
     protected void paintTreeNodes(GraphicContext ctx, Rectangle area, Node n)
     {
-        if (nodeVisual_.getVisualBounds(n)
-                       .intersects(area))
+        walker_.walk(n, TraversalOrder.PRE_ORDER, nodeVisual_::isExpanded, node ->
         {
-            nodeVisual_.paint(ctx, n);
-        }
-        for (Iterator<Edge> e = n.outgoing(false); e.hasNext(); )
-        {
-            Edge edge = e.next();
-            if (nodeVisual_.isExpanded(edge))
+            if (nodeVisual_.getVisualBounds(node)
+                           .intersects(area))
             {
-                paintTreeNodes(ctx, area, edge.getTarget());
+                nodeVisual_.paint(ctx, node);
             }
-        }
+            return true;
+        });
     }
 
     protected void paintTreeEdges(GraphicContext ctx, Rectangle area, Node n)
@@ -260,37 +267,20 @@ public class GraphPanel extends JPanel
         ctx.g2D_.setColor(settings.edge_.color);
         ctx.g2D_.setStroke(new BasicStroke(settings.edge_.width));
 
-        for (Iterator<Edge> e = n.outgoing(true); e.hasNext(); )
+        walker_.walkEdges(n, true, nodeVisual_::isExpanded, edge ->
         {
-            final Edge edge = e.next();
-            if (nodeVisual_.isExpanded(edge))
-            {
-
-                final Node t = edge.getTarget();
-                edgeVisual_.paint(ctx, edge);
-                if (!edge.isCyclic())
-                {
-                    paintTreeEdges(ctx, area, t);
-                }
-            }
-        }
+            edgeVisual_.paint(ctx, edge);
+            return true;
+        });
     }
 
     protected void paintTreeEdgeEndPoints(GraphicContext ctx, Rectangle area, Node n)
     {
-        for (Iterator<Edge> e = n.outgoing(false); e.hasNext(); )
+        walker_.walkEdges(n, false, nodeVisual_::isExpanded, edge ->
         {
-            final Edge edge = e.next();
-            if (nodeVisual_.isExpanded(edge))
-            {
-                final Node t = edge.getTarget();
-                edgeVisual_.paintEndPoint(ctx, edge);
-                if (!edge.isCyclic() && t != n)
-                {
-                    paintTreeEdgeEndPoints(ctx, area, t);
-                }
-            }
-        }
+            edgeVisual_.paintEndPoint(ctx, edge);
+            return true;
+        });
     }
 
     /**
@@ -298,31 +288,21 @@ public class GraphPanel extends JPanel
      */
     protected Node getNodeAt(Node root, Point2D p)
     {
-        final Rectangle2D.Float org = geo_.getBounds(root);
         final float sn = nodeVisual_.getVisualSettings().snapRadius_;
-        final Rectangle2D.Float b = new Rectangle2D.Float(org.x - sn, org.y - sn, org.width + 2 * sn, org.height + 2 * sn);
-
-        if (b.contains(p))
-        {
-            return root;
-        }
-        else
+        final double x = p.getX();
+        final double y = p.getY();
+        final Node[] found = new Node[1];
+        walker_.walk(root, TraversalOrder.PRE_ORDER, nodeVisual_::isExpanded, n ->
         {
-            for (Iterator<Edge> e = root.outgoing(false); e.hasNext(); )
+            final Rectangle2D.Float b = geo_.getBounds(n);
+            if (x >= b.x - sn && y >= b.y - sn && x < b.x + b.width + sn && y < b.y + b.height + sn)
             {
-                final Edge edge = e.next();
-                if (nodeVisual_.isExpanded(edge))
-                {
-                    final Node t = edge.getTarget();
-                    Node n = getNodeAt(t, p);
-                    if (n != null)
-                    {
-                        return n;
-                    }
-                }
+                found[0] = n;
+                return false;
             }
-        }
-        return null;
+            return true;
+        });
+        return found[0];
     }
 
     public Node getNodeAt(Point2D p)
@@ -423,6 +403,68 @@ public class GraphPanel extends JPanel
         return graph_;
     }
 
+    /**
+     * Gets the subtree aggregates of the graph, created on the first call.<br>
+     * Maintained aggregates make all modifications of a {@link com.bw.jgraph.graph.ConcurrentGraph} exclusive,
+     * so they are only created if someone reads them. The geometry forwards visibility changes only to existing
+     * aggregates, on creation the nodes hidden so far are taken over.
+     */
+    public SubtreeAggregates getSubtreeAggregates()
+    {
+        if (graph_.hasSubtreeAggregates())
+        {
+            return graph_.getSubtreeAggregates();
+        }
+        SubtreeAggregates aggregates = graph_.getSubtreeAggregates();
+        if (geo_ != null)
+        {
+            graph_.nodeStream().forEach(n -> {
+                if (!geo_.isVisible(n))
+                {
+                    aggregates.setVisible(n, false);
+                }
+            });
+        }
+        return aggregates;
+    }
+
+    /**
+     * Switches between synchronous and asynchronous updates.<br>
+     * Synchronous (the default) updates the layout inside the modifying call. Asynchronous updates queue the
+     * changes and update the layout later on the event dispatch thread, so a thread that modifies the graph
+     * is not slowed down by the layout and repeated changes result in fewer layouts.
+     *
+     * @param capacity The capacity of the event queue, see {@link GraphEventDispatcher}.
+     */
+    public void setAsynchronousUpdates(boolean async, int capacity)
+    {
+        if (dispatcher_ != null)
+        {
+            dispatcher_.close();
+            dispatcher_ = null;
+        }
+        else
+        {
+            graph_.removeGraphListener(graphListener_);
+        }
+        if (async)
+        {
+            dispatcher_ = new GraphEventDispatcher(graph_, graphListener_, SwingUtilities::invokeLater, capacity);
+        }
+        else
+        {
+            graph_.addGraphListener(graphListener_);
+        }
+    }
+
+    /**
+     * Gets the dispatcher of asynchronous updates, null if updates are synchronous.
+     */
+    public GraphEventDispatcher getEventDispatcher()
+    {
+        return dispatcher_;
+    }
+
     public void startNodeDrag()
     {
         dragging_ = true;
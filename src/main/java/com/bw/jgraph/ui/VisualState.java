@@ -17,7 +17,10 @@ public class VisualState
 	 */
 	public Rectangle2D.Float boundingBox;
 
-	public Map<Integer, Connector> connectors;
+	/**
+	 * Connectors by target node, compared by identity (see {@link Node#equals(Object)}).
+	 */
+	public Map<Node, Connector> connectors;
 
 	/**
 	 * Visible or hidden
@@ -51,12 +54,17 @@ public class VisualState
 		return bestMatch;
 	}
 
-    public Connector getConnector(Node target) {
-		Connector c = this.connectors.get(target.id);
+	/**
+	 * Gets the connector to the target, creates it if missing.
+	 *
+	 * @param parent The node of this state.
+	 */
+	public Connector getConnector(Node parent, Node target) {
+		Connector c = this.connectors.get(target);
 		if ( c == null) {
-			c = new Connector(target.id);
-			this.connectors.put(target.id, c);
+			c = new Connector(parent);
+			this.connectors.put(target, c);
 		}
 		return c;
-    }
+	}
 }
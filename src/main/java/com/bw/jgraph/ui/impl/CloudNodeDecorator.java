@@ -2,6 +2,7 @@ package com.bw.jgraph.ui.impl;
 
 import com.bw.jgraph.geometry.ConvexHull;
 import com.bw.jgraph.graph.GraphElement;
+import com.bw.jgraph.graph.IdTable;
 import com.bw.jgraph.graph.Node;
 import com.bw.jgraph.ui.Geometry;
 import com.bw.jgraph.ui.GeometryListener;
@@ -15,11 +16,9 @@ import java.awt.Point;
 import java.awt.Stroke;
 import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 
@@ -42,7 +41,7 @@ public class CloudNodeDecorator implements NodeDecorator, GeometryListener
 		}
 	}
 
-	private final Map<Integer, PathInfo> paths = new HashMap<>();
+	private final IdTable<PathInfo> paths = new IdTable<>();
 
 	public CloudNodeDecorator(Geometry geometry)
 	{
@@ -54,14 +53,14 @@ public class CloudNodeDecorator implements NodeDecorator, GeometryListener
 	{
 		// All sub nodes affect the convex hull, so we depend on them
 		geo.addDependency(this, node.getTreeNodes());
-		paths.put(node.id, new PathInfo(new Path2D.Float(), geo.isVisible(node)));
+		paths.put(node, new PathInfo(new Path2D.Float(), geo.isVisible(node)));
 		geometryUpdated(geo, node);
 	}
 
 	@Override
 	public void uninstall(Node node)
 	{
-		paths.remove(node.id);
+		paths.remove(node);
 		geo.removeDependency(this, node.getTreeNodes());
 	}
 
@@ -69,7 +68,7 @@ public class CloudNodeDecorator implements NodeDecorator, GeometryListener
 	@Override
 	public void decorate(GraphicContext ctx, Node node)
 	{
-		PathInfo pi = paths.get(node.id);
+		PathInfo pi = paths.get(node);
 		if (pi != null)
 		{
 			Path2D.Float p = pi.path;
@@ -90,7 +89,7 @@ public class CloudNodeDecorator implements NodeDecorator, GeometryListener
 	@Override
 	public Rectangle2D.Float getBounds(Node node)
 	{
-		PathInfo pi = paths.get(node.id);
+		PathInfo pi = paths.get(node);
 		if (pi != null)
 		{
 			Rectangle2D.Float r = new Rectangle2D.Float();
@@ -102,7 +101,7 @@ public class CloudNodeDecorator implements NodeDecorator, GeometryListener
 
 	private void collectRelevantNodes(Set<Node> nodeWithPaths, Node inner)
 	{
-		if (paths.containsKey(inner.id))
+		if (paths.containsKey(inner))
 		{
 			nodeWithPaths.add(inner);
 		}
@@ -123,7 +122,7 @@ public class CloudNodeDecorator implements NodeDecorator, GeometryListener
 
 		for (Node node : toUpdate)
 		{
-			PathInfo pi = paths.get(node.id);
+			PathInfo pi = paths.get(node);
 			if (geo.isVisible(node))
 			{
 				Point[] pts = ConvexHull.convex_hull_graham_andrew(geo.getTreePoints(node));
@@ -216,7 +215,7 @@ public class CloudNodeDecorator implements NodeDecorator, GeometryListener
 					if (pi == null)
 					{
 						pi = new PathInfo(path, true);
-						paths.put(node.id, pi);
+						paths.put(node, pi);
 					}
 					else
 					{
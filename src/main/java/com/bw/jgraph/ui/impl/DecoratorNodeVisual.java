@@ -2,6 +2,7 @@ package com.bw.jgraph.ui.impl;
 
 import com.bw.jgraph.graph.Edge;
 import com.bw.jgraph.graph.GraphElement;
+import com.bw.jgraph.graph.IdTable;
 import com.bw.jgraph.graph.Node;
 import com.bw.jgraph.ui.Geometry;
 import com.bw.jgraph.ui.GraphicContext;
@@ -14,19 +15,17 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.util.HashMap;
-import java.util.Map;
 
 public class DecoratorNodeVisual extends NodeVisualBase
 {
 
-    final Map<Integer, NodeDecorator> decorators = new HashMap<>();
+    final IdTable<NodeDecorator> decorators = new IdTable<>();
     final NodeVisual nodeVisual;
 
     @Override
     public void paint(GraphicContext ctx, Node node)
     {
-        NodeDecorator d = decorators.get(node.id);
+        NodeDecorator d = decorators.get(node);
         if (d != null)
         {
             d.decorate(ctx, node);
@@ -46,7 +45,7 @@ public class DecoratorNodeVisual extends NodeVisualBase
         Rectangle2D.Float r = nodeVisual.getVisualBounds(node);
         if (!Geometry.isEmpty(r))
         {
-            NodeDecorator d = decorators.get(node.id);
+            NodeDecorator d = decorators.get(node);
             if (d != null)
             {
                 Rectangle2D.Float r2 = d.getBounds(node);
@@ -136,7 +135,7 @@ public class DecoratorNodeVisual extends NodeVisualBase
 
     public void addDecorator(Node node, NodeDecorator nd)
     {
-        NodeDecorator d = decorators.get(node.id);
+        NodeDecorator d = decorators.get(node);
         if (d != null)
         {
             if (d instanceof NodeDecoratorComposer)
@@ -145,19 +144,19 @@ public class DecoratorNodeVisual extends NodeVisualBase
             }
             else
             {
-                decorators.put(node.id, new NodeDecoratorComposer(d, nd));
+                decorators.put(node, new NodeDecoratorComposer(d, nd));
             }
         }
         else
         {
-            decorators.put(node.id, nd);
+            decorators.put(node, nd);
         }
         nd.install(node);
     }
 
     public void removeDecorator(Node node, NodeDecorator nd)
     {
-        NodeDecorator d = decorators.remove(node.id);
+        NodeDecorator d = decorators.remove(node);
         if (d != null)
         {
             if (d instanceof NodeDecoratorComposer)
@@ -166,12 +165,12 @@ public class DecoratorNodeVisual extends NodeVisualBase
                 dc.removeDecorator(nd);
                 if (dc.size() > 0)
                 {
-                    decorators.put(node.id, dc);
+                    decorators.put(node, dc);
                 }
             }
             else if (d != nd)
             {
-                decorators.put(node.id, d);
+                decorators.put(node, d);
             }
             nd.uninstall(node);
         }
@@ -1,5 +1,6 @@
 package com.bw.jgraph.ui.impl;
 
+import com.bw.jgraph.graph.IdTable;
 import com.bw.jgraph.graph.Node;
 import com.bw.jgraph.ui.Geometry;
 import com.bw.jgraph.ui.GraphicContext;
@@ -14,8 +15,6 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Visual that manages a JLabel for each node. Inheritances should override
@@ -24,7 +23,7 @@ import java.util.Map;
 public class NodeLabelVisual extends NodeVisualBase
 {
 
-	protected Map<Integer, JLabel> renderer = new HashMap<>();
+	protected IdTable<JLabel> renderer = new IdTable<>();
 
 	public NodeLabelVisual(Layout layout, VisualSettings settings)
 	{
@@ -50,7 +49,7 @@ public class NodeLabelVisual extends NodeVisualBase
 
 		paintBorder(ctx, node, s, r);
 
-		JLabel l = renderer.get(node.id);
+		JLabel l = renderer.get(node);
 		if (l != null)
 		{
 			String text = (String) node.getAttribute(NODE_TEXT);
@@ -85,11 +84,11 @@ public class NodeLabelVisual extends NodeVisualBase
 
 		String text = (String) node.getAttribute(NODE_TEXT);
 
-		JLabel l = renderer.get(node.id);
+		JLabel l = renderer.get(node);
 		if (l == null)
 		{
 			l = createRenderer();
-			renderer.put(node.id, l);
+			renderer.put(node, l);
 		}
 		l.setText(text);
 		l.setFont(g.getFont());
@@ -123,7 +123,7 @@ public class NodeVisualBase implements NodeVisual
 		if (edge != null)
 		{
 			VisualState s = getGeometry().getVisualState(edge.getSource());
-			Connector c = s.connectors.get(edge.getTarget().id);
+			Connector c = s.connectors.get(edge.getTarget());
 			return c != null && c.expanded;
 		}
 		return false;
@@ -134,7 +134,7 @@ public class NodeVisualBase implements NodeVisual
 	{
 		final Node node = edge.getSource();
 		VisualState state = getState(node);
-		Connector c = state.getConnector(edge.getTarget());
+		Connector c = state.getConnector(node, edge.getTarget());
 		if (expand != c.expanded)
 		{
 			geo.beginUpdate();
@@ -197,7 +197,7 @@ public class NodeVisualBase implements NodeVisual
 		// @TODO: for now only outgoing
 		for (Iterator<Node> ci = node.children(); ci.hasNext(); )
 		{
-			Connector c = state.connectors.get(ci.next().id);
+			Connector c = state.connectors.get(ci.next());
 			if (c != null)
 			{
 				final Icon img = c.expanded ? collapseIcon : expandIcon;
@@ -328,7 +328,7 @@ public class NodeVisualBase implements NodeVisual
 			for (Iterator<Edge> it = node.outgoing(true); it.hasNext(); )
 			{
 				Edge edge = it.next();
-				Connector c2 = s.connectors.get(edge.getTarget().id);
+				Connector c2 = s.connectors.get(edge.getTarget());
 				if (c2 != null && c2.xOffset == c.xOffset && c2.yOffset == c.yOffset)
 				{
 					expand(edge, newExpanded);
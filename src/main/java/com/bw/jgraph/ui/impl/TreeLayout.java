@@ -1,6 +1,10 @@
 package com.bw.jgraph.ui.impl;
 
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.ElementSet;
 import com.bw.jgraph.graph.Node;
+import com.bw.jgraph.graph.TraversalOrder;
+import com.bw.jgraph.graph.TreeWalker;
 import com.bw.jgraph.ui.Connector;
 import com.bw.jgraph.ui.Geometry;
 import com.bw.jgraph.ui.Layout;
@@ -9,6 +13,12 @@ import com.bw.jgraph.ui.VisualState;
 import java.awt.geom.Rectangle2D;
 import java.util.Iterator;
 
+/**
+ * Places the children of a node right of the node, one below the other.<br>
+ * Nodes with several parents are placed once per pass: the first parent in pre-order owns the node and
+ * places it, for the other parents only the connector is created. The owning edges are collected at
+ * the start of a pass.
+ */
 public class TreeLayout implements Layout
 {
 
@@ -16,6 +26,11 @@ public class TreeLayout implements Layout
 	int gap_y = 10;
 	Geometry geo;
 
+	/** Nodes and owning edges of the running pass. */
+	private final ElementSet tree_ = new ElementSet();
+	private final TreeWalker walker_ = new TreeWalker();
+	private int pass_ = 0;
+
 	public TreeLayout(Geometry m)
 	{
 		geo = m;
@@ -39,51 +54,65 @@ public class TreeLayout implements Layout
 			Rectangle2D.Float r = nodeState.boundingBox;
 			if ( r == null)
 				return;
-			Rectangle2D.Float tr = recalculateSubTree(node);
-			float th = tr.height;
+			beginPass(node);
+			try
+			{
+				Rectangle2D.Float tr = recalculateSubTree(node);
+				float th = tr.height;
 
-			// Correct tree position to calculated offsets
-			tr.y = r.y;
-			tr.x = r.x;
+				// Correct tree position to calculated offsets
+				tr.y = r.y;
+				tr.x = r.x;
 
-			float x = r.x + 5 * gap_x + r.width;
-			float y;
-			if (th > r.height)
-			{
-				y = r.y - (th - r.height) / 2;
-			}
-			else
-			{
-				int sh = 0;
-				for (Iterator<Node> c = node.children(); c.hasNext(); )
+				final int count = node.getOutgoingCount(false);
+				float x = r.x + 5 * gap_x + r.width;
+				float y;
+				if (th > r.height)
+				{
+					y = r.y - (th - r.height) / 2;
+				}
+				else
+				{
+					int sh = 0;
+					for (int i = 0; i < count; ++i)
+					{
+						final Edge e = node.getOutgoing(i);
+						Rectangle2D cr = subTreeBounds(e.getTarget());
+						if (tree_.contains(e) && cr != null)
+						{
+							sh += cr.getHeight() + gap_y;
+						}
+					}
+					y = r.y + ((th - sh + gap_y) / 2);
+				}
+
+				for (int i = 0; i < count; ++i)
 				{
-					Node cn = c.next();
+					final Edge e = node.getOutgoing(i);
+					final Node cn = e.getTarget();
 					VisualState state = geo.getVisualState(cn);
-					Rectangle2D cr = geo.getGraphBounds(cn);
-					if (state.visible && cr != null)
+					if (state.visible && tree_.contains(e))
 					{
-						sh += cr.getHeight() + gap_y;
+						Rectangle2D.Float rn = new Rectangle2D.Float(x, y, state.boundingBox.width, state.boundingBox.height);
+						geo.setBounds(cn, rn);
+						this.placeChildren(cn);
+						Rectangle2D cr = subTreeBounds(cn);
+						y += cr.getHeight() + gap_y;
 					}
 				}
-				y = r.y + ((th - sh + gap_y) / 2);
+			}
+			finally
+			{
+				endPass();
 			}
 
 			for (Iterator<Node> c = node.children(); c.hasNext(); )
 			{
 				Node cn = c.next();
-				VisualState state = geo.getVisualState(cn);
-				if (state.visible)
-				{
-					Rectangle2D.Float rn = new Rectangle2D.Float(x, y, state.boundingBox.width, state.boundingBox.height);
-					geo.setBounds(cn, rn);
-					this.placeChildren(cn);
-					Rectangle2D cr = geo.getGraphBounds(cn);
-					y += cr.getHeight() + gap_y;
-				}
-				Connector ct = nodeState.connectors.get(cn.id);
+				Connector ct = nodeState.connectors.get(cn);
 				if (ct == null)
 				{
-					nodeState.connectors.put(cn.id, ct = new Connector(node.id));
+					nodeState.connectors.put(cn, ct = new Connector(node));
 					ct.expanded = false;
 					ct.xOffset = r.width;
 					ct.yOffset = r.height / 2f;
@@ -96,48 +125,108 @@ public class TreeLayout implements Layout
 
 	public Rectangle2D.Float calculateSubTree(Node node)
 	{
-		Rectangle2D.Float r = geo.getGraphBounds(node);
-		if (r == null)
+		beginPass(node);
+		try
 		{
-			r = recalculateSubTree(node);
+			Rectangle2D.Float r = subTreeBounds(node);
+			if (r == null)
+			{
+				r = recalculateSubTree(node);
+			}
+			return r;
+		}
+		finally
+		{
+			endPass();
 		}
-		return r;
 	}
 
 	public Rectangle2D.Float recalculateSubTree(Node node)
 	{
-		Rectangle2D.Float r = new Rectangle2D.Float();
-		r.setRect(geo.getBounds(node));
-		float h = 0;
-		float w = 0;
-		for (Iterator<Node> c = node.children(); c.hasNext(); )
+		beginPass(node);
+		try
 		{
-			Node cn = c.next();
-			VisualState state = geo.getVisualState(cn);
-			if (state.visible && state.boundingBox != null)
+			Rectangle2D.Float r = new Rectangle2D.Float();
+			r.setRect(geo.getBounds(node));
+			float h = 0;
+			float w = 0;
+			final int count = node.getOutgoingCount(false);
+			for (int i = 0; i < count; ++i)
 			{
-				Rectangle2D tr = calculateSubTree(cn);
-				h += tr.getHeight() + gap_y;
-				if (w < tr.getWidth())
+				final Edge e = node.getOutgoing(i);
+				VisualState state = geo.getVisualState(e.getTarget());
+				if (state.visible && state.boundingBox != null && tree_.contains(e))
 				{
-					w = (float) tr.getWidth();
+					Rectangle2D tr = calculateSubTree(e.getTarget());
+					h += tr.getHeight() + gap_y;
+					if (w < tr.getWidth())
+					{
+						w = (float) tr.getWidth();
+					}
 				}
 			}
+			if (h > 0)
+			{
+				h -= gap_y;
+			}
+
+			if (h > r.height)
+			{
+				r.height = h;
+			}
+			if (w > 0)
+			{
+				r.width += gap_x + w;
+			}
+
+			return r;
 		}
-		if (h > 0)
+		finally
 		{
-			h -= gap_y;
+			endPass();
 		}
+	}
 
-		if (h > r.height)
+	/**
+	 * Starts a pass if none is running. Collects the owning edges along the visible nodes.
+	 */
+	private void beginPass(Node root)
+	{
+		if (pass_++ == 0)
 		{
-			r.height = h;
+			walker_.collectTree(root, e -> geo.getVisualState(e.getTarget()).visible, tree_);
 		}
-		if (w > 0)
+	}
+
+	private void endPass()
+	{
+		if (--pass_ == 0)
 		{
-			r.width += gap_x + w;
+			tree_.clear();
 		}
+	}
 
-		return r;
+	/**
+	 * Gets the union of the bounds of the node and the nodes it owns in the running pass.
+	 */
+	private Rectangle2D.Float subTreeBounds(Node node)
+	{
+		final Rectangle2D.Float r = geo.getBounds(node);
+		if (r == null)
+		{
+			return null;
+		}
+		final Rectangle2D.Float u = new Rectangle2D.Float();
+		u.setRect(r);
+		walker_.walk(node, TraversalOrder.PRE_ORDER, tree_::contains, n ->
+		{
+			final Rectangle2D.Float b = geo.getBounds(n);
+			if (b != null)
+			{
+				Rectangle2D.union(u, b, u);
+			}
+			return true;
+		});
+		return u;
 	}
 }
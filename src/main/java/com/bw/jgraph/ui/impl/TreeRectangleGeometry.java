@@ -3,7 +3,10 @@ package com.bw.jgraph.ui.impl;
 import com.bw.jgraph.graph.Edge;
 import com.bw.jgraph.graph.Graph;
 import com.bw.jgraph.graph.GraphElement;
+import com.bw.jgraph.graph.IdTable;
 import com.bw.jgraph.graph.Node;
+import com.bw.jgraph.graph.TraversalOrder;
+import com.bw.jgraph.graph.TreeWalker;
 import com.bw.jgraph.ui.Connector;
 import com.bw.jgraph.ui.Geometry;
 import com.bw.jgraph.ui.GeometryListener;
@@ -14,7 +17,7 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,7 +34,10 @@ public class TreeRectangleGeometry implements Geometry
 	int update = 0;
 	HashMap<GeometryListenerEntry, List<GraphElement>> toUpdate = new HashMap<>();
 
-	HashMap<Integer, VisualState> states = new HashMap<>();
+	IdTable<VisualState> states = new IdTable<>();
+
+	/** Used by all tree walks, each node is visited once. */
+	private final TreeWalker walker_ = new TreeWalker();
 
 	protected static class GeometryListenerEntry
 	{
@@ -59,18 +65,18 @@ public class TreeRectangleGeometry implements Geometry
 	}
 
 	private Map<GeometryListenerEntry, GeometryListenerEntry> geoListenerById = new HashMap<>();
-	private Map<Integer, List<GeometryListenerEntry>> geoListener = new HashMap<>();
+	private IdTable<List<GeometryListenerEntry>> geoListener = new IdTable<>();
 
 	@Override
 	public VisualState getVisualState(GraphElement e)
 	{
-		VisualState s = states.get(e.id);
+		VisualState s = states.get(e);
 		if (s == null)
 		{
 			s = new VisualState();
 			s.visible = true;
-			s.connectors = new HashMap<>();
-			states.put(e.id, s);
+			s.connectors = new IdentityHashMap<>();
+			states.put(e, s);
 		}
 		return s;
 	}
@@ -79,10 +85,10 @@ public class TreeRectangleGeometry implements Geometry
 	public Point2D.Float getConnectorPoint(Node n1, Node n2)
 	{
 		VisualState gs1 = getVisualState(n1);
-		Connector vc = gs1.connectors.get(n2.id);
+		Connector vc = gs1.connectors.get(n2);
 		if (vc == null)
 		{
-			vc = new Connector(n1.id);
+			vc = new Connector(n1);
 
 			VisualState gs2 = getVisualState(n2);
 
@@ -105,7 +111,7 @@ public class TreeRectangleGeometry implements Geometry
 
 			vc.yOffset = b1.height / 2;
 
-			gs1.connectors.put(n2.id, vc);
+			gs1.connectors.put(n2, vc);
 		}
 
 		return new Point2D.Float(gs1.boundingBox.x + vc.xOffset, gs1.boundingBox.y + vc.yOffset);
@@ -140,26 +146,32 @@ public class TreeRectangleGeometry implements Geometry
 			c.xOffset = (float) dx;
 			c.yOffset = (float) dy;
 
-			VisualState vs = states.get(c.parentId);
-			if (vs != null)
+			final Node parent = c.parent;
+			if (parent != null && parent.getGraph() == g)
 			{
-				// @TODO: Optimize this
-				g.getRoot()
-				 .walkTreeNodes((t) ->
-				 {
-					 if (t.id == c.parentId)
-					 {
-						 setBounds(t, vs.boundingBox);
-						 return false;
-					 }
-					 return true;
-				 });
+				VisualState vs = states.get(parent);
+				if (vs != null)
+				{
+					setBounds(parent, vs.boundingBox);
+				}
 			}
 		}
 		endUpdate();
 	}
 
+	/**
+	 * Moves the node and its descendants. Each node is moved once.
+	 */
 	protected void moveSubTreeRelative(Graph g, Node node, double dx, double dy)
+	{
+		walker_.walk(node, TraversalOrder.PRE_ORDER, null, n ->
+		{
+			moveNodeRelative(g, n, dx, dy);
+			return true;
+		});
+	}
+
+	protected void moveNodeRelative(Graph g, Node node, double dx, double dy)
 	{
 		Rectangle2D.Float ot = getBounds(node);
 		Rectangle2D.Float o = new Rectangle2D.Float();
@@ -204,10 +216,6 @@ public class TreeRectangleGeometry implements Geometry
 		{
 			setBounds(node, r);
 		}
-		for (Iterator<Node> c = node.children(); c.hasNext(); )
-		{
-			moveSubTreeRelative(g, c.next(), dx, dy);
-		}
 	}
 
 	@Override
@@ -248,43 +256,55 @@ public class TreeRectangleGeometry implements Geometry
 
 	private void addTreeDescendantPoints(List<Point> points, Node node)
 	{
-		for (Iterator<Node> c = node.children(); c.hasNext(); )
+		walker_.walk(node, TraversalOrder.PRE_ORDER, this::isTargetVisible, n ->
 		{
-			addTreePoints(points, c.next());
-		}
+			if (n != node)
+			{
+				addPoints(points, getVisualState(n));
+			}
+			return true;
+		});
 	}
 
 	private void addTreePoints(List<Point> points, Node node)
 	{
-		VisualState s = getVisualState(node);
-		if (s.visible)
+		if (getVisualState(node).visible)
 		{
-			if (s.boundingBox != null)
+			walker_.walk(node, TraversalOrder.PRE_ORDER, this::isTargetVisible, n ->
 			{
-				final Rectangle2D.Float r = s.boundingBox;
-				final int x0 = (int) r.x;
-				final int y0 = (int) r.y;
-				final int x1 = (int) (r.x + r.width - 1);
-				final int y1 = (int) (r.y + r.height - 1);
-
-				points.add(new Point(x0, y0));
-				points.add(new Point(x1, y0));
-				points.add(new Point(x1, y1));
-				points.add(new Point(x0, y1));
-			}
-			for (Iterator<Node> c = node.children(); c.hasNext(); )
-			{
-				addTreePoints(points, c.next());
-			}
+				addPoints(points, getVisualState(n));
+				return true;
+			});
 		}
+	}
 
+	private static void addPoints(List<Point> points, VisualState s)
+	{
+		if (s.boundingBox != null)
+		{
+			final Rectangle2D.Float r = s.boundingBox;
+			final int x0 = (int) r.x;
+			final int y0 = (int) r.y;
+			final int x1 = (int) (r.x + r.width - 1);
+			final int y1 = (int) (r.y + r.height - 1);
+
+			points.add(new Point(x0, y0));
+			points.add(new Point(x1, y0));
+			points.add(new Point(x1, y1));
+			points.add(new Point(x0, y1));
+		}
+	}
+
+	private boolean isTargetVisible(Edge e)
+	{
+		return getVisualState(e.getTarget()).visible;
 	}
 
 	@Override
 	public void remove(GraphElement e)
 	{
-		states.remove(e.id);
-		geoListener.remove(e.id);
+		states.remove(e);
+		geoListener.remove(e);
 	}
 
 	@Override
@@ -313,12 +333,12 @@ public class TreeRectangleGeometry implements Geometry
 
 			for (GraphElement e : ea)
 			{
-				List<GeometryListenerEntry> ll = geoListener.get(e.id);
+				List<GeometryListenerEntry> ll = geoListener.get(e);
 				if (ll == null)
 				{
 					ll = new ArrayList<>();
 					ll.add(le);
-					geoListener.put(e.id, ll);
+					geoListener.put(e, ll);
 				}
 				else
 				{
@@ -339,7 +359,7 @@ public class TreeRectangleGeometry implements Geometry
 			{
 				for (GraphElement e : ea)
 				{
-					List<GeometryListenerEntry> ll = geoListener.get(e.id);
+					List<GeometryListenerEntry> ll = geoListener.get(e);
 					if (ll != null)
 					{
 						ll.remove(le);
@@ -352,7 +372,7 @@ public class TreeRectangleGeometry implements Geometry
 	@Override
 	public void notifyDependencies(GraphElement e)
 	{
-		List<GeometryListenerEntry> ll = geoListener.get(e.id);
+		List<GeometryListenerEntry> ll = geoListener.get(e);
 		if (ll != null)
 		{
 			if (update > 0)
@@ -419,6 +439,10 @@ public class TreeRectangleGeometry implements Geometry
 		if (s.visible != visible)
 		{
 			s.visible = visible;
+			if (e instanceof Node && e.getGraph() != null && e.getGraph().hasSubtreeAggregates())
+			{
+				e.getGraph().getSubtreeAggregates().setVisible((Node) e, visible);
+			}
 			notifyDependencies(e);
 		}
 	}
@@ -439,24 +463,17 @@ public class TreeRectangleGeometry implements Geometry
 
 	public Node getIntersectingNode(Node tree, Rectangle2D r)
 	{
-		if (getBounds(tree).intersects(r))
+		final Node[] found = new Node[1];
+		walker_.walk(tree, TraversalOrder.PRE_ORDER, this::isTargetVisible, n ->
 		{
-			return tree;
-		}
-		for (Iterator<Node> it = tree.children(); it.hasNext(); )
-		{
-			tree = it.next();
-			VisualState s = getVisualState(tree);
-			if (s.visible)
+			if (getBounds(n).intersects(r))
 			{
-				Node m = getIntersectingNode(tree, r);
-				if (m != null)
-				{
-					return m;
-				}
+				found[0] = n;
+				return false;
 			}
-		}
-		return null;
+			return true;
+		});
+		return found[0];
 	}
 
 	@Override
@@ -467,14 +484,15 @@ public class TreeRectangleGeometry implements Geometry
 		{
 			Rectangle2D.Float nr = new Rectangle2D.Float();
 			nr.setRect(r);
-			for (Node c : root.getTreeDescendantNodes())
+			walker_.walk(root, TraversalOrder.PRE_ORDER, null, c ->
 			{
 				VisualState s = getVisualState(c);
-				if (s.visible)
+				if (c != root && s.visible)
 				{
 					Rectangle2D.union(nr, s.boundingBox, nr);
 				}
-			}
+				return true;
+			});
 			return nr;
 		}
 		return null;
@@ -0,0 +1,102 @@
+package com.bw.jgraph;
+
+import com.bw.jgraph.graph.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Ingests updates from several consumer threads, compares a {@link Graph} behind one global lock with a
+ * {@link ConcurrentGraph}.<br>
+ * Each consumer reads from its own queue (a local stand-in for a partition of a message broker). A message
+ * adds a new node below a node of the same partition, sets an attribute and sometimes removes an edge.<br>
+ * Usage: ConcurrentIngestBenchmark [consumers] [messagesPerConsumer] [rounds]
+ */
+public class ConcurrentIngestBenchmark {
+
+    static final Attribute OFFSET = Attribute.ofLong("benchmark.offset");
+
+    /** Message: parent index in the partition (-1 for the root), and if an edge shall be removed. */
+    record Message(int parent, boolean remove) {
+    }
+
+    static List<BlockingQueue<Message>> createPartitions(int consumers, int messages, long seed) {
+        List<BlockingQueue<Message>> partitions = new ArrayList<>();
+        Random r = new Random(seed);
+        for (int c = 0; c < consumers; ++c) {
+            BlockingQueue<Message> q = new ArrayBlockingQueue<>(messages);
+            for (int i = 0; i < messages; ++i)
+                q.add(new Message(i == 0 ? -1 : r.nextInt(i), r.nextInt(16) == 0));
+            partitions.add(q);
+        }
+        return partitions;
+    }
+
+    static void consume(Graph g, BlockingQueue<Message> partition, Object globalLock) {
+        List<Node> nodes = new ArrayList<>();
+        List<Edge> edges = new ArrayList<>();
+        long offset = 0;
+        Message m;
+        while ((m = partition.poll()) != null) {
+            Node parent = m.parent() < 0 ? g.getRoot() : nodes.get(m.parent());
+            if (parent.getGraph() != g)
+                parent = g.getRoot();
+            Node child = new Node();
+            if (globalLock != null) {
+                synchronized (globalLock) {
+                    apply(g, parent, child, m, edges, offset);
+                }
+            } else
+                apply(g, parent, child, m, edges, offset);
+            nodes.add(child);
+            ++offset;
+        }
+    }
+
+    static void apply(Graph g, Node parent, Node child, Message m, List<Edge> edges, long offset) {
+        edges.add(g.addEdge(parent, child));
+        child.setLong(OFFSET, offset);
+        if (m.remove() && edges.size() > 1)
+            g.removeEdge(edges.remove(edges.size() - 2));
+    }
+
+    static long run(Graph g, int consumers, int messages, boolean globalLock) throws InterruptedException {
+        g.setRoot(new Node());
+        List<BlockingQueue<Message>> partitions = createPartitions(consumers, messages, 4711);
+        Object lock = globalLock ? new Object() : null;
+        Thread[] threads = new Thread[consumers];
+        long t0 = System.nanoTime();
+        for (int c = 0; c < consumers; ++c) {
+            BlockingQueue<Message> partition = partitions.get(c);
+            threads[c] = new Thread(() -> consume(g, partition, lock));
+            threads[c].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        return System.nanoTime() - t0;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final int consumers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final int messages = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.println(consumers + " consumers, " + messages + " messages each");
+        long bestGlobal = Long.MAX_VALUE;
+        long bestConcurrent = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; ++i) {
+            Graph g = new Graph();
+            bestGlobal = Math.min(bestGlobal, run(g, consumers, messages, true));
+            ConcurrentGraph cg = new ConcurrentGraph();
+            bestConcurrent = Math.min(bestConcurrent, run(cg, consumers, messages, false));
+            if (g.nodeCount() != cg.nodeCount() || g.edgeCount() != cg.edgeCount())
+                throw new IllegalStateException("Graphs differ: " + g.nodeCount() + "/" + g.edgeCount()
+                        + " vs " + cg.nodeCount() + "/" + cg.edgeCount());
+        }
+        System.out.printf("%-40s %10.2f ms%n", "Graph, global lock", bestGlobal / 1e6);
+        System.out.printf("%-40s %10.2f ms%n", "ConcurrentGraph", bestConcurrent / 1e6);
+    }
+}
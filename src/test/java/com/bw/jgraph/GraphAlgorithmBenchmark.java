@@ -0,0 +1,145 @@
+package com.bw.jgraph;
+
+import com.bw.jgraph.graph.*;
+import com.bw.jgraph.graph.algo.GraphSearch;
+import com.bw.jgraph.graph.algo.ShortestPaths;
+import com.bw.jgraph.graph.algo.StronglyConnectedComponents;
+import com.bw.jgraph.graph.algo.TopologicalSort;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Compares the algorithms of {@link com.bw.jgraph.graph.algo} with the "copy-out" approach:
+ * copying the graph into boxed adjacency maps and running the algorithms there (as done for
+ * general purpose graph libraries).<br>
+ * Usage: GraphAlgorithmBenchmark [nodeCount] [extraEdgesPerNode] [rounds]
+ */
+public class GraphAlgorithmBenchmark {
+
+    static final Attribute WEIGHT = Attribute.ofDouble("benchmark.weight");
+
+    /** Adjacency of the copy-out approach: target ids and weights by source id. */
+    static final class Copy {
+        final Map<Integer, List<Integer>> targets = new HashMap<>();
+        final Map<Integer, List<Double>> weights = new HashMap<>();
+    }
+
+    static Copy copyOut(Graph g) {
+        Copy c = new Copy();
+        g.nodeStream().forEach(n -> {
+            List<Integer> t = new ArrayList<>();
+            List<Double> w = new ArrayList<>();
+            for (int i = 0; i < n.getOutgoingCount(true); ++i) {
+                Edge e = n.getOutgoing(i);
+                t.add(e.getTarget().getId());
+                w.add(e.getDouble(WEIGHT));
+            }
+            c.targets.put(n.getId(), t);
+            c.weights.put(n.getId(), w);
+        });
+        return c;
+    }
+
+    static int copyBfs(Copy c, int start) {
+        Map<Integer, Boolean> visited = new HashMap<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        visited.put(start, Boolean.TRUE);
+        int count = 0;
+        while (!queue.isEmpty()) {
+            Integer n = queue.poll();
+            ++count;
+            for (Integer t : c.targets.get(n)) {
+                if (visited.putIfAbsent(t, Boolean.TRUE) == null)
+                    queue.add(t);
+            }
+        }
+        return count;
+    }
+
+    static Map<Integer, Double> copyDijkstra(Copy c, int start) {
+        Map<Integer, Double> dist = new HashMap<>();
+        PriorityQueue<Map.Entry<Integer, Double>> queue = new PriorityQueue<>(Map.Entry.comparingByValue());
+        dist.put(start, 0.0);
+        queue.add(Map.entry(start, 0.0));
+        while (!queue.isEmpty()) {
+            Map.Entry<Integer, Double> top = queue.poll();
+            if (top.getValue() > dist.get(top.getKey()))
+                continue;
+            List<Integer> t = c.targets.get(top.getKey());
+            List<Double> w = c.weights.get(top.getKey());
+            for (int i = 0; i < t.size(); ++i) {
+                double nd = top.getValue() + w.get(i);
+                Double od = dist.get(t.get(i));
+                if (od == null || nd < od) {
+                    dist.put(t.get(i), nd);
+                    queue.add(Map.entry(t.get(i), nd));
+                }
+            }
+        }
+        return dist;
+    }
+
+    interface Run {
+        long run();
+    }
+
+    static long time(String name, int rounds, Run r) {
+        long result = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; ++i) {
+            long t0 = System.nanoTime();
+            result = r.run();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        System.out.printf("%-40s %10.2f ms  (result %d)%n", name, best / 1e6, result);
+        return result;
+    }
+
+    public static void main(String[] args) {
+        final int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final int extra = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        int[][] edges = GraphFootprintBenchmark.createEdges(nodeCount, extra, 4711);
+        GraphBuilder b = new GraphBuilder();
+        b.addNodes(nodeCount);
+        b.addEdges(edges[0], edges[1]);
+        b.setRoot(0);
+        Graph g = b.build();
+        Random r = new Random(42);
+        for (int i = 0; i < edges[0].length; ++i)
+            b.getEdge(i).setDouble(WEIGHT, 1 + r.nextInt(100));
+        Node root = g.getRoot();
+        System.out.println(nodeCount + " nodes, " + edges[0].length + " edges");
+
+        long a = time("BFS copy-out (incl. copy)", rounds, () -> copyBfs(copyOut(g), root.getId()));
+        long c = time("BFS algo", rounds, () -> GraphSearch.breadthFirst(root).length);
+        check(a == c, "BFS");
+
+        Copy copy = copyOut(g);
+        time("BFS copy-out (copy excluded)", rounds, () -> copyBfs(copy, root.getId()));
+
+        a = time("Dijkstra copy-out (incl. copy)", rounds, () -> copyDijkstra(copyOut(g), root.getId()).size());
+        c = time("Dijkstra algo", rounds, () -> {
+            ShortestPaths sp = ShortestPaths.dijkstra(root, WEIGHT);
+            return g.nodeStream().filter(n -> sp.getDistance(n) != Double.POSITIVE_INFINITY).count();
+        });
+        check(a == c, "Dijkstra");
+        time("Dijkstra copy-out (copy excluded)", rounds, () -> copyDijkstra(copy, root.getId()).size());
+
+        time("Topological sort (acyclic edges)", rounds, () -> TopologicalSort.sortAcyclic(g).length);
+        time("Tarjan SCC", rounds, () -> StronglyConnectedComponents.of(g).count());
+    }
+
+    static void check(boolean ok, String name) {
+        if (!ok)
+            throw new IllegalStateException(name + ": results differ");
+    }
+}
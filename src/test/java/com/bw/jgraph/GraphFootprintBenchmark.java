@@ -0,0 +1,104 @@
+package com.bw.jgraph;
+
+import com.bw.jgraph.graph.*;
+
+import java.lang.ref.Reference;
+import java.util.Random;
+
+/**
+ * Compares the heap footprint of the object graph model with {@link CompactGraph}.<br>
+ * Run with a fixed heap (e.g. -Xmx4g) to get stable numbers.
+ * Usage: GraphFootprintBenchmark [nodeCount] [extraEdgesPerNode]<br>
+ * Remind that the cyclic-check of the object model gets expensive for extra (non-tree) edges.
+ */
+public class GraphFootprintBenchmark {
+
+    static final Attribute WEIGHT = Attribute.ofInt("weight");
+
+    static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 5; ++i) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Creates random edges: node i>0 gets a parent with a lower index (a tree),
+     * plus some additional random edges.
+     */
+    static int[][] createEdges(int nodeCount, int extra, long seed) {
+        Random r = new Random(seed);
+        int edgeCount = (nodeCount - 1) + extra * nodeCount;
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        int e = 0;
+        for (int n = 1; n < nodeCount; ++n) {
+            sources[e] = r.nextInt(n);
+            targets[e++] = n;
+        }
+        while (e < edgeCount) {
+            sources[e] = r.nextInt(nodeCount);
+            targets[e++] = r.nextInt(nodeCount);
+        }
+        return new int[][]{sources, targets};
+    }
+
+    public static void main(String[] args) {
+        final int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final int extra = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        int[][] edges = createEdges(nodeCount, extra, 4711);
+        final int edgeCount = edges[0].length;
+
+        long base = usedHeap();
+        Node[] nodes = new Node[nodeCount];
+        for (int i = 0; i < nodeCount; ++i) {
+            nodes[i] = GraphUtil.createTextNode(Integer.toString(i));
+        }
+        Graph objectGraph = new Graph();
+        for (int i = 0; i < edgeCount; ++i) {
+            Edge e = new Edge(nodes[edges[0][i]], nodes[edges[1][i]]);
+            e.setInt(WEIGHT, i);
+        }
+        objectGraph.setRoot(nodes[0]);
+        nodes = null;
+        long objectBytes = usedHeap() - base;
+        Reference.reachabilityFence(objectGraph);
+        report("Object model", objectBytes, nodeCount, edgeCount);
+        objectGraph = null;
+
+        base = usedHeap();
+        CompactGraph compact = new CompactGraph(nodeCount, edges[0], edges[1], 0);
+        for (int i = 0; i < nodeCount; ++i) {
+            compact.getNodeAt(i).setAttribute(GraphUtil.TEXT_ATTRIBUTE, Integer.toString(i));
+        }
+        for (int i = 0; i < edgeCount; ++i) {
+            compact.getEdgeAt(i).setInt(WEIGHT, i);
+        }
+        long compactBytes = usedHeap() - base;
+        Reference.reachabilityFence(compact);
+        report("CompactGraph (all views materialized)", compactBytes, nodeCount, edgeCount);
+        compact = null;
+
+        base = usedHeap();
+        compact = new CompactGraph(nodeCount, edges[0], edges[1], 0);
+        long structureBytes = usedHeap() - base;
+        report("CompactGraph (structure only)", structureBytes, nodeCount, edgeCount);
+
+        int children = 0;
+        for (var it = compact.getRoot().children(); it.hasNext(); it.next())
+            ++children;
+        System.out.println("Root has " + children + " children");
+    }
+
+    static void report(String name, long bytes, int nodeCount, int edgeCount) {
+        System.out.printf("%-40s %,14d bytes, %8.1f bytes/edge, %8.1f bytes/node%n",
+                name, bytes, bytes / (double) edgeCount, bytes / (double) nodeCount);
+    }
+}
@@ -0,0 +1,102 @@
+package com.bw.jgraph;
+
+import com.bw.jgraph.graph.*;
+import com.bw.jgraph.io.GraphReader;
+import com.bw.jgraph.io.GraphWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Measures the heap allocation of {@link GraphSerializer} per written and read element.<br>
+ * Uses the allocation counter of the current thread, so run it on a HotSpot VM.
+ * Writing goes to a discarding channel, so only the serializer and the codec are counted.
+ * Reading includes the new graph itself.<br>
+ * Usage: SerializerAllocationBenchmark [nodeCount] [extraEdgesPerNode] [rounds]
+ */
+public class SerializerAllocationBenchmark {
+
+    static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Channel that drops all bytes. */
+    static final class NullChannel implements WritableByteChannel {
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    interface Task {
+        void run() throws IOException;
+    }
+
+    static void measure(String name, int rounds, long elements, Task task) throws IOException {
+        long bestBytes = Long.MAX_VALUE;
+        long bestTime = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; ++r) {
+            long id = Thread.currentThread().getId();
+            long a = THREADS.getThreadAllocatedBytes(id);
+            long t = System.nanoTime();
+            task.run();
+            bestTime = Math.min(bestTime, System.nanoTime() - t);
+            bestBytes = Math.min(bestBytes, THREADS.getThreadAllocatedBytes(id) - a);
+        }
+        System.out.printf("%-8s %10.2f ms %12.1f MB %8.1f bytes/element%n",
+                name, bestTime / 1e6, bestBytes / 1e6, (double) bestBytes / elements);
+    }
+
+    public static void main(String[] args) throws IOException {
+        final int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        final int extra = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        int[][] edges = GraphFootprintBenchmark.createEdges(nodeCount, extra, 4711);
+        GraphBuilder b = new GraphBuilder();
+        b.addNodes(nodeCount);
+        b.addEdges(edges[0], edges[1]);
+        b.setRoot(0);
+        Graph g = b.build();
+        final long elements = nodeCount + (long) edges[0].length;
+        System.out.println(nodeCount + " nodes, " + edges[0].length + " edges");
+
+        GraphSerializer serializer = new GraphSerializer();
+        NullChannel sink = new NullChannel();
+        measure("write", rounds, elements, () -> {
+            try (GraphWriter o = new GraphWriter(sink)) {
+                serializer.write(o, g, 1);
+            }
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GraphWriter o = new GraphWriter(out)) {
+            serializer.write(o, g, 1);
+        }
+        byte[] data = out.toByteArray();
+        System.out.println(data.length + " bytes");
+        measure("read", rounds, elements, () -> {
+            try (GraphReader i = new GraphReader(new ByteArrayInputStream(data))) {
+                if (serializer.read(i) == null)
+                    throw new IllegalStateException("No graph read");
+            }
+        });
+    }
+}
@@ -0,0 +1,136 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the columns of {@link AttributeStore} with a map per attribute, for sparse and dense usage.
+ */
+public class AttributeStoreTest {
+
+    static final Attribute COLOR = Attribute.getAttribute("attributeStoreTest.color");
+    static final Attribute NAME = Attribute.getAttribute("attributeStoreTest.name");
+
+    static void check(AttributeStore store, Attribute a, Map<Integer, Object> expected, int rows) {
+        assertEquals(expected.size(), store.size(a));
+        for (int row = 0; row < rows; ++row) {
+            assertEquals(expected.get(row), store.get(row, a), "Row " + row);
+            assertEquals(expected.containsKey(row), store.has(row, a));
+        }
+        Map<Integer, Object> scanned = new HashMap<>();
+        store.forEach(a, (v, row) -> assertNull(scanned.put(row, v)));
+        assertEquals(expected, scanned);
+    }
+
+    static void randomEdits(int rows, int steps, long seed) {
+        Random r = new Random(seed);
+        AttributeStore store = new AttributeStore();
+        Map<Integer, Object> colors = new HashMap<>();
+        Map<Integer, Object> names = new HashMap<>();
+        for (int step = 0; step < steps; ++step) {
+            int row = r.nextInt(rows);
+            switch (r.nextInt(6)) {
+                case 0, 1, 2 -> {
+                    String v = "c" + r.nextInt(100);
+                    store.set(row, COLOR, v);
+                    colors.put(row, v);
+                }
+                case 3 -> {
+                    store.set(row, NAME, "n" + row);
+                    names.put(row, "n" + row);
+                }
+                case 4 -> {
+                    store.set(row, COLOR, null);
+                    colors.remove(row);
+                }
+                default -> {
+                    store.clear(row);
+                    colors.remove(row);
+                    names.remove(row);
+                }
+            }
+        }
+        check(store, COLOR, colors, rows);
+        check(store, NAME, names, rows);
+        for (int row = 0; row < rows; ++row) {
+            Set<Attribute> attributes = new HashSet<>();
+            for (Iterator<Attribute> it = store.attributes(row); it.hasNext(); )
+                attributes.add(it.next());
+            assertEquals(colors.containsKey(row), attributes.contains(COLOR));
+            assertEquals(names.containsKey(row), attributes.contains(NAME));
+        }
+    }
+
+    @Test
+    public void sparseColumns() {
+        // Few values in many rows, the columns stay sparse.
+        randomEdits(100_000, 500, 1);
+    }
+
+    @Test
+    public void stridedRows() {
+        // Rows with many equal low bits, e.g. one attribute per block of ids.
+        AttributeStore store = new AttributeStore();
+        Map<Integer, Object> colors = new HashMap<>();
+        for (int i = 0; i < 3000; ++i) {
+            store.set(i << 10, COLOR, "c" + i);
+            colors.put(i << 10, "c" + i);
+        }
+        for (int i = 0; i < 3000; i += 3) {
+            store.set(i << 10, COLOR, null);
+            colors.remove(i << 10);
+        }
+        assertEquals(colors.size(), store.size(COLOR));
+        for (int i = 0; i < 3000; ++i) {
+            assertEquals(colors.get(i << 10), store.get(i << 10, COLOR));
+            assertNull(store.get((i << 10) + 1, COLOR));
+        }
+    }
+
+    @Test
+    public void denseColumns() {
+        // Most rows get values, the columns become dense and span several chunks.
+        randomEdits(5000, 40_000, 2);
+    }
+
+    @Test
+    public void elementAttributesFollowGraph() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node n = new Node();
+        n.setAttribute(COLOR, "red");
+        assertEquals("red", n.getAttribute(COLOR));
+
+        Edge e = g.addEdge(root, n);
+        assertEquals("red", g.getAttributeStore().get(n.getId(), COLOR));
+        assertEquals("red", n.getAttribute(COLOR));
+        n.setAttribute(NAME, "n");
+        final int row = n.getId();
+
+        g.removeEdge(e);
+        assertNull(n.getGraph());
+        assertFalse(g.getAttributeStore().has(row, COLOR));
+        assertFalse(g.getAttributeStore().has(row, NAME));
+        assertEquals("red", n.getAttribute(COLOR));
+        assertEquals("n", n.getAttribute(NAME));
+
+        n.setAttribute(COLOR, null);
+        assertNull(n.getAttribute(COLOR));
+        g.addEdge(root, n);
+        assertNull(n.getAttribute(COLOR));
+        assertEquals("n", n.getAttribute(NAME));
+        assertTrue(g.getAttributeStore().has(n.getId(), NAME));
+    }
+}
@@ -0,0 +1,143 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the index mapping, the partition of the outgoing edges and {@link CompactGraph#copyOf(Graph)} of
+ * {@link CompactGraph}.
+ */
+public class CompactGraphTest {
+
+    static final Attribute KEY = Attribute.ofInt("compactGraphTest.key");
+
+    static CompactGraph random(int nodes, int edges, long seed) {
+        Random r = new Random(seed);
+        int[] sources = new int[nodes - 1 + edges];
+        int[] targets = new int[sources.length];
+        // A spanning tree keeps all nodes connected to the root.
+        for (int i = 1; i < nodes; ++i) {
+            sources[i - 1] = r.nextInt(i);
+            targets[i - 1] = i;
+        }
+        for (int i = nodes - 1; i < sources.length; ++i) {
+            sources[i] = r.nextInt(nodes);
+            targets[i] = r.nextInt(nodes);
+        }
+        return new CompactGraph(nodes, sources, targets, 0);
+    }
+
+    /**
+     * Checks that ids, rows and views agree and that the acyclic edges of each node come first.
+     */
+    static void check(CompactGraph g) {
+        final int nodes = g.nodeCount();
+        assertEquals(nodes + g.edgeCount(), g.idLimit());
+        for (int n = 0; n < nodes; ++n) {
+            Node v = g.getNodeAt(n);
+            assertSame(v, g.getNodeAt(n));
+            assertSame(v, g.getNode(n));
+            assertEquals(n, v.getId());
+            assertEquals(n, g.indexOf(v));
+            assertSame(g, v.getGraph());
+
+            final int start = g.getOutgoingStart(n);
+            final int acyclicEnd = g.getAcyclicOutgoingEnd(n);
+            final int end = g.getOutgoingEnd(n);
+            assertTrue(start <= acyclicEnd && acyclicEnd <= end);
+            assertEquals(end - start, v.getOutgoingCount(true));
+            assertEquals(acyclicEnd - start, v.getOutgoingCount(false));
+            for (int e = start; e < end; ++e) {
+                assertEquals(e >= acyclicEnd, g.isEdgeCyclic(e), "Partition of node " + n);
+                assertEquals(n, g.getEdgeSource(e));
+                Edge ev = v.getOutgoing(e - start);
+                assertSame(ev, g.getEdgeAt(e));
+                assertSame(ev, g.getEdge(nodes + e));
+                assertEquals(nodes + e, ev.getId());
+                assertEquals(e, g.indexOf(ev));
+                assertEquals(g.isEdgeCyclic(e), ev.isCyclic());
+                assertSame(g.getNodeAt(g.getEdgeTarget(e)), ev.getTarget());
+            }
+            assertEquals(g.getIncomingCount(n), v.getIncomingCount());
+            for (int i = 0; i < g.getIncomingCount(n); ++i)
+                assertSame(v, g.getEdgeAt(g.getIncomingEdge(n, i)).getTarget());
+        }
+    }
+
+    @Test
+    public void rowsAndPartition() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            CompactGraph g = random(50, 40, seed);
+            check(g);
+            assertSame(g.getNodeAt(0), g.getRoot());
+
+            // The acyclic edges form a DAG, each cyclic edge closes a cycle of acyclic edges.
+            for (int n = 0; n < g.nodeCount(); ++n) {
+                for (int e = g.getOutgoingStart(n); e < g.getOutgoingEnd(n); ++e) {
+                    final int t = g.getEdgeTarget(e);
+                    boolean closesCycle = t == n || g.isAncestor(t, n);
+                    assertEquals(g.isEdgeCyclic(e), closesCycle, "Edge " + n + "->" + t);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void copyOfKeepsStructure() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node[] nodes = new Node[30];
+        nodes[0] = root;
+        Random r = new Random(7);
+        for (int i = 1; i < nodes.length; ++i) {
+            nodes[i] = new Node();
+            g.addEdge(nodes[r.nextInt(i)], nodes[i]);
+        }
+        for (int i = 0; i < 30; ++i)
+            g.addEdge(nodes[r.nextInt(nodes.length)], nodes[r.nextInt(nodes.length)]);
+        for (int i = 0; i < nodes.length; ++i)
+            nodes[i].setInt(KEY, i);
+
+        CompactGraph cg = CompactGraph.copyOf(g);
+        check(cg);
+        assertEquals(g.nodeCount(), cg.nodeCount());
+        assertEquals(g.edgeCount(), cg.edgeCount());
+        assertEquals(0, cg.getRoot().getInt(KEY));
+        for (int n = 0; n < cg.nodeCount(); ++n) {
+            Node copy = cg.getNodeAt(n);
+            Node original = nodes[copy.getInt(KEY)];
+            assertEquals(original.getOutgoingCount(true), copy.getOutgoingCount(true));
+            assertEquals(original.getOutgoingCount(false), copy.getOutgoingCount(false));
+            assertEquals(original.getIncomingCount(), copy.getIncomingCount());
+            for (int i = 0; i < original.getOutgoingCount(true); ++i) {
+                Edge a = original.getOutgoing(i);
+                Edge b = copy.getOutgoing(i);
+                assertEquals(a.getTarget().getInt(KEY), b.getTarget().getInt(KEY));
+                assertEquals(a.isCyclic(), b.isCyclic());
+            }
+        }
+    }
+
+    @Test
+    public void viewsCantBeLinked() {
+        CompactGraph g = random(5, 2, 1);
+        final int edges = g.edgeCount();
+        Node free = new Node();
+        assertThrows(UnsupportedOperationException.class, () -> new Edge(g.getNodeAt(0), free));
+        assertThrows(UnsupportedOperationException.class, () -> new Edge(free, g.getNodeAt(1)));
+        assertThrows(UnsupportedOperationException.class, () -> g.addEdge(g.getNodeAt(0), g.getNodeAt(1)));
+        assertThrows(UnsupportedOperationException.class, () -> g.removeEdge(g.getEdgeAt(0)));
+        assertNull(free.getGraph());
+        assertEquals(edges, g.edgeCount());
+        assertEquals(5, g.nodeCount());
+        check(g);
+    }
+}
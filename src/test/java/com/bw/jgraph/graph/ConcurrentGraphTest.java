@@ -0,0 +1,161 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Several threads modify a {@link ConcurrentGraph} in parallel, afterwards registry, counts and adjacency
+ * have to match the edges that each thread kept.
+ */
+public class ConcurrentGraphTest {
+
+    static final Attribute OWNER = Attribute.ofInt("concurrentGraphTest.owner");
+
+    /** Modifications of one thread: a subtree below the root, plus edges inside it and back to the root. */
+    static class Worker implements Runnable {
+        final ConcurrentGraph g;
+        final CyclicBarrier start;
+        final int index;
+        final List<Edge> kept = new ArrayList<>();
+        final List<Edge> removed = new ArrayList<>();
+        Throwable error;
+
+        Worker(ConcurrentGraph g, CyclicBarrier start, int index) {
+            this.g = g;
+            this.start = start;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Random r = new Random(index);
+                List<Node> nodes = new ArrayList<>();
+                start.await();
+                for (int step = 0; step < 2000; ++step) {
+                    nodes.removeIf(n -> n.getGraph() != g);
+                    int op = r.nextInt(20);
+                    if (op < 10 || nodes.isEmpty()) {
+                        Node parent = nodes.isEmpty() || r.nextInt(8) == 0 ? g.getRoot() : nodes.get(r.nextInt(nodes.size()));
+                        Node child = new Node();
+                        child.setInt(OWNER, index);
+                        kept.add(g.addEdge(parent, child));
+                        nodes.add(child);
+                    } else if (op < 14) {
+                        kept.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), nodes.get(r.nextInt(nodes.size()))));
+                    } else if (op < 15) {
+                        kept.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), g.getRoot()));
+                    } else if (!kept.isEmpty()) {
+                        Edge e = kept.remove(r.nextInt(kept.size()));
+                        g.removeEdge(e);
+                        removed.add(e);
+                    }
+                }
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+    }
+
+    static boolean contains(Node n, Edge e, boolean outgoing) {
+        int count = 0;
+        final int size = outgoing ? n.getOutgoingCount(true) : n.getIncomingCount();
+        for (int i = 0; i < size; ++i) {
+            if ((outgoing ? n.getOutgoing(i) : n.getIncoming(i)) == e)
+                ++count;
+        }
+        assertTrue(count <= 1, "Edge listed twice " + e);
+        return count == 1;
+    }
+
+    static void run(int stripes, int threads) throws Exception {
+        ConcurrentGraph g = new ConcurrentGraph(stripes);
+        Node root = new Node();
+        g.setRoot(root);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> running = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            Worker w = new Worker(g, start, i);
+            workers.add(w);
+            Thread t = new Thread(w);
+            running.add(t);
+            t.start();
+        }
+        for (Thread t : running)
+            t.join();
+
+        Set<Node> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        members.add(root);
+        Set<Edge> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Worker w : workers) {
+            assertNull(w.error);
+            for (Edge e : w.kept) {
+                assertSame(g, e.getGraph(), "Lost edge " + e);
+                assertTrue(kept.add(e));
+                members.add(e.getSource());
+                members.add(e.getTarget());
+            }
+            for (Edge e : w.removed)
+                assertNull(e.getGraph());
+        }
+        assertEquals(kept.size(), g.edgeCount());
+        assertEquals(members.size(), g.nodeCount());
+
+        // Each id is registered once, with the element that has the id.
+        int nodes = 0;
+        int edges = 0;
+        for (int id = 0; id < g.idLimit(); ++id) {
+            Node n = g.getNode(id);
+            Edge e = g.getEdge(id);
+            if (n != null) {
+                assertEquals(id, n.getId());
+                assertTrue(members.contains(n), "Registered node isn't connected " + n);
+                ++nodes;
+            } else if (e != null) {
+                assertEquals(id, e.getId());
+                assertTrue(kept.contains(e), "Registered edge was removed " + e);
+                ++edges;
+            }
+        }
+        assertEquals(g.nodeCount(), nodes);
+        assertEquals(g.edgeCount(), edges);
+
+        for (Edge e : kept) {
+            assertTrue(contains(e.getSource(), e, true));
+            // Self-loops are stored as outgoing edges only.
+            assertEquals(e.getSource() != e.getTarget(), contains(e.getTarget(), e, false));
+            if (!e.isCyclic())
+                assertTrue(e.getSource().order_ < e.getTarget().order_, "Order violated by " + e);
+        }
+        for (Node n : members) {
+            assertSame(g, n.getGraph());
+            assertEquals(n.getId(), g.getNode(n.getId()).getId());
+            int owner = n == root ? 0 : n.getInt(OWNER);
+            assertEquals(owner, g.getAttributeStore().getInt(n.getId(), OWNER));
+        }
+    }
+
+    @Test
+    public void parallelIngest() throws Exception {
+        run(64, 4);
+    }
+
+    @Test
+    public void fewStripes() throws Exception {
+        // Most edges share locks with other threads.
+        run(2, 6);
+    }
+}
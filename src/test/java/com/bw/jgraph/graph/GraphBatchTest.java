@@ -0,0 +1,112 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Events of batched modifications, see {@link Graph#beginBatch()}.
+ */
+public class GraphBatchTest {
+
+    static List<GraphEvent> listen(Graph g) {
+        List<GraphEvent> events = new ArrayList<>();
+        g.addGraphListener(events::add);
+        return events;
+    }
+
+    @Test
+    public void oneEventPerBatch() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Edge old = g.addEdge(root, new Node());
+        List<GraphEvent> events = listen(g);
+
+        List<Edge> added = new ArrayList<>();
+        g.batch(b -> {
+            for (int i = 0; i < 5; ++i)
+                added.add(b.addEdge(root, new Node()));
+            b.removeEdge(old);
+            assertTrue(b.isInBatch());
+            assertTrue(events.isEmpty());
+        });
+        assertFalse(g.isInBatch());
+        assertEquals(1, events.size());
+        GraphEvent ev = events.get(0);
+        assertEquals(GraphEvent.Type.BATCH, ev.type);
+        assertFalse(ev.rootChanged);
+        // Edge.equals compares attributes, the edges are compared by identity.
+        assertEquals(added.size(), ev.edgesAdded.size());
+        for (int i = 0; i < added.size(); ++i)
+            assertSame(added.get(i), ev.edgesAdded.get(i));
+        assertEquals(1, ev.edgesRemoved.size());
+        assertSame(old, ev.edgesRemoved.get(0));
+        assertEquals(6, g.nodeCount());
+    }
+
+    @Test
+    public void addedAndRemovedEdgesAreNotListed() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        List<GraphEvent> events = listen(g);
+        Edge[] kept = new Edge[1];
+        g.batch(b -> {
+            Edge temporary = b.addEdge(root, new Node());
+            kept[0] = b.addEdge(root, new Node());
+            b.removeEdge(temporary);
+        });
+        assertEquals(1, events.size());
+        assertEquals(1, events.get(0).edgesAdded.size());
+        assertSame(kept[0], events.get(0).edgesAdded.get(0));
+        assertTrue(events.get(0).edgesRemoved.isEmpty());
+
+        // Nothing changed in the end: no event.
+        events.clear();
+        g.batch(b -> b.removeEdge(b.addEdge(root, new Node())));
+        assertTrue(events.isEmpty());
+        g.batch(b -> {
+        });
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void nestedBatches() {
+        Graph g = new Graph();
+        List<GraphEvent> events = listen(g);
+        Node root = new Node();
+        g.beginBatch();
+        g.setRoot(root);
+        g.batch(b -> b.addEdge(root, new Node()));
+        assertTrue(events.isEmpty(), "Inner commit fires nothing");
+        g.addEdge(root, new Node());
+        g.commitBatch();
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).rootChanged);
+        assertEquals(2, events.get(0).edgesAdded.size());
+        assertThrows(IllegalStateException.class, g::commitBatch);
+    }
+
+    @Test
+    public void failedModificationsStillCommit() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        List<GraphEvent> events = listen(g);
+        assertThrows(IllegalStateException.class, () -> g.batch(b -> {
+            b.addEdge(root, new Node());
+            throw new IllegalStateException();
+        }));
+        assertFalse(g.isInBatch());
+        assertEquals(1, events.size());
+        assertEquals(1, events.get(0).edgesAdded.size());
+    }
+}
@@ -0,0 +1,133 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks ids, adjacency and cyclic flags of graphs created by {@link GraphBuilder}.
+ */
+public class GraphBuilderTest {
+
+    static GraphBuilder random(int nodes, int edges, long seed) {
+        Random r = new Random(seed);
+        GraphBuilder b = new GraphBuilder(4);
+        b.addNodes(nodes);
+        for (int i = 1; i < nodes; ++i)
+            b.addEdge(r.nextInt(i), i);
+        int[] sources = new int[edges];
+        int[] targets = new int[edges];
+        for (int i = 0; i < edges; ++i) {
+            sources[i] = r.nextInt(nodes);
+            targets[i] = r.nextInt(nodes);
+        }
+        return b.addEdges(sources, targets).setRoot(0);
+    }
+
+    /**
+     * Checks that the acyclic edges form a DAG and each cyclic edge closes a cycle, the same rule
+     * {@link Edge#isCyclic()} maintains for edges that are added later.
+     */
+    static void checkCyclicFlags(Graph g) {
+        for (int id = 0; id < g.idLimit(); ++id) {
+            Edge e = g.getEdge(id);
+            if (e == null)
+                continue;
+            Node s = e.getSource();
+            Node t = e.getTarget();
+            assertEquals(e.isCyclic(), s == t || t.isAncestor(s), "Edge " + e);
+        }
+        g.nodeStream().forEach(n -> {
+            for (int i = 0; i < n.getOutgoingCount(true); ++i)
+                assertEquals(i >= n.getOutgoingCount(false), n.getOutgoing(i).isCyclic(), "Acyclic edges first");
+        });
+    }
+
+    @Test
+    public void idsAndAdjacency() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            GraphBuilder b = random(100, 80, seed);
+            final int n = b.nodeCount();
+            final int m = b.edgeCount();
+            List<GraphEvent> events = new ArrayList<>();
+            Graph g = new Graph();
+            g.addGraphListener(events::add);
+            b.build(g);
+
+            assertEquals(1, events.size());
+            assertEquals(GraphEvent.Type.BATCH, events.get(0).type);
+            assertEquals(m, events.get(0).edgesAdded.size());
+            assertEquals(n, g.nodeCount());
+            assertEquals(m, g.edgeCount());
+            assertSame(b.getNode(0), g.getRoot());
+            for (int i = 0; i < n; ++i) {
+                assertSame(b.getNode(i), g.getNode(i));
+                assertEquals(i, b.getNode(i).getId());
+            }
+            int[] outgoing = new int[n];
+            int[] incoming = new int[n];
+            for (int e = 0; e < m; ++e) {
+                Edge edge = b.getEdge(e);
+                assertSame(edge, g.getEdge(n + e));
+                assertSame(g, edge.getGraph());
+                ++outgoing[edge.getSource().getId()];
+                if (edge.getSource() != edge.getTarget())
+                    ++incoming[edge.getTarget().getId()];
+            }
+            for (int i = 0; i < n; ++i) {
+                assertEquals(outgoing[i], b.getNode(i).getOutgoingCount(true));
+                assertEquals(incoming[i], b.getNode(i).getIncomingCount());
+            }
+            checkCyclicFlags(g);
+
+            // The order labels are valid, later edges get the same flags as in a graph built edge by edge.
+            Random r = new Random(seed);
+            for (int i = 0; i < 50; ++i)
+                g.addEdge(g.getNode(r.nextInt(n)), g.getNode(r.nextInt(n)));
+            checkCyclicFlags(g);
+        }
+    }
+
+    @Test
+    public void storedCyclicFlags() {
+        Graph original = random(60, 60, 3).build();
+        final int n = original.nodeCount();
+        final int m = original.edgeCount();
+        GraphBuilder b = new GraphBuilder();
+        boolean[] cyclic = new boolean[m];
+        // Reversed edge order, so a new search would not find the same cyclic edges.
+        for (int e = m - 1; e >= 0; --e) {
+            Edge edge = original.getEdge(n + e);
+            cyclic[b.addEdge(edge.getSource().getId(), edge.getTarget().getId())] = edge.isCyclic();
+        }
+        Graph g = b.setRoot(0).setCyclicFlags(cyclic).build();
+        for (int e = 0; e < m; ++e)
+            assertEquals(cyclic[e], b.getEdge(e).isCyclic());
+        checkCyclicFlags(g);
+    }
+
+    @Test
+    public void invalidCyclicFlags() {
+        GraphBuilder b = new GraphBuilder();
+        b.addEdge(0, 1);
+        b.addEdge(1, 0);
+        b.setCyclicFlags(new boolean[1]);
+        assertThrows(IllegalArgumentException.class, b::build);
+        b.setCyclicFlags(new boolean[2]);
+        assertThrows(IllegalArgumentException.class, b::build);
+        b.setCyclicFlags(new boolean[]{false, true});
+        Graph g = b.build();
+        assertEquals(2, g.edgeCount());
+        assertTrue(b.getEdge(1).isCyclic());
+        assertThrows(IllegalStateException.class, b::build);
+        assertThrows(IllegalStateException.class, () -> b.addEdge(0, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> new GraphBuilder().addEdge(-1, 0));
+    }
+}
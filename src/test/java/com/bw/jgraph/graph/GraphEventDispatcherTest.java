@@ -0,0 +1,149 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coalescing, bounds and counters of {@link GraphEventDispatcher}.<br>
+ * Deliveries are executed manually, so the tests control when the queue is drained.
+ */
+public class GraphEventDispatcherTest {
+
+    /** Executor that keeps the tasks until {@link #runAll()} is called. */
+    static final class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        boolean reject;
+
+        @Override
+        public void execute(Runnable command) {
+            if (reject)
+                throw new RejectedExecutionException();
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable r;
+            while ((r = tasks.poll()) != null)
+                r.run();
+        }
+    }
+
+    @Test
+    public void churnStaysBounded() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        ManualExecutor executor = new ManualExecutor();
+        List<GraphEvent> received = new ArrayList<>();
+        GraphEventDispatcher d = new GraphEventDispatcher(g, received::add, executor, 16);
+
+        for (int i = 0; i < 200_000; ++i) {
+            Edge e = g.addEdge(root, new Node());
+            g.removeEdge(e);
+            assertTrue(d.getQueueSize() <= 16);
+        }
+        assertEquals(0, d.getQueueDepth());
+        assertEquals(400_000L, d.getMergedCount());
+
+        // Pairs that don't cancel at the end of the queue.
+        List<Edge> edges = new ArrayList<>();
+        for (int round = 0; round < 1000; ++round) {
+            for (int i = 0; i < 8; ++i)
+                edges.add(g.addEdge(root, new Node()));
+            for (Edge e : edges)
+                g.removeEdge(e);
+            edges.clear();
+            assertTrue(d.getQueueSize() <= 16);
+        }
+        assertEquals(0, d.getQueueDepth());
+
+        executor.runAll();
+        assertEquals(0, d.getQueueSize());
+        assertTrue(received.isEmpty());
+        d.close();
+    }
+
+    @Test
+    public void rootChangedIsReplaced() {
+        Graph g = new Graph();
+        ManualExecutor executor = new ManualExecutor();
+        List<GraphEvent> received = new ArrayList<>();
+        GraphEventDispatcher d = new GraphEventDispatcher(g, received::add, executor, 16);
+        for (int i = 0; i < 5; ++i)
+            g.setRoot(new Node());
+        assertEquals(1, d.getQueueDepth());
+        assertEquals(4L, d.getMergedCount());
+
+        executor.runAll();
+        assertEquals(1, received.size());
+        assertSame(GraphEvent.Type.ROOT_CHANGED, received.get(0).type);
+        assertEquals(1L, d.getDeliveredCount());
+        assertEquals(0, d.getQueueDepth());
+        d.close();
+    }
+
+    @Test
+    public void overflowCollapsesIntoBatch() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        ManualExecutor executor = new ManualExecutor();
+        List<GraphEvent> received = new ArrayList<>();
+        GraphEventDispatcher d = new GraphEventDispatcher(g, received::add, executor, 4);
+
+        Set<Edge> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 10; ++i)
+            added.add(g.addEdge(root, new Node()));
+        assertTrue(d.getQueueDepth() <= 4);
+        assertTrue(d.getQueueSize() <= 4);
+
+        executor.runAll();
+        Set<Edge> delivered = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (GraphEvent ev : received) {
+            if (ev.type == GraphEvent.Type.BATCH)
+                delivered.addAll(ev.edgesAdded);
+            else
+                delivered.add(ev.edge);
+        }
+        assertEquals(added, delivered);
+        assertTrue(received.get(0).type == GraphEvent.Type.BATCH);
+        assertEquals(10L, d.getDeliveredCount() + d.getMergedCount());
+        d.close();
+    }
+
+    @Test
+    public void closeAndRejectionDrop() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        ManualExecutor executor = new ManualExecutor();
+        List<GraphEvent> received = new ArrayList<>();
+        GraphEventDispatcher d = new GraphEventDispatcher(g, received::add, executor, 16);
+        g.addEdge(root, new Node());
+        g.addEdge(root, new Node());
+        d.close();
+        assertEquals(2L, d.getDroppedCount());
+        g.addEdge(root, new Node());
+        executor.runAll();
+        assertTrue(received.isEmpty());
+
+        executor.reject = true;
+        d = new GraphEventDispatcher(g, received::add, executor, 16);
+        g.addEdge(root, new Node());
+        assertEquals(1L, d.getDroppedCount());
+        assertEquals(0, d.getQueueDepth());
+        d.close();
+    }
+}
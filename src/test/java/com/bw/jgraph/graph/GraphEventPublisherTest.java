@@ -0,0 +1,185 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Overflow policies, demand and completion of {@link GraphEventPublisher}.
+ */
+public class GraphEventPublisherTest {
+
+    /** Collects the events, requests only on explicit calls. */
+    static class Collector implements Flow.Subscriber<GraphEvent> {
+        final List<GraphEvent> events = Collections.synchronizedList(new ArrayList<>());
+        volatile Flow.Subscription subscription;
+        volatile boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(GraphEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    static List<Edge> addEdges(Graph g, Node root, int count) {
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+            edges.add(g.addEdge(root, new Node()));
+        return edges;
+    }
+
+    static Graph graph() {
+        Graph g = new Graph();
+        g.setRoot(new Node());
+        return g;
+    }
+
+    @Test
+    public void dropOldest() {
+        Graph g = graph();
+        GraphEventPublisher p = new GraphEventPublisher(g, Runnable::run, GraphEventPublisher.Overflow.DROP_OLDEST, 4);
+        Collector c = new Collector();
+        GraphEventPublisher.EventSubscription s = p.subscribe(c, GraphEventPublisher.Overflow.DROP_OLDEST, 4);
+
+        List<Edge> edges = addEdges(g, g.getRoot(), 10);
+        assertEquals(4, s.getBufferedCount());
+        assertEquals(6L, s.getDroppedCount());
+        assertTrue(c.events.isEmpty());
+
+        s.request(2);
+        assertEquals(2, c.events.size());
+        s.request(10);
+        assertEquals(4, c.events.size());
+        for (int i = 0; i < 4; ++i)
+            assertSame(edges.get(6 + i), c.events.get(i).edge);
+        assertEquals(8L, s.getDemand());
+        assertEquals(4L, s.getDeliveredCount());
+        p.close();
+        assertTrue(c.completed);
+    }
+
+    @Test
+    public void conflate() {
+        Graph g = graph();
+        GraphEventPublisher p = new GraphEventPublisher(g, Runnable::run, GraphEventPublisher.Overflow.CONFLATE, 4);
+        Collector c = new Collector();
+        p.subscribe(c);
+
+        Set<Edge> edges = Collections.newSetFromMap(new IdentityHashMap<>());
+        edges.addAll(addEdges(g, g.getRoot(), 10));
+        c.subscription.request(Long.MAX_VALUE);
+
+        Set<Edge> delivered = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (GraphEvent ev : c.events) {
+            if (ev.type == GraphEvent.Type.BATCH)
+                delivered.addAll(ev.edgesAdded);
+            else
+                delivered.add(ev.edge);
+        }
+        assertEquals(edges, delivered);
+        assertSame(GraphEvent.Type.BATCH, c.events.get(0).type);
+        assertTrue(c.events.size() <= 4);
+
+        // With demand, events are passed through.
+        Edge e = g.addEdge(g.getRoot(), new Node());
+        assertSame(e, c.events.get(c.events.size() - 1).edge);
+        p.close();
+        assertTrue(c.completed);
+        assertEquals(0, p.getSubscriberCount());
+    }
+
+    @Test
+    public void blockWaitsForSubscriber() throws InterruptedException {
+        Graph g = graph();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            GraphEventPublisher p = new GraphEventPublisher(g, executor, GraphEventPublisher.Overflow.BLOCK, 2);
+            CountDownLatch done = new CountDownLatch(1);
+            Collector c = new Collector() {
+                @Override
+                public void onSubscribe(Flow.Subscription s) {
+                    super.onSubscribe(s);
+                    s.request(1);
+                }
+
+                @Override
+                public void onNext(GraphEvent item) {
+                    super.onNext(item);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onComplete() {
+                    super.onComplete();
+                    done.countDown();
+                }
+            };
+            GraphEventPublisher.EventSubscription s = p.subscribe(c, GraphEventPublisher.Overflow.BLOCK, 2);
+
+            List<Edge> edges = addEdges(g, g.getRoot(), 1000);
+            p.close();
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertEquals(1000, c.events.size());
+            for (int i = 0; i < edges.size(); ++i)
+                assertSame(edges.get(i), c.events.get(i).edge);
+            assertEquals(0L, s.getDroppedCount());
+            assertEquals(0L, s.getMergedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void blockRejectedForConcurrentGraph() {
+        ConcurrentGraph g = new ConcurrentGraph();
+        assertThrows(IllegalArgumentException.class,
+                () -> new GraphEventPublisher(g, Runnable::run, GraphEventPublisher.Overflow.BLOCK, 4));
+        GraphEventPublisher p = new GraphEventPublisher(g, Runnable::run, GraphEventPublisher.Overflow.CONFLATE, 4);
+        assertThrows(IllegalArgumentException.class,
+                () -> p.subscribe(new Collector(), GraphEventPublisher.Overflow.BLOCK, 4));
+        assertEquals(0, p.getSubscriberCount());
+    }
+
+    @Test
+    public void cancelStopsDelivery() {
+        Graph g = graph();
+        GraphEventPublisher p = new GraphEventPublisher(g, Runnable::run, GraphEventPublisher.Overflow.CONFLATE, 4);
+        Collector c = new Collector();
+        p.subscribe(c);
+        c.subscription.request(Long.MAX_VALUE);
+        addEdges(g, g.getRoot(), 3);
+        c.subscription.cancel();
+        addEdges(g, g.getRoot(), 3);
+        assertEquals(3, c.events.size());
+        assertEquals(0, p.getSubscriberCount());
+    }
+}
@@ -0,0 +1,107 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the lookup of members by id, the counts and {@link Graph#nodeStream()} while the graph changes.
+ */
+public class GraphRegistryTest {
+
+    static void check(Graph g, List<Node> nodes, List<Edge> edges) {
+        assertEquals(nodes.size(), g.nodeCount());
+        assertEquals(edges.size(), g.edgeCount());
+        for (Node n : nodes) {
+            assertSame(g, n.getGraph());
+            assertTrue(n.getId() < g.idLimit());
+            assertSame(n, g.getNode(n.getId()));
+            assertNull(g.getEdge(n.getId()));
+        }
+        for (Edge e : edges) {
+            assertSame(e, g.getEdge(e.getId()));
+            assertNull(g.getNode(e.getId()));
+        }
+        int members = 0;
+        for (int id = 0; id < g.idLimit(); ++id) {
+            if (g.getNode(id) != null || g.getEdge(id) != null)
+                ++members;
+        }
+        assertEquals(nodes.size() + edges.size(), members);
+        assertNull(g.getNode(-1));
+        assertNull(g.getNode(g.idLimit()));
+
+        List<Node> streamed = g.nodeStream().collect(Collectors.toList());
+        assertEquals(nodes.size(), streamed.size());
+        for (int i = 1; i < streamed.size(); ++i)
+            assertTrue(streamed.get(i - 1).getId() < streamed.get(i).getId(), "Id order");
+        assertEquals(nodes.size(), g.nodeStream().parallel().count());
+    }
+
+    @Test
+    public void randomEdits() {
+        Random r = new Random(11);
+        Graph g = new Graph();
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(new Node());
+        g.setRoot(nodes.get(0));
+        List<Edge> edges = new ArrayList<>();
+        for (int step = 0; step < 2000; ++step) {
+            if (r.nextInt(3) > 0 || edges.isEmpty()) {
+                Node source = nodes.get(r.nextInt(nodes.size()));
+                final boolean newNode = r.nextBoolean();
+                Node target = newNode ? new Node() : nodes.get(r.nextInt(nodes.size()));
+                edges.add(g.addEdge(source, target));
+                if (newNode)
+                    nodes.add(target);
+            } else {
+                g.removeEdge(edges.remove(r.nextInt(edges.size())));
+            }
+            // Removed edges and nodes without edges leave the graph.
+            edges.removeIf(e -> e.getGraph() != g);
+            nodes.removeIf(n -> n.getGraph() != g);
+            if (step % 50 == 0)
+                check(g, nodes, edges);
+        }
+        check(g, nodes, edges);
+        // Ids are recycled, the id space stays close to the number of members.
+        assertTrue(g.idLimit() <= 2 * (nodes.size() + edges.size()) + 64);
+    }
+
+    @Test
+    public void foreignEdgesAreIgnored() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Edge member = g.addEdge(root, new Node());
+        Graph other = new Graph();
+        Node otherRoot = new Node();
+        other.setRoot(otherRoot);
+        Edge foreign = other.addEdge(otherRoot, new Node());
+        Edge free = new Edge(new Node(), new Node());
+        List<GraphEvent> events = new ArrayList<>();
+        g.addGraphListener(events::add);
+
+        g.removeEdge(foreign);
+        g.removeEdge(free);
+        g.removeEdge(null);
+        assertTrue(events.isEmpty());
+        assertSame(other, foreign.getGraph());
+        assertEquals(1, otherRoot.getOutgoingCount(true));
+        assertEquals(1, free.getSource().getOutgoingCount(true));
+        assertEquals(GraphElement.NO_ID, free.getId());
+
+        g.removeEdge(member);
+        g.removeEdge(member);
+        assertEquals(1, events.size());
+        assertEquals(0, g.edgeCount());
+    }
+}
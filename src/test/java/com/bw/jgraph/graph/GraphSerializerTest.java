@@ -0,0 +1,297 @@
+package com.bw.jgraph.graph;
+
+import com.bw.jgraph.io.GraphReader;
+import com.bw.jgraph.io.GraphWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round-trips of {@link GraphSerializer} through {@link GraphWriter} and {@link GraphReader}.<br>
+ * Each node gets a unique key, the graphs are compared by the keys of the nodes and edges.
+ */
+public class GraphSerializerTest {
+
+    static final Attribute KEY = Attribute.ofInt("serializerTest.key");
+    static final Attribute LABEL = Attribute.getAttribute("serializerTest.label");
+    static final Attribute WEIGHT = Attribute.ofDouble("serializerTest.weight");
+
+    /** Deep enough to overflow the call stack with a recursive serializer. */
+    static final int CHAIN_LENGTH = 200_000;
+
+    static final int FAN_OUT = 20_000;
+
+    static Node node(int key) {
+        Node n = new Node();
+        n.setInt(KEY, key);
+        return n;
+    }
+
+    static Graph roundTrip(Graph g) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GraphWriter o = new GraphWriter(bytes)) {
+            new GraphSerializer().write(o, g, 1);
+        }
+        try (GraphReader i = new GraphReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return new GraphSerializer().read(i);
+        }
+    }
+
+    /**
+     * Gets the edges as "source key -> target key" with weight and label.
+     */
+    static Set<String> edges(Graph g) {
+        return edges(g, false);
+    }
+
+    /**
+     * Gets the edges as "source key -> target key" with weight, label and optionally the cyclic flag.
+     */
+    static Set<String> edges(Graph g, boolean cyclic) {
+        Set<String> edges = new HashSet<>();
+        g.nodeStream().forEach(n -> {
+            for (int i = 0; i < n.getOutgoingCount(true); ++i) {
+                Edge e = n.getOutgoing(i);
+                edges.add(e.getSource().getInt(KEY) + "->" + e.getTarget().getInt(KEY)
+                        + " " + e.getDouble(WEIGHT) + " " + e.getAttribute(LABEL) + (cyclic && e.isCyclic() ? " cyclic" : ""));
+            }
+        });
+        return edges;
+    }
+
+    static void assertSameGraph(Graph expected, Graph actual) {
+        assertNotNull(actual);
+        assertEquals(expected.nodeCount(), actual.nodeCount());
+        assertEquals(expected.edgeCount(), actual.edgeCount());
+        assertEquals(expected.getRoot().getInt(KEY), actual.getRoot().getInt(KEY));
+        assertEquals(edges(expected), edges(actual));
+    }
+
+    @Test
+    public void deepChain() throws IOException {
+        Graph g = new Graph();
+        Node n = node(0);
+        g.setRoot(n);
+        for (int i = 1; i < CHAIN_LENGTH; ++i) {
+            Node c = node(i);
+            g.addEdge(n, c).setDouble(WEIGHT, i);
+            n = c;
+        }
+        // Close the chain to a cycle, the last edge is only referenced on reading.
+        g.addEdge(n, g.getRoot());
+
+        Graph r = roundTrip(g);
+        assertSameGraph(g, r);
+
+        // Walk the chain of the read graph. The edges are linked in written order, so the same edge is cyclic.
+        n = r.getRoot();
+        for (int i = 1; i < CHAIN_LENGTH; ++i) {
+            assertEquals(1, n.getOutgoingCount(false));
+            n = n.getOutgoing(0).getTarget();
+            assertEquals(i, n.getInt(KEY));
+        }
+        assertEquals(1, n.getOutgoingCount(true));
+        assertEquals(r.getRoot(), n.getOutgoing(0).getTarget());
+    }
+
+    @Test
+    public void wideFanOut() throws IOException {
+        Graph g = new Graph();
+        Node root = node(0);
+        g.setRoot(root);
+        List<Node> children = new ArrayList<>();
+        for (int i = 1; i <= FAN_OUT; ++i) {
+            Node c = node(i);
+            Edge e = g.addEdge(root, c);
+            e.setAttribute(LABEL, "e" + i);
+            children.add(c);
+        }
+        // Some nodes with several parents.
+        Random rnd = new Random(1);
+        for (int i = 0; i < 100; ++i) {
+            Node c = node(FAN_OUT + 1 + i);
+            g.addEdge(children.get(rnd.nextInt(FAN_OUT)), c);
+            g.addEdge(children.get(rnd.nextInt(FAN_OUT)), c);
+        }
+
+        Graph r = roundTrip(g);
+        assertSameGraph(g, r);
+        assertEquals(FAN_OUT, r.getRoot().getOutgoingCount(false));
+    }
+
+    @Test
+    public void cyclicGraph() throws IOException {
+        Graph g = new Graph();
+        Random rnd = new Random(2);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            nodes.add(node(i));
+        }
+        g.setRoot(nodes.get(0));
+        for (int i = 1; i < nodes.size(); ++i) {
+            g.addEdge(nodes.get(rnd.nextInt(i)), nodes.get(i));
+        }
+        for (int i = 0; i < 1000; ++i) {
+            g.addEdge(nodes.get(rnd.nextInt(nodes.size())), nodes.get(rnd.nextInt(nodes.size())))
+             .setDouble(WEIGHT, i);
+        }
+
+        assertSameGraph(g, roundTrip(g));
+    }
+
+    @Test
+    public void chunkedRoundTrip() throws IOException {
+        Graph g = new Graph();
+        Random rnd = new Random(3);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            nodes.add(node(i));
+        }
+        g.setRoot(nodes.get(0));
+        for (int i = 1; i < nodes.size(); ++i) {
+            g.addEdge(nodes.get(rnd.nextInt(i)), nodes.get(i)).setAttribute(LABEL, "e" + i);
+        }
+        for (int i = 0; i < 2000; ++i) {
+            g.addEdge(nodes.get(rnd.nextInt(nodes.size())), nodes.get(rnd.nextInt(nodes.size())))
+             .setDouble(WEIGHT, i);
+        }
+
+        // Small chunks, so most edges cross chunks. The same edges are cyclic.
+        Graph read = chunkedRoundTrip(g, 100);
+        assertSameGraph(g, read);
+        assertEquals(edges(g, true), edges(read, true));
+    }
+
+    static Graph chunkedRoundTrip(Graph g, int chunkNodes) throws IOException {
+        ChunkedGraphSerializer serializer = new ChunkedGraphSerializer(ForkJoinPool.commonPool(), chunkNodes);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GraphWriter o = new GraphWriter(bytes)) {
+            serializer.write(o, g, 1);
+        }
+        try (GraphReader i = new GraphReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return serializer.read(i);
+        }
+    }
+
+    /**
+     * A new search from the root would find y->x as back edge, the stored flags keep x->y cyclic.
+     */
+    @Test
+    public void chunkedKeepsCyclicFlags() throws IOException {
+        Graph g = new Graph();
+        Node r = node(0);
+        Node x = node(1);
+        Node y = node(2);
+        g.setRoot(r);
+        g.addEdge(r, x);
+        g.addEdge(r, y);
+        g.addEdge(y, x);
+        assertTrue(g.addEdge(x, y).isCyclic());
+
+        for (int chunkNodes : new int[]{1, 100}) {
+            Graph read = chunkedRoundTrip(g, chunkNodes);
+            int cyclic = 0;
+            for (int id = 0; id < read.idLimit(); ++id) {
+                Edge e = read.getEdge(id);
+                if (e != null) {
+                    boolean xy = e.getSource().getInt(KEY) == 1 && e.getTarget().getInt(KEY) == 2;
+                    assertEquals(xy, e.isCyclic(), e.toString());
+                    cyclic += e.isCyclic() ? 1 : 0;
+                }
+            }
+            assertEquals(1, cyclic);
+            assertEquals(edges(g, true), edges(read, true));
+        }
+    }
+
+    @Test
+    public void streamScan() throws IOException {
+        Graph g = new Graph();
+        Node root = node(0);
+        g.setRoot(root);
+        for (int i = 1; i <= 100; ++i) {
+            Node c = node(i);
+            g.addEdge(root, c);
+            for (int j = 1; j <= 10; ++j) {
+                g.addEdge(c, node(1000 * i + j)).setAttribute(LABEL, "x");
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GraphWriter o = new GraphWriter(bytes)) {
+            new GraphSerializer().write(o, g, 1);
+        }
+
+        // Count without building the graph.
+        int nodes = 0;
+        int labels = 0;
+        try (GraphReader i = new GraphReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            GraphStreamReader r = new GraphStreamReader(i);
+            for (GraphStreamReader.Token t = r.next(); t != GraphStreamReader.Token.END; t = r.next()) {
+                if (t == GraphStreamReader.Token.START_NODE) {
+                    ++nodes;
+                } else if (t == GraphStreamReader.Token.ATTRIBUTE && r.getAttribute() == LABEL) {
+                    ++labels;
+                }
+            }
+        }
+        assertEquals(g.nodeCount(), nodes);
+        assertEquals(1000, labels);
+
+        // Extract the keys of one subtree, skip all others.
+        Set<Integer> keys = new HashSet<>();
+        try (GraphReader i = new GraphReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            new GraphStreamReader(i).parse(new GraphStreamReader.Handler() {
+                boolean inSubtree;
+
+                @Override
+                public void attribute(GraphStreamReader r) {
+                    if (r.getAttribute() != KEY) {
+                        return;
+                    }
+                    if (r.getDepth() == 3) {
+                        inSubtree = r.getInt() == 7;
+                    }
+                    if (r.getDepth() == 3 && !inSubtree) {
+                        try {
+                            r.skipElement();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    } else if (r.getDepth() >= 3) {
+                        keys.add(r.getInt());
+                    }
+                }
+            });
+        }
+        assertEquals(11, keys.size());
+        assertTrue(keys.contains(7007));
+    }
+
+    @Test
+    public void emptyGraphs() throws IOException {
+        // A graph is written as its root.
+        assertNull(roundTrip(new Graph()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GraphWriter o = new GraphWriter(bytes)) {
+            new GraphSerializer().write(o, null, 1);
+        }
+        try (GraphReader i = new GraphReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertNull(new GraphSerializer().read(i));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A {@link GraphSnapshot} keeps the structure of its version while the graph changes and re-uses ids afterwards.
+ */
+public class GraphSnapshotTest {
+
+    /**
+     * Describes the structure of the graph per id, in the same format as {@link #describe(GraphSnapshot)}.
+     */
+    static List<String> describe(Graph g) {
+        List<String> d = new ArrayList<>();
+        for (int id = 0; id < g.idLimit(); ++id) {
+            Node n = g.getNode(id);
+            Edge e = g.getEdge(id);
+            if (n != null) {
+                StringBuilder sb = new StringBuilder("N").append(n.getOutgoingCount(false)).append(" out");
+                for (int i = 0; i < n.getOutgoingCount(true); ++i)
+                    sb.append(' ').append(n.getOutgoing(i).getId());
+                sb.append(" in");
+                for (int i = 0; i < n.getIncomingCount(); ++i)
+                    sb.append(' ').append(n.getIncoming(i).getId());
+                d.add(sb.toString());
+            } else if (e != null) {
+                d.add("E " + e.getSource().getId() + "->" + e.getTarget().getId() + (e.isCyclic() ? " cyclic" : ""));
+            } else
+                d.add("-");
+        }
+        return d;
+    }
+
+    static List<String> describe(GraphSnapshot s) {
+        List<String> d = new ArrayList<>();
+        for (int id = 0; id < s.idLimit(); ++id) {
+            if (s.getNode(id) != null) {
+                StringBuilder sb = new StringBuilder("N").append(s.getOutgoingCount(id, false)).append(" out");
+                for (int i = 0; i < s.getOutgoingCount(id, true); ++i)
+                    sb.append(' ').append(s.getOutgoing(id, i));
+                sb.append(" in");
+                for (int i = 0; i < s.getIncomingCount(id); ++i)
+                    sb.append(' ').append(s.getIncoming(id, i));
+                d.add(sb.toString());
+            } else if (s.getEdge(id) != null) {
+                d.add("E " + s.getSource(id) + "->" + s.getTarget(id) + (s.isCyclic(id) ? " cyclic" : ""));
+            } else
+                d.add("-");
+        }
+        return d;
+    }
+
+    /** The snapshot together with the state of the graph when it was taken. */
+    record Taken(GraphSnapshot snapshot, List<String> structure, GraphElement[] elements, int nodes, int edges, int rootId) {
+
+        static Taken of(Graph g) {
+            GraphElement[] elements = new GraphElement[g.idLimit()];
+            for (int id = 0; id < elements.length; ++id)
+                elements[id] = g.getNode(id) != null ? g.getNode(id) : g.getEdge(id);
+            return new Taken(g.snapshot(), describe(g), elements, g.nodeCount(), g.edgeCount(), g.getRoot().getId());
+        }
+
+        void check() {
+            assertEquals(structure, describe(snapshot));
+            assertEquals(nodes, snapshot.nodeCount());
+            assertEquals(edges, snapshot.edgeCount());
+            assertEquals(rootId, snapshot.getRootId());
+            for (int id = 0; id < elements.length; ++id) {
+                if (elements[id] instanceof Node n)
+                    assertSame(n, snapshot.getNode(id));
+                else if (elements[id] instanceof Edge e)
+                    assertSame(e, snapshot.getEdge(id));
+                else {
+                    assertNull(snapshot.getNode(id));
+                    assertNull(snapshot.getEdge(id));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void snapshotsSurviveEditsAndIdReuse() {
+        Random r = new Random(11);
+        Graph g = new Graph();
+        g.setRoot(new Node());
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(g.getRoot());
+        List<Edge> edges = new ArrayList<>();
+        List<Taken> taken = new ArrayList<>();
+        Set<Integer> freed = new HashSet<>();
+        boolean reused = false;
+        for (int step = 0; step < 2000; ++step) {
+            int op = r.nextInt(10);
+            if (op < 4 || edges.isEmpty()) {
+                Node c = new Node();
+                edges.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), c));
+                nodes.add(c);
+                reused |= freed.contains(c.getId());
+            } else if (op < 6) {
+                edges.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), nodes.get(r.nextInt(nodes.size()))));
+            } else {
+                Edge e = edges.remove(r.nextInt(edges.size()));
+                freed.add(e.getId());
+                g.removeEdge(e);
+            }
+            for (Node n : nodes) {
+                if (n.getGraph() != g)
+                    freed.add(n.getId());
+            }
+            nodes.removeIf(n -> n.getGraph() != g);
+            edges.removeIf(e -> e.getGraph() != g);
+            if (step % 100 == 0)
+                taken.add(Taken.of(g));
+        }
+        assertTrue(reused, "Ids shall be re-used");
+        for (Taken t : taken)
+            t.check();
+        assertEquals(describe(g), describe(g.snapshot()));
+    }
+
+    @Test
+    public void oldVersionKeepsRemovedElements() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node a = new Node();
+        Edge ra = g.addEdge(root, a);
+        GraphSnapshot before = g.snapshot();
+        final int aId = a.getId();
+        final int raId = ra.getId();
+
+        g.removeEdge(ra);
+        assertNull(a.getGraph());
+        Node b = new Node();
+        g.addEdge(root, b);
+        GraphSnapshot after = g.snapshot();
+        assertTrue(after.getVersion() > before.getVersion());
+
+        assertSame(a, before.getNode(aId));
+        assertSame(ra, before.getEdge(raId));
+        assertEquals(1, before.getOutgoingCount(root.getId(), true));
+        assertEquals(raId, before.getOutgoing(root.getId(), 0));
+        assertEquals(aId, before.getTarget(raId));
+        assertEquals(2, before.nodeCount());
+        assertEquals(1, before.edgeCount());
+        assertEquals(describe(g), describe(after));
+    }
+}
@@ -0,0 +1,76 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Values of {@link IdTable} follow their elements when they join, leave and re-join a graph.
+ * Ids stay dense and non-negative while elements come and go.
+ */
+public class IdTableTest {
+
+    @Test
+    public void valueSurvivesLeaveAndJoin() {
+        Graph g = new Graph();
+        Node r = new Node();
+        g.setRoot(r);
+        Node c = new Node();
+        Edge e = g.addEdge(r, c);
+
+        IdTable<String> table = new IdTable<>();
+        table.put(c, "c");
+        final int oldId = c.getId();
+
+        g.removeEdge(e);
+        assertNull(c.getGraph());
+        assertEquals("c", table.get(c));
+
+        // The id is reused by a new member, the value must not leak to it.
+        Node other = new Node();
+        g.addEdge(r, other);
+        if (other.getId() == oldId)
+            assertNull(table.get(other));
+
+        g.addEdge(r, c);
+        assertEquals(g, c.getGraph());
+        assertEquals("c", table.get(c));
+
+        assertEquals("c", table.remove(c));
+        assertNull(table.get(c));
+        g.removeEdge(c.getIncoming(0));
+        assertNull(table.get(c));
+    }
+
+    @Test
+    public void freeValueMovesIntoGraph() {
+        Graph g = new Graph();
+        Node r = new Node();
+        g.setRoot(r);
+        Node c = new Node();
+        IdTable<String> table = new IdTable<>();
+        table.put(c, "free");
+        g.addEdge(r, c);
+        assertEquals("free", table.put(c, "member"));
+        assertEquals("member", table.get(c));
+    }
+
+    @Test
+    public void freeElementsHaveNoId() {
+        Graph g = new Graph();
+        Node a = new Node();
+        Node b = new Node();
+        assertEquals(GraphElement.NO_ID, a.getId());
+        for (int i = 0; i < 1_000_000; ++i) {
+            // The new root joins before the previous one leaves, the two ids are recycled.
+            g.setRoot((i & 1) == 0 ? a : b);
+            Node free = (i & 1) == 0 ? b : a;
+            assertEquals(GraphElement.NO_ID, free.getId());
+            assertTrue(g.getRoot().getId() < 2, "Ids are recycled");
+        }
+        for (int i = 0; i < 1_000_000; ++i)
+            assertEquals(GraphElement.NO_ID, new Edge().getId());
+    }
+}
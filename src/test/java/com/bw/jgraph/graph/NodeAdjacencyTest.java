@@ -0,0 +1,137 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the outgoing and incoming lists of {@link Node} with the edges of the graph while edges are added,
+ * removed and moved.
+ */
+public class NodeAdjacencyTest {
+
+    static Set<Edge> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    static void check(List<Node> nodes, List<Edge> edges) {
+        for (Node n : nodes) {
+            Set<Edge> out = identitySet();
+            Set<Edge> in = identitySet();
+            for (Edge e : edges) {
+                if (e.getSource() == n)
+                    out.add(e);
+                if (e.getTarget() == n && e.getSource() != n)
+                    in.add(e);
+            }
+            assertEquals(out.size(), n.getOutgoingCount(true));
+            assertEquals(in.size(), n.getIncomingCount());
+            int acyclic = 0;
+            for (int i = 0; i < n.getOutgoingCount(true); ++i) {
+                Edge e = n.getOutgoing(i);
+                assertTrue(out.remove(e), "Outgoing edge once");
+                if (!e.isCyclic())
+                    assertEquals(acyclic++, i, "Acyclic edges first");
+            }
+            assertEquals(acyclic, n.getOutgoingCount(false));
+            for (int i = 0; i < n.getIncomingCount(); ++i)
+                assertTrue(in.remove(n.getIncoming(i)), "Incoming edge once");
+        }
+    }
+
+    @Test
+    public void randomEdits() {
+        Random r = new Random(5);
+        Graph g = new Graph();
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(new Node());
+        g.setRoot(nodes.get(0));
+        List<Edge> edges = new ArrayList<>();
+        for (int step = 0; step < 3000; ++step) {
+            // Few nodes, so some get many edges and others stay small.
+            int op = r.nextInt(10);
+            if (op < 2 && nodes.size() < 40) {
+                Node n = new Node();
+                edges.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), n));
+                nodes.add(n);
+            } else if (op < 6) {
+                edges.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), nodes.get(r.nextInt(nodes.size()))));
+            } else if (op < 8 && !edges.isEmpty()) {
+                g.removeEdge(edges.remove(r.nextInt(edges.size())));
+            } else if (!edges.isEmpty()) {
+                edges.get(r.nextInt(edges.size())).setSourceAndTarget(
+                        nodes.get(r.nextInt(nodes.size())), nodes.get(r.nextInt(nodes.size())));
+            }
+            edges.removeIf(e -> e.getGraph() != g);
+            nodes.removeIf(n -> n.getGraph() != g);
+            if (step % 100 == 0)
+                check(nodes, edges);
+        }
+        check(nodes, edges);
+    }
+
+    @Test
+    public void moveFiresEvents() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node a = new Node();
+        Node b = new Node();
+        g.addEdge(root, a);
+        g.addEdge(root, b);
+        Edge e = g.addEdge(a, b);
+        List<GraphEvent> events = new ArrayList<>();
+        g.addGraphListener(events::add);
+
+        e.setTarget(root);
+        assertEquals(2, events.size());
+        assertEquals(GraphEvent.Type.EDGE_REMOVED, events.get(0).type);
+        assertEquals(GraphEvent.Type.EDGE_ADDED, events.get(1).type);
+        assertSame(e, events.get(1).edge);
+        assertSame(g, e.getGraph());
+        assertTrue(e.isCyclic());
+        assertEquals(1, b.getIncomingCount());
+        assertSame(e, a.getOutgoing(0));
+    }
+
+    @Test
+    public void rejectedMoveKeepsEdge() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node a = new Node();
+        Edge e = g.addEdge(root, a);
+        Graph other = new Graph();
+        Node foreign = new Node();
+        other.setRoot(foreign);
+        List<GraphEvent> events = new ArrayList<>();
+        g.addGraphListener(events::add);
+
+        assertThrows(IllegalArgumentException.class, () -> e.setSourceAndTarget(root, foreign));
+        CompactGraph compact = new CompactGraph(2, new int[]{0}, new int[]{1}, 0);
+        assertThrows(UnsupportedOperationException.class, () -> e.setSourceAndTarget(compact.getNodeAt(0), compact.getNodeAt(1)));
+        assertTrue(events.isEmpty());
+        assertSame(root, e.getSource());
+        assertSame(a, e.getTarget());
+        assertSame(g, e.getGraph());
+        assertSame(e, root.getOutgoing(0));
+        assertSame(e, a.getIncoming(0));
+
+        // Without a target the edge is only removed.
+        e.setTarget(null);
+        assertEquals(1, events.size());
+        assertNull(e.getGraph());
+        assertEquals(0, root.getOutgoingCount(true));
+    }
+}
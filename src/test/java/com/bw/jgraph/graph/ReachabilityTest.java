@@ -0,0 +1,134 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The cyclic flags of edges and the ancestor queries stay exact while edges are added and removed at random.<br>
+ * Exact means: the acyclic edges form a DAG that is consistent with the order labels, and each cyclic edge
+ * closes a cycle of acyclic edges, so it couldn't be acyclic.
+ */
+public class ReachabilityTest {
+
+    static final int NODES = 40;
+
+    /**
+     * Checks if "to" is reachable from "from" via acyclic edges, by a plain search over the edge list.
+     */
+    static boolean reaches(Node from, Node to, List<Edge> edges) {
+        Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(from);
+        visited.add(from);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            for (Edge e : edges) {
+                if (!e.isCyclic() && e.getSource() == n && visited.add(e.getTarget())) {
+                    if (e.getTarget() == to)
+                        return true;
+                    stack.push(e.getTarget());
+                }
+            }
+        }
+        return false;
+    }
+
+    static void check(List<Node> nodes, List<Edge> edges) {
+        for (Edge e : edges) {
+            Node s = e.getSource();
+            Node t = e.getTarget();
+            if (e.isCyclic()) {
+                assertTrue(s == t || reaches(t, s, edges), "Cyclic edge without cycle " + e);
+            } else {
+                assertTrue(s.order_ < t.order_, "Order violated by " + e);
+            }
+        }
+        for (Node a : nodes) {
+            for (Node b : nodes) {
+                if (a != b)
+                    assertEquals(reaches(a, b, edges), a.isAncestor(b));
+            }
+        }
+    }
+
+    static void run(boolean inGraph, long seed) {
+        Random r = new Random(seed);
+        Graph g = new Graph();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; ++i)
+            nodes.add(new Node());
+        if (inGraph)
+            g.setRoot(nodes.get(0));
+        List<Edge> edges = new ArrayList<>();
+        for (int step = 0; step < 1500; ++step) {
+            if (edges.isEmpty() || r.nextInt(100) < 60) {
+                Node s = nodes.get(r.nextInt(NODES));
+                Node t = r.nextInt(50) == 0 ? s : nodes.get(r.nextInt(NODES));
+                edges.add(inGraph ? g.addEdge(s, t) : new Edge(s, t));
+            } else {
+                Edge e = edges.remove(r.nextInt(edges.size()));
+                if (inGraph)
+                    g.removeEdge(e);
+                else
+                    e.unlink();
+            }
+            if (step % 50 == 0)
+                check(nodes, edges);
+        }
+        check(nodes, edges);
+        // Remove everything, all remaining edges must become acyclic once their cycles are gone.
+        Collections.shuffle(edges, r);
+        while (!edges.isEmpty()) {
+            Edge e = edges.remove(edges.size() - 1);
+            if (inGraph)
+                g.removeEdge(e);
+            else
+                e.unlink();
+            if (edges.size() % 10 == 0)
+                check(nodes, edges);
+        }
+        if (inGraph)
+            assertTrue(!g.hasCyclicEdges());
+    }
+
+    @Test
+    public void randomEditsInGraph() {
+        for (long seed = 1; seed <= 5; ++seed)
+            run(true, seed);
+    }
+
+    @Test
+    public void randomEditsOfFreeNodes() {
+        for (long seed = 1; seed <= 5; ++seed)
+            run(false, seed);
+    }
+
+    @Test
+    public void removingCycleEdgeMakesOthersAcyclic() {
+        Graph g = new Graph();
+        Node a = new Node();
+        Node b = new Node();
+        Node c = new Node();
+        g.setRoot(a);
+        Edge ab = g.addEdge(a, b);
+        Edge bc = g.addEdge(b, c);
+        Edge ca = g.addEdge(c, a);
+        assertTrue(ca.isCyclic());
+        assertTrue(g.hasCyclicEdges());
+        g.removeEdge(ab);
+        assertTrue(!ca.isCyclic());
+        assertTrue(!bc.isCyclic());
+        assertTrue(c.isAncestor(a));
+        assertTrue(!a.isAncestor(c));
+    }
+}
@@ -0,0 +1,158 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the maintained {@link SubtreeAggregates} with values calculated from scratch along the owner forest.
+ */
+public class SubtreeAggregatesTest {
+
+    static boolean isOwnedEdge(SubtreeAggregates a, Edge e) {
+        return !e.isCyclic() && e.getSource() != e.getTarget() && a.getOwner(e.getTarget()) == e.getSource();
+    }
+
+    /**
+     * Gets the owned children. Parallel edges to the same child are counted once.
+     */
+    static Set<Node> children(SubtreeAggregates a, Node n) {
+        Set<Node> children = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < n.getOutgoingCount(false); ++i) {
+            Edge e = n.getOutgoing(i);
+            if (isOwnedEdge(a, e))
+                children.add(e.getTarget());
+        }
+        return children;
+    }
+
+    static int descendants(SubtreeAggregates a, Node n, boolean visibleOnly) {
+        int count = 0;
+        for (Node c : children(a, n))
+            count += descendants(a, c, visibleOnly) + (!visibleOnly || a.isVisible(c) ? 1 : 0);
+        return count;
+    }
+
+    static int height(SubtreeAggregates a, Node n) {
+        int h = 0;
+        for (Node c : children(a, n))
+            h = Math.max(h, height(a, c) + 1);
+        return h;
+    }
+
+    static void check(Graph g) {
+        SubtreeAggregates a = g.getSubtreeAggregates();
+        g.nodeStream().forEach(n -> {
+            Node owner = a.getOwner(n);
+            boolean hasParent = false;
+            for (int i = 0; i < n.getIncomingCount(); ++i) {
+                Edge e = n.getIncoming(i);
+                hasParent |= !e.isCyclic() && e.getSource() != n;
+            }
+            assertEquals(hasParent, owner != null, "Owner of " + n);
+            int depth = 0;
+            for (Node p = owner; p != null; p = a.getOwner(p))
+                ++depth;
+            assertEquals(depth, a.getDepth(n), "Depth of " + n);
+            assertEquals(descendants(a, n, false), a.getDescendantCount(n), "Descendants of " + n);
+            assertEquals(descendants(a, n, true), a.getVisibleDescendantCount(n), "Visible descendants of " + n);
+            assertEquals(height(a, n), a.getHeight(n), "Height of " + n);
+        });
+    }
+
+    @Test
+    public void randomEdits() {
+        Random r = new Random(7);
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        g.getSubtreeAggregates();
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(root);
+        List<Edge> edges = new ArrayList<>();
+        for (int step = 0; step < 3000; ++step) {
+            int op = r.nextInt(10);
+            if (op < 4 || edges.isEmpty()) {
+                Node c = new Node();
+                edges.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), c));
+                nodes.add(c);
+            } else if (op < 6) {
+                Node s = nodes.get(r.nextInt(nodes.size()));
+                Node t = nodes.get(r.nextInt(nodes.size()));
+                if (s.getGraph() == g && t.getGraph() == g)
+                    edges.add(g.addEdge(s, t));
+            } else if (op < 9) {
+                g.removeEdge(edges.remove(r.nextInt(edges.size())));
+            } else {
+                Node n = nodes.get(r.nextInt(nodes.size()));
+                if (n.getGraph() == g)
+                    g.getSubtreeAggregates().setVisible(n, r.nextBoolean());
+            }
+            nodes.removeIf(n -> n.getGraph() != g);
+            if (step % 20 == 0)
+                check(g);
+        }
+        check(g);
+    }
+
+    @Test
+    public void subtreeMoves() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        SubtreeAggregates a = g.getSubtreeAggregates();
+        Node b = new Node();
+        Node c = new Node();
+        Node d = new Node();
+        g.addEdge(root, b);
+        Edge bc = g.addEdge(b, c);
+        g.addEdge(c, d);
+        assertEquals(3, a.getDepth(d));
+        assertEquals(3, a.getDescendantCount(root));
+
+        // Second parent, takes over when the owning edge is removed.
+        Edge rc = g.addEdge(root, c);
+        assertEquals(3, a.getDepth(d));
+        g.removeEdge(bc);
+        assertEquals(root, a.getOwner(c));
+        assertEquals(2, a.getDepth(d));
+        assertEquals(0, a.getHeight(b));
+        assertEquals(2, a.getHeight(root));
+        g.removeEdge(rc);
+        assertEquals(0, a.getDepth(c));
+        assertEquals(1, a.getDepth(d));
+        assertEquals(1, a.getDescendantCount(root));
+        check(g);
+    }
+
+    /**
+     * Attaching a chain to a new parent one level at a time needs linear time.
+     */
+    @Test
+    public void bottomUpChain() {
+        Graph g = new Graph();
+        Node top = new Node();
+        g.setRoot(top);
+        SubtreeAggregates a = g.getSubtreeAggregates();
+        final Node bottom = top;
+        final int length = 200_000;
+        for (int i = 0; i < length; ++i) {
+            Node p = new Node();
+            g.addEdge(p, top);
+            top = p;
+        }
+        assertEquals(length, a.getDepth(bottom));
+        assertEquals(0, a.getDepth(top));
+        assertEquals(length, a.getDescendantCount(top));
+        assertEquals(length, a.getHeight(top));
+        assertTrue(a.getDepth(bottom.getIncoming(0).getSource()) == length - 1);
+    }
+}
@@ -0,0 +1,145 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Compares the encounter order of {@link SubtreeSpliterator} with {@link TreeWalker}, sequentially, in parallel
+ * streams and with splits whose later parts are consumed first.
+ */
+public class SubtreeSpliteratorTest {
+
+    /**
+     * Creates a random tree and adds edges, forward edges share nodes, backward edges are cyclic.
+     */
+    static Graph create(int nodes, int extraEdges, long seed) {
+        Random r = new Random(seed);
+        Graph g = new Graph();
+        Node[] n = new Node[nodes];
+        n[0] = new Node();
+        g.setRoot(n[0]);
+        for (int i = 1; i < nodes; ++i) {
+            n[i] = new Node();
+            g.addEdge(n[r.nextInt(i)], n[i]);
+        }
+        for (int i = 0; i < extraEdges; ++i)
+            g.addEdge(n[r.nextInt(nodes)], n[r.nextInt(nodes)]);
+        return g;
+    }
+
+    static List<Node> walk(Node root, TraversalOrder order) {
+        List<Node> nodes = new ArrayList<>();
+        new TreeWalker().walk(root, order, null, nodes::add);
+        return nodes;
+    }
+
+    static void assertSameNodes(List<Node> expected, List<Node> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i)
+            assertSame(expected.get(i), actual.get(i), "Node at " + i);
+    }
+
+    /**
+     * Consumes one node, splits and consumes the later part before the prefix.
+     */
+    static List<Node> consume(Spliterator<Node> s, int depth) {
+        List<Node> nodes = new ArrayList<>();
+        s.tryAdvance(nodes::add);
+        Spliterator<Node> prefix = depth > 0 ? s.trySplit() : null;
+        if (prefix == null) {
+            s.forEachRemaining(nodes::add);
+            return nodes;
+        }
+        List<Node> suffix = consume(s, depth - 1);
+        nodes.addAll(consume(prefix, depth - 1));
+        nodes.addAll(suffix);
+        return nodes;
+    }
+
+    @Test
+    public void sequentialOrder() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            Graph g = create(200, (int) (seed * 20), seed);
+            for (TraversalOrder order : new TraversalOrder[]{TraversalOrder.PRE_ORDER, TraversalOrder.POST_ORDER}) {
+                List<Node> expected = walk(g.getRoot(), order);
+                assertEquals(g.nodeCount(), expected.size());
+                assertSameNodes(expected, g.getRoot().subtreeStream(order).collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void parallelKeepsEncounterOrder() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            Graph g = create(2000, (int) (seed * 200), seed);
+            for (TraversalOrder order : new TraversalOrder[]{TraversalOrder.PRE_ORDER, TraversalOrder.POST_ORDER}) {
+                List<Node> expected = walk(g.getRoot(), order);
+                assertSameNodes(expected, g.getRoot().subtreeStream(order).parallel().collect(Collectors.toList()));
+                assertEquals(expected.size(), g.getRoot().subtreeStream(order).parallel().count());
+            }
+        }
+    }
+
+    @Test
+    public void laterPartsFirst() {
+        // The later parts claim shared nodes first, they still belong to the part of the first path.
+        for (long seed = 1; seed <= 20; ++seed) {
+            Graph g = create(300, 100, seed);
+            for (TraversalOrder order : new TraversalOrder[]{TraversalOrder.PRE_ORDER, TraversalOrder.POST_ORDER}) {
+                for (int depth = 1; depth <= 6; ++depth) {
+                    Spliterator<Node> s = new SubtreeSpliterator(g.getRoot(), order, g.nodeCount());
+                    assertSameNodes(walk(g.getRoot(), order), consume(s, depth));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void splitsAtSubtrees() {
+        // root -> a -> (a1, a2), root -> b -> b1
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node a = new Node();
+        Node b = new Node();
+        g.addEdge(root, a);
+        g.addEdge(root, b);
+        Node a1 = new Node();
+        Node a2 = new Node();
+        Node b1 = new Node();
+        g.addEdge(a, a1);
+        g.addEdge(a, a2);
+        g.addEdge(b, b1);
+
+        Spliterator<Node> s = new SubtreeSpliterator(root, TraversalOrder.PRE_ORDER, g.nodeCount());
+        // The root is expanded, the first prefix is the root itself, the next one the subtree of a.
+        List<Node> first = new ArrayList<>();
+        s.trySplit().forEachRemaining(first::add);
+        assertSameNodes(List.of(root), first);
+        List<Node> second = new ArrayList<>();
+        s.trySplit().forEachRemaining(second::add);
+        assertSameNodes(List.of(a, a1, a2), second);
+        List<Node> rest = new ArrayList<>();
+        s.forEachRemaining(rest::add);
+        assertSameNodes(List.of(b, b1), rest);
+
+        Spliterator<Node> leaf = new SubtreeSpliterator(a1, TraversalOrder.PRE_ORDER, 1);
+        assertNull(leaf.trySplit());
+    }
+
+    @Test
+    public void levelOrderIsRejected() {
+        Node n = new Node();
+        assertThrows(IllegalArgumentException.class, () -> n.subtreeStream(TraversalOrder.LEVEL_ORDER));
+    }
+}
@@ -0,0 +1,166 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the walks of {@link TreeWalker} with recursive walks, for trees and DAGs with shared nodes.
+ */
+public class TreeWalkerTest {
+
+    static void recursive(Node n, Set<Node> visited, List<Node> pre, List<Node> post) {
+        pre.add(n);
+        for (int i = 0; i < n.getOutgoingCount(false); ++i) {
+            Node t = n.getOutgoing(i).getTarget();
+            if (t != n && visited.add(t))
+                recursive(t, visited, pre, post);
+        }
+        post.add(n);
+    }
+
+    static Set<Node> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    static List<Node> walk(TreeWalker w, Node root, TraversalOrder order) {
+        List<Node> nodes = new ArrayList<>();
+        assertTrue(w.walk(root, order, null, nodes::add));
+        return nodes;
+    }
+
+    static void assertSameNodes(List<Node> expected, List<Node> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i)
+            assertSame(expected.get(i), actual.get(i), "Node at " + i);
+    }
+
+    @Test
+    public void sharedNodesOnce() {
+        // root -> a -> c -> d, root -> b -> c: c belongs to a, the first parent in pre-order.
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node a = new Node();
+        Node b = new Node();
+        Node c = new Node();
+        Node d = new Node();
+        Edge ra = g.addEdge(root, a);
+        Edge rb = g.addEdge(root, b);
+        Edge ac = g.addEdge(a, c);
+        Edge bc = g.addEdge(b, c);
+        Edge cd = g.addEdge(c, d);
+        assertFalse(bc.isCyclic());
+
+        TreeWalker w = new TreeWalker();
+        assertSameNodes(List.of(root, a, c, d, b), walk(w, root, TraversalOrder.PRE_ORDER));
+        assertSameNodes(List.of(d, c, a, b, root), walk(w, root, TraversalOrder.POST_ORDER));
+        assertSameNodes(List.of(root, a, b, c, d), walk(w, root, TraversalOrder.LEVEL_ORDER));
+        assertEquals(5, root.getTreeNodes().size());
+        assertEquals(4, root.getTreeDescendantNodes().size());
+
+        // The later edge is visited, but not followed.
+        List<Edge> edges = new ArrayList<>();
+        assertTrue(w.walkEdges(root, false, null, edges::add));
+        assertEquals(5, edges.size());
+        assertSame(ra, edges.get(0));
+        assertSame(ac, edges.get(1));
+        assertSame(cd, edges.get(2));
+        assertSame(rb, edges.get(3));
+        assertSame(bc, edges.get(4));
+
+        ElementSet tree = new ElementSet();
+        w.collectTree(root, null, tree);
+        for (GraphElement e : List.of(root, a, b, c, d, ra, rb, ac, cd))
+            assertTrue(tree.contains(e), "Tree contains " + e);
+        assertFalse(tree.contains(bc));
+
+        // Without the owning edge, the other parent takes over.
+        List<Node> filtered = new ArrayList<>();
+        w.walk(root, TraversalOrder.PRE_ORDER, e -> e != ac, filtered::add);
+        assertSameNodes(List.of(root, a, b, c, d), filtered);
+    }
+
+    @Test
+    public void randomDags() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            Graph g = SubtreeSpliteratorTest.create(300, (int) (seed * 40), seed);
+            Set<Node> visited = identitySet();
+            visited.add(g.getRoot());
+            List<Node> pre = new ArrayList<>();
+            List<Node> post = new ArrayList<>();
+            recursive(g.getRoot(), visited, pre, post);
+            assertEquals(g.nodeCount(), pre.size());
+
+            TreeWalker w = new TreeWalker();
+            assertSameNodes(pre, walk(w, g.getRoot(), TraversalOrder.PRE_ORDER));
+            assertSameNodes(post, walk(w, g.getRoot(), TraversalOrder.POST_ORDER));
+            List<Node> level = walk(w, g.getRoot(), TraversalOrder.LEVEL_ORDER);
+            Set<Node> levelSet = identitySet();
+            levelSet.addAll(level);
+            assertEquals(pre.size(), level.size());
+            assertEquals(pre.size(), levelSet.size());
+            assertSameNodes(pre, g.getRoot().getTreeNodes());
+        }
+    }
+
+    @Test
+    public void deepChain() {
+        // Deep enough to overflow the call stack with a recursive walk.
+        Graph g = new Graph();
+        Node n = new Node();
+        g.setRoot(n);
+        for (int i = 0; i < 200_000; ++i) {
+            Node c = new Node();
+            g.addEdge(n, c);
+            n = c;
+        }
+        final Node leaf = n;
+        List<Node> post = new ArrayList<>();
+        assertTrue(new TreeWalker().walk(g.getRoot(), TraversalOrder.POST_ORDER, null, post::add));
+        assertEquals(200_001, post.size());
+        assertSame(leaf, post.get(0));
+        assertEquals(200_001, g.getRoot().getTreeNodes().size());
+    }
+
+    @Test
+    public void nestedAndStoppedWalks() {
+        Graph g = SubtreeSpliteratorTest.create(100, 30, 7);
+        Node root = g.getRoot();
+        List<Node> pre = root.getTreeNodes();
+
+        // The per-thread walker is used again by nested calls in the visitor.
+        assertSame(TreeWalker.current(), TreeWalker.current());
+        List<Node> outer = new ArrayList<>();
+        assertTrue(root.walkTreeNodes(n -> {
+            outer.add(n);
+            if (n == root)
+                assertSameNodes(pre, root.getTreeNodes());
+            else
+                assertEquals(n.getTreeDescendantNodes().size() + 1, n.getTreeNodes().size());
+            return true;
+        }));
+        assertSameNodes(pre, outer);
+
+        // Stopped and failed walks leave the walker clean.
+        int[] count = {0};
+        assertFalse(root.walkTreeNodes(n -> ++count[0] < 10));
+        assertEquals(10, count[0]);
+        assertThrows(IllegalStateException.class, () -> root.walkTreeNodes(n -> {
+            if (n != root)
+                throw new IllegalStateException();
+            return true;
+        }));
+        assertSameNodes(pre, root.getTreeNodes());
+    }
+}
@@ -0,0 +1,152 @@
+package com.bw.jgraph.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Typed primitive attributes: round-trips of the primitive and boxed accessors, for free elements,
+ * members and concurrent writers.
+ */
+public class TypedAttributeTest {
+
+    static final Attribute I = Attribute.ofInt("typedAttributeTest.int");
+    static final Attribute L = Attribute.ofLong("typedAttributeTest.long");
+    static final Attribute F = Attribute.ofFloat("typedAttributeTest.float");
+    static final Attribute D = Attribute.ofDouble("typedAttributeTest.double");
+    static final Attribute B = Attribute.ofBoolean("typedAttributeTest.boolean");
+    static final Attribute TEXT = Attribute.getAttribute("typedAttributeTest.text");
+
+    static final int[] INTS = {0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    static final long[] LONGS = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 40};
+    static final float[] FLOATS = {0f, -0f, Float.NaN, Float.MIN_VALUE, Float.NEGATIVE_INFINITY};
+    static final double[] DOUBLES = {0d, -0d, Double.NaN, Double.MAX_VALUE, Double.POSITIVE_INFINITY};
+
+    static void roundTrip(GraphElement e) {
+        for (int v : INTS) {
+            e.setInt(I, v);
+            assertEquals(v, e.getInt(I));
+            assertEquals(Integer.valueOf(v), e.getAttribute(I));
+        }
+        for (long v : LONGS) {
+            e.setLong(L, v);
+            assertEquals(v, e.getLong(L));
+            assertEquals(Long.valueOf(v), e.getAttribute(L));
+        }
+        for (float v : FLOATS) {
+            e.setFloat(F, v);
+            assertEquals(Float.floatToIntBits(v), Float.floatToIntBits(e.getFloat(F)));
+            assertEquals(Float.valueOf(v), e.getAttribute(F));
+        }
+        for (double v : DOUBLES) {
+            e.setDouble(D, v);
+            assertEquals(Double.doubleToLongBits(v), Double.doubleToLongBits(e.getDouble(D)));
+            assertEquals(Double.valueOf(v), e.getAttribute(D));
+        }
+        e.setBoolean(B, true);
+        assertTrue(e.getBoolean(B));
+        e.setBoolean(B, false);
+        assertFalse(e.getBoolean(B));
+        assertTrue(e.hasAttribute(B));
+
+        // Boxed values are converted to the type of the attribute.
+        e.setAttribute(I, 7L);
+        assertEquals(7, e.getInt(I));
+        e.setAttribute(D, 2);
+        assertEquals(Double.valueOf(2), e.getAttribute(D));
+        e.setAttribute(I, null);
+        assertNull(e.getAttribute(I));
+        assertEquals(0, e.getInt(I));
+        assertFalse(e.hasAttribute(I));
+
+        assertThrows(IllegalArgumentException.class, () -> e.getInt(L));
+        assertThrows(IllegalArgumentException.class, () -> e.setDouble(F, 1));
+    }
+
+    @Test
+    public void freeElement() {
+        roundTrip(new Node());
+    }
+
+    @Test
+    public void member() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        roundTrip(root);
+        Edge e = g.addEdge(root, new Node());
+        roundTrip(e);
+    }
+
+    @Test
+    public void valuesSurviveJoinAndLeave() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node n = new Node();
+        n.setInt(I, 42);
+        n.setDouble(D, 0.5);
+        Edge e = g.addEdge(root, n);
+        assertEquals(42, n.getInt(I));
+        assertEquals(42, g.getAttributeStore().getInt(n.getId(), I));
+        n.setLong(L, 1L << 50);
+        g.removeEdge(e);
+        assertEquals(42, n.getInt(I));
+        assertEquals(0.5, n.getDouble(D), 0);
+        assertEquals(1L << 50, n.getLong(L));
+    }
+
+    /**
+     * Several threads write their own rows of a concurrent store while columns and chunks are created.
+     */
+    @Test
+    public void concurrentWrites() throws Exception {
+        final AttributeStore store = new AttributeStore(true);
+        final int threads = 4;
+        final int rows = 20_000;
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < threads; ++t) {
+            final int offset = t;
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int row = offset; row < rows; row += threads) {
+                        store.setInt(row, I, row);
+                        store.setLong(row, L, -row);
+                        store.setDouble(row, D, row * 0.5);
+                        store.setBoolean(row, B, (row & 1) == 0);
+                        store.set(row, TEXT, "c" + row);
+                    }
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers)
+            w.join();
+        assertTrue(errors.isEmpty(), errors.toString());
+        for (int row = 0; row < rows; ++row) {
+            assertEquals(row, store.getInt(row, I));
+            assertEquals(-row, store.getLong(row, L));
+            assertEquals(row * 0.5, store.getDouble(row, D), 0);
+            assertEquals((row & 1) == 0, store.getBoolean(row, B));
+            assertEquals("c" + row, store.get(row, TEXT));
+        }
+        assertEquals(rows, store.size(I));
+        assertEquals(rows, store.size(TEXT));
+    }
+}
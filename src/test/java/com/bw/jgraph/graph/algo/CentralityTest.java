@@ -0,0 +1,165 @@
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Attribute;
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Compares the parallel metrics of {@link Centrality} with sequential calculations from their definitions.
+ */
+public class CentralityTest {
+
+    static double[] degree(Graph g) {
+        double[] d = new double[g.idLimit()];
+        for (Edge e : RandomGraphs.edges(g)) {
+            ++d[e.getSource().getId()];
+            ++d[e.getTarget().getId()];
+        }
+        for (int id = 0; id < d.length; ++id)
+            d[id] /= g.nodeCount() - 1;
+        return d;
+    }
+
+    /**
+     * Power iteration on the edge list until the ranks don't change any more.
+     */
+    static double[] pageRank(Graph g, double damping) {
+        List<Node> nodes = RandomGraphs.nodes(g);
+        List<Edge> edges = RandomGraphs.edges(g);
+        final int n = nodes.size();
+        double[] rank = new double[g.idLimit()];
+        for (Node v : nodes)
+            rank[v.getId()] = 1.0 / n;
+        for (int iteration = 0; iteration < 10_000; ++iteration) {
+            double dangling = 0;
+            for (Node v : nodes) {
+                if (v.getOutgoingCount(true) == 0)
+                    dangling += rank[v.getId()];
+            }
+            double[] next = new double[rank.length];
+            for (Node v : nodes)
+                next[v.getId()] = (1 - damping) / n + damping * dangling / n;
+            for (Edge e : edges)
+                next[e.getTarget().getId()] += damping * rank[e.getSource().getId()] / e.getSource().getOutgoingCount(true);
+            double delta = 0;
+            for (int id = 0; id < rank.length; ++id)
+                delta += Math.abs(next[id] - rank[id]);
+            rank = next;
+            if (delta < 1e-15)
+                break;
+        }
+        return rank;
+    }
+
+    /**
+     * Betweenness from all pairs: the shortest s-t paths through v are sigma(s,v) * sigma(v,t)
+     * if v is on a shortest path. Parallel edges count as different paths.
+     */
+    static double[] betweenness(Graph g) {
+        final int limit = g.idLimit();
+        List<Node> nodes = RandomGraphs.nodes(g);
+        int[][] distance = new int[limit][];
+        double[][] sigma = new double[limit][];
+        for (Node s : nodes) {
+            distance[s.getId()] = GraphSearch.hopDistances(s);
+            int[] d = distance[s.getId()];
+            double[] count = new double[limit];
+            count[s.getId()] = 1;
+            // Nodes by increasing distance, each path ends with an edge from the previous level.
+            int[] level = GraphSearch.breadthFirst(s);
+            for (int v : level) {
+                for (Edge e : RandomGraphs.edges(g)) {
+                    int u = e.getSource().getId();
+                    if (e.getTarget().getId() == v && u != v && d[u] >= 0 && d[u] + 1 == d[v])
+                        count[v] += count[u];
+                }
+            }
+            sigma[s.getId()] = count;
+        }
+        double[] result = new double[limit];
+        for (Node s : nodes) {
+            for (Node t : nodes) {
+                final int si = s.getId();
+                final int ti = t.getId();
+                if (s == t || distance[si][ti] < 0)
+                    continue;
+                for (Node v : nodes) {
+                    final int vi = v.getId();
+                    if (v != s && v != t && distance[si][vi] >= 0 && distance[vi][ti] >= 0
+                            && distance[si][vi] + distance[vi][ti] == distance[si][ti])
+                        result[vi] += sigma[si][vi] * sigma[vi][ti] / sigma[si][ti];
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void randomGraphs() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (long seed = 1; seed <= 8; ++seed) {
+                Graph g = RandomGraphs.create(40, (int) (seed * 8), false, seed);
+                assertArrayEquals(degree(g), Centrality.degree(g), 1e-12);
+                assertArrayEquals(degree(g), Centrality.degree(g, pool), 1e-12);
+
+                double[] rank = Centrality.pageRank(g);
+                double sum = 0;
+                for (double r : rank)
+                    sum += r;
+                assertEquals(1, sum, 1e-9);
+                assertArrayEquals(pageRank(g, 0.85), rank, 1e-8);
+                assertArrayEquals(pageRank(g, 0.5), Centrality.pageRank(g, 0.5, 1e-12, 1000, pool), 1e-10);
+
+                double[] expected = betweenness(g);
+                assertArrayEquals(expected, Centrality.betweenness(g), 1e-9);
+                assertArrayEquals(expected, Centrality.betweenness(g, g.nodeCount(), 0, pool), 1e-9);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void hub() {
+        // The paths from a to the leaves b and c pass the hub.
+        Graph g = new Graph();
+        Node a = new Node();
+        g.setRoot(a);
+        Node hub = new Node();
+        Node b = new Node();
+        Node c = new Node();
+        g.addEdge(a, hub);
+        g.addEdge(hub, b);
+        g.addEdge(hub, c);
+        double[] betweenness = Centrality.betweenness(g);
+        assertEquals(2, betweenness[hub.getId()], 0);
+        assertEquals(0, betweenness[a.getId()], 0);
+        assertEquals(1, Centrality.degree(g)[hub.getId()], 0);
+
+        // With samples not less than the node count, all sources are used.
+        double[] sampled = Centrality.betweenness(g, 4, 1, ForkJoinPool.commonPool());
+        assertArrayEquals(betweenness, sampled, 0);
+    }
+
+    @Test
+    public void writeNeedsNumericAttribute() {
+        Graph g = RandomGraphs.create(10, 5, false, 1);
+        Attribute rank = Attribute.ofDouble("centralityTest.rank");
+        double[] values = Centrality.pageRank(g);
+        Centrality.write(g, values, rank);
+        for (Node n : RandomGraphs.nodes(g))
+            assertEquals(values[n.getId()], n.getDouble(rank), 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> Centrality.write(g, values, Attribute.ofInt("centralityTest.int")));
+    }
+}
@@ -0,0 +1,80 @@
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+import com.bw.jgraph.graph.TraversalOrder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the searches of {@link GraphSearch} with a recursive search and the brute-force reachability.
+ */
+public class GraphSearchTest {
+
+    static void visit(Node n, Set<Node> visited, List<Integer> pre, List<Integer> post) {
+        pre.add(n.getId());
+        for (int i = 0; i < n.getOutgoingCount(true); ++i) {
+            Node t = n.getOutgoing(i).getTarget();
+            if (visited.add(t))
+                visit(t, visited, pre, post);
+        }
+        post.add(n.getId());
+    }
+
+    static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void randomGraphs() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            Graph g = RandomGraphs.create(60, 60, false, seed);
+            boolean[][] reach = RandomGraphs.reachability(g);
+            for (Node start : RandomGraphs.nodes(g)) {
+                final int s = start.getId();
+                // Node.equals compares attributes, so the visited set works by identity.
+                Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+                visited.add(start);
+                List<Integer> pre = new ArrayList<>();
+                List<Integer> post = new ArrayList<>();
+                visit(start, visited, pre, post);
+                assertArrayEquals(toArray(pre), GraphSearch.search(start, TraversalOrder.PRE_ORDER));
+                assertArrayEquals(toArray(post), GraphSearch.search(start, TraversalOrder.POST_ORDER));
+
+                int[] level = GraphSearch.search(start, TraversalOrder.LEVEL_ORDER);
+                int[] hops = GraphSearch.hopDistances(start);
+                double[] expected = RandomGraphs.distances(g, start, null);
+                Set<Integer> seen = new HashSet<>();
+                for (int i = 0; i < level.length; ++i) {
+                    assertTrue(seen.add(level[i]));
+                    assertTrue(level[i] == s || reach[s][level[i]]);
+                    if (i > 0)
+                        assertTrue(hops[level[i - 1]] <= hops[level[i]], "Level order");
+                }
+                for (int id = 0; id < g.idLimit(); ++id) {
+                    boolean reached = id == s || (g.getNode(id) != null && reach[s][id]);
+                    assertEquals(reached, seen.contains(id));
+                    assertEquals(reached ? (int) expected[id] : -1, hops[id]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void freeNodeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> GraphSearch.breadthFirst(new Node()));
+        assertThrows(IllegalArgumentException.class, () -> GraphSearch.search(new Node(), TraversalOrder.PRE_ORDER));
+        assertThrows(IllegalArgumentException.class, () -> GraphSearch.hopDistances(new Node()));
+    }
+}
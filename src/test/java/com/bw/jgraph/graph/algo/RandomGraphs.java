@@ -0,0 +1,107 @@
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Small random graphs for the algorithm tests and brute-force references on the plain edge list.
+ */
+final class RandomGraphs {
+
+    private RandomGraphs() {
+    }
+
+    /**
+     * Creates a spanning tree of new nodes below the root plus random edges between members.
+     *
+     * @param dag If true, the extra edges go from older to newer nodes only, so the graph stays acyclic.
+     */
+    static Graph create(int nodes, int extraEdges, boolean dag, long seed) {
+        Random r = new Random(seed);
+        Graph g = new Graph();
+        List<Node> members = new ArrayList<>();
+        members.add(new Node());
+        g.setRoot(members.get(0));
+        for (int i = 1; i < nodes; ++i) {
+            Node c = new Node();
+            g.addEdge(members.get(r.nextInt(members.size())), c);
+            members.add(c);
+        }
+        for (int i = 0; i < extraEdges; ++i) {
+            int a = r.nextInt(nodes);
+            int b = r.nextInt(nodes);
+            if (dag && a >= b)
+                continue;
+            g.addEdge(members.get(a), members.get(b));
+        }
+        return g;
+    }
+
+    static List<Edge> edges(Graph g) {
+        List<Edge> edges = new ArrayList<>();
+        for (int id = 0; id < g.idLimit(); ++id) {
+            if (g.getEdge(id) != null)
+                edges.add(g.getEdge(id));
+        }
+        return edges;
+    }
+
+    static List<Node> nodes(Graph g) {
+        List<Node> nodes = new ArrayList<>();
+        for (int id = 0; id < g.idLimit(); ++id) {
+            if (g.getNode(id) != null)
+                nodes.add(g.getNode(id));
+        }
+        return nodes;
+    }
+
+    /**
+     * Transitive closure along all edges, indexed by id: [a][b] is true if a path of at least one edge
+     * leads from a to b.
+     */
+    static boolean[][] reachability(Graph g) {
+        final int n = g.idLimit();
+        boolean[][] reach = new boolean[n][n];
+        for (Edge e : edges(g))
+            reach[e.getSource().getId()][e.getTarget().getId()] = true;
+        for (int k = 0; k < n; ++k) {
+            for (int i = 0; i < n; ++i) {
+                if (reach[i][k]) {
+                    for (int j = 0; j < n; ++j)
+                        reach[i][j] |= reach[k][j];
+                }
+            }
+        }
+        return reach;
+    }
+
+    /**
+     * Distances from the source by relaxing all edges until nothing changes (Bellman-Ford), indexed by id.
+     *
+     * @param weights Weight by edge id, null for weight 1.
+     */
+    static double[] distances(Graph g, Node source, double[] weights) {
+        double[] d = new double[g.idLimit()];
+        Arrays.fill(d, Double.POSITIVE_INFINITY);
+        d[source.getId()] = 0;
+        List<Edge> edges = edges(g);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Edge e : edges) {
+                double nd = d[e.getSource().getId()] + (weights == null ? 1 : weights[e.getId()]);
+                if (nd < d[e.getTarget().getId()]) {
+                    d[e.getTarget().getId()] = nd;
+                    changed = true;
+                }
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,105 @@
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Attribute;
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares {@link ShortestPaths} with hop counts of a breadth-first search and with Bellman-Ford.
+ */
+public class ShortestPathsTest {
+
+    static final Attribute WEIGHT = Attribute.ofDouble("shortestPathsTest.weight");
+
+    /**
+     * Checks distances and paths of all nodes.
+     */
+    static void check(Graph g, ShortestPaths paths, Node source, double[] expected, double[] weights) {
+        for (Node n : RandomGraphs.nodes(g)) {
+            final int id = n.getId();
+            assertEquals(expected[id], paths.getDistance(n), 1e-9, "Distance of " + n);
+            List<Edge> path = paths.getPath(n);
+            int[] ids = paths.getPathIds(n);
+            if (expected[id] == Double.POSITIVE_INFINITY) {
+                assertEquals(0, ids.length);
+                assertTrue(path.isEmpty());
+                continue;
+            }
+            assertEquals(path.size() + 1, ids.length);
+            assertEquals(source.getId(), ids[0]);
+            assertEquals(id, ids[ids.length - 1]);
+            double length = 0;
+            for (int i = 0; i < path.size(); ++i) {
+                Edge e = path.get(i);
+                assertEquals(ids[i], e.getSource().getId());
+                assertEquals(ids[i + 1], e.getTarget().getId());
+                length += weights == null ? 1 : weights[e.getId()];
+            }
+            assertEquals(expected[id], length, 1e-9);
+        }
+    }
+
+    @Test
+    public void unitWeightsMatchHopCounts() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            Graph g = RandomGraphs.create(60, 60, false, seed);
+            for (Node source : RandomGraphs.nodes(g)) {
+                ShortestPaths paths = ShortestPaths.dijkstra(source, null);
+                int[] hops = GraphSearch.hopDistances(source);
+                double[] expected = new double[g.idLimit()];
+                for (int id = 0; id < expected.length; ++id)
+                    expected[id] = hops[id] < 0 ? Double.POSITIVE_INFINITY : hops[id];
+                check(g, paths, source, expected, null);
+                check(g, paths, source, RandomGraphs.distances(g, source, null), null);
+            }
+        }
+    }
+
+    @Test
+    public void weightedMatchesBellmanFord() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            Random r = new Random(seed);
+            Graph g = RandomGraphs.create(50, 80, false, seed);
+            double[] weights = new double[g.idLimit()];
+            for (Edge e : RandomGraphs.edges(g)) {
+                // Some edges keep the default weight 1.
+                weights[e.getId()] = 1;
+                if (r.nextInt(5) > 0) {
+                    weights[e.getId()] = r.nextInt(20) * 0.5;
+                    e.setDouble(WEIGHT, weights[e.getId()]);
+                }
+            }
+            for (Node source : RandomGraphs.nodes(g)) {
+                double[] expected = RandomGraphs.distances(g, source, weights);
+                check(g, ShortestPaths.dijkstra(source, WEIGHT), source, expected, weights);
+                for (Node target : RandomGraphs.nodes(g)) {
+                    ShortestPaths a = ShortestPaths.aStar(source, target, WEIGHT, null);
+                    assertEquals(expected[target.getId()], a.getDistance(target), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void negativeWeightIsRejected() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Edge e = g.addEdge(root, new Node());
+        e.setDouble(WEIGHT, -1);
+        assertThrows(IllegalArgumentException.class, () -> ShortestPaths.dijkstra(root, WEIGHT));
+        ShortestPaths paths = ShortestPaths.dijkstra(root, null);
+        assertEquals(1, paths.getDistance(e.getTarget()), 0);
+        assertSame(e, paths.getPath(e.getTarget()).get(0));
+    }
+}
@@ -0,0 +1,67 @@
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares {@link StronglyConnectedComponents} with mutual reachability from the transitive closure.
+ */
+public class StronglyConnectedComponentsTest {
+
+    static void check(Graph g) {
+        StronglyConnectedComponents scc = StronglyConnectedComponents.of(g);
+        boolean[][] reach = RandomGraphs.reachability(g);
+        List<Node> nodes = RandomGraphs.nodes(g);
+        int[] sizes = new int[scc.count()];
+        for (Node a : nodes) {
+            int c = scc.getComponent(a);
+            assertTrue(c >= 0 && c < scc.count());
+            ++sizes[c];
+            for (Node b : nodes) {
+                boolean strong = a == b || (reach[a.getId()][b.getId()] && reach[b.getId()][a.getId()]);
+                assertEquals(strong, c == scc.getComponent(b), a + " / " + b);
+            }
+        }
+        int[] actual = scc.getComponentSizes();
+        assertEquals(sizes.length, actual.length);
+        for (int c = 0; c < sizes.length; ++c)
+            assertTrue(sizes[c] > 0 && sizes[c] == actual[c]);
+        for (Edge e : RandomGraphs.edges(g))
+            assertTrue(scc.getComponent(e.getSource()) >= scc.getComponent(e.getTarget()), "Reverse topological order");
+        for (int id = 0; id < g.idLimit(); ++id) {
+            if (g.getNode(id) == null)
+                assertEquals(-1, scc.getComponent(id));
+        }
+    }
+
+    @Test
+    public void randomGraphs() {
+        for (long seed = 1; seed <= 20; ++seed)
+            check(RandomGraphs.create(50, (int) (seed * 5), false, seed));
+    }
+
+    @Test
+    public void deepCycle() {
+        // A chain longer than the call stack allows for recursion, closed to one component.
+        Graph g = new Graph();
+        Node first = new Node();
+        g.setRoot(first);
+        Node last = first;
+        for (int i = 0; i < 100_000; ++i) {
+            Node n = new Node();
+            g.addEdge(last, n);
+            last = n;
+        }
+        g.addEdge(last, first);
+        StronglyConnectedComponents scc = StronglyConnectedComponents.of(g);
+        assertEquals(1, scc.count());
+        assertEquals(g.nodeCount(), scc.getComponentSizes()[0]);
+    }
+}
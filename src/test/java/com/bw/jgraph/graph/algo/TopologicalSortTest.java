@@ -0,0 +1,79 @@
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the orders of {@link TopologicalSort} contain each node once and respect all (acyclic) edges.
+ */
+public class TopologicalSortTest {
+
+    /**
+     * Checks the order and returns the position by id.
+     */
+    static int[] positions(Graph g, int[] order) {
+        assertEquals(g.nodeCount(), order.length);
+        int[] position = new int[g.idLimit()];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < order.length; ++i) {
+            assertNotNull(g.getNode(order[i]));
+            assertEquals(-1, position[order[i]], "Node twice");
+            position[order[i]] = i;
+        }
+        return position;
+    }
+
+    @Test
+    public void acyclicGraphs() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            Graph g = RandomGraphs.create(80, 150, true, seed);
+            int[] position = positions(g, TopologicalSort.sort(g));
+            for (Edge e : RandomGraphs.edges(g))
+                assertTrue(position[e.getSource().getId()] < position[e.getTarget().getId()], "Edge " + e);
+        }
+    }
+
+    @Test
+    public void cyclicGraphs() {
+        for (long seed = 1; seed <= 10; ++seed) {
+            Graph g = RandomGraphs.create(40, 30, false, seed);
+            boolean[][] reach = RandomGraphs.reachability(g);
+            boolean cycle = false;
+            for (Node n : RandomGraphs.nodes(g))
+                cycle |= reach[n.getId()][n.getId()];
+
+            int[] order = TopologicalSort.sort(g);
+            assertEquals(cycle, order == null);
+            if (order != null)
+                positions(g, order);
+
+            int[] position = positions(g, TopologicalSort.sortAcyclic(g));
+            for (Edge e : RandomGraphs.edges(g)) {
+                if (!e.isCyclic())
+                    assertTrue(position[e.getSource().getId()] < position[e.getTarget().getId()], "Edge " + e);
+            }
+        }
+    }
+
+    @Test
+    public void selfLoopIsCycle() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node a = new Node();
+        g.addEdge(root, a);
+        assertNotNull(TopologicalSort.sort(g));
+        g.addEdge(a, a);
+        assertNull(TopologicalSort.sort(g));
+        assertEquals(2, TopologicalSort.sortAcyclic(g).length);
+    }
+}
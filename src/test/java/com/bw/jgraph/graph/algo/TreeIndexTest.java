@@ -0,0 +1,168 @@
+package com.bw.jgraph.graph.algo;
+
+import com.bw.jgraph.graph.Edge;
+import com.bw.jgraph.graph.Graph;
+import com.bw.jgraph.graph.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the queries of {@link TreeIndex} with parent chains of a recursive pre-order walk, while the graph
+ * changes and the index has to decide if it needs a rebuild.
+ */
+public class TreeIndexTest {
+
+    /**
+     * Walks the acyclic edges in pre-order, the first visit of a node decides its parent.
+     */
+    static void walk(Node n, Map<Node, Node> parent) {
+        for (int i = 0; i < n.getOutgoingCount(false); ++i) {
+            Node t = n.getOutgoing(i).getTarget();
+            if (!parent.containsKey(t)) {
+                parent.put(t, n);
+                walk(t, parent);
+            }
+        }
+    }
+
+    static List<Node> chain(Node n, Map<Node, Node> parent) {
+        List<Node> chain = new ArrayList<>();
+        for (; n != null; n = parent.get(n))
+            chain.add(n);
+        return chain;
+    }
+
+    /**
+     * Finds the node by identity, {@link Node#equals(Object)} compares attributes.
+     */
+    static int indexOf(List<Node> nodes, Node n) {
+        for (int i = 0; i < nodes.size(); ++i) {
+            if (nodes.get(i) == n)
+                return i;
+        }
+        return -1;
+    }
+
+    static void check(Graph g, TreeIndex index, List<Node> nodes) {
+        Map<Node, Node> parent = new IdentityHashMap<>();
+        parent.put(g.getRoot(), null);
+        walk(g.getRoot(), parent);
+        for (Node a : nodes) {
+            boolean inTree = parent.containsKey(a);
+            assertEquals(inTree, index.contains(a), "Contains " + a);
+            assertSame(parent.get(a), index.getParent(a));
+            assertEquals(inTree ? chain(a, parent).size() - 1 : -1, index.getDepth(a));
+        }
+        for (Node a : nodes) {
+            for (Node b : nodes) {
+                if (!parent.containsKey(a) || !parent.containsKey(b)) {
+                    assertNull(index.getLowestCommonAncestor(a, b));
+                    assertTrue(index.getPath(a, b).isEmpty());
+                    assertTrue(!index.isAncestor(a, b));
+                    continue;
+                }
+                List<Node> up = chain(a, parent);
+                List<Node> down = chain(b, parent);
+                assertEquals(a != b && indexOf(down, a) >= 0, index.isAncestor(a, b), a + " ancestor of " + b);
+                Node lca = null;
+                for (Node n : up) {
+                    if (indexOf(down, n) >= 0) {
+                        lca = n;
+                        break;
+                    }
+                }
+                assertSame(lca, index.getLowestCommonAncestor(a, b), "LCA of " + a + " and " + b);
+                List<Node> path = new ArrayList<>(up.subList(0, indexOf(up, lca) + 1));
+                List<Node> back = new ArrayList<>(down.subList(0, indexOf(down, lca)));
+                Collections.reverse(back);
+                path.addAll(back);
+                List<Node> actual = index.getPath(a, b);
+                assertEquals(path.size(), actual.size(), "Path from " + a + " to " + b);
+                for (int i = 0; i < path.size(); ++i)
+                    assertSame(path.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void randomEdits() {
+        Random r = new Random(3);
+        Graph g = new Graph();
+        g.setRoot(new Node());
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(g.getRoot());
+        List<Edge> edges = new ArrayList<>();
+        try (TreeIndex index = new TreeIndex(g)) {
+            for (int step = 0; step < 600; ++step) {
+                int op = r.nextInt(10);
+                if (op < 4 || edges.isEmpty()) {
+                    Node c = new Node();
+                    edges.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), c));
+                    nodes.add(c);
+                } else if (op < 6) {
+                    // Often cyclic or from nodes outside the tree, the index ignores these.
+                    edges.add(g.addEdge(nodes.get(r.nextInt(nodes.size())), nodes.get(r.nextInt(nodes.size()))));
+                } else if (op < 8) {
+                    g.removeEdge(edges.remove(r.nextInt(edges.size())));
+                } else {
+                    g.batch(b -> {
+                        for (int i = 0; i < 3; ++i)
+                            edges.add(b.addEdge(nodes.get(r.nextInt(nodes.size())), nodes.get(r.nextInt(nodes.size()))));
+                    });
+                }
+                edges.removeIf(e -> e.getGraph() != g);
+                if (step % 20 == 0)
+                    check(g, index, nodes);
+                nodes.removeIf(n -> n.getGraph() != g);
+            }
+            check(g, index, nodes);
+        }
+    }
+
+    @Test
+    public void firstParentInPreOrder() {
+        Graph g = new Graph();
+        Node root = new Node();
+        g.setRoot(root);
+        Node a = new Node();
+        Node b = new Node();
+        Node c = new Node();
+        g.addEdge(root, a);
+        g.addEdge(root, b);
+        g.addEdge(a, c);
+        Edge bc = g.addEdge(b, c);
+        TreeIndex index = new TreeIndex(g);
+        assertSame(a, index.getParent(c));
+        assertEquals(2, index.getDepth(c));
+        assertSame(root, index.getLowestCommonAncestor(b, c));
+        List<Node> path = index.getPath(b, c);
+        assertEquals(4, path.size());
+        assertSame(b, path.get(0));
+        assertSame(root, path.get(1));
+        assertSame(a, path.get(2));
+        assertSame(c, path.get(3));
+
+        // The later parent takes over after the first edge is gone.
+        g.removeEdge(a.getOutgoing(0));
+        assertSame(b, index.getParent(c));
+        assertSame(b, index.getLowestCommonAncestor(b, c));
+        assertTrue(index.isAncestor(root, c));
+        g.removeEdge(bc);
+        assertEquals(-1, index.getDepth(c));
+
+        // Without listening, the index keeps its last state.
+        index.close();
+        assertTrue(index.contains(a));
+    }
+}
@@ -0,0 +1,92 @@
+package com.bw.jgraph.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks how {@link GraphReader} handles untrusted input: serialized objects and lengths.
+ */
+public class GraphReaderTest {
+
+    static byte[] write(Object serialized) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GraphWriter o = new GraphWriter(bytes)) {
+            o.writeObject(1, serialized, true);
+            o.writeString(2, "after");
+            o.writeBytes(3, new byte[1000]);
+        }
+        return bytes.toByteArray();
+    }
+
+    static GraphReader reader(byte[] bytes) {
+        return new GraphReader(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void serializedNeedsFilter() throws IOException {
+        List<Integer> list = new ArrayList<>(List.of(1, 2, 3));
+        byte[] bytes = write(list);
+        try (GraphReader i = reader(bytes)) {
+            assertThrows(IOException.class, i::readObject);
+            // The field is still there and can be skipped.
+            i.skip();
+            assertEquals("after", i.readString());
+            assertEquals(1000, ((byte[]) i.readObject()).length);
+        }
+        try (GraphReader i = reader(bytes)) {
+            i.setSerializedFilter(ObjectInputFilter.Config.createFilter("java.util.ArrayList;java.lang.*;!*"));
+            assertEquals(list, i.readObject());
+            assertEquals("after", i.readString());
+        }
+        try (GraphReader i = reader(bytes)) {
+            i.setSerializedFilter(ObjectInputFilter.Config.createFilter("java.lang.*;!*"));
+            assertThrows(IOException.class, i::readObject);
+        }
+    }
+
+    @Test
+    public void lengthsAreLimited() throws IOException {
+        byte[] bytes = write(null);
+        try (GraphReader i = reader(bytes)) {
+            i.setMaxLength(4);
+            i.skip();
+            assertThrows(IOException.class, i::readString);
+        }
+        try (GraphReader i = reader(bytes)) {
+            i.setMaxLength(999);
+            i.skip();
+            assertEquals("after", i.readString());
+            assertThrows(IOException.class, i::readObject);
+        }
+        try (GraphReader i = reader(bytes)) {
+            i.setMaxLength(1000);
+            i.skip();
+            i.skip();
+            assertArrayEquals(new byte[1000], (byte[]) i.readObject());
+        }
+    }
+
+    @Test
+    public void truncatedInput() throws IOException {
+        // Field 1 claims Integer.MAX_VALUE bytes, only three follow.
+        byte[] bytes = {(byte) ((1 << GraphWriter.TAG_BITS) | GraphWriter.BYTES), -1, -1, -1, -1, 7, 1, 2, 3};
+        try (GraphReader i = reader(bytes)) {
+            assertThrows(IOException.class, i::readObject, "Exceeds the default limit");
+        }
+        try (GraphReader i = reader(bytes)) {
+            i.setMaxLength(Integer.MAX_VALUE);
+            assertThrows(EOFException.class, i::readObject);
+        }
+    }
+}